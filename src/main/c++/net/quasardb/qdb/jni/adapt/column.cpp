@@ -9,13 +9,13 @@ template <>
 
     if (x.type == qdb_ts_column_symbol)
     {
-        return jni::object::create(env, "net/quasardb/qdb/ts/Column",
-            "(Ljava/lang/String;ILjava/lang/String;)V", name_, x.type, symtable_);
+        return jni::object::create(env, jni::registry::get().column.cls,
+            jni::registry::get().column.init_symbol, name_, x.type, symtable_);
     }
     else
     {
         return jni::object::create(
-            env, "net/quasardb/qdb/ts/Column", "(Ljava/lang/String;I)V", name_, x.type);
+            env, jni::registry::get().column.cls, jni::registry::get().column.init, name_, x.type);
     }
 }
 
@@ -25,18 +25,17 @@ template <>
 {
     jstring name_ = env.instance().NewStringUTF(x.name);
     return jni::object::create(
-        env, "net/quasardb/qdb/ts/Column", "(Ljava/lang/String;I)V", name_, x.type);
+        env, jni::registry::get().column.cls, jni::registry::get().column.init, name_, x.type);
 }
 
 template <>
 /* static */ qdb_ts_column_info_ex_t qdb::jni::adapt::column::to_qdb(
     qdb::jni::env & env, qdb_handle_t handle, jobject input)
 {
-    jclass object_class = jni::object::get_class(env, input);
-    jfieldID name_field = jni::string::lookup_field(env, object_class, "name");
-    jfieldID type_field = jni::introspect::lookup_field(
-        env, object_class, "type", "Lnet/quasardb/qdb/ts/Column$Type;");
-    jfieldID symbol_table_field = jni::string::lookup_field(env, object_class, "symbolTable");
+    jni::registry::column_t const & column_ = jni::registry::get().column;
+    jfieldID name_field                    = column_.name;
+    jfieldID type_field                    = column_.type;
+    jfieldID symbol_table_field            = column_.symbol_table;
 
     jni::guard::string_utf8 name = jni::string::from_field(env, handle, input, name_field);
     qdb_ts_column_type_t type =
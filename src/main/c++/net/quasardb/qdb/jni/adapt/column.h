@@ -4,6 +4,7 @@
 #include "../object.h"
 #include "../object_array.h"
 #include "../primitives.h"
+#include "../registry.h"
 #include "../string.h"
 #include <qdb/ts.h>
 #include <cassert>
@@ -22,10 +23,8 @@ T to_qdb(qdb::jni::env & env, qdb_handle_t handle, jobject input);
 
 inline qdb_ts_column_type_t _column_type_from_type_enum(qdb::jni::env & env, jobject input)
 {
-    jclass object_class  = jni::object::get_class(env, input);
-    jfieldID value_field = jni::introspect::lookup_field(env, object_class, "value", "I");
-
-    return jni::primitives::get_int_as<qdb_ts_column_type_t>(env, input, value_field);
+    return jni::primitives::get_int_as<qdb_ts_column_type_t>(
+        env, input, jni::registry::get().column_type.value);
 }
 }; // namespace qdb::jni::adapt::column
 
@@ -49,7 +48,7 @@ jni::object_array to_java(jni::env & env, R const & xs)
     };
 
     return jni::make_object_array(
-        env, "net/quasardb/qdb/ts/Column", ranges::views::transform(xs, callback));
+        env, jni::registry::get().column.cls, ranges::views::transform(xs, callback));
 }
 
 template <typename T>
@@ -4,6 +4,7 @@
 #include "../guard/local_ref.h"
 #include "../object.h"
 #include "../object_array.h"
+#include "../registry.h"
 #include "timespec.h"
 #include <qdb/ts.h>
 #include <jni.h>
@@ -31,7 +32,7 @@ inline jni::object_array _read_values(
     };
 
     return jni::make_object_array(
-        env, "net/quasardb/qdb/ts/Value", ranges::views::transform(columns, callback));
+        env, jni::registry::get().value.cls, ranges::views::transform(columns, callback));
 }
 
 template <ranges::input_range R>
@@ -50,9 +51,9 @@ inline qdb::jni::guard::local_ref<jobject> next_row(
 
     jni::object_array vals = _read_values(env, handle, localTable, columns);
 
-    return jni::object::create(env, "net/quasardb/qdb/ts/WritableRow",
-        "(Lnet/quasardb/qdb/ts/Timespec;[Lnet/quasardb/qdb/ts/Value;)V",
-        jni::adapt::timespec::to_java(env, row_ts).release(), vals.release());
+    return jni::object::create(env, jni::registry::get().writable_row.cls,
+        jni::registry::get().writable_row.init, jni::adapt::timespec::to_java(env, row_ts).release(),
+        vals.release());
 }
 
 }; // namespace qdb::jni::adapt::local_table
@@ -3,6 +3,7 @@
 #include "../env.h"
 #include "../object.h"
 #include "../object_array.h"
+#include "../registry.h"
 #include "timespec.h"
 #include <qdb/ts.h>
 #include <range/v3/range.hpp>
@@ -13,15 +14,12 @@ namespace qdb::jni::adapt::timerange
 
 inline qdb_ts_range_t to_qdb(qdb::jni::env & env, jobject input)
 {
-    jclass object_class = jni::object::get_class(env, input);
-    jfieldID begin_field =
-        jni::introspect::lookup_field(env, object_class, "begin", "Lnet/quasardb/qdb/ts/Timespec;");
-    jfieldID end_field =
-        jni::introspect::lookup_field(env, object_class, "end", "Lnet/quasardb/qdb/ts/Timespec;");
-
-    return qdb_ts_range_t{
-        adapt::timespec::to_qdb(env, env.instance().GetObjectField(input, begin_field)),
-        adapt::timespec::to_qdb(env, env.instance().GetObjectField(input, end_field))};
+    jni::registry::timerange_t const & timerange_ = jni::registry::get().timerange;
+
+    jni::guard::local_ref<jobject> begin{env, env.instance().GetObjectField(input, timerange_.begin)};
+    jni::guard::local_ref<jobject> end{env, env.instance().GetObjectField(input, timerange_.end)};
+
+    return qdb_ts_range_t{adapt::timespec::to_qdb(env, begin), adapt::timespec::to_qdb(env, end)};
 }
 
 inline jni::guard::local_ref<jobject> to_java(qdb::jni::env & env, qdb_ts_range_t const & input)
@@ -29,9 +27,9 @@ inline jni::guard::local_ref<jobject> to_java(qdb::jni::env & env, qdb_ts_range_
     auto begin = adapt::timespec::to_java(env, input.begin);
     auto end   = adapt::timespec::to_java(env, input.end);
 
-    return jni::object::create(env, "net/quasardb/qdb/ts/TimeRange",
-        "(Lnet/quasardb/qdb/ts/Timespec;Lnet/quasardb/qdb/ts/Timespec;)V", begin.release(),
-        end.release());
+    jni::registry::timerange_t const & timerange_ = jni::registry::get().timerange;
+
+    return jni::object::create(env, timerange_.cls, timerange_.init, begin.release(), end.release());
 }
 
 template <ranges::input_range R, typename OutputIterator>
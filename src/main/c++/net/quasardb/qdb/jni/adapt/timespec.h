@@ -5,6 +5,7 @@
 #include "../object.h"
 #include "../object_array.h"
 #include "../primitive_array.h"
+#include "../registry.h"
 #include "../util/unzip_view.hpp"
 #include <qdb/ts.h>
 #include <cassert>
@@ -28,18 +29,17 @@ inline constexpr qdb_timespec_t _make_timespec_t(jlong sec, jlong nsec)
 
 inline qdb_timespec_t to_qdb(qdb::jni::env & env, jobject input)
 {
-    jclass object_class = jni::object::get_class(env, input);
-    jfieldID sec_field  = jni::introspect::lookup_field(env, object_class, "sec", "J");
-    jfieldID nsec_field = jni::introspect::lookup_field(env, object_class, "nsec", "J");
+    jni::registry::timespec_t const & timespec_ = jni::registry::get().timespec;
 
-    return _make_timespec_t(env.instance().GetLongField(input, sec_field),
-        env.instance().GetLongField(input, nsec_field));
+    return _make_timespec_t(env.instance().GetLongField(input, timespec_.sec),
+        env.instance().GetLongField(input, timespec_.nsec));
 }
 
 inline jni::guard::local_ref<jobject> to_java(qdb::jni::env & env, qdb_timespec_t const & input)
 {
-    return jni::object::create(
-        env, "net/quasardb/qdb/ts/Timespec", "(JJ)V", input.tv_sec, input.tv_nsec);
+    jni::registry::timespec_t const & timespec_ = jni::registry::get().timespec;
+
+    return jni::object::create(env, timespec_.cls, timespec_.init, input.tv_sec, input.tv_nsec);
 }
 
 }; // namespace qdb::jni::adapt::timespec
@@ -86,8 +86,10 @@ inline jni::guard::local_ref<jobject> to_java(qdb::jni::env & env, R const & inp
     auto secs_  = jni::primitive_array::from_range<qdb_int_t>(env, secs);
     auto nsecs_ = jni::primitive_array::from_range<qdb_int_t>(env, nsecs);
 
+    jni::registry::timespecs_t const & timespecs_ = jni::registry::get().timespecs;
+
     return jni::object::create(
-        env, "net/quasardb/qdb/ts/Timespecs", "([J[J)V", secs_.release(), nsecs_.release());
+        env, timespecs_.cls, timespecs_.init, secs_.release(), nsecs_.release());
 }
 
 }; // namespace qdb::jni::adapt::timespecs
@@ -5,13 +5,14 @@
 #include "../guard/local_ref.h"
 #include "../introspect.h"
 #include "../object.h"
+#include "../registry.h"
 #include "../string.h"
 #include "../util/ts_helpers.h"
 #include "timespec.h"
 #include <cassert>
 
 /* static */ qdb::jni::guard::local_ref<jobject> qdb::jni::adapt::value::from_native(
-    qdb::jni::env & env, qdb_handle_t handle, qdb_point_result_t const & input)
+    qdb::jni::env & env, qdb_handle_t handle, qdb_point_result_t const & input, jobject blob_owner)
 {
     switch (input.type)
     {
@@ -28,7 +29,8 @@
         break;
 
     case qdb_query_result_blob:
-        return _from_native_blob(env, handle, input);
+        return (blob_owner != nullptr ? _from_native_blob_view(env, input, blob_owner)
+                                      : _from_native_blob(env, handle, input));
         break;
 
     case qdb_query_result_string:
@@ -50,47 +52,59 @@
 /* static */ qdb::jni::guard::local_ref<jobject> qdb::jni::adapt::value::_from_native_int64(
     qdb::jni::env & env, qdb_point_result_t const & input)
 {
-    return jni::object::call_static_method(env, "net/quasardb/qdb/ts/Value", "createInt64",
-        "(J)Lnet/quasardb/qdb/ts/Value;", input.payload.int64_.value);
+    return jni::object::call_static_method(env, jni::registry::get().value.cls,
+        jni::registry::get().value.create_int64, input.payload.int64_.value);
 }
 
 /* static */ qdb::jni::guard::local_ref<jobject> qdb::jni::adapt::value::_from_native_count(
     qdb::jni::env & env, qdb_point_result_t const & input)
 {
-    return jni::object::call_static_method(env, "net/quasardb/qdb/ts/Value", "createInt64",
-        "(J)Lnet/quasardb/qdb/ts/Value;", input.payload.count.value);
+    return jni::object::call_static_method(env, jni::registry::get().value.cls,
+        jni::registry::get().value.create_int64, input.payload.count.value);
 }
 
 /* static */ qdb::jni::guard::local_ref<jobject> qdb::jni::adapt::value::_from_native_double(
     qdb::jni::env & env, qdb_point_result_t const & input)
 {
-    return jni::object::call_static_method(env, "net/quasardb/qdb/ts/Value", "createDouble",
-        "(D)Lnet/quasardb/qdb/ts/Value;", input.payload.double_.value);
+    return jni::object::call_static_method(env, jni::registry::get().value.cls,
+        jni::registry::get().value.create_double, input.payload.double_.value);
 }
 
 /* static */ qdb::jni::guard::local_ref<jobject> qdb::jni::adapt::value::_from_native_timestamp(
     qdb::jni::env & env, qdb_point_result_t const & input)
 {
-    return jni::object::call_static_method(env, "net/quasardb/qdb/ts/Value", "createTimestamp",
-        "(Lnet/quasardb/qdb/ts/Timespec;)Lnet/quasardb/qdb/ts/Value;",
+    return jni::object::call_static_method(env, jni::registry::get().value.cls,
+        jni::registry::get().value.create_timestamp,
         jni::adapt::timespec::to_java(env, input.payload.timestamp.value).release());
 }
 
 /* static */ qdb::jni::guard::local_ref<jobject> qdb::jni::adapt::value::_from_native_blob(
     qdb::jni::env & env, qdb_handle_t handle, qdb_point_result_t const & input)
 {
-    return jni::object::call_static_method(env, "net/quasardb/qdb/ts/Value", "createSafeBlob",
-        "(Ljava/nio/ByteBuffer;)Lnet/quasardb/qdb/ts/Value;",
+    // The buffer is already a copy owned by the JVM, no need to copy it again.
+    return jni::object::call_static_method(env, jni::registry::get().value.cls,
+        jni::registry::get().value.create_blob,
         jni::byte_buffer::create_copy(
             env, handle, input.payload.blob.content, input.payload.blob.content_length)
             .release());
 }
 
+/* static */ qdb::jni::guard::local_ref<jobject> qdb::jni::adapt::value::_from_native_blob_view(
+    qdb::jni::env & env, qdb_point_result_t const & input, jobject owner)
+{
+    return jni::object::call_static_method(env, jni::registry::get().value.cls,
+        jni::registry::get().value.create_blob_view,
+        jni::byte_buffer::create_view(env, input.payload.blob.content,
+            static_cast<jsize>(input.payload.blob.content_length))
+            .release(),
+        owner);
+}
+
 /* static */ qdb::jni::guard::local_ref<jobject> qdb::jni::adapt::value::_from_native_string(
     qdb::jni::env & env, qdb_handle_t handle, qdb_point_result_t const & input)
 {
-    return jni::object::call_static_method(env, "net/quasardb/qdb/ts/Value", "createString",
-        "(Ljava/lang/String;)Lnet/quasardb/qdb/ts/Value;",
+    return jni::object::call_static_method(env, jni::registry::get().value.cls,
+        jni::registry::get().value.create_string,
         jni::string::create_utf8(
             env, handle, input.payload.string.content, input.payload.string.content_length)
             .release());
@@ -100,5 +114,5 @@
     qdb::jni::env & env)
 {
     return jni::object::call_static_method(
-        env, "net/quasardb/qdb/ts/Value", "createNull", "()Lnet/quasardb/qdb/ts/Value;");
+        env, jni::registry::get().value.cls, jni::registry::get().value.create_null);
 }
@@ -3,6 +3,7 @@
 #include "../byte_buffer.h"
 #include "../guard/local_ref.h"
 #include "../object.h"
+#include "../registry.h"
 #include "../string.h"
 #include "timespec.h"
 #include "value_traits.h"
@@ -21,7 +22,7 @@ inline qdb::jni::guard::local_ref<jobject> to_java_impl<qdb_int_t>(
     qdb::jni::env & env, qdb_handle_t /* handle */, qdb_int_t value)
 {
     return jni::object::call_static_method(
-        env, "net/quasardb/qdb/ts/Value", "createInt64", "(J)Lnet/quasardb/qdb/ts/Value;", value);
+        env, jni::registry::get().value.cls, jni::registry::get().value.create_int64, value);
 }
 
 template <>
@@ -29,15 +30,15 @@ inline qdb::jni::guard::local_ref<jobject> to_java_impl<double>(
     qdb::jni::env & env, qdb_handle_t /* handle */, double value)
 {
     return jni::object::call_static_method(
-        env, "net/quasardb/qdb/ts/Value", "createDouble", "(D)Lnet/quasardb/qdb/ts/Value;", value);
+        env, jni::registry::get().value.cls, jni::registry::get().value.create_double, value);
 }
 
 template <>
 inline qdb::jni::guard::local_ref<jobject> to_java_impl<qdb_timespec_t>(
     qdb::jni::env & env, qdb_handle_t /* handle */, qdb_timespec_t value)
 {
-    return jni::object::call_static_method(env, "net/quasardb/qdb/ts/Value", "createTimestamp",
-        "(Lnet/quasardb/qdb/ts/Timespec;)Lnet/quasardb/qdb/ts/Value;",
+    return jni::object::call_static_method(env, jni::registry::get().value.cls,
+        jni::registry::get().value.create_timestamp,
         jni::adapt::timespec::to_java(env, value).release());
 }
 
@@ -45,8 +46,8 @@ template <>
 inline qdb::jni::guard::local_ref<jobject> to_java_impl<qdb_string_t>(
     qdb::jni::env & env, qdb_handle_t handle, qdb_string_t value)
 {
-    return jni::object::call_static_method(env, "net/quasardb/qdb/ts/Value", "createString",
-        "(Ljava/lang/String;)Lnet/quasardb/qdb/ts/Value;",
+    return jni::object::call_static_method(env, jni::registry::get().value.cls,
+        jni::registry::get().value.create_string,
         jni::string::create_utf8(env, handle, value).release());
 }
 
@@ -54,8 +55,9 @@ template <>
 inline qdb::jni::guard::local_ref<jobject> to_java_impl<qdb_blob_t>(
     qdb::jni::env & env, qdb_handle_t handle, qdb_blob_t value)
 {
-    return jni::object::call_static_method(env, "net/quasardb/qdb/ts/Value", "createSafeBlob",
-        "(Ljava/nio/ByteBuffer;)Lnet/quasardb/qdb/ts/Value;",
+    // The buffer is already a copy owned by the JVM, no need to copy it again.
+    return jni::object::call_static_method(env, jni::registry::get().value.cls,
+        jni::registry::get().value.create_blob,
         jni::byte_buffer::create_copy(env, handle, value).release());
 }
 } // namespace qdb::jni::adapt::value::detail
@@ -66,7 +68,7 @@ namespace qdb::jni::adapt::value
 inline jni::guard::local_ref<jobject> _create_null(qdb::jni::env & env)
 {
     return jni::object::call_static_method(
-        env, "net/quasardb/qdb/ts/Value", "createNull", "()Lnet/quasardb/qdb/ts/Value;");
+        env, jni::registry::get().value.cls, jni::registry::get().value.create_null);
 }
 
 template <typename ValueType>
@@ -81,8 +83,16 @@ inline qdb::jni::guard::local_ref<jobject> to_java(
     return detail::to_java_impl(env, handle, value);
 }
 
-jni::guard::local_ref<jobject> from_native(
-    qdb::jni::env & env, qdb_handle_t handle, qdb_point_result_t const & input);
+/**
+ * Converts a value of a query result. When `blob_owner` is provided, blobs are
+ * not copied but point directly at the memory of the query result, and the
+ * value keeps a reference to `blob_owner`, which is responsible for releasing
+ * that memory.
+ */
+jni::guard::local_ref<jobject> from_native(qdb::jni::env & env,
+    qdb_handle_t handle,
+    qdb_point_result_t const & input,
+    jobject blob_owner = nullptr);
 
 jni::guard::local_ref<jobject> _from_native_int64(
     qdb::jni::env & env, qdb_point_result_t const & input);
@@ -99,6 +109,9 @@ jni::guard::local_ref<jobject> _from_native_timestamp(
 jni::guard::local_ref<jobject> _from_native_blob(
     qdb::jni::env & env, qdb_handle_t handle, qdb_point_result_t const & input);
 
+jni::guard::local_ref<jobject> _from_native_blob_view(
+    qdb::jni::env & env, qdb_point_result_t const & input, jobject owner);
+
 jni::guard::local_ref<jobject> _from_native_string(
     qdb::jni::env & env, qdb_handle_t handle, qdb_point_result_t const & input);
 
@@ -111,8 +124,8 @@ namespace qdb::jni::adapt::value::type
 inline jni::guard::local_ref<jobject> to_java(qdb::jni::env & env, qdb_ts_column_type_t type)
 {
     static_assert(sizeof(type) <= sizeof(jint));
-    return jni::object::call_static_method(env, "net/quasardb/qdb/ts/Value$Type", "fromInt",
-        "(I)Lnet/quasardb/qdb/ts/Value$Type;", static_cast<jint>(type));
+    return jni::object::call_static_method(env, jni::registry::get().value_type.cls,
+        jni::registry::get().value_type.from_int, static_cast<jint>(type));
 }
 
 }; // namespace qdb::jni::adapt::value::type
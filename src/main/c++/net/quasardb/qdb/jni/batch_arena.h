@@ -0,0 +1,205 @@
+#pragma once
+
+#include <qdb/client.h>
+#include <qdb/ts.h>
+#include <jni.h>
+#include <cassert>
+#include <cstddef>
+#include <string>
+#include <vector>
+
+namespace qdb::jni
+{
+
+/**
+ * Native copy of a table's name and column layout, created once per table and
+ * cached by the Writer, so that flushes do not have to convert names again.
+ */
+struct prepared_table
+{
+    std::string name;
+    std::vector<std::string> column_names;
+    std::vector<qdb_ts_column_type_t> column_types;
+};
+
+/**
+ * Owns all memory backing a `qdb_exp_batch_push_table_t` array, so that it can be
+ * reused across flushes of the same Writer.
+ *
+ * All storage is kept in std::vectors and std::strings which are only ever resized,
+ * never released, until either `shrink()` is invoked or the arena is destroyed. In
+ * steady state, where a writer flushes the same tables and columns every interval,
+ * preparing a batch therefore does not allocate at all.
+ *
+ * Blob columns do not copy their contents: they point directly into the direct
+ * ByteBuffers staged by the Writer, which keeps them referenced until the batch has
+ * been pushed. String columns are copied from the Writer's UTF-8 slab in one go.
+ */
+class batch_arena
+{
+public:
+    struct column_storage
+    {
+        // Only the vector matching the column's type is in use.
+        std::vector<double> doubles;
+        std::vector<qdb_int_t> ints;
+        std::vector<qdb_timespec_t> timestamps;
+        std::vector<qdb_blob_t> blobs;
+        std::vector<qdb_string_t> strings;
+        std::vector<char> string_data;
+    };
+
+    struct table_storage
+    {
+        std::vector<qdb_timespec_t> timestamps;
+        std::vector<column_storage> columns;
+        std::vector<qdb_exp_batch_push_column_t> push_columns;
+        std::vector<qdb_ts_range_t> truncate_ranges;
+        std::vector<std::string> where_duplicate_names;
+        std::vector<char const *> where_duplicate;
+    };
+
+public:
+    /**
+     * (Re)initializes the arena for a batch of `n` tables with the provided row and
+     * column counts, and returns the table array to be passed to qdb_exp_batch_push.
+     */
+    qdb_exp_batch_push_table_t * prepare(
+        qdb_size_t n, jlong const * row_counts, jlong const * column_counts)
+    {
+        assert(n > 0);
+
+        if (_tables.size() < n)
+        {
+            _tables.resize(n);
+        }
+        _push_tables.resize(n);
+
+        for (qdb_size_t i = 0; i < n; ++i)
+        {
+            qdb_size_t row_count    = static_cast<qdb_size_t>(row_counts[i]);
+            qdb_size_t column_count = static_cast<qdb_size_t>(column_counts[i]);
+
+            table_storage & storage = _tables[i];
+            storage.timestamps.resize(row_count);
+            storage.columns.resize(column_count);
+            storage.push_columns.resize(column_count);
+            storage.truncate_ranges.clear();
+            storage.where_duplicate_names.clear();
+            storage.where_duplicate.clear();
+
+            qdb_exp_batch_push_table_t & table = _push_tables[i];
+            table.name                         = nullptr;
+            table.data.row_count               = row_count;
+            table.data.column_count            = column_count;
+            table.data.timestamps              = storage.timestamps.data();
+            table.data.columns                 = storage.push_columns.data();
+            table.truncate_ranges              = nullptr;
+            table.truncate_range_count         = 0;
+            table.deduplication_mode           = qdb_exp_batch_deduplication_mode_disabled;
+            table.where_duplicate              = nullptr;
+            table.where_duplicate_count        = 0;
+
+            // TODO(leon): support actually specifying different table creation modes
+            table.creation = qdb_exp_batch_dont_create;
+        }
+
+        return _push_tables.data();
+    }
+
+    qdb_exp_batch_push_table_t * tables()
+    {
+        return _push_tables.data();
+    }
+
+    qdb_size_t table_count() const
+    {
+        return _push_tables.size();
+    }
+
+    qdb_exp_batch_push_table_t & table(qdb_size_t tableNum)
+    {
+        assert(tableNum < _push_tables.size());
+        return _push_tables[tableNum];
+    }
+
+    table_storage & table_storage_of(qdb_size_t tableNum)
+    {
+        assert(tableNum < _push_tables.size());
+        return _tables[tableNum];
+    }
+
+    column_storage & column_storage_of(qdb_size_t tableNum, qdb_size_t columnNum)
+    {
+        table_storage & t = table_storage_of(tableNum);
+        assert(columnNum < t.columns.size());
+        return t.columns[columnNum];
+    }
+
+    qdb_exp_batch_push_column_t & column(qdb_size_t tableNum, qdb_size_t columnNum)
+    {
+        table_storage & t = table_storage_of(tableNum);
+        assert(columnNum < t.push_columns.size());
+        return t.push_columns[columnNum];
+    }
+
+    /**
+     * Points the name and column layout of a table at a prepared table, which must
+     * outlive the push of this batch.
+     */
+    void set_layout(qdb_size_t tableNum, prepared_table const & layout)
+    {
+        table_storage & t = table_storage_of(tableNum);
+        assert(layout.column_names.size() == t.push_columns.size());
+
+        table(tableNum).name = layout.name.c_str();
+
+        for (qdb_size_t i = 0; i < t.push_columns.size(); ++i)
+        {
+            t.push_columns[i].name      = layout.column_names[i].c_str();
+            t.push_columns[i].data_type = layout.column_types[i];
+        }
+    }
+
+    /**
+     * Releases all memory retained for reuse.
+     */
+    void shrink()
+    {
+        std::vector<table_storage>{}.swap(_tables);
+        std::vector<qdb_exp_batch_push_table_t>{}.swap(_push_tables);
+    }
+
+    /**
+     * Returns (an estimate of) the amount of memory retained by this arena, in bytes.
+     */
+    std::size_t capacity_bytes() const
+    {
+        std::size_t n = _push_tables.capacity() * sizeof(qdb_exp_batch_push_table_t);
+
+        for (table_storage const & t : _tables)
+        {
+            n += t.timestamps.capacity() * sizeof(qdb_timespec_t);
+            n += t.push_columns.capacity() * sizeof(qdb_exp_batch_push_column_t);
+            n += t.truncate_ranges.capacity() * sizeof(qdb_ts_range_t);
+
+            for (column_storage const & c : t.columns)
+            {
+                n += c.doubles.capacity() * sizeof(double);
+                n += c.ints.capacity() * sizeof(qdb_int_t);
+                n += c.timestamps.capacity() * sizeof(qdb_timespec_t);
+                n += c.blobs.capacity() * sizeof(qdb_blob_t);
+                n += c.strings.capacity() * sizeof(qdb_string_t);
+                n += c.string_data.capacity();
+            }
+        }
+
+        return n;
+    }
+
+private:
+    std::vector<table_storage> _tables;
+    std::vector<qdb_exp_batch_push_table_t> _push_tables;
+};
+
+} // namespace qdb::jni
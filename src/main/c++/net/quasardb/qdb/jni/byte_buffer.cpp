@@ -2,6 +2,7 @@
 #include "env.h"
 #include "introspect.h"
 #include "object.h"
+#include "registry.h"
 
 /* static */ qdb::jni::guard::local_ref<jobject> qdb::jni::byte_buffer::allocate(
     qdb::jni::env & env, jsize len)
@@ -12,8 +13,8 @@
     // is *not* set when invoking env.instance().NewDirectByteBuffer
     //
     // See: https://stackoverflow.com/questions/35363486#35364247
-    return jni::object::call_static_method(
-        env, "java/nio/ByteBuffer", "allocateDirect", "(I)Ljava/nio/ByteBuffer;", len);
+    return jni::object::call_static_method(env, jni::registry::get().byte_buffer.cls,
+        jni::registry::get().byte_buffer.allocate_direct, len);
 }
 
 /* static */ qdb::jni::guard::local_ref<jobject> qdb::jni::byte_buffer::create_copy(
@@ -37,6 +38,17 @@
     return bb;
 }
 
+/* static */ qdb::jni::guard::local_ref<jobject> qdb::jni::byte_buffer::create_view(
+    qdb::jni::env & env, void const * src, jsize len)
+{
+    // JNI requires a valid address, even for empty buffers.
+    static char empty_;
+
+    return qdb::jni::guard::local_ref<jobject>(env,
+        env.instance().NewDirectByteBuffer(
+            const_cast<void *>(src != NULL ? src : &empty_), static_cast<jlong>(len)));
+}
+
 /* static */ void qdb::jni::byte_buffer::get_address(
     qdb::jni::env & env, jobject bb, const void ** buffer, qdb_size_t * len)
 {
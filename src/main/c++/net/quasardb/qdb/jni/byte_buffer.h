@@ -40,6 +40,14 @@ public:
         return create_copy(env, handle, blob.content, static_cast<jsize>(blob.content_length));
     }
 
+    /**
+     * Create new byte buffer that points directly at `buffer`, without copying.
+     * The caller is responsible for keeping the memory alive for as long as the
+     * buffer is used.
+     */
+    static jni::guard::local_ref<jobject> create_view(
+        qdb::jni::env & env, void const * buffer, jsize len);
+
     static void get_address(
         qdb::jni::env & env, jobject bb, const void ** buffer, qdb_size_t * len);
 
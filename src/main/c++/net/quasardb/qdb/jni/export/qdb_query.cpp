@@ -1,39 +1,138 @@
 #include "../adapt/value.h"
 #include "../debug.h"
+#include "../detail/native_ptr.h"
 #include "../env.h"
 #include "../exception.h"
 #include "../guard/local_ref.h"
 #include "../introspect.h"
 #include "../local_frame.h"
 #include "../object.h"
+#include "../registry.h"
 #include "../string.h"
 #include "../util/helpers.h"
 #include "net_quasardb_qdb_jni_qdb.h"
 #include <qdb/query.h>
 #include <cassert>
+#include <climits>
+#include <cmath>
 #include <stdlib.h>
+#include <vector>
 
 namespace jni = qdb::jni;
 
-jni::guard::local_ref<jobjectArray> nativeToValues(
-    qdb::jni::env & env, qdb_handle_t handle, qdb_point_result_t const values[], qdb_size_t count)
+namespace
 {
-    // Takes native result row, and reutrns an array of Value objects.
+
+/**
+ * Thrown when an upcall into Java left an exception pending, such as an
+ * OutOfMemoryError. Entry points catch it and return right away, so that the
+ * pending exception propagates to the caller as-is and no further JNI calls are
+ * made while it is pending.
+ */
+struct java_exception_pending
+{};
+
+} // namespace
+
+jni::guard::local_ref<jobjectArray> nativeToValues(qdb::jni::env & env,
+    qdb_handle_t handle,
+    qdb_point_result_t const values[],
+    qdb_size_t count,
+    jobject blob_owner,
+    jobjectArray strings,
+    jsize & next_string)
+{
+    // Takes native result row, and reutrns an array of Value objects. When
+    // `strings` is provided, string values are taken from it, in order, rather
+    // than being converted one by one.
 
     jni::local_frame lf = jni::local_frame::push(env, count);
 
     jni::guard::local_ref<jobjectArray> output(
-        jni::object::create_array(env, count, "net/quasardb/qdb/ts/Value"));
+        jni::object::create_array(env, count, jni::registry::get().value.cls));
 
     for (qdb_size_t i = 0; i < count; ++i)
     {
-        env.instance().SetObjectArrayElement(
-            output, i, qdb::jni::adapt::value::from_native(env, handle, values[i]).release());
+        if (strings != nullptr && values[i].type == qdb_query_result_string)
+        {
+            jni::guard::local_ref<jobject> x(
+                env, env.instance().GetObjectArrayElement(strings, next_string++));
+            env.instance().SetObjectArrayElement(output, i, x);
+            continue;
+        }
+
+        env.instance().SetObjectArrayElement(output, i,
+            qdb::jni::adapt::value::from_native(env, handle, values[i], blob_owner).release());
     }
 
     return lf.pop(output.release());
 }
 
+/**
+ * Decodes all string values of a range of rows at once. The strings are copied
+ * into a single byte slab, in row-major order, which is handed to the Java
+ * `StringDecoder` in a single upcall, rather than creating each String through
+ * JNI individually.
+ *
+ * Returns an empty reference when there are no string values.
+ */
+jni::guard::local_ref<jobjectArray> nativeToStrings(qdb::jni::env & env,
+    qdb_query_result_t const & input,
+    qdb_size_t offset,
+    qdb_size_t count,
+    jobject decoder)
+{
+    JNIEnv & jenv = env.instance();
+
+    std::vector<jbyte> data;
+    std::vector<jint> offsets{0};
+
+    for (qdb_size_t i = offset; i < offset + count; ++i)
+    {
+        for (qdb_size_t j = 0; j < input.column_count; ++j)
+        {
+            qdb_point_result_t const & x = input.rows[i][j];
+            if (x.type != qdb_query_result_string)
+            {
+                continue;
+            }
+
+            if (x.payload.string.content_length > static_cast<qdb_size_t>(INT_MAX) - data.size())
+            {
+                throw jni::exception{
+                    qdb_e_out_of_bounds, "Query result strings exceed maximum array size"};
+            }
+
+            jbyte const * begin = reinterpret_cast<jbyte const *>(x.payload.string.content);
+            data.insert(data.end(), begin, begin + x.payload.string.content_length);
+            offsets.push_back(static_cast<jint>(data.size()));
+        }
+    }
+
+    if (offsets.size() == 1)
+    {
+        return jni::guard::local_ref<jobjectArray>(env, nullptr);
+    }
+
+    jni::guard::local_ref<jbyteArray> data_(env, jenv.NewByteArray(static_cast<jsize>(data.size())));
+    jni::guard::local_ref<jintArray> offsets_(
+        env, jenv.NewIntArray(static_cast<jsize>(offsets.size())));
+
+    jenv.SetByteArrayRegion(data_, 0, static_cast<jsize>(data.size()), data.data());
+    jenv.SetIntArrayRegion(offsets_, 0, static_cast<jsize>(offsets.size()), offsets.data());
+
+    jni::guard::local_ref<jobjectArray> strings(env,
+        static_cast<jobjectArray>(jenv.CallObjectMethod(decoder,
+            jni::registry::get().string_decoder.decode_values, data_.get(), offsets_.get())));
+
+    if (jenv.ExceptionCheck()) [[unlikely]]
+    {
+        throw java_exception_pending{};
+    }
+
+    return strings;
+}
+
 jni::guard::local_ref<jobjectArray> nativeToColumnNames(
     qdb::jni::env & env, qdb_handle_t handle, qdb_string_t const columns[], qdb_size_t count)
 {
@@ -48,30 +147,58 @@ jni::guard::local_ref<jobjectArray> nativeToColumnNames(
     return output;
 }
 
-jni::guard::local_ref<jobject> nativeToResult(
-    qdb::jni::env & env, qdb_handle_t handle, qdb_query_result_t const & input, jclass resultClass)
+jni::guard::local_ref<jobjectArray> nativeToRows(qdb::jni::env & env,
+    qdb_handle_t handle,
+    qdb_query_result_t const & input,
+    qdb_size_t offset,
+    qdb_size_t count,
+    jobject blob_owner,
+    jobject decoder)
 {
-    jclass rowClass = qdb::jni::introspect::lookup_class(env, "net/quasardb/qdb/ts/Row");
+    // Converts `count` rows of the native result, starting at `offset`, into an
+    // array of Row objects. When `blob_owner` is provided, blob values point
+    // directly at the native result, and keep a reference to the owner. When
+    // `decoder` is provided, string values are decoded in bulk.
 
-    jni::guard::local_ref<jobjectArray> rows(
-        jni::object::create_array(env, input.row_count, rowClass));
+    jni::registry::row_t const & row_ = jni::registry::get().row;
 
-    for (qdb_size_t i = 0; i < input.row_count; ++i)
+    jni::guard::local_ref<jobjectArray> strings =
+        (decoder == nullptr ? jni::guard::local_ref<jobjectArray>(env, nullptr)
+                            : nativeToStrings(env, input, offset, count, decoder));
+    jsize next_string = 0;
+
+    jni::guard::local_ref<jobjectArray> rows(jni::object::create_array(env, count, row_.cls));
+
+    for (qdb_size_t i = 0; i < count; ++i)
     {
-        jni::guard::local_ref<jobject> row =
-            jni::object::create(env, rowClass, "([Lnet/quasardb/qdb/ts/Value;)V",
-                nativeToValues(env, handle, input.rows[i], input.column_count).release());
+        jni::guard::local_ref<jobject> row = jni::object::create(env, row_.cls, row_.init,
+            nativeToValues(env, handle, input.rows[offset + i], input.column_count, blob_owner,
+                strings.get(), next_string)
+                .release());
 
-        env.instance().SetObjectArrayElement(rows, i, row.release());
+        env.instance().SetObjectArrayElement(rows, i, row);
     }
 
-    return jni::object::create(env, resultClass, "([Ljava/lang/String;[Lnet/quasardb/qdb/ts/Row;)V",
+    return rows;
+}
+
+jni::guard::local_ref<jobject> nativeToResult(
+    qdb::jni::env & env, qdb_handle_t handle, qdb_query_result_t const & input, jobject decoder)
+{
+    jni::registry::result_t const & result_ = jni::registry::get().result;
+
+    return jni::object::create(env, result_.cls, result_.init,
         nativeToColumnNames(env, handle, input.column_names, input.column_count).release(),
-        rows.release());
+        nativeToRows(env, handle, input, 0, input.row_count, nullptr, decoder).release());
 }
 
 JNIEXPORT jint JNICALL Java_net_quasardb_qdb_jni_qdb_query_1execute(
-    JNIEnv * jniEnv, jclass /*thisClass*/, jlong handle, jstring query, jobject outputReference)
+    JNIEnv * jniEnv,
+    jclass /*thisClass*/,
+    jlong handle,
+    jstring query,
+    jobject decoder,
+    jobject outputReference)
 {
     qdb::jni::env env(jniEnv);
     qdb_query_result_t * result = NULL;
@@ -86,17 +213,420 @@ JNIEXPORT jint JNICALL Java_net_quasardb_qdb_jni_qdb_query_1execute(
         assert(result != NULL);
 
         setReferenceValue(env, outputReference,
-            nativeToResult(env, handle_, *result,
-                jni::introspect::lookup_class(env, "net/quasardb/qdb/ts/Result"))
-                .release());
+            nativeToResult(env, handle_, *result, decoder).release());
+
+        qdb_release((qdb_handle_t)handle, result);
 
+        return err;
+    }
+    catch (java_exception_pending const &)
+    {
         qdb_release((qdb_handle_t)handle, result);
+        return qdb_e_internal_local;
+    }
+    catch (jni::exception const & e)
+    {
+        e.throw_new(env);
+        return e.error();
+    }
+}
+
+namespace
+{
+
+/**
+ * A single column of a query result, converted to the layout of
+ * `net.quasardb.qdb.ts.ColumnarResult`.
+ */
+struct result_column
+{
+    // Type of the first non-null value, qdb_query_result_none if all values are null.
+    qdb_query_result_value_type_t type{qdb_query_result_none};
+
+    std::vector<jlong> longs;
+    std::vector<jdouble> doubles;
+    std::vector<char> data;
+    std::vector<jint> offsets;
+    std::vector<jlong> nulls;
+};
+
+/**
+ * Counts and int64s are both exposed as int64 columns.
+ */
+qdb_query_result_value_type_t normalize_type(qdb_query_result_value_type_t type)
+{
+    return (type == qdb_query_result_count ? qdb_query_result_int64 : type);
+}
+
+jint java_type_of(qdb_query_result_value_type_t type)
+{
+    switch (type)
+    {
+    case qdb_query_result_int64:
+        return qdb_ts_column_int64;
+    case qdb_query_result_double:
+        return qdb_ts_column_double;
+    case qdb_query_result_timestamp:
+        return qdb_ts_column_timestamp;
+    case qdb_query_result_blob:
+        return qdb_ts_column_blob;
+    case qdb_query_result_string:
+        return qdb_ts_column_string;
+    default:
+        return qdb_ts_column_uninitialized;
+    }
+}
+
+void append_bytes(result_column & c, void const * content, qdb_size_t length)
+{
+    if (c.data.size() + length > static_cast<std::size_t>(INT_MAX))
+    {
+        throw jni::exception{qdb_e_out_of_bounds, "Query result column exceeds maximum size"};
+    }
+
+    char const * xs = static_cast<char const *>(content);
+    c.data.insert(c.data.end(), xs, xs + length);
+    c.offsets.push_back(static_cast<jint>(c.data.size()));
+}
+
+/**
+ * Converts all values of the result in a single pass over its rows, after the
+ * type of every column has been resolved.
+ */
+std::vector<result_column> to_columns(qdb_query_result_t const & input)
+{
+    std::vector<result_column> ret(input.column_count);
+
+    for (qdb_size_t j = 0; j < input.column_count; ++j)
+    {
+        result_column & c = ret[j];
+
+        for (qdb_size_t i = 0; i < input.row_count; ++i)
+        {
+            if (input.rows[i][j].type != qdb_query_result_none)
+            {
+                c.type = normalize_type(input.rows[i][j].type);
+                break;
+            }
+        }
+
+        switch (c.type)
+        {
+        case qdb_query_result_int64:
+        case qdb_query_result_timestamp:
+            c.longs.reserve(input.row_count);
+            break;
+        case qdb_query_result_double:
+            c.doubles.reserve(input.row_count);
+            break;
+        case qdb_query_result_blob:
+        case qdb_query_result_string:
+            c.offsets.reserve(input.row_count + 1);
+            c.offsets.push_back(0);
+            break;
+        default:
+            break;
+        }
+
+        c.nulls.assign((input.row_count + 63) / 64, 0);
+    }
+
+    for (qdb_size_t i = 0; i < input.row_count; ++i)
+    {
+        for (qdb_size_t j = 0; j < input.column_count; ++j)
+        {
+            qdb_point_result_t const & x = input.rows[i][j];
+            result_column & c            = ret[j];
+
+            bool is_null = (x.type == qdb_query_result_none);
+            if (is_null)
+            {
+                c.nulls[i / 64] |= (jlong{1} << (i % 64));
+            }
+            else if (normalize_type(x.type) != c.type)
+            {
+                throw jni::exception{qdb_e_incompatible_type,
+                    "Query result column contains values of different types, use execute() instead"};
+            }
+
+            switch (c.type)
+            {
+            case qdb_query_result_int64:
+                c.longs.push_back(is_null ? jlong{LLONG_MIN}
+                                          : (x.type == qdb_query_result_count
+                                                  ? static_cast<jlong>(x.payload.count.value)
+                                                  : x.payload.int64_.value));
+                break;
+
+            case qdb_query_result_timestamp:
+                c.longs.push_back(is_null ? jlong{LLONG_MIN}
+                                          : x.payload.timestamp.value.tv_sec * 1000000000ll
+                                                + x.payload.timestamp.value.tv_nsec);
+                break;
+
+            case qdb_query_result_double:
+                c.doubles.push_back(is_null ? NAN : x.payload.double_.value);
+                break;
+
+            case qdb_query_result_blob:
+                if (is_null)
+                {
+                    append_bytes(c, nullptr, 0);
+                }
+                else
+                {
+                    append_bytes(c, x.payload.blob.content, x.payload.blob.content_length);
+                }
+                break;
+
+            case qdb_query_result_string:
+                if (is_null)
+                {
+                    append_bytes(c, nullptr, 0);
+                }
+                else
+                {
+                    append_bytes(c, x.payload.string.content, x.payload.string.content_length);
+                }
+                break;
+
+            default:
+                break;
+            }
+        }
+    }
+
+    return ret;
+}
+
+/**
+ * Copies a native vector into a new Java array, and stores it in an Object[].
+ */
+template <typename JArray, typename T, typename NewFn, typename SetFn>
+void set_array_element(JNIEnv & jenv,
+    jobjectArray target,
+    jsize index,
+    std::vector<T> const & xs,
+    NewFn new_array,
+    SetFn set_region)
+{
+    JArray arr = (jenv.*new_array)(static_cast<jsize>(xs.size()));
+    if (arr == nullptr)
+    {
+        throw jni::exception{qdb_e_no_memory_local, "Unable to allocate array for query result"};
+    }
+
+    (jenv.*set_region)(arr, 0, static_cast<jsize>(xs.size()), xs.data());
+    jenv.SetObjectArrayElement(target, index, arr);
+    jenv.DeleteLocalRef(arr);
+}
+
+jni::guard::local_ref<jobject> nativeToColumnarResult(
+    qdb::jni::env & env, qdb_handle_t handle, qdb_query_result_t const & input)
+{
+    std::vector<result_column> columns = to_columns(input);
+
+    JNIEnv & jenv = env.instance();
+    jsize n       = static_cast<jsize>(columns.size());
+
+    std::vector<jint> types(columns.size());
+    for (std::size_t j = 0; j < columns.size(); ++j)
+    {
+        types[j] = java_type_of(columns[j].type);
+    }
+
+    jni::guard::local_ref<jintArray> types_(env, jenv.NewIntArray(n));
+    jenv.SetIntArrayRegion(types_, 0, n, types.data());
+
+    jclass object_class = jni::registry::get().object;
+
+    jni::guard::local_ref<jobjectArray> values(jni::object::create_array(env, n, object_class));
+    jni::guard::local_ref<jobjectArray> offsets(jni::object::create_array(env, n, object_class));
+    jni::guard::local_ref<jobjectArray> nulls(jni::object::create_array(env, n, object_class));
+
+    for (jsize j = 0; j < n; ++j)
+    {
+        result_column const & c = columns[j];
+
+        switch (c.type)
+        {
+        case qdb_query_result_int64:
+        case qdb_query_result_timestamp:
+            set_array_element<jlongArray>(
+                jenv, values, j, c.longs, &JNIEnv::NewLongArray, &JNIEnv::SetLongArrayRegion);
+            break;
+
+        case qdb_query_result_double:
+            set_array_element<jdoubleArray>(
+                jenv, values, j, c.doubles, &JNIEnv::NewDoubleArray, &JNIEnv::SetDoubleArrayRegion);
+            break;
+
+        case qdb_query_result_blob:
+        case qdb_query_result_string:
+        {
+            jsize size      = static_cast<jsize>(c.data.size());
+            jbyteArray slab = jenv.NewByteArray(size);
+            if (slab == nullptr)
+            {
+                throw jni::exception{qdb_e_no_memory_local, "Unable to allocate array for query result"};
+            }
+
+            jenv.SetByteArrayRegion(slab, 0, size, reinterpret_cast<jbyte const *>(c.data.data()));
+            jenv.SetObjectArrayElement(values, j, slab);
+            jenv.DeleteLocalRef(slab);
+
+            set_array_element<jintArray>(
+                jenv, offsets, j, c.offsets, &JNIEnv::NewIntArray, &JNIEnv::SetIntArrayRegion);
+            break;
+        }
+
+        default:
+            break;
+        }
+
+        set_array_element<jlongArray>(
+            jenv, nulls, j, c.nulls, &JNIEnv::NewLongArray, &JNIEnv::SetLongArrayRegion);
+    }
+
+    return jni::object::create(env, jni::registry::get().columnar_result.cls,
+        jni::registry::get().columnar_result.init,
+        nativeToColumnNames(env, handle, input.column_names, input.column_count).release(),
+        types_.release(), static_cast<jint>(input.row_count), values.release(), offsets.release(),
+        nulls.release());
+}
+
+} // namespace
+
+JNIEXPORT jint JNICALL Java_net_quasardb_qdb_jni_qdb_query_1execute_1columnar(
+    JNIEnv * jniEnv,
+    jclass /*thisClass*/,
+    jlong handle,
+    jstring query,
+    jobject decoder,
+    jobject outputReference)
+{
+    qdb::jni::env env(jniEnv);
+    qdb_query_result_t * result = NULL;
+    qdb_handle_t handle_        = reinterpret_cast<qdb_handle_t>(handle);
+
+    try
+    {
+        qdb_error_t err = qdb::jni::exception::throw_if_error(handle_,
+            qdb_query(handle_, qdb::jni::string::get_chars_utf8(env, handle_, query), &result));
+
+        assert(result != NULL);
+
+        setReferenceValue(env, outputReference, nativeToColumnarResult(env, handle_, *result).release());
+
+        qdb_release(handle_, result);
 
         return err;
     }
     catch (jni::exception const & e)
     {
+        if (result != NULL)
+        {
+            qdb_release(handle_, result);
+        }
+
         e.throw_new(env);
         return e.error();
     }
 }
+
+JNIEXPORT jlong JNICALL Java_net_quasardb_qdb_jni_qdb_query_1open(
+    JNIEnv * jniEnv, jclass /*thisClass*/, jlong handle, jstring query)
+{
+    qdb::jni::env env(jniEnv);
+    qdb_query_result_t * result = NULL;
+
+    try
+    {
+        qdb_handle_t handle_ = reinterpret_cast<qdb_handle_t>(handle);
+
+        qdb::jni::exception::throw_if_error(handle_,
+            qdb_query(handle_, qdb::jni::string::get_chars_utf8(env, handle_, query), &result));
+
+        assert(result != NULL);
+
+        return jni::native_ptr::to_java(result);
+    }
+    catch (jni::exception const & e)
+    {
+        e.throw_new(env);
+        return 0;
+    }
+}
+
+JNIEXPORT jobjectArray JNICALL Java_net_quasardb_qdb_jni_qdb_query_1column_1names(
+    JNIEnv * jniEnv, jclass /*thisClass*/, jlong handle, jlong result)
+{
+    qdb::jni::env env(jniEnv);
+
+    try
+    {
+        qdb_query_result_t const * result_ =
+            jni::native_ptr::from_java<qdb_query_result_t const *>(result);
+
+        return nativeToColumnNames(env, reinterpret_cast<qdb_handle_t>(handle),
+            result_->column_names, result_->column_count)
+            .release();
+    }
+    catch (jni::exception const & e)
+    {
+        e.throw_new(env);
+        return NULL;
+    }
+}
+
+JNIEXPORT jlong JNICALL Java_net_quasardb_qdb_jni_qdb_query_1row_1count(
+    JNIEnv * /*env*/, jclass /*thisClass*/, jlong result)
+{
+    return static_cast<jlong>(
+        jni::native_ptr::from_java<qdb_query_result_t const *>(result)->row_count);
+}
+
+JNIEXPORT jobjectArray JNICALL Java_net_quasardb_qdb_jni_qdb_query_1get_1rows(
+    JNIEnv * jniEnv,
+    jclass /*thisClass*/,
+    jlong handle,
+    jlong result,
+    jlong offset,
+    jint count,
+    jobject blobOwner,
+    jobject decoder)
+{
+    qdb::jni::env env(jniEnv);
+
+    try
+    {
+        qdb_query_result_t const * result_ =
+            jni::native_ptr::from_java<qdb_query_result_t const *>(result);
+
+        if (offset < 0 || count < 0
+            || static_cast<qdb_size_t>(offset) + static_cast<qdb_size_t>(count) > result_->row_count)
+        {
+            throw jni::exception{qdb_e_out_of_bounds, "Row offset out of bounds of query result"};
+        }
+
+        return nativeToRows(env, reinterpret_cast<qdb_handle_t>(handle), *result_,
+            static_cast<qdb_size_t>(offset), static_cast<qdb_size_t>(count), blobOwner, decoder)
+            .release();
+    }
+    catch (java_exception_pending const &)
+    {
+        return NULL;
+    }
+    catch (jni::exception const & e)
+    {
+        e.throw_new(env);
+        return NULL;
+    }
+}
+
+JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_query_1release(
+    JNIEnv * /*env*/, jclass /*thisClass*/, jlong handle, jlong result)
+{
+    qdb_release(reinterpret_cast<qdb_handle_t>(handle),
+        jni::native_ptr::from_java<qdb_query_result_t *>(result));
+}
@@ -4,6 +4,7 @@
 #include "../adapt/timerange.h"
 #include "../adapt/timespec.h"
 #include "../adapt/value_traits.h"
+#include "../batch_arena.h"
 #include "../byte_array.h"
 #include "../byte_buffer.h"
 #include "../debug.h"
@@ -16,14 +17,17 @@
 #include "../memory.h"
 #include "../object.h"
 #include "../object_array.h"
+#include "../registry.h"
 #include "../primitive_array.h"
 #include "../string.h"
+#include "../table_reader.h"
 #include "../util/helpers.h"
 #include "../util/ts_helpers.h"
 #include "net_quasardb_qdb_jni_qdb.h"
 #include <qdb/ts.h>
 #include <cassert>
 #include <iostream>
+#include <memory>
 #include <stdlib.h>
 #include <string_view>
 
@@ -574,32 +578,125 @@ JNIEXPORT jobject JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1table_1next_1row(
     }
 }
 
-qdb_exp_batch_push_table_t & _table_from_tables(qdb_exp_batch_push_table_t * tables, jlong tableNum)
+/**
+ * Block reader
+ */
+
+JNIEXPORT jlong JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1table_1reader_1new(
+    JNIEnv * jniEnv, jclass /*thisClass*/, jlong localTable, jintArray columnTypes)
 {
-    return tables[tableNum];
+    qdb::jni::env env(jniEnv);
+
+    try
+    {
+        qdb_local_table_t local_table_ = reinterpret_cast<qdb_local_table_t>(localTable);
+
+        auto types_ = jni::make_primitive_array<jint>(env, columnTypes);
+        std::vector<qdb_ts_column_type_t> types(types_.size());
+        for (qdb_size_t i = 0; i < types_.size(); ++i)
+        {
+            types[i] = static_cast<qdb_ts_column_type_t>(types_.get()[i]);
+        }
+
+        return reinterpret_cast<jlong>(new jni::table_reader{local_table_, std::move(types)});
+    }
+    catch (jni::exception const & e)
+    {
+        e.throw_new(env);
+        return 0;
+    }
 }
 
-qdb_exp_batch_push_table_t & _table_from_tables(jlong batchTables, jlong tableNum)
+JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1table_1reader_1release(
+    JNIEnv * /*jniEnv*/, jclass /*thisClass*/, jlong reader)
 {
-    return _table_from_tables(
-        reinterpret_cast<qdb_exp_batch_push_table_t *>(batchTables), tableNum);
+    delete reinterpret_cast<jni::table_reader *>(reader);
 }
 
-qdb_exp_batch_push_column_t & _batch_column_from_tables(
-    qdb_exp_batch_push_table_t * tables, jlong tableNum, jlong columnNum)
+JNIEXPORT jint JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1table_1reader_1read_1block(JNIEnv * jniEnv,
+    jclass /*thisClass*/,
+    jlong handle,
+    jlong reader,
+    jint maxRows,
+    jlongArray sec,
+    jlongArray nsec,
+    jobjectArray values,
+    jobjectArray slabs)
 {
-    qdb_exp_batch_push_table_data_t & data = tables[tableNum].data;
+    qdb::jni::env env(jniEnv);
+
+    try
+    {
+        qdb_handle_t handle_  = reinterpret_cast<qdb_handle_t>(handle);
+        jni::table_reader & r = *reinterpret_cast<jni::table_reader *>(reader);
+        JNIEnv & jenv         = env.instance();
+
+        // Rows are read into native buffers first: reading may block on the network,
+        // during which we cannot hold on to pinned Java arrays.
+        jsize n = static_cast<jsize>(r.read_block(handle_, static_cast<qdb_size_t>(maxRows)));
+
+        jenv.SetLongArrayRegion(sec, 0, n, r.seconds().data());
+        jenv.SetLongArrayRegion(nsec, 0, n, r.nanoseconds().data());
+
+        for (qdb_size_t i = 0; i < r.column_count(); ++i)
+        {
+            jni::table_reader::column_block const & c = r.column(i);
+            jobject xs = jenv.GetObjectArrayElement(values, static_cast<jsize>(i));
+
+            switch (r.column_type(i))
+            {
+            case qdb_ts_column_double:
+                jenv.SetDoubleArrayRegion(static_cast<jdoubleArray>(xs), 0, n, c.doubles.data());
+                break;
+
+            case qdb_ts_column_int64:
+                static_assert(sizeof(qdb_int_t) == sizeof(jlong));
+                jenv.SetLongArrayRegion(static_cast<jlongArray>(xs), 0, n,
+                    reinterpret_cast<jlong const *>(c.ints.data()));
+                break;
+
+            case qdb_ts_column_timestamp:
+                jenv.SetLongArrayRegion(static_cast<jlongArray>(xs), 0, 2 * n, c.timestamps.data());
+                break;
+
+            default:
+            {
+                // Blobs, strings and symbols
+                jenv.SetIntArrayRegion(static_cast<jintArray>(xs), 0, n + 1, c.offsets.data());
+
+                jsize size      = static_cast<jsize>(c.data.size());
+                jbyteArray slab = jenv.NewByteArray(size);
+                if (slab == nullptr)
+                {
+                    // OutOfMemoryError pending
+                    jenv.DeleteLocalRef(xs);
+                    return 0;
+                }
+
+                jenv.SetByteArrayRegion(
+                    slab, 0, size, reinterpret_cast<jbyte const *>(c.data.data()));
+                jenv.SetObjectArrayElement(slabs, static_cast<jsize>(i), slab);
+                jenv.DeleteLocalRef(slab);
+                break;
+            }
+            }
 
-    assert(columnNum < data.column_count);
+            jenv.DeleteLocalRef(xs);
+        }
 
-    return const_cast<qdb_exp_batch_push_column_t &>(data.columns[columnNum]);
+        return n;
+    }
+    catch (jni::exception const & e)
+    {
+        e.throw_new(env);
+        return 0;
+    }
 }
 
-qdb_exp_batch_push_column_t & _batch_column_from_tables(
-    jlong batchTables, jlong tableNum, jlong columnNum)
+jni::batch_arena & _arena_from_handle(jlong arena)
 {
-    return _batch_column_from_tables(
-        reinterpret_cast<qdb_exp_batch_push_table_t *>(batchTables), tableNum, columnNum);
+    assert(arena != 0);
+    return *reinterpret_cast<jni::batch_arena *>(arena);
 }
 
 /**
@@ -618,44 +715,162 @@ void _timestamps_from_timespecs(int n, jlong * sec, jlong * nsec, qdb_timespec_t
     }
 }
 
-void _timestamps_from_timespecs(qdb::jni::env & env, jobject values, qdb_timespec_t * out)
+/**
+ * Converts the first `n` entries of a Java `Timespecs` object into `out`. The Java-side
+ * arrays may be larger than `n`, as the Writer reuses its staging buffers across flushes.
+ */
+void _timestamps_from_timespecs(
+    qdb::jni::env & env, jobject values, qdb_size_t n, qdb_timespec_t * out)
 {
-    jclass timespecClass = jni::object::get_class(env, values);
-    jfieldID secField    = jni::introspect::lookup_field(env, timespecClass, "sec", "[J");
-    jfieldID nsecField   = jni::introspect::lookup_field(env, timespecClass, "nsec", "[J");
-    jlongArray secArray  = (jlongArray)env.instance().GetObjectField(values, secField);
-    jlongArray nsecArray = (jlongArray)env.instance().GetObjectField(values, nsecField);
+    jni::registry::timespecs_t const & timespecs_ = jni::registry::get().timespecs;
+
+    jlongArray secArray  = (jlongArray)env.instance().GetObjectField(values, timespecs_.sec);
+    jlongArray nsecArray = (jlongArray)env.instance().GetObjectField(values, timespecs_.nsec);
 
     auto sec_guard  = jni::make_primitive_array<jlong>(env, secArray);
     auto nsec_guard = jni::make_primitive_array<jlong>(env, nsecArray);
 
-    _timestamps_from_timespecs(sec_guard.size(), sec_guard.get(), nsec_guard.get(), out);
+    assert(n <= sec_guard.size());
+    assert(n <= nsec_guard.size());
+
+    _timestamps_from_timespecs(n, sec_guard.get(), nsec_guard.get(), out);
 }
 
-JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1column_1from_1double(
+/**
+ * Points `xs` directly at the memory of a direct ByteBuffer, without copying. The
+ * Writer keeps the buffers referenced until the batch has been pushed.
+ */
+template <typename T>
+void _direct_buffer_view(qdb::jni::env & env, jobject bb, T const ** xs, qdb_size_t * n)
+{
+    if (bb == nullptr)
+    {
+        *xs = nullptr;
+        *n  = 0;
+        return;
+    }
+
+    void * src = env.instance().GetDirectBufferAddress(bb);
+    if (src == nullptr)
+    {
+        throw jni::exception{qdb_e_invalid_argument, "Value is not backed by a direct ByteBuffer"};
+    }
+
+    *xs = static_cast<T const *>(src);
+    *n  = static_cast<qdb_size_t>(env.instance().GetDirectBufferCapacity(bb));
+}
+
+jni::prepared_table const & _prepared_table_from_handle(jlong handle)
+{
+    assert(handle != 0);
+    return *reinterpret_cast<jni::prepared_table const *>(handle);
+}
+
+JNIEXPORT jlong JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1prepared_1table_1new(
     JNIEnv * jniEnv,
     jclass /* thisClass */,
     jlong handle,
-    jlong batchTables,
+    jstring tableName,
+    jobjectArray columnNames,
+    jintArray columnTypes)
+{
+    qdb::jni::env env(jniEnv);
+    try
+    {
+        qdb_handle_t handle_ = reinterpret_cast<qdb_handle_t>(handle);
+        jni::object_array names{env, columnNames};
+
+        // Copy the types out first: no other JNI calls are allowed while a primitive
+        // array is pinned.
+        std::vector<jint> types(names.size());
+        {
+            auto types_ = jni::make_primitive_array<jint>(env, columnTypes);
+            assert(names.size() == types_.size());
+            types_.copy(types.data(), types.size());
+        }
+
+        auto ret = std::make_unique<jni::prepared_table>();
+
+        auto name_ = jni::string::get_chars_utf8(env, handle_, tableName);
+        ret->name.assign(name_.get(), name_.size());
+
+        ret->column_names.resize(names.size());
+        ret->column_types.resize(names.size());
+
+        for (qdb_size_t i = 0; i < names.size(); ++i)
+        {
+            jstring in{static_cast<jstring>(names.get(i))};
+            auto column_name = jni::string::get_chars_utf8(env, handle_, in);
+            ret->column_names[i].assign(column_name.get(), column_name.size());
+            env.instance().DeleteLocalRef(in);
+
+            // Symbol columns are pushed as strings
+            qdb_ts_column_type_t type = static_cast<qdb_ts_column_type_t>(types[i]);
+            ret->column_types[i] = (type == qdb_ts_column_symbol ? qdb_ts_column_string : type);
+        }
+
+        return reinterpret_cast<jlong>(ret.release());
+    }
+    catch (jni::exception const & e)
+    {
+        e.throw_new(env);
+        return 0;
+    }
+}
+
+JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1prepared_1table_1release(
+    JNIEnv * /* jniEnv */, jclass /* thisClass */, jlong preparedTable)
+{
+    delete reinterpret_cast<jni::prepared_table *>(preparedTable);
+}
+
+JNIEXPORT jlong JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1arena_1new(
+    JNIEnv * /* jniEnv */, jclass /* thisClass */)
+{
+    return reinterpret_cast<jlong>(new jni::batch_arena{});
+}
+
+JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1arena_1shrink(
+    JNIEnv * /* jniEnv */, jclass /* thisClass */, jlong arena)
+{
+    _arena_from_handle(arena).shrink();
+}
+
+JNIEXPORT jlong JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1arena_1capacity(
+    JNIEnv * /* jniEnv */, jclass /* thisClass */, jlong arena)
+{
+    return static_cast<jlong>(_arena_from_handle(arena).capacity_bytes());
+}
+
+JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1arena_1release(
+    JNIEnv * /* jniEnv */, jclass /* thisClass */, jlong arena)
+{
+    delete reinterpret_cast<jni::batch_arena *>(arena);
+}
+
+JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1column_1from_1double(
+    JNIEnv * jniEnv,
+    jclass /* thisClass */,
+    jlong arena_,
     jlong tableNum,
     jlong columnNum,
-    jstring name,
     jdoubleArray values)
 {
     qdb::jni::env env(jniEnv);
     try
     {
-        qdb_handle_t handle_ = reinterpret_cast<qdb_handle_t>(handle);
-        qdb_exp_batch_push_column_t & column =
-            _batch_column_from_tables(batchTables, tableNum, columnNum);
+        jni::batch_arena & arena  = _arena_from_handle(arena_);
+        qdb_size_t row_count      = arena.table(tableNum).data.row_count;
+        auto & storage            = arena.column_storage_of(tableNum, columnNum);
+        qdb_exp_batch_push_column_t & column = arena.column(tableNum, columnNum);
 
-        auto arr         = jni::make_primitive_array<double>(env, values);
-        column.name      = jni::string::get_chars_utf8(env, handle_, name).copy(handle_);
-        column.data_type = qdb_ts_column_double;
+        auto arr = jni::make_primitive_array<double>(env, values);
 
-        // NOTE(leon): column.data.doubles is heap-allocated and will remain around until
-        //             java application calls qdb.ts_exp_batch_release()
-        column.data.doubles = arr.copy(handle_);
+        // Resizing retains the capacity of previous flushes
+        storage.doubles.resize(row_count);
+        arr.copy(storage.doubles.data(), row_count);
+
+        column.data.doubles = storage.doubles.data();
     }
     catch (jni::exception const & e)
     {
@@ -666,28 +881,25 @@ JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1column
 JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1column_1from_1int64(
     JNIEnv * jniEnv,
     jclass /* thisClass */,
-    jlong handle,
-    jlong batchTables,
+    jlong arena_,
     jlong tableNum,
     jlong columnNum,
-    jstring name,
     jlongArray values)
 {
     qdb::jni::env env(jniEnv);
     try
     {
-        qdb_handle_t handle_ = reinterpret_cast<qdb_handle_t>(handle);
-        qdb_exp_batch_push_column_t & column =
-            _batch_column_from_tables(batchTables, tableNum, columnNum);
+        jni::batch_arena & arena  = _arena_from_handle(arena_);
+        qdb_size_t row_count      = arena.table(tableNum).data.row_count;
+        auto & storage            = arena.column_storage_of(tableNum, columnNum);
+        qdb_exp_batch_push_column_t & column = arena.column(tableNum, columnNum);
 
         auto arr = jni::make_primitive_array<qdb_int_t>(env, values);
 
-        column.name      = jni::string::get_chars_utf8(env, handle_, name).copy(handle_);
-        column.data_type = qdb_ts_column_int64;
+        storage.ints.resize(row_count);
+        arr.copy(storage.ints.data(), row_count);
 
-        // NOTE(leon): column.data.ints is heap-allocated and will remain around until
-        //             java application calls qdb.ts_exp_batch_release()
-        column.data.ints = arr.copy(handle_);
+        column.data.ints = storage.ints.data();
     }
     catch (jni::exception const & e)
     {
@@ -698,36 +910,33 @@ JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1column
 JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1column_1from_1blob(
     JNIEnv * jniEnv,
     jclass /* thisClass */,
-    jlong handle,
-    jlong batchTables,
+    jlong arena_,
     jlong tableNum,
     jlong columnNum,
-    jstring name,
     jobjectArray values_)
 {
     qdb::jni::env env(jniEnv);
     try
     {
-        qdb_handle_t handle_ = reinterpret_cast<qdb_handle_t>(handle);
-        qdb_exp_batch_push_column_t & column =
-            _batch_column_from_tables(batchTables, tableNum, columnNum);
+        jni::batch_arena & arena  = _arena_from_handle(arena_);
+        qdb_size_t row_count      = arena.table(tableNum).data.row_count;
+        auto & storage            = arena.column_storage_of(tableNum, columnNum);
+        qdb_exp_batch_push_column_t & column = arena.column(tableNum, columnNum);
 
         jni::object_array values(env, values_);
+        assert(row_count <= values.size());
 
-        column.name      = jni::string::get_chars_utf8(env, handle_, name).copy(handle_);
-        column.data_type = qdb_ts_column_blob;
+        storage.blobs.resize(row_count);
 
-        qdb_blob_t * ret = jni::memory::allocate<qdb_blob_t>(handle_, values.size());
-
-        for (qdb_size_t i = 0; i < values.size(); ++i)
+        for (qdb_size_t i = 0; i < row_count; ++i)
         {
             jobject bb = values.get(i);
-            jni::byte_buffer::as_qdb_blob(env, handle_, bb, ret[i]);
+            _direct_buffer_view(
+                env, bb, &storage.blobs[i].content, &storage.blobs[i].content_length);
+            env.instance().DeleteLocalRef(bb);
         }
 
-        // NOTE(leon): column.data.blobs is heap-allocated and will remain around until
-        //             java application calls qdb.ts_exp_batch_release()
-        column.data.blobs = ret;
+        column.data.blobs = storage.blobs.data();
     }
     catch (jni::exception const & e)
     {
@@ -738,36 +947,63 @@ JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1column
 JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1column_1from_1string(
     JNIEnv * jniEnv,
     jclass /* thisClass */,
-    jlong handle,
-    jlong batchTables,
+    jlong arena_,
     jlong tableNum,
     jlong columnNum,
-    jstring name,
-    jobjectArray values_)
+    jbyteArray slab_,
+    jintArray offsets_)
 {
     qdb::jni::env env(jniEnv);
     try
     {
-        qdb_handle_t handle_ = reinterpret_cast<qdb_handle_t>(handle);
-        qdb_exp_batch_push_column_t & column =
-            _batch_column_from_tables(batchTables, tableNum, columnNum);
+        jni::batch_arena & arena  = _arena_from_handle(arena_);
+        qdb_size_t row_count      = arena.table(tableNum).data.row_count;
+        auto & storage            = arena.column_storage_of(tableNum, columnNum);
+        qdb_exp_batch_push_column_t & column = arena.column(tableNum, columnNum);
 
-        jni::object_array values(env, values_);
+        auto offsets = jni::make_primitive_array<jint>(env, offsets_);
+        assert(row_count < offsets.size());
+
+        // Negative offsets denote null values, and hold the complement of the offset
+        jint const * xs     = offsets.get();
+        auto decode = [](jint x) -> qdb_size_t { return static_cast<qdb_size_t>(x < 0 ? ~x : x); };
 
-        column.name      = jni::string::get_chars_utf8(env, handle_, name).copy(handle_);
-        column.data_type = qdb_ts_column_string;
+        // Copy the string data in one go: it needs to remain valid until the push,
+        // which the Java byte array does not guarantee.
+        qdb_size_t slab_size = decode(xs[row_count]);
+        {
+            auto slab = jni::make_primitive_array<jbyte>(env, slab_);
+            assert(slab_size <= slab.size());
 
-        qdb_string_t * ret = jni::memory::allocate<qdb_string_t>(handle_, values.size());
+            storage.string_data.resize(slab_size);
+            slab.copy(reinterpret_cast<jbyte *>(storage.string_data.data()), slab_size);
+        }
 
-        for (qdb_size_t i = 0; i < values.size(); ++i)
+        storage.strings.resize(row_count);
+
+        char const * data = storage.string_data.data();
+        qdb_size_t start  = 0;
+
+        for (qdb_size_t i = 0; i < row_count; ++i)
         {
-            jobject bb = values.get(i);
-            jni::byte_buffer::as_qdb_string(env, handle_, bb, ret[i]);
+            jint x         = xs[i + 1];
+            qdb_size_t end = decode(x);
+
+            if (x < 0)
+            {
+                storage.strings[i].data   = nullptr;
+                storage.strings[i].length = 0;
+            }
+            else
+            {
+                storage.strings[i].data   = data + start;
+                storage.strings[i].length = end - start;
+            }
+
+            start = end;
         }
 
-        // NOTE(leon): column.data.strings is heap-allocated and will remain around until
-        //             java application calls qdb.ts_exp_batch_release()
-        column.data.strings = ret;
+        column.data.strings = storage.strings.data();
     }
     catch (jni::exception const & e)
     {
@@ -778,34 +1014,23 @@ JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1column
 JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1column_1from_1timestamp(
     JNIEnv * jniEnv,
     jclass /* thisClass */,
-    jlong handle,
-    jlong batchTables,
+    jlong arena_,
     jlong tableNum,
     jlong columnNum,
-    jstring name,
     jobject values)
 {
     qdb::jni::env env(jniEnv);
     try
     {
-        qdb_handle_t handle_ = reinterpret_cast<qdb_handle_t>(handle);
-        qdb_exp_batch_push_table_t * xs =
-            reinterpret_cast<qdb_exp_batch_push_table_t *>(batchTables);
-        qdb_exp_batch_push_table_t & table = xs[tableNum];
+        jni::batch_arena & arena  = _arena_from_handle(arena_);
+        qdb_size_t row_count      = arena.table(tableNum).data.row_count;
+        auto & storage            = arena.column_storage_of(tableNum, columnNum);
+        qdb_exp_batch_push_column_t & column = arena.column(tableNum, columnNum);
 
-        qdb_size_t values_count     = table.data.row_count;
-        qdb_timespec_t * timestamps = jni::memory::allocate<qdb_timespec_t>(handle_, values_count);
+        storage.timestamps.resize(row_count);
+        _timestamps_from_timespecs(env, values, row_count, storage.timestamps.data());
 
-        _timestamps_from_timespecs(env, values, timestamps);
-
-        qdb_exp_batch_push_column_t & column = _batch_column_from_tables(xs, tableNum, columnNum);
-
-        column.name      = jni::string::get_chars_utf8(env, handle_, name).copy(handle_);
-        column.data_type = qdb_ts_column_timestamp;
-
-        // NOTE(leon): column.data.timestamps is heap-allocated and will remain around until
-        //             java application calls qdb.ts_exp_batch_release()
-        column.data.timestamps = timestamps;
+        column.data.timestamps = storage.timestamps.data();
     }
     catch (jni::exception const & e)
     {
@@ -816,22 +1041,21 @@ JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1column
 JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1table_1data(
     JNIEnv * jniEnv,
     jclass /* thisClass */,
-    jlong handle,
-    jlong batchTables,
+    jlong arena_,
     jlong tableNum,
-    jstring tableName,
+    jlong preparedTable,
     jobject timespecs_)
 {
     qdb::jni::env env(jniEnv);
     try
     {
-        qdb_handle_t handle_               = reinterpret_cast<qdb_handle_t>(handle);
-        qdb_exp_batch_push_table_t & table = _table_from_tables(batchTables, tableNum);
+        jni::batch_arena & arena           = _arena_from_handle(arena_);
+        qdb_exp_batch_push_table_t & table = arena.table(tableNum);
 
-        table.name = jni::string::get_chars_utf8(env, handle_, tableName).copy(handle_);
+        arena.set_layout(tableNum, _prepared_table_from_handle(preparedTable));
 
-        _timestamps_from_timespecs(
-            env, timespecs_, const_cast<qdb_timespec_t *>(table.data.timestamps));
+        _timestamps_from_timespecs(env, timespecs_, table.data.row_count,
+            const_cast<qdb_timespec_t *>(table.data.timestamps));
     }
     catch (jni::exception const & e)
     {
@@ -840,12 +1064,12 @@ JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1set_1table_
 }
 
 JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1table_1set_1drop_1duplicates(
-    JNIEnv * jniEnv, jclass /* thisClass */, jlong batchTables, jlong tableNum)
+    JNIEnv * jniEnv, jclass /* thisClass */, jlong arena_, jlong tableNum)
 {
     qdb::jni::env env(jniEnv);
     try
     {
-        qdb_exp_batch_push_table_t & table = _table_from_tables(batchTables, tableNum);
+        qdb_exp_batch_push_table_t & table = _arena_from_handle(arena_).table(tableNum);
         table.deduplication_mode           = qdb_exp_batch_deduplication_mode_drop;
     }
     catch (jni::exception const & e)
@@ -858,16 +1082,18 @@ JNIEXPORT void JNICALL
 Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1table_1set_1drop_1duplicate_1columns(JNIEnv * jniEnv,
     jclass /* thisClass */,
     jlong handle,
-    jlong batchTables,
+    jlong arena_,
     jlong tableNum,
     jobjectArray columns)
 {
     qdb::jni::env env(jniEnv);
     try
     {
-        qdb_handle_t handle_ = reinterpret_cast<qdb_handle_t>(handle);
+        qdb_handle_t handle_     = reinterpret_cast<qdb_handle_t>(handle);
+        jni::batch_arena & arena = _arena_from_handle(arena_);
         jni::object_array columns_{env, columns};
-        qdb_exp_batch_push_table_t & table = _table_from_tables(batchTables, tableNum);
+        qdb_exp_batch_push_table_t & table = arena.table(tableNum);
+        auto & storage                     = arena.table_storage_of(tableNum);
 
         assert(table.deduplication_mode == qdb_exp_batch_deduplication_mode_drop);
 
@@ -875,14 +1101,20 @@ Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1table_1set_1drop_1duplicate_1colum
 
         assert(n > 0);
 
-        table.where_duplicate_count = n;
-        table.where_duplicate       = jni::memory::allocate<char const *>(handle_, n);
+        storage.where_duplicate_names.resize(n);
+        storage.where_duplicate.resize(n);
 
         for (qdb_size_t i = 0; i < n; ++i)
         {
             jstring in{static_cast<jstring>(columns_.get(i))};
-            table.where_duplicate[i] = jni::string::get_chars_utf8(env, handle_, in).copy(handle_);
+            auto name_ = jni::string::get_chars_utf8(env, handle_, in);
+
+            storage.where_duplicate_names[i].assign(name_.get(), name_.size());
+            storage.where_duplicate[i] = storage.where_duplicate_names[i].c_str();
         };
+
+        table.where_duplicate_count = n;
+        table.where_duplicate       = storage.where_duplicate.data();
     }
     catch (jni::exception const & e)
     {
@@ -893,26 +1125,25 @@ Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1table_1set_1drop_1duplicate_1colum
 JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1table_1set_1truncate_1ranges(
     JNIEnv * jniEnv,
     jclass /* thisClass */,
-    jlong handle,
-    jlong batchTables,
+    jlong /* handle */,
+    jlong arena_,
     jlong tableNum,
     jobjectArray ranges)
 {
     qdb::jni::env env(jniEnv);
     try
     {
-        qdb_handle_t handle_ = reinterpret_cast<qdb_handle_t>(handle);
-
-        qdb_exp_batch_push_table_t & table = _table_from_tables(batchTables, tableNum);
+        jni::batch_arena & arena           = _arena_from_handle(arena_);
+        qdb_exp_batch_push_table_t & table = arena.table(tableNum);
+        auto & storage                     = arena.table_storage_of(tableNum);
 
         jni::object_array ranges_{env, ranges};
 
-        qdb_ts_range_t * ret = jni::memory::allocate<qdb_ts_range_t>(handle_, ranges_.size());
-        std::span<qdb_ts_range_t> ret_{ret, ranges_.size()};
+        storage.truncate_ranges.resize(ranges_.size());
 
-        jni::adapt::timerange::to_qdb(env, ranges_, ret_.begin());
+        jni::adapt::timerange::to_qdb(env, ranges_, storage.truncate_ranges.begin());
 
-        table.truncate_ranges      = ret;
+        table.truncate_ranges      = storage.truncate_ranges.data();
         table.truncate_range_count = ranges_.size();
     }
     catch (jni::exception const & e)
@@ -921,145 +1152,44 @@ JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1table_1set_
     }
 }
 
-JNIEXPORT jlong JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1prepare(JNIEnv * jniEnv,
+JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1prepare(JNIEnv * jniEnv,
     jclass /* thisClass */,
-    jlong handle,
+    jlong arena_,
     jlongArray rowCount_,
     jlongArray columnCount_)
 {
     qdb::jni::env env(jniEnv);
     try
     {
-        qdb_handle_t handle_ = reinterpret_cast<qdb_handle_t>(handle);
-        auto row_guard       = jni::make_primitive_array<jlong>(env, rowCount_);
-        auto column_guard    = jni::make_primitive_array<jlong>(env, columnCount_);
+        jni::batch_arena & arena = _arena_from_handle(arena_);
+        auto row_guard           = jni::make_primitive_array<jlong>(env, rowCount_);
+        auto column_guard        = jni::make_primitive_array<jlong>(env, columnCount_);
 
         assert(row_guard.size() == column_guard.size());
         assert(row_guard.size() > 0);
 
-        qdb_exp_batch_push_table_t * ret =
-            jni::memory::allocate<qdb_exp_batch_push_table_t>(handle_, row_guard.size());
-
-        for (qdb_size_t i = 0; i < row_guard.size(); ++i)
-        {
-            qdb_size_t row_count    = row_guard[i];
-            qdb_size_t column_count = column_guard[i];
-
-            ret[i].data.row_count    = row_count;
-            ret[i].data.column_count = column_count;
-            ret[i].data.timestamps   = jni::memory::allocate<qdb_timespec_t>(handle_, row_count);
-            ret[i].data.columns =
-                jni::memory::allocate<qdb_exp_batch_push_column_t>(handle_, column_count);
-
-            ret[i].truncate_ranges       = nullptr;
-            ret[i].truncate_range_count  = 0;
-            ret[i].deduplication_mode    = qdb_exp_batch_deduplication_mode_disabled;
-            ret[i].where_duplicate       = nullptr;
-            ret[i].where_duplicate_count = 0;
-
-            // TODO(leon): support actually specifying different table creation modes
-            ret[i].creation = qdb_exp_batch_dont_create;
-        }
-
-        return reinterpret_cast<jlong>(ret);
+        arena.prepare(row_guard.size(), row_guard.get(), column_guard.get());
     }
     catch (jni::exception const & e)
     {
         e.throw_new(env);
-        return e.error();
-    }
-}
-
-JNIEXPORT void JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1release(
-    JNIEnv * /* jniEnv */, jclass /* thisClass */, jlong handle, jlong tables, jlong tables_count)
-{
-    qdb_handle_t handle_            = reinterpret_cast<qdb_handle_t>(handle);
-    qdb_exp_batch_push_table_t * xs = reinterpret_cast<qdb_exp_batch_push_table_t *>(tables);
-
-    for (jlong i = 0; i < tables_count; ++i)
-    {
-        for (jlong j = 0; j < xs[i].data.column_count; ++j)
-        {
-            qdb_release(handle_, xs[i].data.columns[j].name);
-
-            switch (xs[i].data.columns[j].data_type)
-            {
-            case qdb_ts_column_double:
-                qdb_release(handle_, xs[i].data.columns[j].data.doubles);
-                break;
-            case qdb_ts_column_int64:
-                qdb_release(handle_, xs[i].data.columns[j].data.ints);
-                break;
-            case qdb_ts_column_blob:
-            {
-                for (jlong k = 0; k < xs[i].data.row_count; ++k)
-                {
-                    if (xs[i].data.columns[j].data.blobs[k].content != nullptr)
-                    {
-                        qdb_release(handle_, xs[i].data.columns[j].data.blobs[k].content);
-                    }
-                }
-
-                qdb_release(handle_, xs[i].data.columns[j].data.blobs);
-                break;
-            }
-            case qdb_ts_column_string:
-            {
-                for (jlong k = 0; k < xs[i].data.row_count; ++k)
-                {
-                    if (xs[i].data.columns[j].data.strings[k].data != nullptr)
-                    {
-                        qdb_release(handle_, xs[i].data.columns[j].data.strings[k].data);
-                    }
-                }
-
-                qdb_release(handle_, xs[i].data.columns[j].data.strings);
-                break;
-            }
-            case qdb_ts_column_timestamp:
-                qdb_release(handle_, xs[i].data.columns[j].data.timestamps);
-                break;
-            default:
-                throw new jni::exception(qdb_e_incompatible_type, "Unrecognized column type");
-            }
-        }
-
-        qdb_release(handle_, xs[i].data.columns);
-        qdb_release(handle_, xs[i].data.timestamps);
-        qdb_release(handle_, xs[i].name);
-
-        if (xs[i].truncate_ranges != nullptr)
-        {
-            qdb_release(handle_, xs[i].truncate_ranges);
-        }
-        if (xs[i].where_duplicate != nullptr)
-        {
-            assert(xs[i].where_duplicate_count > 0);
-
-            for (qdb_size_t j = 0; j < xs[i].where_duplicate_count; ++j)
-            {
-                qdb_release(handle_, xs[i].where_duplicate[j]);
-            }
-
-            qdb_release(handle_, xs[i].where_duplicate);
-        }
     }
-
-    qdb_release(handle_, xs);
 }
 
 JNIEXPORT jlong JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1push(JNIEnv * jniEnv,
     jclass /* thisClass */,
     jlong handle,
     jint pushMode,
-    jlong tables_,
+    jlong arena_,
     jlong tables_count)
 {
     qdb::jni::env env(jniEnv);
     try
     {
-        qdb_exp_batch_push_table_t * tables =
-            reinterpret_cast<qdb_exp_batch_push_table_t *>(tables_);
+        jni::batch_arena & arena           = _arena_from_handle(arena_);
+        qdb_exp_batch_push_table_t * tables = arena.tables();
+
+        assert(static_cast<qdb_size_t>(tables_count) == arena.table_count());
 
         qdb_exp_batch_push_mode_t push_mode = qdb_exp_batch_push_transactional;
 
@@ -1093,3 +1223,80 @@ JNIEXPORT jlong JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1exp_1batch_1push(JNIEn
         return e.error();
     }
 }
+
+JNIEXPORT jint JNICALL Java_net_quasardb_qdb_jni_qdb_ts_1double_1aggregate(JNIEnv * jniEnv,
+    jclass /*thisClass*/,
+    jlong handle,
+    jstring alias,
+    jstring column,
+    jobjectArray ranges,
+    jintArray types,
+    jlongArray counts,
+    jdoubleArray values,
+    jlongArray timestamps)
+{
+    // Computes every aggregation type in `types` for every range in `ranges`, in a
+    // single request. Results are written type-major, i.e. the result of type `i`
+    // for range `j` is at index `i * ranges.length + j`, and timestamps are stored
+    // as (seconds, nanoseconds) pairs.
+
+    qdb::jni::env env(jniEnv);
+    JNIEnv & jenv = env.instance();
+
+    try
+    {
+        qdb_handle_t handle_ = reinterpret_cast<qdb_handle_t>(handle);
+
+        std::vector<qdb_ts_range_t> ranges_ =
+            jni::adapt::timerange::to_qdb(env, jni::object_array{env, ranges});
+
+        jsize type_count = jenv.GetArrayLength(types);
+        std::vector<jint> types_(static_cast<std::size_t>(type_count));
+        jenv.GetIntArrayRegion(types, 0, type_count, types_.data());
+
+        std::size_t n = types_.size() * ranges_.size();
+        assert(static_cast<std::size_t>(jenv.GetArrayLength(counts)) == n);
+        assert(static_cast<std::size_t>(jenv.GetArrayLength(values)) == n);
+        assert(static_cast<std::size_t>(jenv.GetArrayLength(timestamps)) == 2 * n);
+
+        std::vector<qdb_ts_double_aggregation_t> aggregations(n);
+
+        for (std::size_t i = 0; i < types_.size(); ++i)
+        {
+            for (std::size_t j = 0; j < ranges_.size(); ++j)
+            {
+                qdb_ts_double_aggregation_t & x = aggregations[i * ranges_.size() + j];
+
+                x.type  = static_cast<qdb_ts_aggregation_type_t>(types_[i]);
+                x.range = ranges_[j];
+            }
+        }
+
+        qdb::jni::exception::throw_if_error(handle_,
+            qdb_ts_double_aggregate(handle_, qdb::jni::string::get_chars_utf8(env, handle_, alias),
+                qdb::jni::string::get_chars_utf8(env, handle_, column), aggregations.data(), n));
+
+        std::vector<jlong> counts_(n);
+        std::vector<jdouble> values_(n);
+        std::vector<jlong> timestamps_(2 * n);
+
+        for (std::size_t i = 0; i < n; ++i)
+        {
+            counts_[i]             = static_cast<jlong>(aggregations[i].count);
+            values_[i]             = aggregations[i].result.value;
+            timestamps_[2 * i]     = aggregations[i].result.timestamp.tv_sec;
+            timestamps_[2 * i + 1] = aggregations[i].result.timestamp.tv_nsec;
+        }
+
+        jenv.SetLongArrayRegion(counts, 0, static_cast<jsize>(n), counts_.data());
+        jenv.SetDoubleArrayRegion(values, 0, static_cast<jsize>(n), values_.data());
+        jenv.SetLongArrayRegion(timestamps, 0, static_cast<jsize>(2 * n), timestamps_.data());
+
+        return qdb_e_ok;
+    }
+    catch (jni::exception const & e)
+    {
+        e.throw_new(env);
+        return e.error();
+    }
+}
@@ -95,8 +95,15 @@ public:
 
     inline constexpr void copy(T * dst) const
     {
+        copy(dst, _n);
+    }
+
+    inline constexpr void copy(T * dst, qdb_size_t n) const
+    {
+        assert(n <= _n);
+
         T * cur = _ptr;
-        T * end = _ptr + _n;
+        T * end = _ptr + n;
 
         // XXX(leon): this could (should) be replaced with a faster memcpy-like
         //            implementation, but for some reason it fails to reliably copy
@@ -116,6 +123,18 @@ public:
         copy(ret);
         return ret;
     }
+
+    /**
+     * Copies only the first `n` elements of the array. Used when the java side
+     * hands us a (growable) buffer that is larger than the amount of elements
+     * actually in use.
+     */
+    inline constexpr T * copy(qdb_handle_t handle, qdb_size_t n) const
+    {
+        T * ret = jni::memory::allocate<T>(handle, n);
+        copy(ret, n);
+        return ret;
+    }
 };
 
 }; // namespace qdb::jni::guard
@@ -1,10 +1,19 @@
 #include "introspect.h"
 #include "env.h"
+#include "registry.h"
 #include <iostream>
 
 /* static */ jclass qdb::jni::introspect::lookup_class(env & env, char const * alias)
 {
-    jclass c = env.instance().FindClass(alias);
+    // Most classes are registered when the library is loaded, which saves us
+    // from going through the class loader on every lookup.
+    jclass c = registry::find_class(alias);
+    if (c != NULL)
+    {
+        return c;
+    }
+
+    c = env.instance().FindClass(alias);
     if (c == NULL)
     {
         fprintf(stderr, "*** Unable to find class with signature: %s\n", alias);
@@ -13,7 +13,9 @@ class introspect
 {
 public:
     /**
-     * Wraps around JNI API to safely lookup a class.
+     * Wraps around JNI API to safely lookup a class. Classes that are part of
+     * the registry are returned as global references, and must not be
+     * deleted.
      */
     static jclass lookup_class(env & env, char const * alias);
 
@@ -1,5 +1,6 @@
 #include "env.h"
 #include "introspect.h"
+#include "registry.h"
 #include "export/qdb_ts.h"
 #include <jni.h>
 
@@ -23,6 +24,21 @@ extern "C" jint JNICALL JNI_OnLoad(JavaVM * vm, void * /* reserved */)
         return JNI_ERR;
     }
 
-    // Initialization stuff could go here
+    // Cache all classes, methods and fields we use, so that we do not need to
+    // look them up on every native call.
+    if (!jni::registry::init(*env))
+    {
+        printf("unable to initialize class registry");
+        return JNI_ERR;
+    }
+
     return JNI_VERSION_1_6;
 }
+
+extern "C" void JNICALL JNI_OnUnload(JavaVM * vm, void * /* reserved */)
+{
+    JNIEnv * env;
+    if (vm->GetEnv((void **)&env, JNI_VERSION_1_6) != JNI_OK) return;
+
+    jni::registry::release(*env);
+}
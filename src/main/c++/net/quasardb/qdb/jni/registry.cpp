@@ -0,0 +1,263 @@
+#include "registry.h"
+#include <cassert>
+#include <cstdio>
+#include <string_view>
+#include <unordered_map>
+
+namespace
+{
+
+qdb::jni::registry instance_;
+bool initialized_ = false;
+
+// All global class references, by name. Besides the classes we keep method /
+// field ids for, this contains the classes that are looked up by name
+// elsewhere, most notably the exception hierarchy.
+std::unordered_map<std::string_view, jclass> classes_;
+
+char const * const preloaded_classes_[] = {"java/lang/Integer", "java/lang/Long",
+    "net/quasardb/qdb/Logger", "net/quasardb/qdb/PerformanceTrace$Trace",
+    "net/quasardb/qdb/PerformanceTrace$Measurement",
+
+    "net/quasardb/qdb/exception/Exception", "net/quasardb/qdb/exception/ConnectionException",
+    "net/quasardb/qdb/exception/ConnectionRefusedException",
+    "net/quasardb/qdb/exception/HostNotFoundException",
+    "net/quasardb/qdb/exception/InputException",
+    "net/quasardb/qdb/exception/ReservedAliasException",
+    "net/quasardb/qdb/exception/InvalidArgumentException",
+    "net/quasardb/qdb/exception/OutOfBoundsException",
+    "net/quasardb/qdb/exception/OperationException",
+    "net/quasardb/qdb/exception/AliasNotFoundException",
+    "net/quasardb/qdb/exception/AliasAlreadyExistsException",
+    "net/quasardb/qdb/exception/IncompatibleTypeException",
+    "net/quasardb/qdb/exception/OperationDisabledException",
+    "net/quasardb/qdb/exception/OverflowException",
+    "net/quasardb/qdb/exception/UnderflowException",
+    "net/quasardb/qdb/exception/ResourceLockedException",
+    "net/quasardb/qdb/exception/InvalidReplyException",
+    "net/quasardb/qdb/exception/InterruptedException",
+    "net/quasardb/qdb/exception/InputBufferTooSmallException",
+    "net/quasardb/qdb/exception/LocalSystemException",
+    "net/quasardb/qdb/exception/RemoteSystemException"};
+
+/**
+ * Loads a class, and registers a global reference to it.
+ */
+bool load_class(JNIEnv & env, char const * name, jclass & out)
+{
+    jclass local = env.FindClass(name);
+    if (local == nullptr)
+    {
+        fprintf(stderr, "*** Unable to find class with signature: %s\n", name);
+        fflush(stderr);
+        return false;
+    }
+
+    out = static_cast<jclass>(env.NewGlobalRef(local));
+    env.DeleteLocalRef(local);
+
+    if (out == nullptr)
+    {
+        return false;
+    }
+
+    classes_.emplace(name, out);
+    return true;
+}
+
+bool load_method(JNIEnv & env, jclass cls, char const * alias, char const * signature, jmethodID & out)
+{
+    out = env.GetMethodID(cls, alias, signature);
+    if (out == nullptr)
+    {
+        fprintf(stderr, "*** Unable to find method with alias %s and signature: %s\n", alias,
+            signature);
+        fflush(stderr);
+    }
+
+    return out != nullptr;
+}
+
+bool load_static_method(
+    JNIEnv & env, jclass cls, char const * alias, char const * signature, jmethodID & out)
+{
+    out = env.GetStaticMethodID(cls, alias, signature);
+    if (out == nullptr)
+    {
+        fprintf(stderr, "*** Unable to find static method with alias %s and signature: %s\n",
+            alias, signature);
+        fflush(stderr);
+    }
+
+    return out != nullptr;
+}
+
+bool load_field(JNIEnv & env, jclass cls, char const * alias, char const * signature, jfieldID & out)
+{
+    out = env.GetFieldID(cls, alias, signature);
+    if (out == nullptr)
+    {
+        fprintf(stderr, "*** Unable to find field with alias '%s' and signature '%s'\n", alias,
+            signature);
+        fflush(stderr);
+    }
+
+    return out != nullptr;
+}
+
+}; // namespace
+
+/* static */ qdb::jni::registry const & qdb::jni::registry::get()
+{
+    assert(initialized_);
+    return instance_;
+}
+
+/* static */ bool qdb::jni::registry::init(JNIEnv & env)
+{
+    assert(!initialized_);
+
+    registry & r = instance_;
+
+    bool ok =
+        load_class(env, "net/quasardb/qdb/ts/Value", r.value.cls)
+        && load_static_method(env, r.value.cls, "createInt64", "(J)Lnet/quasardb/qdb/ts/Value;",
+            r.value.create_int64)
+        && load_static_method(env, r.value.cls, "createDouble", "(D)Lnet/quasardb/qdb/ts/Value;",
+            r.value.create_double)
+        && load_static_method(env, r.value.cls, "createTimestamp",
+            "(Lnet/quasardb/qdb/ts/Timespec;)Lnet/quasardb/qdb/ts/Value;",
+            r.value.create_timestamp)
+        && load_static_method(env, r.value.cls, "createString",
+            "(Ljava/lang/String;)Lnet/quasardb/qdb/ts/Value;", r.value.create_string)
+        && load_static_method(env, r.value.cls, "createBlob",
+            "(Ljava/nio/ByteBuffer;)Lnet/quasardb/qdb/ts/Value;", r.value.create_blob)
+        && load_static_method(env, r.value.cls, "createBlobView",
+            "(Ljava/nio/ByteBuffer;Ljava/lang/Object;)Lnet/quasardb/qdb/ts/Value;",
+            r.value.create_blob_view)
+        && load_static_method(env, r.value.cls, "createSafeBlob",
+            "(Ljava/nio/ByteBuffer;)Lnet/quasardb/qdb/ts/Value;", r.value.create_safe_blob)
+        && load_static_method(
+            env, r.value.cls, "createNull", "()Lnet/quasardb/qdb/ts/Value;", r.value.create_null)
+
+        && load_class(env, "net/quasardb/qdb/ts/Value$Type", r.value_type.cls)
+        && load_static_method(env, r.value_type.cls, "fromInt",
+            "(I)Lnet/quasardb/qdb/ts/Value$Type;", r.value_type.from_int)
+
+        && load_class(env, "net/quasardb/qdb/ts/Row", r.row.cls)
+        && load_method(env, r.row.cls, "<init>", "([Lnet/quasardb/qdb/ts/Value;)V", r.row.init)
+
+        && load_class(env, "net/quasardb/qdb/ts/WritableRow", r.writable_row.cls)
+        && load_method(env, r.writable_row.cls, "<init>",
+            "(Lnet/quasardb/qdb/ts/Timespec;[Lnet/quasardb/qdb/ts/Value;)V", r.writable_row.init)
+
+        && load_class(env, "net/quasardb/qdb/ts/Timespec", r.timespec.cls)
+        && load_method(env, r.timespec.cls, "<init>", "(JJ)V", r.timespec.init)
+        && load_field(env, r.timespec.cls, "sec", "J", r.timespec.sec)
+        && load_field(env, r.timespec.cls, "nsec", "J", r.timespec.nsec)
+
+        && load_class(env, "net/quasardb/qdb/ts/Timespecs", r.timespecs.cls)
+        && load_method(env, r.timespecs.cls, "<init>", "([J[J)V", r.timespecs.init)
+        && load_field(env, r.timespecs.cls, "sec", "[J", r.timespecs.sec)
+        && load_field(env, r.timespecs.cls, "nsec", "[J", r.timespecs.nsec)
+
+        && load_class(env, "net/quasardb/qdb/ts/TimeRange", r.timerange.cls)
+        && load_method(env, r.timerange.cls, "<init>",
+            "(Lnet/quasardb/qdb/ts/Timespec;Lnet/quasardb/qdb/ts/Timespec;)V", r.timerange.init)
+        && load_field(
+            env, r.timerange.cls, "begin", "Lnet/quasardb/qdb/ts/Timespec;", r.timerange.begin)
+        && load_field(env, r.timerange.cls, "end", "Lnet/quasardb/qdb/ts/Timespec;", r.timerange.end)
+
+        && load_class(env, "net/quasardb/qdb/ts/Result", r.result.cls)
+        && load_method(env, r.result.cls, "<init>",
+            "([Ljava/lang/String;[Lnet/quasardb/qdb/ts/Row;)V", r.result.init)
+
+        && load_class(env, "net/quasardb/qdb/ts/ColumnarResult", r.columnar_result.cls)
+        && load_method(env, r.columnar_result.cls, "<init>",
+            "([Ljava/lang/String;[II[Ljava/lang/Object;[Ljava/lang/Object;[Ljava/lang/Object;)V",
+            r.columnar_result.init)
+
+        && load_class(env, "net/quasardb/qdb/ts/Column", r.column.cls)
+        && load_method(env, r.column.cls, "<init>", "(Ljava/lang/String;I)V", r.column.init)
+        && load_method(env, r.column.cls, "<init>", "(Ljava/lang/String;ILjava/lang/String;)V",
+            r.column.init_symbol)
+        && load_field(env, r.column.cls, "name", "Ljava/lang/String;", r.column.name)
+        && load_field(env, r.column.cls, "type", "Lnet/quasardb/qdb/ts/Column$Type;", r.column.type)
+        && load_field(
+            env, r.column.cls, "symbolTable", "Ljava/lang/String;", r.column.symbol_table)
+
+        && load_class(env, "net/quasardb/qdb/ts/Column$Type", r.column_type.cls)
+        && load_field(env, r.column_type.cls, "value", "I", r.column_type.value)
+
+        && load_class(env, "java/nio/ByteBuffer", r.byte_buffer.cls)
+        && load_static_method(env, r.byte_buffer.cls, "allocateDirect",
+            "(I)Ljava/nio/ByteBuffer;", r.byte_buffer.allocate_direct)
+
+        && load_class(env, "net/quasardb/qdb/jni/qdb_ts_double_point", r.double_point.cls)
+        && load_method(env, r.double_point.cls, "<init>", "(Lnet/quasardb/qdb/ts/Timespec;D)V",
+            r.double_point.init)
+        && load_field(env, r.double_point.cls, "timestamp", "Lnet/quasardb/qdb/ts/Timespec;",
+            r.double_point.timestamp)
+        && load_field(env, r.double_point.cls, "value", "D", r.double_point.value)
+
+        && load_class(
+            env, "net/quasardb/qdb/jni/qdb_ts_double_aggregation", r.double_aggregation.cls)
+        && load_method(env, r.double_aggregation.cls, "<init>",
+            "(Lnet/quasardb/qdb/ts/TimeRange;JJLnet/quasardb/qdb/jni/qdb_ts_double_point;)V",
+            r.double_aggregation.init)
+        && load_field(env, r.double_aggregation.cls, "aggregation_type", "J",
+            r.double_aggregation.aggregation_type)
+        && load_field(env, r.double_aggregation.cls, "time_range",
+            "Lnet/quasardb/qdb/ts/TimeRange;", r.double_aggregation.time_range)
+        && load_field(env, r.double_aggregation.cls, "count", "J", r.double_aggregation.count)
+        && load_field(env, r.double_aggregation.cls, "result",
+            "Lnet/quasardb/qdb/jni/qdb_ts_double_point;", r.double_aggregation.result)
+
+        && load_class(env, "net/quasardb/qdb/jni/Reference", r.reference.cls)
+        && load_field(env, r.reference.cls, "value", "Ljava/lang/Object;", r.reference.value)
+
+        && load_class(env, "net/quasardb/qdb/ts/StringDecoder", r.string_decoder.cls)
+        && load_method(env, r.string_decoder.cls, "decodeValues",
+            "([B[I)[Lnet/quasardb/qdb/ts/Value;", r.string_decoder.decode_values)
+
+        && load_class(env, "java/lang/String", r.string)
+        && load_class(env, "java/lang/Object", r.object);
+
+    for (char const * name : preloaded_classes_)
+    {
+        jclass ignored;
+        ok = ok && load_class(env, name, ignored);
+    }
+
+    if (!ok)
+    {
+        release(env);
+        return false;
+    }
+
+    initialized_ = true;
+    return true;
+}
+
+/* static */ void qdb::jni::registry::release(JNIEnv & env)
+{
+    for (auto const & x : classes_)
+    {
+        env.DeleteGlobalRef(x.second);
+    }
+
+    classes_.clear();
+    instance_    = registry{};
+    initialized_ = false;
+}
+
+/* static */ jclass qdb::jni::registry::find_class(char const * name)
+{
+    if (!initialized_)
+    {
+        return nullptr;
+    }
+
+    auto i = classes_.find(std::string_view{name});
+    return (i == classes_.end() ? nullptr : i->second);
+}
@@ -0,0 +1,192 @@
+#pragma once
+
+#include <jni.h>
+
+namespace qdb
+{
+namespace jni
+{
+
+/**
+ * Cache of the Java classes used by the bridge, along with the method and
+ * field ids we need on them.
+ *
+ * FindClass and Get(Static)MethodID / Get(Static)FieldID are relatively
+ * expensive, and many of our adapters are invoked once per row or even once
+ * per value. The registry is populated exactly once by JNI_OnLoad and is
+ * read-only afterwards, which means it can be shared between threads without
+ * any locking.
+ *
+ * Classes are held as global references, and as such remain valid across
+ * native calls until the library is unloaded.
+ */
+class registry
+{
+public:
+    struct value_t
+    {
+        jclass cls;
+        jmethodID create_int64;
+        jmethodID create_double;
+        jmethodID create_timestamp;
+        jmethodID create_string;
+        jmethodID create_blob;
+        jmethodID create_blob_view;
+        jmethodID create_safe_blob;
+        jmethodID create_null;
+    };
+
+    struct value_type_t
+    {
+        jclass cls;
+        jmethodID from_int;
+    };
+
+    struct row_t
+    {
+        jclass cls;
+        jmethodID init;
+    };
+
+    struct writable_row_t
+    {
+        jclass cls;
+        jmethodID init;
+    };
+
+    struct timespec_t
+    {
+        jclass cls;
+        jmethodID init;
+        jfieldID sec;
+        jfieldID nsec;
+    };
+
+    struct timespecs_t
+    {
+        jclass cls;
+        jmethodID init;
+        jfieldID sec;
+        jfieldID nsec;
+    };
+
+    struct timerange_t
+    {
+        jclass cls;
+        jmethodID init;
+        jfieldID begin;
+        jfieldID end;
+    };
+
+    struct result_t
+    {
+        jclass cls;
+        jmethodID init;
+    };
+
+    struct columnar_result_t
+    {
+        jclass cls;
+        jmethodID init;
+    };
+
+    struct column_t
+    {
+        jclass cls;
+        jmethodID init;
+        jmethodID init_symbol;
+        jfieldID name;
+        jfieldID type;
+        jfieldID symbol_table;
+    };
+
+    struct column_type_t
+    {
+        jclass cls;
+        jfieldID value;
+    };
+
+    struct byte_buffer_t
+    {
+        jclass cls;
+        jmethodID allocate_direct;
+    };
+
+    struct double_point_t
+    {
+        jclass cls;
+        jmethodID init;
+        jfieldID timestamp;
+        jfieldID value;
+    };
+
+    struct double_aggregation_t
+    {
+        jclass cls;
+        jmethodID init;
+        jfieldID aggregation_type;
+        jfieldID time_range;
+        jfieldID count;
+        jfieldID result;
+    };
+
+    struct reference_t
+    {
+        jclass cls;
+        jfieldID value;
+    };
+
+    struct string_decoder_t
+    {
+        jclass cls;
+        jmethodID decode_values;
+    };
+
+    value_t value;
+    value_type_t value_type;
+    row_t row;
+    writable_row_t writable_row;
+    timespec_t timespec;
+    timespecs_t timespecs;
+    timerange_t timerange;
+    result_t result;
+    columnar_result_t columnar_result;
+    column_t column;
+    column_type_t column_type;
+    byte_buffer_t byte_buffer;
+    double_point_t double_point;
+    double_aggregation_t double_aggregation;
+    reference_t reference;
+    string_decoder_t string_decoder;
+
+    jclass string;
+    jclass object;
+
+    /**
+     * Access to the registry. Only valid after a successful call to
+     * `init`, which JNI_OnLoad takes care of.
+     */
+    static registry const & get();
+
+    /**
+     * Looks up all classes, methods and fields. Returns false, with a pending
+     * Java exception, when any of them cannot be found.
+     */
+    static bool init(JNIEnv & env);
+
+    /**
+     * Releases all global references held by the registry.
+     */
+    static void release(JNIEnv & env);
+
+    /**
+     * Resolves a class by its fully qualified name, e.g.
+     * "net/quasardb/qdb/ts/Value". Returns nullptr when the class is not part
+     * of the registry, in which case the caller should fall back to
+     * FindClass.
+     */
+    static jclass find_class(char const * name);
+};
+
+}; // namespace jni
+}; // namespace qdb
@@ -1,6 +1,7 @@
 #pragma once
 
 #include "introspect.h"
+#include "registry.h"
 #include <qdb/client.h> // for qdb_string_t
 #include "guard/local_ref.h"
 #include "guard/string_critical.h"
@@ -88,7 +89,7 @@ public:
      */
     static jclass lookup_class(env & env)
     {
-        return jni::introspect::lookup_class(env, "java/lang/String");
+        return jni::registry::get().string;
     }
 
     /**
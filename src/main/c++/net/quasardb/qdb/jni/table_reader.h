@@ -0,0 +1,212 @@
+#pragma once
+
+#include "exception.h"
+#include <qdb/client.h>
+#include <qdb/ts.h>
+#include <jni.h>
+#include <cassert>
+#include <climits>
+#include <cstddef>
+#include <vector>
+
+namespace qdb::jni
+{
+
+/**
+ * Reads rows from a local table in blocks, into per-column buffers that can be
+ * transferred to Java using a single call per column.
+ *
+ * The column types are resolved once when the reader is created, and the buffers
+ * are retained across blocks, so reading a block does not allocate in steady state.
+ */
+class table_reader
+{
+public:
+    struct column_block
+    {
+        // Only the vectors matching the column's type are in use.
+        std::vector<double> doubles;
+        std::vector<qdb_int_t> ints;
+
+        // Seconds and nanoseconds, interleaved.
+        std::vector<jlong> timestamps;
+
+        // Blob and string values are appended into a single buffer; `offsets[i + 1]`
+        // is the offset where row `i` ends, or its complement if the value is null.
+        std::vector<char> data;
+        std::vector<jint> offsets;
+    };
+
+public:
+    table_reader(qdb_local_table_t table, std::vector<qdb_ts_column_type_t> types)
+        : _table{table}
+        , _types{std::move(types)}
+        , _columns(_types.size())
+    {}
+
+    qdb_size_t column_count() const noexcept
+    {
+        return _types.size();
+    }
+
+    qdb_ts_column_type_t column_type(qdb_size_t i) const noexcept
+    {
+        return _types[i];
+    }
+
+    column_block const & column(qdb_size_t i) const noexcept
+    {
+        return _columns[i];
+    }
+
+    /**
+     * Timestamps of the rows of the last block: seconds and nanoseconds, not
+     * interleaved.
+     */
+    std::vector<jlong> const & seconds() const noexcept
+    {
+        return _sec;
+    }
+
+    std::vector<jlong> const & nanoseconds() const noexcept
+    {
+        return _nsec;
+    }
+
+    /**
+     * Reads up to `max_rows` rows. Returns the amount of rows read, which is less
+     * than `max_rows` only when the end of the table has been reached.
+     */
+    qdb_size_t read_block(qdb_handle_t handle, qdb_size_t max_rows)
+    {
+        _clear();
+
+        qdb_size_t n = 0;
+        for (; n < max_rows; ++n)
+        {
+            qdb_timespec_t ts;
+            qdb_error_t err = qdb_ts_table_next_row(_table, &ts);
+
+            if (err == qdb_e_iterator_end)
+            {
+                break;
+            }
+
+            jni::exception::throw_if_error(handle, err);
+
+            _sec.push_back(ts.tv_sec);
+            _nsec.push_back(ts.tv_nsec);
+
+            for (qdb_size_t i = 0; i < _types.size(); ++i)
+            {
+                _read_value(handle, i);
+            }
+        }
+
+        return n;
+    }
+
+private:
+    void _clear()
+    {
+        _sec.clear();
+        _nsec.clear();
+
+        for (column_block & c : _columns)
+        {
+            c.doubles.clear();
+            c.ints.clear();
+            c.timestamps.clear();
+            c.data.clear();
+            c.offsets.assign(1, 0);
+        }
+    }
+
+    void _read_value(qdb_handle_t handle, qdb_size_t i)
+    {
+        column_block & c = _columns[i];
+
+        switch (_types[i])
+        {
+        case qdb_ts_column_double:
+        {
+            double x;
+            jni::exception::throw_if_error(handle, qdb_ts_row_get_double(_table, i, &x));
+            c.doubles.push_back(x);
+            break;
+        }
+
+        case qdb_ts_column_int64:
+        {
+            qdb_int_t x;
+            jni::exception::throw_if_error(handle, qdb_ts_row_get_int64(_table, i, &x));
+            c.ints.push_back(x);
+            break;
+        }
+
+        case qdb_ts_column_timestamp:
+        {
+            qdb_timespec_t x;
+            jni::exception::throw_if_error(handle, qdb_ts_row_get_timestamp(_table, i, &x));
+            c.timestamps.push_back(x.tv_sec);
+            c.timestamps.push_back(x.tv_nsec);
+            break;
+        }
+
+        case qdb_ts_column_blob:
+        {
+            void const * content      = nullptr;
+            qdb_size_t content_length = 0;
+            jni::exception::throw_if_error(
+                handle, qdb_ts_row_get_blob(_table, i, &content, &content_length));
+
+            _append(c, static_cast<char const *>(content), content_length);
+            qdb_release(handle, content);
+            break;
+        }
+
+        case qdb_ts_column_symbol:
+            //! FALLTHROUGH
+        case qdb_ts_column_string:
+        {
+            char const * data = nullptr;
+            qdb_size_t length = 0;
+            jni::exception::throw_if_error(handle, qdb_ts_row_get_string(_table, i, &data, &length));
+
+            _append(c, data, length);
+            qdb_release(handle, data);
+            break;
+        }
+
+        default:
+            throw jni::exception{qdb_e_incompatible_type, "Unrecognized column type"};
+        }
+    }
+
+    static void _append(column_block & c, char const * xs, qdb_size_t n)
+    {
+        // Same as the regular row reader, empty values are null values.
+        if (n == 0)
+        {
+            c.offsets.push_back(~static_cast<jint>(c.data.size()));
+            return;
+        }
+
+        if (c.data.size() + n > static_cast<std::size_t>(INT_MAX))
+        {
+            throw jni::exception{qdb_e_out_of_bounds, "Block exceeds maximum size, use a smaller block size"};
+        }
+
+        c.data.insert(c.data.end(), xs, xs + n);
+        c.offsets.push_back(static_cast<jint>(c.data.size()));
+    }
+
+private:
+    qdb_local_table_t _table;
+    std::vector<qdb_ts_column_type_t> _types;
+    std::vector<column_block> _columns;
+    std::vector<jlong> _sec;
+    std::vector<jlong> _nsec;
+};
+
+} // namespace qdb::jni
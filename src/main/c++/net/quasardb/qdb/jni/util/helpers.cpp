@@ -3,28 +3,16 @@
 #include "../env.h"
 #include "../exception.h"
 #include "../log.h"
+#include "../registry.h"
 
 void setReferenceValue(qdb::jni::env & env, jobject reference, jobject value)
 {
-    static jfieldID fid = 0;
-    if (!fid)
-    {
-        jclass thisClass = env.instance().GetObjectClass(reference);
-        fid              = env.instance().GetFieldID(thisClass, "value", "Ljava/lang/Object;");
-    }
-    env.instance().SetObjectField(reference, fid, value);
+    env.instance().SetObjectField(reference, qdb::jni::registry::get().reference.value, value);
 }
 
 jobject getReferenceValue(qdb::jni::env & env, jobject reference)
 {
-    static jfieldID fid = 0;
-    if (!fid)
-    {
-        jclass thisClass = env.instance().GetObjectClass(reference);
-        fid              = env.instance().GetFieldID(thisClass, "value", "Ljava/lang/Object;");
-    }
-
-    return env.instance().GetObjectField(reference, fid);
+    return env.instance().GetObjectField(reference, qdb::jni::registry::get().reference.value);
 }
 
 void setByteBuffer(
@@ -36,7 +24,7 @@ void setByteBuffer(
 
 void setInteger(qdb::jni::env & env, jobject reference, jint value)
 {
-    jclass integerClass            = env.instance().FindClass("java/lang/Integer");
+    jclass integerClass            = qdb::jni::registry::find_class("java/lang/Integer");
     static jmethodID constructorId = 0;
     if (!constructorId)
     {
@@ -47,7 +35,7 @@ void setInteger(qdb::jni::env & env, jobject reference, jint value)
 
 void setLong(qdb::jni::env & env, jobject reference, jlong value)
 {
-    jclass longClass               = env.instance().FindClass("java/lang/Long");
+    jclass longClass               = qdb::jni::registry::find_class("java/lang/Long");
     static jmethodID constructorId = 0;
     if (!constructorId)
     {
@@ -58,7 +46,7 @@ void setLong(qdb::jni::env & env, jobject reference, jlong value)
 
 void setStringArray(qdb::jni::env & env, jobject reference, const char ** strings, size_t count)
 {
-    jclass stringClass = env.instance().FindClass("java/lang/String");
+    jclass stringClass = qdb::jni::registry::get().string;
     jobjectArray array = env.instance().NewObjectArray((jsize)count, stringClass, NULL);
     for (size_t i = 0; i < count; i++)
     {
@@ -10,6 +10,7 @@
 #include "../local_frame.h"
 #include "../log.h"
 #include "../object.h"
+#include "../registry.h"
 #include "../string.h"
 #include <cassert>
 #include <cstdlib>
@@ -20,19 +21,12 @@ namespace jni = qdb::jni;
 
 void doublePointToNative(qdb::jni::env & env, jobject input, qdb_ts_double_point * native)
 {
-    jfieldID timestampField, valueField;
-    jclass objectClass;
-
-    objectClass = env.instance().GetObjectClass(input);
-
-    timestampField =
-        env.instance().GetFieldID(objectClass, "timestamp", "Lnet/quasardb/qdb/ts/Timespec;");
-    valueField = env.instance().GetFieldID(objectClass, "value", "D");
+    jni::registry::double_point_t const & point_ = jni::registry::get().double_point;
 
     native->timestamp =
-        jni::adapt::timespec::to_qdb(env, env.instance().GetObjectField(input, timestampField));
+        jni::adapt::timespec::to_qdb(env, env.instance().GetObjectField(input, point_.timestamp));
 
-    native->value = env.instance().GetDoubleField(input, valueField);
+    native->value = env.instance().GetDoubleField(input, point_.value);
 }
 
 void doublePointsToNative(
@@ -50,8 +44,9 @@ void doublePointsToNative(
 
 jni::guard::local_ref<jobject> nativeToDoublePoint(qdb::jni::env & env, qdb_ts_double_point native)
 {
-    return jni::object::create(env, "net/quasardb/qdb/jni/qdb_ts_double_point",
-        "(Lnet/quasardb/qdb/ts/Timespec;D)V",
+    jni::registry::double_point_t const & point_ = jni::registry::get().double_point;
+
+    return jni::object::create(env, point_.cls, point_.init,
         jni::adapt::timespec::to_java(env, native.timestamp).release(), native.value);
 }
 
@@ -59,7 +54,7 @@ jni::guard::local_ref<jobjectArray> nativeToDoublePoints(
     qdb::jni::env & env, qdb_ts_double_point * native, size_t count)
 {
     jni::guard::local_ref<jobjectArray> output(
-        jni::object::create_array(env, count, "net/quasardb/qdb/jni/qdb_ts_double_point"));
+        jni::object::create_array(env, count, jni::registry::get().double_point.cls));
 
     for (size_t i = 0; i < count; i++)
     {
@@ -78,16 +73,13 @@ void doubleAggregateToNative(
 {
     assert(input != NULL);
 
-    jfieldID typeField, timeRangeField, countField, resultField;
-    jclass objectClass;
+    jni::registry::double_aggregation_t const & aggregation_ =
+        jni::registry::get().double_aggregation;
 
-    objectClass = env.instance().GetObjectClass(input);
-    typeField   = env.instance().GetFieldID(objectClass, "aggregation_type", "J");
-    timeRangeField =
-        env.instance().GetFieldID(objectClass, "time_range", "Lnet/quasardb/qdb/ts/TimeRange;");
-    countField  = env.instance().GetFieldID(objectClass, "count", "J");
-    resultField = env.instance().GetFieldID(
-        objectClass, "result", "Lnet/quasardb/qdb/jni/qdb_ts_double_point;");
+    jfieldID typeField      = aggregation_.aggregation_type;
+    jfieldID timeRangeField = aggregation_.time_range;
+    jfieldID countField     = aggregation_.count;
+    jfieldID resultField    = aggregation_.result;
 
     native->range = jni::adapt::timerange::to_qdb(
         env, jni::object::from_field<jobject>(env, input, timeRangeField));
@@ -120,9 +112,10 @@ jni::guard::local_ref<jobject> nativeToDoubleAggregate(
     static_assert(sizeof(jlong) >= sizeof(native.type));
     static_assert(sizeof(jlong) >= sizeof(native.count));
 
-    return jni::object::create(env, "net/quasardb/qdb/jni/qdb_ts_double_aggregation",
-        "(Lnet/quasardb/qdb/ts/TimeRange;JJLnet/quasardb/qdb/jni/"
-        "qdb_ts_double_point;)V",
+    jni::registry::double_aggregation_t const & aggregation_ =
+        jni::registry::get().double_aggregation;
+
+    return jni::object::create(env, aggregation_.cls, aggregation_.init,
         jni::adapt::timerange::to_java(env, native.range).release(), (jlong)native.type,
         (jlong)native.count, nativeToDoublePoint(env, native.result).release());
 }
@@ -131,7 +124,7 @@ jni::guard::local_ref<jobjectArray> nativeToDoubleAggregates(
     qdb::jni::env & env, qdb_ts_double_aggregation_t * native, size_t count)
 {
     jni::guard::local_ref<jobjectArray> output(
-        jni::object::create_array(env, count, "net/quasardb/qdb/jni/qdb_ts_double_aggregation"));
+        jni::object::create_array(env, count, jni::registry::get().double_aggregation.cls));
 
     for (size_t i = 0; i < count; i++)
     {
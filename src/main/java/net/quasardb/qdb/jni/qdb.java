@@ -5,7 +5,9 @@ import net.quasardb.qdb.*;
 import net.quasardb.qdb.Logger;
 import net.quasardb.qdb.PerformanceTrace;
 import net.quasardb.qdb.ts.Column;
+import net.quasardb.qdb.ts.ColumnarResult;
 import net.quasardb.qdb.ts.Result;
+import net.quasardb.qdb.ts.Row;
 import net.quasardb.qdb.ts.WritableRow;
 import net.quasardb.qdb.ts.Table;
 import net.quasardb.qdb.ts.TimeRange;
@@ -199,89 +201,118 @@ public final class qdb
                                                      long index,
                                                      byte[] value);
 
+    public static native long ts_exp_batch_prepared_table_new(long handle,
+                                                              String tableName,
+                                                              String[] columnNames,
+                                                              int[] columnTypes);
+
+    public static native void ts_exp_batch_prepared_table_release(long preparedTable);
+
+    public static native long ts_exp_batch_arena_new();
+
+    public static native void ts_exp_batch_arena_shrink(long arena);
+
+    public static native long ts_exp_batch_arena_capacity(long arena);
+
+    public static native void ts_exp_batch_arena_release(long arena);
+
     /**
-     * Allocates all data structures in one big allocation. For each table, a rowCount
-     * and a columnCount is expected.
+     * Sizes the data structures of the arena for a new batch, reusing memory of
+     * previous batches. For each table, a rowCount and a columnCount is expected.
      *
      * rowCount.length == columnCount.length, and pretty much defines the number of tables.
      */
-    public static native long ts_exp_batch_prepare(long handle,
+    public static native void ts_exp_batch_prepare(long arena,
                                                    long[] rowCount,
                                                    long[] columnCount);
 
-    public static native void ts_exp_batch_set_column_from_double(long handle,
-                                                                  long batchTables,
+    public static native void ts_exp_batch_set_column_from_double(long arena,
                                                                   long tableNum,
                                                                   long columnNum,
-                                                                  String name,
                                                                   double[] values);
 
-    public static native void ts_exp_batch_set_column_from_int64(long handle,
-                                                                 long batchTables,
+    public static native void ts_exp_batch_set_column_from_int64(long arena,
                                                                  long tableNum,
                                                                  long columnNum,
-                                                                 String name,
                                                                  long[] values);
 
-    public static native void ts_exp_batch_set_column_from_blob(long handle,
-                                                                long batchTables,
+    public static native void ts_exp_batch_set_column_from_blob(long arena,
                                                                 long tableNum,
                                                                 long columnNum,
-                                                                String name,
                                                                 ByteBuffer[] values);
 
-    public static native void ts_exp_batch_set_column_from_string(long handle,
-                                                                  long batchTables,
+    /**
+     * Transfers a string column staged as a single UTF-8 slab. offsets[i + 1] is
+     * the offset where row i ends, or its bitwise complement if row i is null.
+     */
+    public static native void ts_exp_batch_set_column_from_string(long arena,
                                                                   long tableNum,
                                                                   long columnNum,
-                                                                  String name,
-                                                                  ByteBuffer[] values);
+                                                                  byte[] slab,
+                                                                  int[] offsets);
 
-    public static native void ts_exp_batch_set_column_from_timestamp(long handle,
-                                                                     long batchTables,
+    public static native void ts_exp_batch_set_column_from_timestamp(long arena,
                                                                      long tableNum,
                                                                      long columnNum,
-                                                                     String name,
                                                                      Timespecs values);
 
-    public static native void ts_exp_batch_set_table_data(long handle,
-                                                          long batchTables,
+    public static native void ts_exp_batch_set_table_data(long arena,
                                                           long tableNum,
-                                                          String tableName,
+                                                          long preparedTable,
                                                           Timespecs timespecs);
 
-    public static native void ts_exp_batch_table_set_drop_duplicates(long batchTables,
+    public static native void ts_exp_batch_table_set_drop_duplicates(long arena,
                                                                      long tableNum);
 
     public static native void ts_exp_batch_table_set_drop_duplicate_columns(long handle,
-                                                                             long batchTables,
+                                                                             long arena,
                                                                             long tableNum,
                                                                             String[] columns);
 
     public static native void ts_exp_batch_table_set_truncate_ranges(long handle,
-                                                                     long batchTables,
+                                                                     long arena,
                                                                      long tableNum,
                                                                      TimeRange[] ranges);
 
     public static native long ts_exp_batch_push(long handle,
                                                 int pushMode,
-                                                long batchTables,
+                                                long arena,
                                                 long tableCount);
 
 
-    public static native void ts_exp_batch_release(long handle,
-                                                   long batchTables,
-                                                   long tableCount);
-
-
     // arg: qdb_timespec_t *
     public static native void ts_exp_batch_timestamps_release(long xs);
 
     public static native void ts_local_table_release(long handle, long localTable);
+
+    public static native long ts_table_reader_new(long localTable, int[] columnTypes);
+    public static native void ts_table_reader_release(long reader);
+
+    /**
+     * Reads up to maxRows rows into the provided arrays, see RowBlock for their
+     * layout. Returns the amount of rows read, which is less than maxRows only
+     * when the end of the table has been reached.
+     */
+    public static native int ts_table_reader_read_block(long handle,
+                                                        long reader,
+                                                        int maxRows,
+                                                        long[] sec,
+                                                        long[] nsec,
+                                                        Object[] values,
+                                                        Object[] slabs);
     public static native int ts_table_get_ranges(long handle, long localTable, TimeRange[] ranges);
     public static native WritableRow ts_table_next_row(long handle, long localTable, Column[] columns);
 
-    public static native int query_execute(long handle, String query, Reference<Result> result);
+    public static native int ts_double_aggregate(long handle, String alias, String column, TimeRange[] ranges,
+                                                 int[] types, long[] counts, double[] values, long[] timestamps);
+
+    public static native int query_execute(long handle, String query, Object decoder, Reference<Result> result);
+    public static native int query_execute_columnar(long handle, String query, Reference<ColumnarResult> result);
+    public static native long query_open(long handle, String query);
+    public static native String[] query_column_names(long handle, long result);
+    public static native long query_row_count(long result);
+    public static native Row[] query_get_rows(long handle, long result, long offset, int count, Object blobOwner, Object decoder);
+    public static native void query_release(long handle, long result);
 
     public static native int node_status(long handle, String uri, Reference<String> content);
     public static native int node_config(long handle, String uri, Reference<String> content);
@@ -0,0 +1,94 @@
+package net.quasardb.qdb.ts;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import net.quasardb.qdb.exception.InvalidArgumentException;
+
+/**
+ * The result of {@link Table#aggregate}: for every requested aggregation type,
+ * one result per time range ("bucket").
+ *
+ * Results are stored in primitive arrays, per aggregation type in the order of
+ * the buckets. Aggregations that select a point, such as FIRST, LAST, MIN and
+ * MAX, also provide the timestamp of that point.
+ *
+ * The value of a bucket without any points is unspecified; check its count
+ * using {@link #getCount}.
+ */
+public final class AggregationResult {
+
+    private final TimeRange[] buckets;
+    private final AggregationType[] types;
+    private final long[] counts;
+    private final double[] values;
+    private final long[] timestamps;
+
+    /**
+     * @param counts     Amount of points per result, type-major.
+     * @param values     Value per result, type-major.
+     * @param timestamps Timestamp per result, as (seconds, nanoseconds) pairs.
+     */
+    AggregationResult(TimeRange[] buckets, AggregationType[] types, long[] counts, double[] values, long[] timestamps) {
+        this.buckets = buckets;
+        this.types = types;
+        this.counts = counts;
+        this.values = values;
+        this.timestamps = timestamps;
+    }
+
+    public TimeRange[] getBuckets() {
+        return this.buckets;
+    }
+
+    public AggregationType[] getTypes() {
+        return this.types;
+    }
+
+    private int offsetOf(AggregationType type) {
+        for (int i = 0; i < this.types.length; ++i) {
+            if (this.types[i] == type) {
+                return i * this.buckets.length;
+            }
+        }
+
+        throw new InvalidArgumentException("Aggregation was not requested: " + type);
+    }
+
+    private int indexOf(AggregationType type, int bucket) {
+        return this.offsetOf(type) + Objects.checkIndex(bucket, this.buckets.length);
+    }
+
+    /**
+     * @return The values of an aggregation, one per bucket.
+     */
+    public double[] getValues(AggregationType type) {
+        int offset = this.offsetOf(type);
+        return Arrays.copyOfRange(this.values, offset, offset + this.buckets.length);
+    }
+
+    /**
+     * @return The amount of points aggregated, one per bucket.
+     */
+    public long[] getCounts(AggregationType type) {
+        int offset = this.offsetOf(type);
+        return Arrays.copyOfRange(this.counts, offset, offset + this.buckets.length);
+    }
+
+    public double getValue(AggregationType type, int bucket) {
+        return this.values[this.indexOf(type, bucket)];
+    }
+
+    public long getCount(AggregationType type, int bucket) {
+        return this.counts[this.indexOf(type, bucket)];
+    }
+
+    /**
+     * @return The timestamp of the point selected by an aggregation such as
+     *         FIRST, LAST, MIN or MAX.
+     */
+    public Timespec getTimestamp(AggregationType type, int bucket) {
+        int i = this.indexOf(type, bucket);
+        return new Timespec(this.timestamps[2 * i], this.timestamps[2 * i + 1]);
+    }
+}
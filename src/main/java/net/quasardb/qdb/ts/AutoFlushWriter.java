@@ -5,6 +5,10 @@ import java.io.Flushable;
 import java.lang.AutoCloseable;
 import java.nio.channels.SeekableByteChannel;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,25 +20,68 @@ import net.quasardb.qdb.jni.*;
  * An implementation of a Writer that automatically flushes the local cache when
  * a certain threshold has been reached.
  *
+ * Flushes are triggered by whichever of the configured thresholds is reached
+ * first:
+ *
+ * <ul>
+ *   <li>the amount of rows appended;</li>
+ *   <li>the amount of points (values) staged across all tables;</li>
+ *   <li>an estimate of the amount of bytes staged across all tables;</li>
+ *   <li>the age of the oldest staged row. This threshold is enforced by a timer,
+ *       so rows are flushed even when no new rows are appended.</li>
+ * </ul>
+ *
+ * When a target flush duration is set, the row threshold is adjusted after every
+ * flush based on the measured flush latency. Note that with background flushing
+ * enabled, this measures the time spent waiting for the flusher thread rather
+ * than the push itself.
+ *
  * As with Writer, usage of instances of this class is not thread-safe. Use an
  * AutFlushWriter instance per Thread in multi-threaded situations.
  */
 public final class AutoFlushWriter extends Writer {
 
-
     private static final Logger logger = LoggerFactory.getLogger(Writer.class);
 
+    private static final long defaultThreshold = 50000;
+
+    // Bounds for the row threshold when adaptively flushing.
+    private static final long minAdaptiveThreshold = 1000;
+    private static final long maxAdaptiveThreshold = 10000000;
+
+    // How long close() waits for a running timed flush to complete.
+    private static final long timerShutdownMillis = 10000;
+
     long counter;
     long threshold;
 
+    private long pointThreshold;
+    private long byteThreshold;
+    private long maxAgeNanos;
+    private long targetNanos;
+
+    // Value of System.nanoTime() when the oldest row since the last flush was
+    // staged.
+    private long oldestRow;
+
+    // Only used when a maximum age is set: guards the writer state against the
+    // timer thread. Held from startRow() until endRow() or discardRow(), so that
+    // the timer never flushes a partially built row, and while appending batches,
+    // preparing or flushing.
+    private ReentrantLock lock;
+    private ScheduledExecutorService timer;
+    private RuntimeException timerError;
+
     /**
-     * Initialize a new auto-flushing batch writer with a default threshold of 50000 rows.
+     * Initialize a new auto-flushing batch writer. Uses the automatic flush
+     * thresholds set in the options, or a default threshold of 50000 rows if
+     * none are set.
      *
      * @param session Active connection with the QdbCluster
      * @param options Batch writer options
      */
     protected AutoFlushWriter(Session session, Writer.Options options) {
-        this(session, 50000, options);
+        this(session, defaultRowThreshold(options), options);
     }
 
     /**
@@ -50,19 +97,278 @@ public final class AutoFlushWriter extends Writer {
         logger.info("Initializing AutoFlushWriter with threshold {}, pushMode {}", threshold, options);
 
         this.counter = 0;
-        this.threshold = threshold;
+        this.threshold = (threshold > 0 ? threshold : Long.MAX_VALUE);
+        this.pointThreshold = (options.getAutoFlushPoints() > 0 ? options.getAutoFlushPoints() : Long.MAX_VALUE);
+        this.byteThreshold = (options.getAutoFlushBytes() > 0 ? options.getAutoFlushBytes() : Long.MAX_VALUE);
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(options.getAutoFlushMaxAge());
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(options.getAutoFlushTargetDuration());
+        this.oldestRow = 0;
+
+        if (this.maxAgeNanos > 0) {
+            this.lock = new ReentrantLock();
+            this.timer = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                    Thread t = new Thread(r, "qdb-writer-autoflush");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+            // Check a few times per max age period, so that rows are never
+            // staged much longer than the max age.
+            long period = Math.max(this.maxAgeNanos / 4, TimeUnit.MILLISECONDS.toNanos(1));
+            this.timer.scheduleAtFixedRate(this::flushIfExpired, period, period, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static long defaultRowThreshold(Writer.Options options) {
+        if (options.getAutoFlushRows() > 0) {
+            return options.getAutoFlushRows();
+        }
+
+        // Only fall back to the default row threshold if no other trigger is
+        // set, or when it is needed as the starting point of adaptive flushing.
+        if (options.getAutoFlushPoints() > 0 ||
+            options.getAutoFlushBytes() > 0 ||
+            options.getAutoFlushMaxAge() > 0) {
+            return (options.getAutoFlushTargetDuration() > 0 ? defaultThreshold : 0);
+        }
+
+        return defaultThreshold;
+    }
+
+    /**
+     * Returns the current row threshold.
+     */
+    public long getThreshold() {
+        return this.threshold;
+    }
+
+    @Override
+    public void startRow(Table table, long sec, long nsec) {
+        if (this.lock == null) {
+            super.startRow(table, sec, nsec);
+            return;
+        }
+
+        this.lock.lock();
+        try {
+            this.checkTimerError();
+            super.startRow(table, sec, nsec);
+        } catch (RuntimeException e) {
+            this.lock.unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public void endRow() throws IOException {
+        try {
+            super.endRow();
+
+            this.rowsAppended(1);
+        } finally {
+            this.releaseRowLock();
+        }
+    }
+
+    @Override
+    public void discardRow() {
+        try {
+            super.discardRow();
+        } finally {
+            this.releaseRowLock();
+        }
     }
 
     @Override
     public void append(Table table, Timespec timestamp, Value[] values) throws IOException {
-        super.append(table, timestamp, values);
+        try {
+            super.append(table, timestamp, values);
+        } catch (IOException | RuntimeException e) {
+            // The row is discarded or completed by now; make sure it does not keep
+            // the timer locked out.
+            this.releaseRowLock();
+            throw e;
+        }
+    }
+
+    private void releaseRowLock() {
+        if (this.lock != null && this.lock.isHeldByCurrentThread()) {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void appendColumns(Table table, ColumnarBatch batch) throws IOException {
+        if (this.lock != null) {
+            this.lock.lock();
+        }
+
+        try {
+            this.checkTimerError();
+            super.appendColumns(table, batch);
+
+            if (batch.rowCount() > 0) {
+                this.rowsAppended(batch.rowCount());
+            }
+        } finally {
+            if (this.lock != null) {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Accounts for newly staged rows, and flushes if any threshold is reached.
+     */
+    private void rowsAppended(long n) throws IOException {
+        if (this.counter == 0) {
+            this.oldestRow = System.nanoTime();
+        }
+        this.counter += n;
+
+        if (this.counter >= this.threshold ||
+            this.pointsSinceFlush >= this.pointThreshold ||
+            this.bytesSinceFlush >= this.byteThreshold) {
+            this.flush();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.lock != null) {
+            this.lock.lock();
+        }
+
+        try {
+            this.checkTimerError();
+
+            long rows = this.counter;
+            long start = System.nanoTime();
 
-        if (++counter >= threshold) {
             try {
-                this.flush();
+                super.flush();
             } finally {
                 this.counter = 0;
+                this.oldestRow = 0;
+            }
+
+            if (this.targetNanos > 0 && rows > 0) {
+                this.adaptThreshold(rows, System.nanoTime() - start);
+            }
+        } finally {
+            if (this.lock != null) {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Prepares and flushes as a single step with respect to the timer, so that a
+     * timed flush never pushes rows using the truncate ranges meant for this
+     * flush.
+     */
+    @Override
+    public void flush(TimeRange[] ranges) throws IOException {
+        if (this.lock == null) {
+            super.flush(ranges);
+            return;
+        }
+
+        this.lock.lock();
+        try {
+            super.flush(ranges);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void prepareFlush(TimeRange[] ranges) {
+        if (this.lock == null) {
+            super.prepareFlush(ranges);
+            return;
+        }
+
+        this.lock.lock();
+        try {
+            super.prepareFlush(ranges);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.timer != null) {
+            // Let a timed flush that is already running complete before we tear
+            // down the writer state.
+            this.timer.shutdown();
+            try {
+                if (this.timer.awaitTermination(timerShutdownMillis, TimeUnit.MILLISECONDS) == false) {
+                    logger.warn("Timed flush did not complete within {} ms, closing anyway", timerShutdownMillis);
+                    this.timer.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            this.timer = null;
+        }
+
+        super.close();
+    }
+
+    /**
+     * Moves the row threshold towards the amount of rows that would have made the
+     * last flush take exactly the target duration. Changes are smoothed so that
+     * a single outlier does not cause the threshold to swing wildly.
+     */
+    private void adaptThreshold(long rows, long elapsedNanos) {
+        double ideal = (double)rows * this.targetNanos / Math.max(elapsedNanos, 1);
+        long next = (long)((this.threshold + ideal) / 2);
+
+        next = Math.max(minAdaptiveThreshold, Math.min(maxAdaptiveThreshold, next));
+
+        logger.debug("Flushed {} rows in {} ns, adjusting row threshold from {} to {}", rows, elapsedNanos, this.threshold, next);
+        this.threshold = next;
+    }
+
+    /**
+     * Invoked by the timer: flushes when the oldest staged row exceeds the
+     * maximum age.
+     */
+    private void flushIfExpired() {
+        // A row is being built, try again on the next tick.
+        if (this.lock.tryLock() == false) {
+            return;
+        }
+
+        try {
+            if (this.oldestRow == 0 ||
+                (System.nanoTime() - this.oldestRow) < this.maxAgeNanos) {
+                return;
+            }
+
+            logger.debug("Oldest staged row exceeds max age, flushing");
+            this.flush();
+        } catch (IOException e) {
+            logger.error("Timed flush failed", e);
+            this.timerError = new RuntimeException(e);
+        } catch (RuntimeException e) {
+            logger.error("Timed flush failed", e);
+            this.timerError = e;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Rethrows the error of a previously failed timed flush, if any.
+     */
+    private void checkTimerError() {
+        if (this.timerError != null) {
+            RuntimeException e = this.timerError;
+            this.timerError = null;
+            throw e;
         }
     }
 }
@@ -0,0 +1,188 @@
+package net.quasardb.qdb.ts;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import net.quasardb.qdb.exception.IncompatibleTypeException;
+import net.quasardb.qdb.jni.*;
+
+/**
+ * A batch of rows read from a table in columnar layout, as produced by a
+ * {@link ColumnarReader}. Every batch owns its arrays: they remain valid after
+ * the reader moved on to the next batch.
+ *
+ * Depending on the type of the column, values are exposed as:
+ *
+ * <ul>
+ *   <li>DOUBLE: <code>double[]</code>, see {@link #doubles};</li>
+ *   <li>INT64: <code>long[]</code>, see {@link #int64s};</li>
+ *   <li>TIMESTAMP: <code>long[]</code> with nanoseconds since epoch, see {@link #timestamps(int)};</li>
+ *   <li>STRING / SYMBOL: UTF-8 encoded {@link ColumnarBatch.StringSlab}, see {@link #strings};</li>
+ *   <li>BLOB: {@link ColumnarBatch.StringSlab} of raw bytes, see {@link #blobs}.</li>
+ * </ul>
+ *
+ * Null values are denoted by the column's null bitmap; the value stored for a
+ * null row is unspecified.
+ */
+public final class ColumnBatch {
+
+    final Column[] columns;
+    final int rowCount;
+    final long[] timestamps;
+    final Object[] values;
+    final BitSet[] nulls;
+
+    private ColumnBatch(Column[] columns, int rowCount, long[] timestamps, Object[] values, BitSet[] nulls) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+        this.timestamps = timestamps;
+        this.values = values;
+        this.nulls = nulls;
+    }
+
+    /**
+     * Copies the rows of a block into a new batch.
+     */
+    static ColumnBatch of(RowBlock block) {
+        int n = block.size();
+
+        long[] timestamps = new long[n];
+        for (int i = 0; i < n; ++i) {
+            timestamps[i] = block.sec[i] * 1000000000L + block.nsec[i];
+        }
+
+        Object[] values = new Object[block.columns.length];
+        BitSet[] nulls = new BitSet[block.columns.length];
+
+        for (int c = 0; c < block.columns.length; ++c) {
+            BitSet bits = new BitSet(n);
+
+            switch (block.types[c]) {
+            case DOUBLE: {
+                double[] xs = Arrays.copyOf((double[])block.values[c], n);
+                for (int i = 0; i < n; ++i) {
+                    if (Double.isNaN(xs[i])) {
+                        bits.set(i);
+                    }
+                }
+                values[c] = xs;
+                break;
+            }
+
+            case INT64: {
+                long[] xs = Arrays.copyOf((long[])block.values[c], n);
+                for (int i = 0; i < n; ++i) {
+                    if (xs[i] == Constants.nullInt64) {
+                        bits.set(i);
+                    }
+                }
+                values[c] = xs;
+                break;
+            }
+
+            case TIMESTAMP: {
+                long[] xs = new long[n];
+                for (int i = 0; i < n; ++i) {
+                    if (block.isNull(i, c)) {
+                        xs[i] = Constants.nullInt64;
+                        bits.set(i);
+                    } else {
+                        xs[i] = block.getTimestampSec(i, c) * 1000000000L + block.getTimestampNsec(i, c);
+                    }
+                }
+                values[c] = xs;
+                break;
+            }
+
+            default: {
+                // Native code allocates a new slab for every block, which we can
+                // hand out as is; only the null markers are moved into the bitmap.
+                int[] from = (int[])block.values[c];
+                int[] offsets = new int[n + 1];
+                for (int i = 0; i < n; ++i) {
+                    int x = from[i + 1];
+                    if (x < 0) {
+                        x = ~x;
+                        bits.set(i);
+                    }
+                    offsets[i + 1] = x;
+                }
+
+                byte[] data = block.slab(c);
+                values[c] = new ColumnarBatch.StringSlab(data != null ? data : new byte[0], offsets);
+                break;
+            }
+            }
+
+            nulls[c] = bits;
+        }
+
+        return new ColumnBatch(block.columns, n, timestamps, values, nulls);
+    }
+
+    public int rowCount() {
+        return this.rowCount;
+    }
+
+    public int columnCount() {
+        return this.columns.length;
+    }
+
+    public Column[] getColumns() {
+        return this.columns;
+    }
+
+    /**
+     * Returns the timestamps of the rows, nanoseconds since epoch.
+     */
+    public long[] timestamps() {
+        return this.timestamps;
+    }
+
+    private Object valuesOf(int column, Column.Type... types) {
+        Column.Type type = this.columns[column].getType();
+
+        for (Column.Type t : types) {
+            if (t == type) {
+                return this.values[column];
+            }
+        }
+
+        throw new IncompatibleTypeException("Column " + column + " is not of type " + types[0].toString() + ": " + type.toString());
+    }
+
+    public double[] doubles(int column) {
+        return (double[])this.valuesOf(column, Column.Type.DOUBLE);
+    }
+
+    public long[] int64s(int column) {
+        return (long[])this.valuesOf(column, Column.Type.INT64);
+    }
+
+    /**
+     * Returns the values of a timestamp column, nanoseconds since epoch.
+     */
+    public long[] timestamps(int column) {
+        return (long[])this.valuesOf(column, Column.Type.TIMESTAMP);
+    }
+
+    public ColumnarBatch.StringSlab strings(int column) {
+        return (ColumnarBatch.StringSlab)this.valuesOf(column, Column.Type.STRING, Column.Type.SYMBOL);
+    }
+
+    public ColumnarBatch.StringSlab blobs(int column) {
+        return (ColumnarBatch.StringSlab)this.valuesOf(column, Column.Type.BLOB);
+    }
+
+    /**
+     * Returns the null bitmap of a column: a set bit denotes a null value for the
+     * corresponding row.
+     */
+    public BitSet nulls(int column) {
+        return this.nulls[column];
+    }
+
+    public boolean isNull(int row, int column) {
+        return this.nulls[column].get(row);
+    }
+}
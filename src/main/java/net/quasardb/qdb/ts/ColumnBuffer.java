@@ -0,0 +1,871 @@
+package net.quasardb.qdb.ts;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import net.quasardb.qdb.exception.InvalidArgumentException;
+import net.quasardb.qdb.jni.*;
+
+/**
+ * Growable, primitive-typed staging buffer for a single column of a
+ * {@link Writer}. Null values are encoded using the same sentinel values the
+ * QuasarDB C API uses (see {@link Constants}), which means the underlying
+ * arrays can be handed to the native exp_batch functions as-is.
+ *
+ * Rows are added by first appending a null value, which can then be overwritten
+ * using one of the typed setters. Buffers are reused across flushes: {@link #clear}
+ * only resets the size, so that in steady state appending to a buffer does not
+ * allocate.
+ */
+abstract class ColumnBuffer {
+
+    protected int size;
+
+    protected ColumnBuffer() {
+        this.size = 0;
+    }
+
+    /**
+     * Creates a new buffer appropriate for the column's type.
+     *
+     * @param column   Column definition this buffer stages data for.
+     * @param capacity Initial amount of rows to reserve room for.
+     */
+    static ColumnBuffer of(Column column, int capacity) {
+        switch (column.getType()) {
+        case DOUBLE:
+            return new Doubles(capacity);
+        case INT64:
+            return new Int64s(capacity);
+        case TIMESTAMP:
+            return new Timestamps(capacity);
+        case BLOB:
+            return new Blobs(capacity);
+        case SYMBOL:
+            //! FALLTHROUGH
+        case STRING:
+            return new Strings(capacity);
+        default:
+            break;
+        }
+
+        throw new RuntimeException("Unrecognized column type: " + column.toString());
+    }
+
+    /**
+     * Returns the amount of rows staged in this buffer.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the amount of rows this buffer can hold without growing.
+     */
+    abstract int capacity();
+
+    /**
+     * Returns an estimate of the amount of memory held by the staged rows, in bytes.
+     */
+    abstract long byteSize();
+
+    /**
+     * Grows the buffer so that it can hold at least `n` rows.
+     */
+    protected abstract void grow(int n);
+
+    /**
+     * Shrinks the buffer to hold exactly `n` rows. Only valid while the buffer is empty.
+     */
+    protected abstract void shrink(int n);
+
+    /**
+     * Appends a null value.
+     */
+    abstract void appendNull();
+
+    /**
+     * Appends all rows staged in another buffer of the same type.
+     */
+    abstract void appendAll(ColumnBuffer other);
+
+    /**
+     * Returns true if `values` is an array this buffer can bulk-append from, see
+     * {@link ColumnarBatch}. Null denotes a column without values, which is
+     * always accepted.
+     */
+    abstract boolean accepts(Object values);
+
+    /**
+     * Appends the first `n` values of an array accepted by {@link #accepts}. Rows
+     * for which the bit in `nulls` is set are appended as null.
+     */
+    abstract void appendColumn(Object values, int n, BitSet nulls);
+
+    /**
+     * Appends `n` null values.
+     */
+    void appendNulls(int n) {
+        ensureCapacity(this.size + n);
+        for (int i = 0; i < n; ++i) {
+            appendNull();
+        }
+    }
+
+    /**
+     * Discards all rows starting at offset `n`.
+     */
+    void truncate(int n) {
+        assert(n <= this.size);
+        this.size = n;
+    }
+
+    /**
+     * Overwrites the value of an already appended row. The value must either be
+     * null or match the buffer's type.
+     */
+    abstract void set(int row, Value value);
+
+    /**
+     * Transfers the first {@link #size} rows of this buffer into a prepared
+     * native batch structure.
+     */
+    abstract void toNative(long prepped, int tableNum, int columnNum);
+
+    /**
+     * Discards all staged rows while retaining the allocated capacity. When the
+     * amount of rows staged was a lot smaller than the capacity, the buffer is
+     * shrunk to the amount of rows staged in this round.
+     */
+    void clear() {
+        int lastSize = this.size;
+        this.size = 0;
+
+        if (lastSize > 0 && capacity() > (lastSize * 4)) {
+            shrink(lastSize);
+        }
+    }
+
+    protected final void ensureCapacity(int n) {
+        int cap = capacity();
+        if (n > cap) {
+            grow(Math.max(n, cap * 2));
+        }
+    }
+
+    static final class Doubles extends ColumnBuffer {
+        double[] values;
+
+        Doubles(int capacity) {
+            this.values = new double[capacity];
+        }
+
+        int capacity() {
+            return this.values.length;
+        }
+
+        long byteSize() {
+            return this.size * 8L;
+        }
+
+        protected void grow(int n) {
+            this.values = Arrays.copyOf(this.values, n);
+        }
+
+        protected void shrink(int n) {
+            assert(this.size == 0);
+            this.values = new double[n];
+        }
+
+        void appendNull() {
+            append(Constants.nullDouble);
+        }
+
+        void append(double value) {
+            ensureCapacity(this.size + 1);
+            this.values[this.size++] = value;
+        }
+
+        void set(int row, double value) {
+            assert(row < this.size);
+            this.values[row] = value;
+        }
+
+        void appendAll(ColumnBuffer other) {
+            Doubles xs = (Doubles)other;
+            ensureCapacity(this.size + xs.size);
+            System.arraycopy(xs.values, 0, this.values, this.size, xs.size);
+            this.size += xs.size;
+        }
+
+        boolean accepts(Object values) {
+            return values == null || values instanceof double[];
+        }
+
+        void appendColumn(Object values, int n, BitSet nulls) {
+            if (values == null) {
+                appendNulls(n);
+                return;
+            }
+
+            ensureCapacity(this.size + n);
+            System.arraycopy((double[])values, 0, this.values, this.size, n);
+
+            if (nulls != null) {
+                for (int i = nulls.nextSetBit(0); i >= 0 && i < n; i = nulls.nextSetBit(i + 1)) {
+                    this.values[this.size + i] = Constants.nullDouble;
+                }
+            }
+
+            this.size += n;
+        }
+
+        void set(int row, Value value) {
+            switch (value.getType()) {
+            case DOUBLE:
+                set(row, value.doubleValue);
+                return;
+            case UNINITIALIZED:
+                set(row, Constants.nullDouble);
+                return;
+            }
+
+            throw new RuntimeException("Not a double value: " + value.toString());
+        }
+
+        void toNative(long prepped, int tableNum, int columnNum) {
+            qdb.ts_exp_batch_set_column_from_double(prepped,
+                                                    tableNum,
+                                                    columnNum,
+                                                    this.values);
+        }
+    }
+
+    static final class Int64s extends ColumnBuffer {
+        long[] values;
+
+        Int64s(int capacity) {
+            this.values = new long[capacity];
+        }
+
+        int capacity() {
+            return this.values.length;
+        }
+
+        long byteSize() {
+            return this.size * 8L;
+        }
+
+        protected void grow(int n) {
+            this.values = Arrays.copyOf(this.values, n);
+        }
+
+        protected void shrink(int n) {
+            assert(this.size == 0);
+            this.values = new long[n];
+        }
+
+        void appendNull() {
+            append(Constants.nullInt64);
+        }
+
+        void append(long value) {
+            ensureCapacity(this.size + 1);
+            this.values[this.size++] = value;
+        }
+
+        void set(int row, long value) {
+            assert(row < this.size);
+            this.values[row] = value;
+        }
+
+        void appendAll(ColumnBuffer other) {
+            Int64s xs = (Int64s)other;
+            ensureCapacity(this.size + xs.size);
+            System.arraycopy(xs.values, 0, this.values, this.size, xs.size);
+            this.size += xs.size;
+        }
+
+        boolean accepts(Object values) {
+            return values == null || values instanceof long[];
+        }
+
+        void appendColumn(Object values, int n, BitSet nulls) {
+            if (values == null) {
+                appendNulls(n);
+                return;
+            }
+
+            ensureCapacity(this.size + n);
+            System.arraycopy((long[])values, 0, this.values, this.size, n);
+
+            if (nulls != null) {
+                for (int i = nulls.nextSetBit(0); i >= 0 && i < n; i = nulls.nextSetBit(i + 1)) {
+                    this.values[this.size + i] = Constants.nullInt64;
+                }
+            }
+
+            this.size += n;
+        }
+
+        void set(int row, Value value) {
+            switch (value.getType()) {
+            case INT64:
+                set(row, value.int64Value);
+                return;
+            case UNINITIALIZED:
+                set(row, Constants.nullInt64);
+                return;
+            }
+
+            throw new RuntimeException("Not an int64 value: " + value.toString());
+        }
+
+        void toNative(long prepped, int tableNum, int columnNum) {
+            qdb.ts_exp_batch_set_column_from_int64(prepped,
+                                                   tableNum,
+                                                   columnNum,
+                                                   this.values);
+        }
+    }
+
+    static final class Timestamps extends ColumnBuffer {
+        long[] sec;
+        long[] nsec;
+
+        Timestamps(int capacity) {
+            this.sec = new long[capacity];
+            this.nsec = new long[capacity];
+        }
+
+        int capacity() {
+            return this.sec.length;
+        }
+
+        long byteSize() {
+            return this.size * 16L;
+        }
+
+        protected void grow(int n) {
+            this.sec = Arrays.copyOf(this.sec, n);
+            this.nsec = Arrays.copyOf(this.nsec, n);
+        }
+
+        protected void shrink(int n) {
+            assert(this.size == 0);
+            this.sec = new long[n];
+            this.nsec = new long[n];
+        }
+
+        void appendNull() {
+            append(Constants.nullTime, Constants.nullTime);
+        }
+
+        void append(long sec, long nsec) {
+            ensureCapacity(this.size + 1);
+            this.sec[this.size] = sec;
+            this.nsec[this.size] = nsec;
+            this.size++;
+        }
+
+        void set(int row, long sec, long nsec) {
+            assert(row < this.size);
+            this.sec[row] = sec;
+            this.nsec[row] = nsec;
+        }
+
+        void appendAll(ColumnBuffer other) {
+            Timestamps xs = (Timestamps)other;
+            ensureCapacity(this.size + xs.size);
+            System.arraycopy(xs.sec, 0, this.sec, this.size, xs.size);
+            System.arraycopy(xs.nsec, 0, this.nsec, this.size, xs.size);
+            this.size += xs.size;
+        }
+
+        boolean accepts(Object values) {
+            return values == null || values instanceof long[] || values instanceof Timespecs;
+        }
+
+        /**
+         * Appends the first `n` timestamps, provided as nanoseconds since epoch.
+         */
+        void appendEpochNanos(long[] xs, int n) {
+            ensureCapacity(this.size + n);
+
+            for (int i = 0; i < n; ++i) {
+                this.sec[this.size + i] = Math.floorDiv(xs[i], 1000000000L);
+                this.nsec[this.size + i] = Math.floorMod(xs[i], 1000000000L);
+            }
+
+            this.size += n;
+        }
+
+        void appendColumn(Object values, int n, BitSet nulls) {
+            if (values == null) {
+                appendNulls(n);
+                return;
+            }
+
+            int offset = this.size;
+
+            if (values instanceof Timespecs) {
+                Timespecs xs = (Timespecs)values;
+                ensureCapacity(this.size + n);
+                System.arraycopy(xs.sec, 0, this.sec, this.size, n);
+                System.arraycopy(xs.nsec, 0, this.nsec, this.size, n);
+                this.size += n;
+            } else {
+                appendEpochNanos((long[])values, n);
+            }
+
+            if (nulls != null) {
+                for (int i = nulls.nextSetBit(0); i >= 0 && i < n; i = nulls.nextSetBit(i + 1)) {
+                    this.sec[offset + i] = Constants.nullTime;
+                    this.nsec[offset + i] = Constants.nullTime;
+                }
+            }
+        }
+
+        void set(int row, Value value) {
+            switch (value.getType()) {
+            case TIMESTAMP:
+                set(row, value.timestampValue.sec, value.timestampValue.nsec);
+                return;
+            case UNINITIALIZED:
+                set(row, Constants.nullTime, Constants.nullTime);
+                return;
+            }
+
+            throw new RuntimeException("Not a timestamp value: " + value.toString());
+        }
+
+        void toNative(long prepped, int tableNum, int columnNum) {
+            qdb.ts_exp_batch_set_column_from_timestamp(prepped,
+                                                       tableNum,
+                                                       columnNum,
+                                                       new Timespecs(this.sec, this.nsec));
+        }
+    }
+
+    static final class Blobs extends ColumnBuffer {
+        ByteBuffer[] values;
+
+        // Sum of the capacity of all staged buffers.
+        long payloadSize = 0;
+
+        Blobs(int capacity) {
+            this.values = new ByteBuffer[capacity];
+        }
+
+        int capacity() {
+            return this.values.length;
+        }
+
+        long byteSize() {
+            return this.size * 8L + this.payloadSize;
+        }
+
+        protected void grow(int n) {
+            this.values = Arrays.copyOf(this.values, n);
+        }
+
+        protected void shrink(int n) {
+            assert(this.size == 0);
+            this.values = new ByteBuffer[n];
+        }
+
+        void clear() {
+            // Drop our references so the GC can reclaim the (direct) buffers.
+            Arrays.fill(this.values, 0, this.size, Constants.nullBlob);
+            this.payloadSize = 0;
+            super.clear();
+        }
+
+        void appendNull() {
+            append(Constants.nullBlob);
+        }
+
+        void append(ByteBuffer value) {
+            ensureCapacity(this.size + 1);
+            this.values[this.size++] = value;
+            this.payloadSize += (value == null ? 0 : value.capacity());
+        }
+
+        void set(int row, ByteBuffer value) {
+            assert(row < this.size);
+            ByteBuffer old = this.values[row];
+            this.payloadSize += (value == null ? 0 : value.capacity()) - (old == null ? 0 : old.capacity());
+            this.values[row] = value;
+        }
+
+        void truncate(int n) {
+            for (int i = n; i < this.size; ++i) {
+                set(i, Constants.nullBlob);
+            }
+
+            super.truncate(n);
+        }
+
+        void appendAll(ColumnBuffer other) {
+            Blobs xs = (Blobs)other;
+            ensureCapacity(this.size + xs.size);
+            System.arraycopy(xs.values, 0, this.values, this.size, xs.size);
+            this.size += xs.size;
+            this.payloadSize += xs.payloadSize;
+        }
+
+        boolean accepts(Object values) {
+            return values == null || values instanceof ByteBuffer[];
+        }
+
+        /**
+         * Rejects heap buffers up front: native code can only address direct
+         * buffers, and would otherwise only fail once the batch is flushed.
+         */
+        static ByteBuffer requireDirect(ByteBuffer value) {
+            if (value != null && value.isDirect() == false) {
+                throw new InvalidArgumentException("Blob value is not a direct ByteBuffer, use Value.createSafeBlob to copy it");
+            }
+
+            return value;
+        }
+
+        void appendColumn(Object values, int n, BitSet nulls) {
+            if (values == null) {
+                appendNulls(n);
+                return;
+            }
+
+            ByteBuffer[] xs = (ByteBuffer[])values;
+
+            // Validate before appending anything, so that a failure leaves this
+            // buffer untouched.
+            for (int i = 0; i < n; ++i) {
+                if (xs[i] != null && xs[i].isDirect() == false) {
+                    throw new InvalidArgumentException("Blob value at row " + i + " is not a direct ByteBuffer");
+                }
+            }
+
+            ensureCapacity(this.size + n);
+            for (int i = 0; i < n; ++i) {
+                append((nulls != null && nulls.get(i)) ? Constants.nullBlob : xs[i]);
+            }
+        }
+
+        void set(int row, Value value) {
+            switch (value.getType()) {
+            case BLOB:
+                set(row, requireDirect(value.blobValue()));
+                return;
+            case UNINITIALIZED:
+                set(row, Constants.nullBlob);
+                return;
+            }
+
+            throw new RuntimeException("Not a blob value: " + value.toString());
+        }
+
+        void toNative(long prepped, int tableNum, int columnNum) {
+            qdb.ts_exp_batch_set_column_from_blob(prepped,
+                                                  tableNum,
+                                                  columnNum,
+                                                  this.values);
+        }
+    }
+
+    /**
+     * String values are staged as UTF-8 into a single growable slab, rather than
+     * into a buffer per value, so that they can be transferred to native code
+     * using a single call.
+     *
+     * `offsets[i + 1]` holds the offset in the slab where row `i` ends; a row
+     * starts where the previous row ends. Null values are encoded as the bitwise
+     * complement of the end offset, which is always negative.
+     */
+    static final class Strings extends ColumnBuffer {
+        private static final int initialSlabCapacity = 256;
+
+        byte[] slab;
+        int[] offsets;
+
+        // Amount of bytes of the slab in use.
+        int slabSize = 0;
+
+        Strings(int capacity) {
+            this.slab = new byte[initialSlabCapacity];
+            this.offsets = new int[capacity + 1];
+        }
+
+        int capacity() {
+            return this.offsets.length - 1;
+        }
+
+        long byteSize() {
+            return this.size * 4L + this.slabSize;
+        }
+
+        protected void grow(int n) {
+            this.offsets = Arrays.copyOf(this.offsets, n + 1);
+        }
+
+        protected void shrink(int n) {
+            assert(this.size == 0);
+            this.offsets = new int[n + 1];
+        }
+
+        /**
+         * Returns the offset in the slab where row `row` ends.
+         */
+        private int end(int row) {
+            int x = this.offsets[row + 1];
+            return (x < 0 ? ~x : x);
+        }
+
+        /**
+         * Returns the offset in the slab where row `row` starts.
+         */
+        private int start(int row) {
+            return (row == 0 ? 0 : end(row - 1));
+        }
+
+        boolean isNull(int row) {
+            assert(row < this.size);
+            return this.offsets[row + 1] < 0;
+        }
+
+        private void ensureSlabCapacity(long n) {
+            if (n <= this.slab.length) {
+                return;
+            }
+
+            if (n > Integer.MAX_VALUE - 8) {
+                throw new OutOfMemoryError("String column exceeds maximum staging size: " + n + " bytes");
+            }
+
+            long next = Math.max(n, this.slab.length * 2L);
+            this.slab = Arrays.copyOf(this.slab, (int)Math.min(next, Integer.MAX_VALUE - 8));
+        }
+
+        void clear() {
+            int lastSlabSize = this.slabSize;
+            this.slabSize = 0;
+
+            if (lastSlabSize > 0 && this.slab.length > (lastSlabSize * 4L)) {
+                this.slab = new byte[Math.max(lastSlabSize, initialSlabCapacity)];
+            }
+
+            super.clear();
+        }
+
+        void appendNull() {
+            ensureCapacity(this.size + 1);
+            this.offsets[++this.size] = ~this.slabSize;
+        }
+
+        /**
+         * Discards the value of the last row, so that it can be overwritten. Values
+         * are appended to the slab, so only the last row can be overwritten.
+         */
+        private void resetLast(int row) {
+            if (row != this.size - 1) {
+                throw new IllegalStateException("Only the last staged string value can be overwritten");
+            }
+
+            this.slabSize = start(row);
+        }
+
+        void set(int row, byte[] value, int offset, int length) {
+            resetLast(row);
+
+            if (value == null) {
+                this.offsets[row + 1] = ~this.slabSize;
+                return;
+            }
+
+            ensureSlabCapacity((long)this.slabSize + length);
+            System.arraycopy(value, offset, this.slab, this.slabSize, length);
+            this.slabSize += length;
+            this.offsets[row + 1] = this.slabSize;
+        }
+
+        void set(int row, ByteBuffer value) {
+            resetLast(row);
+
+            if (value == null) {
+                this.offsets[row + 1] = ~this.slabSize;
+                return;
+            }
+
+            ByteBuffer bb = value.duplicate();
+            bb.rewind();
+
+            int length = bb.remaining();
+            ensureSlabCapacity((long)this.slabSize + length);
+            bb.get(this.slab, this.slabSize, length);
+            this.slabSize += length;
+            this.offsets[row + 1] = this.slabSize;
+        }
+
+        /**
+         * Encodes the characters as UTF-8 directly into the slab. Unpaired
+         * surrogates are replaced by '?', as {@link String#getBytes} does.
+         */
+        void set(int row, CharSequence value) {
+            resetLast(row);
+
+            if (value == null) {
+                this.offsets[row + 1] = ~this.slabSize;
+                return;
+            }
+
+            int n = value.length();
+
+            // A char never encodes into more than 3 bytes: only surrogate pairs
+            // encode into 4 bytes, and those take up 2 chars.
+            ensureSlabCapacity((long)this.slabSize + n * 3L);
+
+            byte[] out = this.slab;
+            int pos = this.slabSize;
+
+            for (int i = 0; i < n; ++i) {
+                char c = value.charAt(i);
+
+                if (c < 0x80) {
+                    out[pos++] = (byte)c;
+                } else if (c < 0x800) {
+                    out[pos++] = (byte)(0xC0 | (c >> 6));
+                    out[pos++] = (byte)(0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    char d = (i + 1 < n ? value.charAt(i + 1) : 0);
+
+                    if (Character.isHighSurrogate(c) && Character.isLowSurrogate(d)) {
+                        int cp = Character.toCodePoint(c, d);
+                        out[pos++] = (byte)(0xF0 | (cp >> 18));
+                        out[pos++] = (byte)(0x80 | ((cp >> 12) & 0x3F));
+                        out[pos++] = (byte)(0x80 | ((cp >> 6) & 0x3F));
+                        out[pos++] = (byte)(0x80 | (cp & 0x3F));
+                        ++i;
+                    } else {
+                        out[pos++] = (byte)'?';
+                    }
+                } else {
+                    out[pos++] = (byte)(0xE0 | (c >> 12));
+                    out[pos++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                    out[pos++] = (byte)(0x80 | (c & 0x3F));
+                }
+            }
+
+            this.slabSize = pos;
+            this.offsets[row + 1] = pos;
+        }
+
+        void truncate(int n) {
+            assert(n <= this.size);
+            this.slabSize = start(n);
+            super.truncate(n);
+        }
+
+        void appendAll(ColumnBuffer other) {
+            Strings xs = (Strings)other;
+            ensureCapacity(this.size + xs.size);
+            ensureSlabCapacity((long)this.slabSize + xs.slabSize);
+
+            System.arraycopy(xs.slab, 0, this.slab, this.slabSize, xs.slabSize);
+
+            int base = this.slabSize;
+            for (int i = 1; i <= xs.size; ++i) {
+                int x = xs.offsets[i];
+                this.offsets[this.size + i] = (x < 0 ? ~(~x + base) : x + base);
+            }
+
+            this.size += xs.size;
+            this.slabSize += xs.slabSize;
+        }
+
+        boolean accepts(Object values) {
+            return values == null || values instanceof CharSequence[] || values instanceof ColumnarBatch.StringSlab;
+        }
+
+        void appendColumn(Object values, int n, BitSet nulls) {
+            if (values == null) {
+                appendNulls(n);
+                return;
+            }
+
+            if (values instanceof ColumnarBatch.StringSlab) {
+                appendSlab((ColumnarBatch.StringSlab)values, n, nulls);
+                return;
+            }
+
+            CharSequence[] xs = (CharSequence[])values;
+            ensureCapacity(this.size + n);
+
+            for (int i = 0; i < n; ++i) {
+                appendNull();
+
+                if (xs[i] != null && (nulls == null || nulls.get(i) == false)) {
+                    set(this.size - 1, xs[i]);
+                }
+            }
+        }
+
+        /**
+         * Appends already encoded strings using a single copy of the slab.
+         */
+        private void appendSlab(ColumnarBatch.StringSlab xs, int n, BitSet nulls) {
+            int from = xs.offsets[0];
+            int to = xs.offsets[n];
+
+            if (from < 0 || to > xs.data.length) {
+                throw new InvalidArgumentException("Invalid string slab offsets: [" + from + ", " + to + "), slab size " + xs.data.length);
+            }
+
+            for (int i = 0; i < n; ++i) {
+                if (xs.offsets[i + 1] < xs.offsets[i]) {
+                    throw new InvalidArgumentException("String slab offsets must be non-decreasing, row " + i + " ends before it starts");
+                }
+            }
+
+            ensureCapacity(this.size + n);
+            ensureSlabCapacity((long)this.slabSize + (to - from));
+            System.arraycopy(xs.data, from, this.slab, this.slabSize, to - from);
+
+            int base = this.slabSize - from;
+            for (int i = 0; i < n; ++i) {
+                int end = xs.offsets[i + 1] + base;
+                this.offsets[this.size + i + 1] = ((nulls != null && nulls.get(i)) ? ~end : end);
+            }
+
+            this.size += n;
+            this.slabSize += (to - from);
+        }
+
+        void set(int row, Value value) {
+            switch (value.getType()) {
+            case STRING:
+                // Values that already carry an UTF-8 representation don't need to
+                // be encoded again.
+                if (value.blobValue != null) {
+                    set(row, value.blobValue);
+                } else {
+                    set(row, value.stringValue);
+                }
+                return;
+            case UNINITIALIZED:
+                set(row, (CharSequence)null);
+                return;
+            }
+
+            throw new RuntimeException("Not a string value: " + value.toString());
+        }
+
+        void toNative(long prepped, int tableNum, int columnNum) {
+            qdb.ts_exp_batch_set_column_from_string(prepped,
+                                                    tableNum,
+                                                    columnNum,
+                                                    this.slab,
+                                                    this.offsets);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package net.quasardb.qdb.ts;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+import net.quasardb.qdb.exception.InvalidArgumentException;
+
+/**
+ * Rows for a single table in columnar layout, for bulk insertion using
+ * {@link Writer#appendColumns(Table, ColumnarBatch)}. The batch only refers to
+ * the arrays it is given; they are copied into the writer when appended, after
+ * which they can be reused.
+ *
+ * Depending on the type of the column in the table, the following arrays are
+ * accepted:
+ *
+ * <ul>
+ *   <li>DOUBLE: <code>double[]</code>;</li>
+ *   <li>INT64: <code>long[]</code>;</li>
+ *   <li>TIMESTAMP: <code>long[]</code> with nanoseconds since epoch, or {@link Timespecs};</li>
+ *   <li>STRING / SYMBOL: <code>CharSequence[]</code>, or a {@link StringSlab};</li>
+ *   <li>BLOB: <code>ByteBuffer[]</code> of direct buffers, which must stay
+ *       unmodified until the writer is flushed.</li>
+ * </ul>
+ *
+ * Null values are denoted by a null element in object arrays, or by setting the
+ * row's bit in the column's null bitmap. Columns without data are null entirely.
+ */
+public final class ColumnarBatch {
+
+    /**
+     * UTF-8 encoded strings laid out in a single byte array: the value of row
+     * <code>i</code> is stored in <code>data[offsets[i]]</code> up to (but not
+     * including) <code>data[offsets[i + 1]]</code>.
+     */
+    public static final class StringSlab {
+        final byte[] data;
+        final int[] offsets;
+
+        public StringSlab(byte[] data, int[] offsets) {
+            this.data = data;
+            this.offsets = offsets;
+        }
+
+        /**
+         * Returns the amount of values in this slab.
+         */
+        public int length() {
+            return this.offsets.length - 1;
+        }
+
+        public byte[] data() {
+            return this.data;
+        }
+
+        public int[] offsets() {
+            return this.offsets;
+        }
+
+        /**
+         * Decodes the value of a single row.
+         */
+        public String getString(int i) {
+            return StringDecoder.decode(this.data, this.offsets[i], this.offsets[i + 1]);
+        }
+
+        /**
+         * Decodes the values of all rows.
+         *
+         * @param deduplicate When true, repeated values map to a single String
+         *                    instance, which is useful for symbol columns.
+         */
+        public String[] getStrings(boolean deduplicate) {
+            StringDecoder decoder = new StringDecoder(deduplicate);
+            String[] ret = new String[this.offsets.length - 1];
+
+            for (int i = 0; i < ret.length; ++i) {
+                ret[i] = decoder.get(this.data, this.offsets[i], this.offsets[i + 1]);
+            }
+
+            return ret;
+        }
+    }
+
+    final long[] epochNanos;
+    final int rowCount;
+    final Object[] columns;
+    final BitSet[] nulls;
+
+    /**
+     * Creates an empty batch for all timestamps in <code>epochNanos</code>.
+     *
+     * @param epochNanos Timestamps of the rows, nanoseconds since epoch.
+     * @param columnCount Amount of columns of the table.
+     */
+    public ColumnarBatch(long[] epochNanos, int columnCount) {
+        this(epochNanos, epochNanos.length, columnCount);
+    }
+
+    /**
+     * Creates an empty batch for the first <code>rowCount</code> timestamps in
+     * <code>epochNanos</code>. Column arrays may be larger than the amount of rows,
+     * which allows reuse of the same arrays for batches of varying size.
+     *
+     * @param epochNanos Timestamps of the rows, nanoseconds since epoch.
+     * @param rowCount Amount of rows in this batch.
+     * @param columnCount Amount of columns of the table.
+     */
+    public ColumnarBatch(long[] epochNanos, int rowCount, int columnCount) {
+        if (rowCount < 0 || rowCount > epochNanos.length) {
+            throw new InvalidArgumentException("Row count " + rowCount + " out of bounds, " + epochNanos.length + " timestamps provided");
+        }
+
+        this.epochNanos = epochNanos;
+        this.rowCount = rowCount;
+        this.columns = new Object[columnCount];
+        this.nulls = new BitSet[columnCount];
+    }
+
+    /**
+     * Creates a batch with data for every column.
+     *
+     * @param epochNanos Timestamps of the rows, nanoseconds since epoch.
+     * @param columns One array per column of the table, or null for a column
+     *                without any values.
+     */
+    public static ColumnarBatch of(long[] epochNanos, Object... columns) {
+        ColumnarBatch ret = new ColumnarBatch(epochNanos, columns.length);
+
+        for (int i = 0; i < columns.length; ++i) {
+            ret.setColumn(i, columns[i]);
+        }
+
+        return ret;
+    }
+
+    public int rowCount() {
+        return this.rowCount;
+    }
+
+    public int columnCount() {
+        return this.columns.length;
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= this.columns.length) {
+            throw new InvalidArgumentException("Column offset " + column + " out of bounds, batch has " + this.columns.length + " columns");
+        }
+    }
+
+    private void checkLength(int column, int length) {
+        if (length < this.rowCount) {
+            throw new InvalidArgumentException("Column " + column + " has " + length + " values, expected at least " + this.rowCount);
+        }
+    }
+
+    /**
+     * Sets the values of a column, see the class documentation for the arrays
+     * accepted for each column type.
+     */
+    public ColumnarBatch setColumn(int column, Object values) {
+        this.checkColumn(column);
+
+        if (values instanceof double[]) {
+            this.checkLength(column, ((double[])values).length);
+        } else if (values instanceof long[]) {
+            this.checkLength(column, ((long[])values).length);
+        } else if (values instanceof Timespecs) {
+            Timespecs xs = (Timespecs)values;
+            this.checkLength(column, Math.min(xs.sec.length, xs.nsec.length));
+        } else if (values instanceof CharSequence[]) {
+            this.checkLength(column, ((CharSequence[])values).length);
+        } else if (values instanceof StringSlab) {
+            this.checkLength(column, ((StringSlab)values).length());
+        } else if (values instanceof ByteBuffer[]) {
+            this.checkLength(column, ((ByteBuffer[])values).length);
+        } else if (values != null) {
+            throw new InvalidArgumentException("Unsupported column array type: " + values.getClass().getName());
+        }
+
+        this.columns[column] = values;
+        return this;
+    }
+
+    public ColumnarBatch setDoubles(int column, double[] values) {
+        return this.setColumn(column, values);
+    }
+
+    public ColumnarBatch setInt64s(int column, long[] values) {
+        return this.setColumn(column, values);
+    }
+
+    public ColumnarBatch setTimestamps(int column, long[] epochNanos) {
+        return this.setColumn(column, epochNanos);
+    }
+
+    public ColumnarBatch setTimestamps(int column, Timespecs values) {
+        return this.setColumn(column, values);
+    }
+
+    public ColumnarBatch setStrings(int column, CharSequence[] values) {
+        return this.setColumn(column, values);
+    }
+
+    public ColumnarBatch setStrings(int column, byte[] utf8, int[] offsets) {
+        return this.setColumn(column, new StringSlab(utf8, offsets));
+    }
+
+    public ColumnarBatch setBlobs(int column, ByteBuffer[] values) {
+        return this.setColumn(column, values);
+    }
+
+    /**
+     * Marks values of a column as null: a set bit denotes a null value for the
+     * corresponding row.
+     */
+    public ColumnarBatch setNulls(int column, BitSet nulls) {
+        this.checkColumn(column);
+        this.nulls[column] = nulls;
+        return this;
+    }
+}
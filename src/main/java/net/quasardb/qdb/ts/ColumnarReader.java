@@ -0,0 +1,110 @@
+package net.quasardb.qdb.ts;
+
+import java.io.IOException;
+import java.lang.AutoCloseable;
+import java.util.Spliterator;
+import java.util.*;
+import java.util.stream.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.quasardb.qdb.exception.InvalidIteratorException;
+
+import net.quasardb.qdb.*;
+
+/**
+ * Bulk reader for a QuasarDB timeseries table that yields rows in columnar
+ * layout, one {@link ColumnBatch} at a time. Every batch holds up to the batch
+ * size rows, fetched from the native layer using a single JNI call.
+ *
+ * Compared to {@link Reader}, no objects are allocated per row or per value:
+ * every batch only consists of a few arrays per column.
+ */
+public class ColumnarReader implements AutoCloseable, Iterator<ColumnBatch> {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarReader.class);
+
+    private final Table table;
+    private final TableScan scan;
+    private ColumnBatch next;
+
+    protected ColumnarReader(Session session, Table table, TimeRange[] ranges, int batchSize) {
+        logger.info("Initializing columnar reader for table {}", table.name);
+
+        this.table = table;
+        this.scan = new TableScan(session, table, ranges, batchSize);
+        this.next = null;
+    }
+
+    /**
+     * @return The underlying table that is being read from.
+     */
+    public Table getTable() {
+        return this.table;
+    }
+
+    /**
+     * Cleans up the internal representation of the local table.
+     */
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            this.close();
+        } finally {
+            super.finalize();
+        }
+    }
+
+    /**
+     * Closes the timeseries table and local cache so that memory can be reclaimed.
+     */
+    public void close() throws IOException {
+        if (this.scan != null) {
+            this.scan.close();
+        }
+
+        this.next = null;
+    }
+
+    /**
+     * Check whether there is another batch available for reading or not. When this
+     * function returns true, it is safe to call {@link #next}.
+     *
+     * @return Returns true when another batch is available for reading.
+     */
+    @Override
+    public boolean hasNext() {
+        if (this.next == null && this.scan.next()) {
+            this.next = ColumnBatch.of(this.scan.block());
+        }
+
+        return this.next != null;
+    }
+
+    /**
+     * Returns the next batch of rows. Make sure to check whether another batch is
+     * available using {@link #hasNext}.
+     *
+     * @throws InvalidIteratorException Thrown when the iterator has reached the end
+     *                                  and no next batch is available.
+     * @return The next batch, with at least one row.
+     */
+    @Override
+    public ColumnBatch next() throws InvalidIteratorException {
+        if (this.hasNext() == false) {
+            throw new InvalidIteratorException("Attempted to read next but has no next batches");
+        }
+
+        ColumnBatch ret = this.next;
+        this.next = null;
+        return ret;
+    }
+
+    /**
+     * Provides stream-based access.
+     */
+    public Stream<ColumnBatch> stream() {
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(this, Spliterator.IMMUTABLE | Spliterator.NONNULL), false);
+    }
+}
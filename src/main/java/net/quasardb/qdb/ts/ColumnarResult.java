@@ -0,0 +1,128 @@
+package net.quasardb.qdb.ts;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import net.quasardb.qdb.exception.IncompatibleTypeException;
+
+/**
+ * The result of a Query in columnar layout, as returned by
+ * {@link Query#executeColumnar}. The native layer fills one array per column
+ * in a single pass over the result, rather than allocating a {@link Value} for
+ * every cell.
+ *
+ * Depending on the type of the column, values are exposed as:
+ *
+ * <ul>
+ *   <li>DOUBLE: <code>double[]</code>, see {@link #doubles};</li>
+ *   <li>INT64: <code>long[]</code>, see {@link #int64s}, which includes counts;</li>
+ *   <li>TIMESTAMP: <code>long[]</code> with nanoseconds since epoch, see {@link #timestamps};</li>
+ *   <li>STRING: UTF-8 encoded {@link ColumnarBatch.StringSlab}, see {@link #strings};</li>
+ *   <li>BLOB: {@link ColumnarBatch.StringSlab} of raw bytes, see {@link #blobs}.</li>
+ * </ul>
+ *
+ * A column that only holds null values is of type UNINITIALIZED. Null values
+ * are denoted by the column's null bitmap; the value stored for a null row is
+ * unspecified.
+ */
+public final class ColumnarResult {
+
+    private final String[] columns;
+    private final Value.Type[] types;
+    private final int rowCount;
+    private final Object[] values;
+    private final BitSet[] nulls;
+
+    /**
+     * Invoked by the native layer.
+     *
+     * @param types   Value types per column, as native column types.
+     * @param values  Per column, a <code>long[]</code>, <code>double[]</code> or
+     *                <code>byte[]</code> slab depending on its type.
+     * @param offsets Per blob or string column, <code>rowCount + 1</code>
+     *                offsets in its slab.
+     * @param nulls   Per column, the words of its null bitmap.
+     */
+    ColumnarResult(String[] columns, int[] types, int rowCount, Object[] values, Object[] offsets, Object[] nulls) {
+        this.columns = columns;
+        this.types = new Value.Type[types.length];
+        this.rowCount = rowCount;
+        this.values = values;
+        this.nulls = new BitSet[types.length];
+
+        for (int c = 0; c < types.length; ++c) {
+            this.types[c] = Value.Type.fromInt(types[c]);
+            this.nulls[c] = BitSet.valueOf((long[])nulls[c]);
+
+            if (this.types[c] == Value.Type.BLOB || this.types[c] == Value.Type.STRING) {
+                this.values[c] = new ColumnarBatch.StringSlab((byte[])values[c], (int[])offsets[c]);
+            }
+        }
+    }
+
+    public int rowCount() {
+        return this.rowCount;
+    }
+
+    public int columnCount() {
+        return this.columns.length;
+    }
+
+    public String[] getColumnNames() {
+        return this.columns;
+    }
+
+    public Value.Type getType(int column) {
+        return this.types[column];
+    }
+
+    private Object valuesOf(int column, Value.Type type) {
+        if (this.types[column] != type) {
+            throw new IncompatibleTypeException("Column " + column + " is not of type " + type.toString() + ": " + this.types[column].toString());
+        }
+
+        return this.values[column];
+    }
+
+    public double[] doubles(int column) {
+        return (double[])this.valuesOf(column, Value.Type.DOUBLE);
+    }
+
+    public long[] int64s(int column) {
+        return (long[])this.valuesOf(column, Value.Type.INT64);
+    }
+
+    /**
+     * Returns the values of a timestamp column, nanoseconds since epoch.
+     */
+    public long[] timestamps(int column) {
+        return (long[])this.valuesOf(column, Value.Type.TIMESTAMP);
+    }
+
+    public ColumnarBatch.StringSlab strings(int column) {
+        return (ColumnarBatch.StringSlab)this.valuesOf(column, Value.Type.STRING);
+    }
+
+    public ColumnarBatch.StringSlab blobs(int column) {
+        return (ColumnarBatch.StringSlab)this.valuesOf(column, Value.Type.BLOB);
+    }
+
+    /**
+     * Returns the null bitmap of a column: a set bit denotes a null value for the
+     * corresponding row.
+     */
+    public BitSet nulls(int column) {
+        return this.nulls[column];
+    }
+
+    public boolean isNull(int row, int column) {
+        return this.nulls[column].get(row);
+    }
+
+    /**
+     * Access to a String representation of this ColumnarResult.
+     */
+    public String toString() {
+        return "ColumnarResult (columns: " + Arrays.toString(this.columns) + ", types: " + Arrays.toString(this.types) + ", rows: " + this.rowCount + ")";
+    }
+}
@@ -0,0 +1,505 @@
+package net.quasardb.qdb.ts;
+
+import java.io.IOException;
+import java.io.Flushable;
+import java.lang.AutoCloseable;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.quasardb.qdb.*;
+import net.quasardb.qdb.jni.*;
+
+/**
+ * Thread-safe bulk writer for QuasarDB timeseries tables.
+ *
+ * Every thread that appends to a ConcurrentWriter stages its rows into its own
+ * shard, so that appending threads never contend with each other. When flushing,
+ * the shards of all threads are merged into a single batch, which is pushed
+ * using a single round-trip.
+ *
+ * The API mirrors that of {@link Writer}; in particular, rows built using
+ * {@link #startRow} must be completed by the same thread using {@link #endRow},
+ * or abandoned using {@link #discardRow}.
+ */
+public final class ConcurrentWriter implements AutoCloseable, Flushable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrentWriter.class);
+
+    /**
+     * Rows staged by a single thread.
+     *
+     * A row in progress is built in a single-row table that only the owning
+     * thread accesses, and is moved into the shard's staged tables when it is
+     * completed. The lock is only held while moving a row, appending a batch or
+     * draining the shard, never while calling back into user code: a thread that
+     * abandons a row does not block flushes.
+     */
+    static final class Shard {
+        final Thread owner;
+        final ReentrantLock lock = new ReentrantLock();
+
+        // Completed rows, only accessed while holding the lock.
+        final HashMap<String, Writer.StagedTable> stagedTables = new HashMap<String, Writer.StagedTable>();
+        Table lastTable = null;
+        Writer.StagedTable lastStagedTable = null;
+
+        // Row in progress, only accessed by the owning thread.
+        final HashMap<String, Writer.StagedTable> rowTables = new HashMap<String, Writer.StagedTable>();
+        Table lastRowTable = null;
+        Writer.StagedTable lastRowStagedTable = null;
+        Table currentTable = null;
+        Writer.StagedTable currentRow = null;
+
+        Shard(Thread owner) {
+            this.owner = owner;
+        }
+
+        Writer.StagedTable getRowTable(Table t) {
+            if (t == this.lastRowTable) {
+                return this.lastRowStagedTable;
+            }
+
+            String name = t.getName();
+            Writer.StagedTable ret = this.rowTables.get(name);
+            if (ret == null) {
+                ret = new Writer.StagedTable(t.getColumns());
+                this.rowTables.put(name, ret);
+            }
+
+            this.lastRowTable = t;
+            this.lastRowStagedTable = ret;
+            return ret;
+        }
+
+        Writer.StagedTable getStagedTable(Table t) {
+            if (t == this.lastTable) {
+                return this.lastStagedTable;
+            }
+
+            String name = t.getName();
+            Writer.StagedTable ret = this.stagedTables.get(name);
+            if (ret == null) {
+                ret = new Writer.StagedTable(t.getColumns());
+                this.stagedTables.put(name, ret);
+            }
+
+            this.lastTable = t;
+            this.lastStagedTable = ret;
+            return ret;
+        }
+
+        Writer.StagedTable requireRow() {
+            if (this.currentRow == null) {
+                throw new IllegalStateException("No row in progress, call startRow() first");
+            }
+
+            return this.currentRow;
+        }
+
+        long valueCount() {
+            long n = 0;
+
+            for (Writer.StagedTable t : this.stagedTables.values()) {
+                n += t.valueCount();
+            }
+
+            return n;
+        }
+
+        /**
+         * Moves all rows staged in this shard into `into`. Must be called while
+         * holding the lock.
+         */
+        void drainTo(Writer.Generation into) {
+            assert(this.lock.isHeldByCurrentThread());
+
+            Iterator<Map.Entry<String, Writer.StagedTable>> it = this.stagedTables.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Writer.StagedTable> x = it.next();
+                Writer.StagedTable from = x.getValue();
+
+                // Same as Writer, keep buffers for tables we wrote to around for
+                // reuse, drop the others.
+                if (from.rowCount() == 0) {
+                    it.remove();
+                    continue;
+                }
+
+                Writer.StagedTable to = into.stagedTables.get(x.getKey());
+                if (to == null) {
+                    to = new Writer.StagedTable(from.columns);
+                    into.stagedTables.put(x.getKey(), to);
+                }
+
+                to.appendAll(from);
+                from.clear();
+            }
+
+            this.lastTable = null;
+            this.lastStagedTable = null;
+        }
+    }
+
+    private final Session session;
+    private final Writer.Options options;
+    private final CopyOnWriteArrayList<Shard> shards;
+    private final ThreadLocal<Shard> shard;
+
+    // Only accessed while holding the flush lock.
+    private final Object flushLock = new Object();
+    private final Writer.Generation merged;
+    private final Writer.PreparedTables layouts;
+    private boolean released = false;
+
+    // Checked by appending threads while holding their shard's lock, when
+    // completing a row or appending a batch, and set before the final flush
+    // drains the shards: rows are either part of that flush, or rejected.
+    private volatile boolean closed = false;
+
+    protected ConcurrentWriter(Session session, Writer.Options options) {
+        this.session = session;
+        this.options = options;
+        this.shards = new CopyOnWriteArrayList<Shard>();
+        this.shard = ThreadLocal.withInitial(() -> {
+                Shard s = new Shard(Thread.currentThread());
+                this.shards.add(s);
+                return s;
+            });
+        this.merged = new Writer.Generation();
+        this.layouts = new Writer.PreparedTables();
+
+        logger.info("Successfully initialized ConcurrentWriter");
+    }
+
+    /**
+     * Starts a new row in the calling thread's shard.
+     *
+     * @param table Table to insert into.
+     * @param sec Timestamp of the row, seconds since epoch.
+     * @param nsec Nanoseconds part of the row's timestamp.
+     *
+     * @see Writer#startRow(Table, long, long)
+     */
+    public void startRow(Table table, long sec, long nsec) {
+        if (this.closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+
+        Shard s = this.shard.get();
+        if (s.currentRow != null) {
+            throw new IllegalStateException("A row is already in progress, call endRow() first");
+        }
+
+        Writer.StagedTable t = s.getRowTable(table);
+        t.startRow(sec, nsec);
+        s.currentTable = table;
+        s.currentRow = t;
+    }
+
+    /**
+     * Starts a new row in the calling thread's shard.
+     *
+     * @param table Table to insert into.
+     * @param epochNanos Timestamp of the row, nanoseconds since epoch.
+     */
+    public void startRow(Table table, long epochNanos) {
+        this.startRow(table,
+                      Math.floorDiv(epochNanos, 1000000000L),
+                      Math.floorMod(epochNanos, 1000000000L));
+    }
+
+    /**
+     * Sets a double value of the calling thread's row in progress.
+     *
+     * @see Writer#setDouble
+     */
+    public void setDouble(int column, double value) {
+        this.shard.get().requireRow().setDouble(column, value);
+    }
+
+    /**
+     * Sets an int64 value of the calling thread's row in progress.
+     *
+     * @see Writer#setInt64
+     */
+    public void setInt64(int column, long value) {
+        this.shard.get().requireRow().setInt64(column, value);
+    }
+
+    /**
+     * Sets a timestamp value of the calling thread's row in progress.
+     *
+     * @see Writer#setTimestamp
+     */
+    public void setTimestamp(int column, long sec, long nsec) {
+        this.shard.get().requireRow().setTimestamp(column, sec, nsec);
+    }
+
+    /**
+     * Sets a string value of the calling thread's row in progress.
+     *
+     * @see Writer#setString
+     */
+    public void setString(int column, CharSequence value) {
+        this.shard.get().requireRow().setString(column, value);
+    }
+
+    /**
+     * Sets a blob value of the calling thread's row in progress.
+     *
+     * @see Writer#setBlob
+     */
+    public void setBlob(int column, ByteBuffer value) {
+        this.shard.get().requireRow().setBlob(column, value);
+    }
+
+    /**
+     * Sets a value of the calling thread's row in progress.
+     */
+    public void setValue(int column, Value value) {
+        this.shard.get().requireRow().setValue(column, value);
+    }
+
+    /**
+     * Completes the row in progress of the calling thread, after which it is
+     * part of the next flush.
+     *
+     * @throws IllegalStateException If the writer was closed while the row was
+     *                               in progress; the row is discarded.
+     */
+    public void endRow() {
+        Shard s = this.shard.get();
+        Writer.StagedTable row = s.requireRow();
+        Table table = s.currentTable;
+
+        s.currentTable = null;
+        s.currentRow = null;
+
+        s.lock.lock();
+        try {
+            if (this.closed) {
+                throw new IllegalStateException("Writer is closed");
+            }
+
+            s.getStagedTable(table).appendAll(row);
+        } finally {
+            s.lock.unlock();
+            row.clear();
+        }
+    }
+
+    /**
+     * Discards the row in progress of the calling thread.
+     */
+    public void discardRow() {
+        Shard s = this.shard.get();
+        Writer.StagedTable row = s.requireRow();
+
+        s.currentTable = null;
+        s.currentRow = null;
+        row.clear();
+    }
+
+    /**
+     * Append a new row to the local table cache.
+     *
+     * @param table Table to insert into.
+     * @param timestamp Timestamp of the row.
+     * @param values Values to insert, one for each column of the table.
+     */
+    public void append(Table table, Timespec timestamp, Value[] values) {
+        this.startRow(table, timestamp.sec, timestamp.nsec);
+
+        try {
+            this.shard.get().currentRow.setValues(values);
+        } catch (RuntimeException e) {
+            this.discardRow();
+            throw e;
+        }
+
+        this.endRow();
+    }
+
+    /**
+     * Append a new row to the local table cache.
+     *
+     * @param table Table to insert into.
+     * @param row Row to insert.
+     */
+    public void append(Table table, WritableRow row) {
+        this.append(table, row.getTimestamp(), row.getValues());
+    }
+
+    /**
+     * Appends all rows of a columnar batch to the calling thread's shard.
+     *
+     * @see Writer#appendColumns(Table, ColumnarBatch)
+     */
+    public void appendColumns(Table table, ColumnarBatch batch) {
+        Shard s = this.shard.get();
+
+        s.lock.lock();
+        try {
+            if (this.closed) {
+                throw new IllegalStateException("Writer is closed");
+            }
+
+            if (s.currentRow != null) {
+                throw new IllegalStateException("A row is already in progress, call endRow() first");
+            }
+
+            s.getStagedTable(table).appendColumns(batch);
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * Appends rows provided as one array per column to the calling thread's shard.
+     *
+     * @see Writer#appendColumns(Table, long[], Object...)
+     */
+    public void appendColumns(Table table, long[] epochNanos, Object... columns) {
+        this.appendColumns(table, ColumnarBatch.of(epochNanos, columns));
+    }
+
+    /**
+     * Returns the amount of values appended to the writer by all threads, not
+     * yet flushed.
+     */
+    public long size() {
+        long n = 0;
+
+        for (Shard s : this.shards) {
+            s.lock.lock();
+            try {
+                n += s.valueCount();
+            } finally {
+                s.lock.unlock();
+            }
+        }
+
+        return n;
+    }
+
+    /**
+     * Merges the rows staged by all threads and pushes them as a single batch.
+     * Rows that are still in progress are not part of the flush, and threads
+     * can keep appending while the batch is pushed.
+     */
+    public void flush() throws IOException {
+        this.flush(null);
+    }
+
+    public void flush(TimeRange[] ranges) throws IOException {
+        synchronized (this.flushLock) {
+            if (this.released) {
+                throw new IllegalStateException("Writer is closed");
+            }
+
+            for (Shard s : this.shards) {
+                s.lock.lock();
+                try {
+                    s.drainTo(this.merged);
+                } finally {
+                    s.lock.unlock();
+                }
+
+                // The shard of a thread that no longer exists cannot receive new
+                // rows.
+                if (s.owner.isAlive() == false) {
+                    this.shards.remove(s);
+                }
+            }
+
+            long handle = this.session.handle();
+            try {
+                if (this.options.getPushMode() == Writer.PushMode.TRUNCATE) {
+                    this.merged.truncateRanges = (ranges != null ? ranges : this.mergedRange());
+                } else if (ranges != null) {
+                    logger.warn("Truncate ranges provided but insert mode is not truncate!");
+                }
+                this.merged.ready = true;
+
+                this.merged.prepare(handle, this.options, this.layouts);
+
+                if (this.merged.prepared == 0) {
+                    return;
+                }
+
+                logger.info("Flushing concurrent writer, push mode='{}', shards={}", this.options.getPushMode().toString(), this.shards.size());
+                this.merged.push(handle, this.options);
+            } finally {
+                this.merged.release();
+                this.merged.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the range covering all merged rows, or null if there are none.
+     */
+    private TimeRange[] mergedRange() {
+        boolean found = false;
+        long minSec = 0, minNsec = 0, maxSec = 0, maxNsec = 0;
+
+        for (Writer.StagedTable t : this.merged.stagedTables.values()) {
+            ColumnBuffer.Timestamps xs = t.timestamps;
+
+            for (int i = 0; i < xs.size(); ++i) {
+                long sec = xs.sec[i];
+                long nsec = xs.nsec[i];
+
+                if (found == false || sec < minSec || (sec == minSec && nsec < minNsec)) {
+                    minSec = sec;
+                    minNsec = nsec;
+                }
+
+                if (found == false || sec > maxSec || (sec == maxSec && nsec > maxNsec)) {
+                    maxSec = sec;
+                    maxNsec = nsec;
+                }
+
+                found = true;
+            }
+        }
+
+        if (found == false) {
+            return null;
+        }
+
+        return new TimeRange[] {
+            new TimeRange(new Timespec(minSec, minNsec),
+                          new Timespec(maxSec, maxNsec + 1))
+        };
+    }
+
+    /**
+     * Flushes all remaining output and releases all staged data. Appending or
+     * flushing afterwards throws an IllegalStateException.
+     */
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+
+        try {
+            this.flush();
+        } finally {
+            this.shards.clear();
+
+            synchronized (this.flushLock) {
+                this.released = true;
+                this.merged.close();
+                this.layouts.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package net.quasardb.qdb.ts;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.quasardb.qdb.exception.IncompatibleTypeException;
+import net.quasardb.qdb.exception.InvalidArgumentException;
+
+/**
+ * Client-side, incremental downsampling of timeseries data into fixed-size
+ * time buckets, for rollups that cannot be expressed as a query.
+ *
+ * Rows are fed either one {@link ColumnBatch} at a time, as read by a
+ * {@link ColumnarReader}, or one {@link WritableRow} at a time, as read by a
+ * {@link Reader}. For every bucket and every column, the downsampler keeps the
+ * count, sum, minimum, maximum, first and last value, and a running mean and
+ * variance using Welford's algorithm, all in primitive arrays.
+ *
+ * Buckets are aligned on the epoch, and emitted to a {@link Sink} as soon as
+ * the watermark, the highest timestamp seen so far, has passed the end of the
+ * bucket by more than the allowed lateness. Rows that arrive for a bucket that
+ * has already been emitted are dropped, see {@link #getDroppedRows}. As such,
+ * only a bounded amount of buckets is held in memory at any time, regardless of
+ * the size of the input: a single one for input in timestamp order.
+ *
+ * Only DOUBLE and INT64 columns are aggregated; for other columns, only the
+ * amount of non-null values is counted.
+ *
+ * Use {@link #writeTo} to write buckets straight into a rollup table, whose
+ * layout is given by {@link #rollupColumns}:
+ *
+ * <pre>
+ * Downsampler.Statistic[] stats = { Downsampler.Statistic.COUNT, Downsampler.Statistic.MEAN };
+ * Table rollup = Table.create(session, "rollup", Downsampler.rollupColumns(table.getColumns(), stats));
+ *
+ * try (Writer w = Writer.builder(session).build();
+ *      ColumnarReader r = Table.columnarReader(session, table, ranges)) {
+ *     Downsampler d = new Downsampler(table.getColumns(), 60000000000L,
+ *                                     Downsampler.writeTo(w, rollup, stats));
+ *     while (r.hasNext()) {
+ *         d.add(r.next());
+ *     }
+ *     d.flush();
+ *     w.flush();
+ * }
+ * </pre>
+ *
+ * Downsamplers are not thread-safe.
+ */
+public final class Downsampler implements Flushable {
+    private static final Logger logger = LoggerFactory.getLogger(Downsampler.class);
+
+    /**
+     * Statistics tracked per bucket and per column.
+     */
+    public enum Statistic {
+        COUNT,
+        SUM,
+        MIN,
+        MAX,
+        FIRST,
+        LAST,
+        MEAN,
+        VARIANCE
+    }
+
+    /**
+     * Receives buckets once they are finished, in order of their timestamps.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void accept(Bucket bucket) throws IOException;
+    }
+
+    /**
+     * The accumulated statistics of all columns for a single time range.
+     */
+    public static final class Bucket {
+        private final long begin;
+        private final long end;
+        private final boolean[] numeric;
+
+        private final long[] count;
+        private final double[] sum;
+        private final double[] min;
+        private final double[] max;
+        private final double[] first;
+        private final double[] last;
+        private final long[] firstTimestamp;
+        private final long[] lastTimestamp;
+        private final double[] mean;
+        private final double[] m2;
+
+        Bucket(long begin, long end, boolean[] numeric) {
+            int n = numeric.length;
+
+            this.begin = begin;
+            this.end = end;
+            this.numeric = numeric;
+
+            this.count = new long[n];
+            this.sum = new double[n];
+            this.min = new double[n];
+            this.max = new double[n];
+            this.first = new double[n];
+            this.last = new double[n];
+            this.firstTimestamp = new long[n];
+            this.lastTimestamp = new long[n];
+            this.mean = new double[n];
+            this.m2 = new double[n];
+
+            Arrays.fill(this.min, Double.POSITIVE_INFINITY);
+            Arrays.fill(this.max, Double.NEGATIVE_INFINITY);
+            Arrays.fill(this.firstTimestamp, Long.MAX_VALUE);
+            Arrays.fill(this.lastTimestamp, Long.MIN_VALUE);
+        }
+
+        void add(int column, long timestamp, double x) {
+            long n = ++this.count[column];
+
+            this.sum[column] += x;
+            this.min[column] = Math.min(this.min[column], x);
+            this.max[column] = Math.max(this.max[column], x);
+
+            if (timestamp < this.firstTimestamp[column]) {
+                this.firstTimestamp[column] = timestamp;
+                this.first[column] = x;
+            }
+
+            if (timestamp >= this.lastTimestamp[column]) {
+                this.lastTimestamp[column] = timestamp;
+                this.last[column] = x;
+            }
+
+            double delta = x - this.mean[column];
+            this.mean[column] += delta / n;
+            this.m2[column] += delta * (x - this.mean[column]);
+        }
+
+        void addNonNumeric(int column) {
+            ++this.count[column];
+        }
+
+        /**
+         * @return Start of the bucket, inclusive.
+         */
+        public Timespec getBegin() {
+            return new Timespec(Math.floorDiv(this.begin, 1000000000L),
+                                Math.floorMod(this.begin, 1000000000L));
+        }
+
+        /**
+         * @return End of the bucket, exclusive.
+         */
+        public Timespec getEnd() {
+            return new Timespec(Math.floorDiv(this.end, 1000000000L),
+                                Math.floorMod(this.end, 1000000000L));
+        }
+
+        public TimeRange getRange() {
+            return new TimeRange(this.getBegin(), this.getEnd());
+        }
+
+        /**
+         * @return Amount of non-null values of the column in this bucket.
+         */
+        public long getCount(int column) {
+            return this.count[column];
+        }
+
+        private boolean isEmpty(int column) {
+            return this.numeric[column] == false || this.count[column] == 0;
+        }
+
+        public double getSum(int column) {
+            return this.numeric[column] ? this.sum[column] : Double.NaN;
+        }
+
+        public double getMin(int column) {
+            return this.isEmpty(column) ? Double.NaN : this.min[column];
+        }
+
+        public double getMax(int column) {
+            return this.isEmpty(column) ? Double.NaN : this.max[column];
+        }
+
+        public double getFirst(int column) {
+            return this.isEmpty(column) ? Double.NaN : this.first[column];
+        }
+
+        public double getLast(int column) {
+            return this.isEmpty(column) ? Double.NaN : this.last[column];
+        }
+
+        public double getMean(int column) {
+            return this.isEmpty(column) ? Double.NaN : this.mean[column];
+        }
+
+        /**
+         * @return The sample variance of the column, or NaN when the bucket holds
+         *         fewer than two values.
+         */
+        public double getVariance(int column) {
+            return (this.isEmpty(column) || this.count[column] < 2)
+                ? Double.NaN
+                : this.m2[column] / (this.count[column] - 1);
+        }
+
+        public double get(Statistic statistic, int column) {
+            switch (statistic) {
+            case COUNT:
+                return (double)this.getCount(column);
+            case SUM:
+                return this.getSum(column);
+            case MIN:
+                return this.getMin(column);
+            case MAX:
+                return this.getMax(column);
+            case FIRST:
+                return this.getFirst(column);
+            case LAST:
+                return this.getLast(column);
+            case MEAN:
+                return this.getMean(column);
+            case VARIANCE:
+                return this.getVariance(column);
+            }
+
+            throw new InvalidArgumentException("Unrecognized statistic: " + statistic);
+        }
+
+        /**
+         * Converts this bucket into a row of a rollup table, as laid out by
+         * {@link Downsampler#rollupColumns}.
+         */
+        public WritableRow toRow(Statistic... statistics) {
+            Value[] values = new Value[this.numeric.length * statistics.length];
+
+            int i = 0;
+            for (int c = 0; c < this.numeric.length; ++c) {
+                for (Statistic s : statistics) {
+                    if (s == Statistic.COUNT) {
+                        values[i++] = Value.createInt64(this.count[c]);
+                    } else {
+                        double x = this.get(s, c);
+                        values[i++] = Double.isNaN(x) ? Value.createNull() : Value.createDouble(x);
+                    }
+                }
+            }
+
+            return new WritableRow(this.getBegin(), values);
+        }
+    }
+
+    private final Column[] columns;
+    private final boolean[] numeric;
+    private final long interval;
+    private final long allowedLateness;
+    private final Sink sink;
+
+    // Buckets that have not been emitted yet, by their begin timestamp.
+    private final TreeMap<Long, Bucket> open;
+    private Bucket current;
+
+    private long watermark;
+    private long emittedUntil;
+    private long droppedRows;
+
+    /**
+     * Creates a downsampler for input in timestamp order.
+     *
+     * @param columns  Columns of the input.
+     * @param interval Size of the buckets, in nanoseconds.
+     * @param sink     Receives the finished buckets.
+     */
+    public Downsampler(Column[] columns, long interval, Sink sink) {
+        this(columns, interval, 0, sink);
+    }
+
+    /**
+     * Creates a downsampler for input that is out of order by at most
+     * <code>allowedLateness</code>.
+     *
+     * @param columns         Columns of the input.
+     * @param interval        Size of the buckets, in nanoseconds.
+     * @param allowedLateness How long a bucket stays open after the watermark
+     *                        passed its end, in nanoseconds.
+     * @param sink            Receives the finished buckets.
+     */
+    public Downsampler(Column[] columns, long interval, long allowedLateness, Sink sink) {
+        if (interval <= 0) {
+            throw new InvalidArgumentException("Interval must be positive: " + interval);
+        }
+
+        if (allowedLateness < 0) {
+            throw new InvalidArgumentException("Allowed lateness cannot be negative: " + allowedLateness);
+        }
+
+        this.columns = columns;
+        this.numeric = new boolean[columns.length];
+        this.interval = interval;
+        this.allowedLateness = allowedLateness;
+        this.sink = sink;
+
+        for (int c = 0; c < columns.length; ++c) {
+            Column.Type t = columns[c].getType();
+            this.numeric[c] = (t == Column.Type.DOUBLE || t == Column.Type.INT64);
+        }
+
+        this.open = new TreeMap<Long, Bucket>();
+        this.current = null;
+        this.watermark = Long.MIN_VALUE;
+        this.emittedUntil = Long.MIN_VALUE;
+        this.droppedRows = 0;
+    }
+
+    /**
+     * Returns the columns of a rollup table that holds the given statistics of
+     * every source column: for column <code>x</code> and statistic MEAN, the
+     * rollup column is a DOUBLE named <code>x_mean</code>. Counts are INT64.
+     */
+    public static Column[] rollupColumns(Column[] source, Statistic... statistics) {
+        Column[] ret = new Column[source.length * statistics.length];
+
+        int i = 0;
+        for (Column c : source) {
+            for (Statistic s : statistics) {
+                String name = c.getName() + "_" + s.name().toLowerCase(Locale.ROOT);
+                ret[i++] = (s == Statistic.COUNT) ? new Column.Int64(name) : new Column.Double(name);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns a sink that appends every bucket as a row to a rollup table, as laid
+     * out by {@link #rollupColumns}. Flushing the writer is left to the caller.
+     */
+    public static Sink writeTo(Writer writer, Table table, Statistic... statistics) {
+        return (Bucket b) -> writer.append(table, b.toRow(statistics));
+    }
+
+    /**
+     * @return The highest timestamp seen so far, in nanoseconds since epoch.
+     */
+    public long getWatermark() {
+        return this.watermark;
+    }
+
+    /**
+     * @return Amount of rows dropped because their bucket was already emitted.
+     */
+    public long getDroppedRows() {
+        return this.droppedRows;
+    }
+
+    /**
+     * @return Amount of buckets that have not been emitted yet.
+     */
+    public int getOpenBuckets() {
+        return this.open.size();
+    }
+
+    private Bucket bucketOf(long begin) {
+        if (this.current != null && this.current.begin == begin) {
+            return this.current;
+        }
+
+        Bucket ret = this.open.get(begin);
+        if (ret == null) {
+            ret = new Bucket(begin, begin + this.interval, this.numeric);
+            this.open.put(begin, ret);
+        }
+
+        this.current = ret;
+        return ret;
+    }
+
+    private void checkColumns(Column[] columns) {
+        if (columns.length != this.columns.length) {
+            throw new InvalidArgumentException("Expected " + this.columns.length + " columns, got " + columns.length);
+        }
+
+        for (int c = 0; c < columns.length; ++c) {
+            if (columns[c].getType() != this.columns[c].getType()) {
+                throw new IncompatibleTypeException("Column " + c + " is not of type " + this.columns[c].getType().toString() + ": " + columns[c].getType().toString());
+            }
+        }
+    }
+
+    /**
+     * Adds all rows of a batch, and emits the buckets finished as a result.
+     */
+    public void add(ColumnBatch batch) throws IOException {
+        this.checkColumns(batch.getColumns());
+
+        long[] timestamps = batch.timestamps();
+        int n = batch.rowCount();
+
+        int i = 0;
+        while (i < n) {
+            long t = timestamps[i];
+            if (t < this.emittedUntil) {
+                ++this.droppedRows;
+                ++i;
+                continue;
+            }
+
+            // Find the run of rows that fall into the same bucket, so that we can
+            // aggregate them one column at a time.
+            long begin = Math.floorDiv(t, this.interval) * this.interval;
+            long end = begin + this.interval;
+            long max = t;
+
+            int j = i + 1;
+            while (j < n && timestamps[j] >= begin && timestamps[j] < end) {
+                max = Math.max(max, timestamps[j]);
+                ++j;
+            }
+
+            Bucket b = this.bucketOf(begin);
+
+            for (int c = 0; c < this.columns.length; ++c) {
+                BitSet nulls = batch.nulls(c);
+
+                switch (this.columns[c].getType()) {
+                case DOUBLE: {
+                    double[] xs = batch.doubles(c);
+                    for (int k = i; k < j; ++k) {
+                        if (nulls.get(k) == false) {
+                            b.add(c, timestamps[k], xs[k]);
+                        }
+                    }
+                    break;
+                }
+
+                case INT64: {
+                    long[] xs = batch.int64s(c);
+                    for (int k = i; k < j; ++k) {
+                        if (nulls.get(k) == false) {
+                            b.add(c, timestamps[k], (double)xs[k]);
+                        }
+                    }
+                    break;
+                }
+
+                default:
+                    for (int k = i; k < j; ++k) {
+                        if (nulls.get(k) == false) {
+                            b.addNonNumeric(c);
+                        }
+                    }
+                    break;
+                }
+            }
+
+            this.advance(max);
+            i = j;
+        }
+    }
+
+    /**
+     * Adds a single row, and emits the buckets finished as a result.
+     */
+    public void add(WritableRow row) throws IOException {
+        long t = row.getTimestamp().toEpochNanos();
+        if (t < this.emittedUntil) {
+            ++this.droppedRows;
+            return;
+        }
+
+        Value[] values = row.getValues();
+        if (values.length != this.columns.length) {
+            throw new InvalidArgumentException("Expected " + this.columns.length + " values, got " + values.length);
+        }
+
+        Bucket b = this.bucketOf(Math.floorDiv(t, this.interval) * this.interval);
+
+        for (int c = 0; c < values.length; ++c) {
+            Value v = values[c];
+
+            switch (v.getType()) {
+            case UNINITIALIZED:
+                break;
+
+            case DOUBLE:
+                if (this.numeric[c] && Double.isNaN(v.getDouble()) == false) {
+                    b.add(c, t, v.getDouble());
+                }
+                break;
+
+            case INT64:
+                if (this.numeric[c]) {
+                    b.add(c, t, (double)v.getInt64());
+                }
+                break;
+
+            default:
+                if (this.numeric[c] == false) {
+                    b.addNonNumeric(c);
+                }
+                break;
+            }
+        }
+
+        this.advance(t);
+    }
+
+    /**
+     * Advances the watermark without adding any rows, for example when the input
+     * is known to be idle, and emits the buckets finished as a result.
+     *
+     * @param timestamp Nanoseconds since epoch.
+     */
+    public void advance(long timestamp) throws IOException {
+        this.watermark = Math.max(this.watermark, timestamp);
+
+        // A bucket is finished once the watermark passed its end by more than the
+        // allowed lateness.
+        while (this.open.isEmpty() == false) {
+            Bucket b = this.open.firstEntry().getValue();
+            if (this.watermark - this.allowedLateness < b.end) {
+                break;
+            }
+
+            this.emit(b);
+        }
+    }
+
+    /**
+     * Emits all open buckets, regardless of the watermark. Call this at the end
+     * of the input. Any row added afterwards that falls into an emitted bucket is
+     * dropped.
+     */
+    public void flush() throws IOException {
+        logger.debug("Flushing {} open buckets", this.open.size());
+
+        while (this.open.isEmpty() == false) {
+            this.emit(this.open.firstEntry().getValue());
+        }
+    }
+
+    private void emit(Bucket b) throws IOException {
+        this.open.remove(b.begin);
+        if (this.current == b) {
+            this.current = null;
+        }
+
+        this.emittedUntil = Math.max(this.emittedUntil, b.end);
+        this.sink.accept(b);
+    }
+}
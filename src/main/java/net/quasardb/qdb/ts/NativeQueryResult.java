@@ -0,0 +1,84 @@
+package net.quasardb.qdb.ts;
+
+import java.lang.AutoCloseable;
+
+import net.quasardb.qdb.*;
+import net.quasardb.qdb.jni.*;
+
+/**
+ * Owns a native query result, which is kept alive so that rows can be converted
+ * lazily and, optionally, blobs can be exposed without copying them.
+ *
+ * Blob values that point into the native result keep a reference to this object,
+ * so that the result is never released by the garbage collector while any of
+ * them is still reachable. Once the result is released explicitly, these values
+ * refuse to access their blob, see {@link Value#getBlob}.
+ */
+final class NativeQueryResult implements AutoCloseable {
+
+    private final Session session;
+    private final StringDecoder decoder;
+    private final boolean zeroCopy;
+
+    // Read by blob views, possibly from other threads, to detect whether the
+    // memory they point into is still valid.
+    private volatile long result;
+
+    NativeQueryResult(Session session, String query, boolean deduplicateStrings, boolean zeroCopy) {
+        this.session = session;
+        this.decoder = new StringDecoder(deduplicateStrings);
+        this.zeroCopy = zeroCopy;
+        this.result = qdb.query_open(session.handle(), query);
+    }
+
+    String[] columns() {
+        return qdb.query_column_names(this.session.handle(), this.result);
+    }
+
+    long rowCount() {
+        return qdb.query_row_count(this.result);
+    }
+
+    /**
+     * Converts a range of rows. When zero-copy is enabled, blob values of these
+     * rows are read-only views onto the native result; otherwise they are copied.
+     * Strings are decoded in bulk, and when deduplication is enabled share their
+     * dictionary across calls.
+     */
+    Row[] rows(long offset, int count) {
+        if (this.result == 0) {
+            throw new IllegalStateException("Query result has already been released");
+        }
+
+        return qdb.query_get_rows(this.session.handle(), this.result, offset, count,
+                                  (this.zeroCopy ? this : null), this.decoder);
+    }
+
+    /**
+     * @return True once the native result has been released, after which blob
+     *         views onto it must not be accessed.
+     */
+    boolean isReleased() {
+        return this.result == 0;
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            this.close();
+        } finally {
+            super.finalize();
+        }
+    }
+
+    /**
+     * Releases the native query result. Blob views into this result must not be
+     * accessed afterwards.
+     */
+    public void close() {
+        if (this.result != 0) {
+            qdb.query_release(this.session.handle(), this.result);
+            this.result = 0;
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package net.quasardb.qdb.ts;
+
+import java.io.IOException;
+import java.lang.AutoCloseable;
+import java.util.Spliterator;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.quasardb.qdb.exception.InvalidArgumentException;
+import net.quasardb.qdb.exception.InvalidIteratorException;
+
+import net.quasardb.qdb.*;
+
+/**
+ * Bulk reader that splits the time ranges to read along the table's shard
+ * boundaries, and reads the resulting sub-ranges concurrently, each on a
+ * {@link Session} taken from a {@link SessionPool}.
+ *
+ * Rows are either returned in timestamp order ({@link Ordering#ORDERED}), or in
+ * whatever order the sub-ranges are read ({@link Ordering#UNORDERED}), which
+ * never waits for a slow sub-range while others have rows available and suits
+ * aggregations.
+ *
+ * Overlapping ranges are merged before splitting, so that every row is returned
+ * exactly once. As with Reader, usage of instances of this class is not
+ * thread-safe.
+ */
+public final class ParallelReader implements AutoCloseable, Iterator<WritableRow> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelReader.class);
+
+    public enum Ordering {
+        ORDERED,
+        UNORDERED
+    }
+
+    // Amount of sub-ranges we aim for per thread, so that threads which are done
+    // with (empty) sub-ranges early pick up more work.
+    private static final int splitsPerThread = 4;
+
+    // Amount of blocks a sub-range may read ahead of the consumer.
+    private static final int queueDepth = 2;
+
+    /**
+     * Rows read by a worker, or the error it encountered.
+     */
+    private static final class Chunk {
+        static final Chunk END = new Chunk(null, null);
+
+        final WritableRow[] rows;
+        final Throwable error;
+
+        Chunk(WritableRow[] rows, Throwable error) {
+            this.rows = rows;
+            this.error = error;
+        }
+    }
+
+    private final SessionPool pool;
+    private final Table table;
+    private final Ordering ordering;
+    private final int blockSize;
+    private final TimeRange[] splits;
+    private final ExecutorService executor;
+
+    // ORDERED: one queue per sub-range, drained one after the other.
+    // UNORDERED: a single queue shared by all sub-ranges.
+    private final List<BlockingQueue<Chunk>> queues;
+
+    // ORDERED: the sub-range currently drained. UNORDERED: the amount of
+    // sub-ranges completely drained.
+    private int current;
+
+    private Chunk chunk;
+    private int position;
+    private WritableRow next;
+    private volatile boolean closed;
+
+    // Error of the first sub-range that failed. Rethrown on every subsequent
+    // read, as the rows of the failed sub-range will never arrive.
+    private Throwable error;
+
+    protected ParallelReader(SessionPool pool, Table table, TimeRange[] ranges, int parallelism, Ordering ordering, int blockSize) {
+        if (ranges.length <= 0) {
+            throw new InvalidArgumentException("Reader requires at least one TimeRange to read");
+        }
+
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+
+        if (blockSize <= 0) {
+            throw new InvalidArgumentException("Block size must be positive: " + blockSize);
+        }
+
+        this.pool = pool;
+        this.table = table;
+        this.ordering = ordering;
+        this.blockSize = blockSize;
+        this.splits = splitRanges(ranges, table.getShardSizeMillis(), parallelism * splitsPerThread);
+
+        int threads = Math.min(parallelism, this.splits.length);
+
+        if (ordering == Ordering.ORDERED) {
+            this.queues = new ArrayList<BlockingQueue<Chunk>>(this.splits.length);
+            for (int i = 0; i < this.splits.length; ++i) {
+                this.queues.add(new ArrayBlockingQueue<Chunk>(queueDepth));
+            }
+        } else {
+            this.queues = Collections.singletonList(new ArrayBlockingQueue<Chunk>(queueDepth * threads));
+        }
+
+        this.executor = Executors.newFixedThreadPool(threads, (Runnable r) -> {
+                Thread t = new Thread(r, "qdb-parallel-reader");
+                t.setDaemon(true);
+                return t;
+            });
+
+        // The executor runs sub-ranges in submission order, which guarantees that
+        // in ordered mode, the sub-range being drained is always running or done.
+        for (int i = 0; i < this.splits.length; ++i) {
+            final int split = i;
+            this.executor.submit(() -> this.read(split));
+        }
+
+        logger.info("Initialized parallel reader for table {}, sub-ranges={}, threads={}, ordering={}",
+                    table.name, this.splits.length, threads, ordering.toString());
+    }
+
+    /**
+     * Splits time ranges along shard boundaries.
+     *
+     * Overlapping ranges are merged first. The resulting sub-ranges are sorted,
+     * do not overlap, and each span one or more complete shards, except for the
+     * first and last sub-range of every range. When the ranges span more than
+     * <code>maxSplits</code> shards, consecutive shards are grouped together.
+     *
+     * @param ranges Time ranges to split.
+     * @param shardSizeMillis Shard size of the table, in milliseconds.
+     * @param maxSplits Amount of sub-ranges to aim for.
+     */
+    public static TimeRange[] splitRanges(TimeRange[] ranges, long shardSizeMillis, int maxSplits) {
+        if (shardSizeMillis <= 0) {
+            throw new InvalidArgumentException("Shard size must be positive: " + shardSizeMillis);
+        }
+
+        TimeRange[] sorted = ranges.clone();
+        Arrays.sort(sorted, (TimeRange lhs, TimeRange rhs) -> lhs.getBegin().compareTo(rhs.getBegin()));
+
+        List<TimeRange> merged = new ArrayList<TimeRange>(sorted.length);
+        for (TimeRange r : sorted) {
+            int last = merged.size() - 1;
+
+            if (last >= 0 && r.getBegin().isBefore(merged.get(last).getEnd())) {
+                merged.set(last, TimeRange.union(merged.get(last), r));
+            } else {
+                merged.add(r);
+            }
+        }
+
+        long shardNanos = shardSizeMillis * 1000000L;
+
+        long shards = 0;
+        for (TimeRange r : merged) {
+            long begin = Math.floorDiv(toNanos(r.getBegin()), shardNanos) * shardNanos;
+            long span = toNanos(r.getEnd()) - begin;
+            long n = (span < 0 ? Long.MAX_VALUE : span) / shardNanos + 1;
+
+            shards = (shards > Long.MAX_VALUE - n ? Long.MAX_VALUE : shards + n);
+        }
+
+        long shardsPerSplit = Math.max(1, shards / Math.max(1, maxSplits));
+        long step = (shardsPerSplit > Long.MAX_VALUE / shardNanos ? Long.MAX_VALUE : shardsPerSplit * shardNanos);
+
+        List<TimeRange> ret = new ArrayList<TimeRange>();
+        for (TimeRange r : merged) {
+            long end = toNanos(r.getEnd());
+            long boundary = Math.floorDiv(toNanos(r.getBegin()), shardNanos) * shardNanos;
+            Timespec from = r.getBegin();
+
+            while (true) {
+                boundary = (boundary > Long.MAX_VALUE - step ? Long.MAX_VALUE : boundary + step);
+                if (boundary >= end) {
+                    break;
+                }
+
+                Timespec to = new Timespec(Math.floorDiv(boundary, 1000000000L),
+                                           Math.floorMod(boundary, 1000000000L));
+                ret.add(new TimeRange(from, to));
+                from = to;
+            }
+
+            ret.add(new TimeRange(from, r.getEnd()));
+        }
+
+        return ret.toArray(new TimeRange[ret.size()]);
+    }
+
+    /**
+     * Converts a timespec to nanoseconds since epoch, saturating timespecs that
+     * are out of range.
+     */
+    private static long toNanos(Timespec t) {
+        if (t.getSec() >= Long.MAX_VALUE / 1000000000L) {
+            return Long.MAX_VALUE;
+        }
+
+        if (t.getSec() <= Long.MIN_VALUE / 1000000000L) {
+            return Long.MIN_VALUE;
+        }
+
+        return t.getSec() * 1000000000L + t.getNano();
+    }
+
+    /**
+     * Returns the sub-ranges read concurrently.
+     */
+    public TimeRange[] getSplits() {
+        return this.splits.clone();
+    }
+
+    /**
+     * @return The underlying table that is being read from.
+     */
+    public Table getTable() {
+        return this.table;
+    }
+
+    private BlockingQueue<Chunk> queueOf(int split) {
+        return (this.ordering == Ordering.ORDERED ? this.queues.get(split) : this.queues.get(0));
+    }
+
+    /**
+     * Reads a single sub-range, runs on the executor.
+     */
+    private void read(int split) {
+        BlockingQueue<Chunk> queue = this.queueOf(split);
+        Session session = null;
+
+        try {
+            session = this.pool.acquire();
+
+            try (TableScan scan = new TableScan(session, this.table, new TimeRange[] { this.splits[split] }, this.blockSize)) {
+                while (this.closed == false && scan.next()) {
+                    RowBlock block = scan.block();
+
+                    WritableRow[] rows = new WritableRow[block.size()];
+                    for (int i = 0; i < rows.length; ++i) {
+                        rows[i] = block.getRow(i);
+                    }
+
+                    queue.put(new Chunk(rows, null));
+                }
+            }
+
+            queue.put(Chunk.END);
+        } catch (InterruptedException e) {
+            // The reader was closed, nobody is waiting for our rows anymore.
+        } catch (Throwable e) {
+            try {
+                queue.put(new Chunk(null, e));
+            } catch (InterruptedException e2) {
+                // The reader was closed
+            }
+        } finally {
+            if (session != null) {
+                boolean interrupted = Thread.interrupted();
+
+                try {
+                    this.pool.release(session);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } finally {
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the next row, waiting for a worker if necessary.
+     */
+    private void readNext() {
+        if (this.error != null) {
+            throw rethrow(this.error);
+        }
+
+        while (true) {
+            if (this.chunk != null && this.position < this.chunk.rows.length) {
+                this.next = this.chunk.rows[this.position++];
+                return;
+            }
+
+            this.chunk = null;
+
+            if (this.closed || this.current >= this.splits.length) {
+                this.next = null;
+                this.executor.shutdown();
+                return;
+            }
+
+            Chunk c;
+            try {
+                c = this.queueOf(this.current).take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for rows", e);
+            }
+
+            if (c == Chunk.END) {
+                this.current++;
+            } else if (c.error != null) {
+                // Stop the other workers, their rows are of no use anymore.
+                this.error = (c.error instanceof RuntimeException || c.error instanceof Error
+                              ? c.error
+                              : new RuntimeException(c.error));
+                this.executor.shutdownNow();
+
+                throw rethrow(this.error);
+            } else {
+                this.chunk = c;
+                this.position = 0;
+            }
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException)e;
+        } else if (e instanceof Error) {
+            throw (Error)e;
+        }
+
+        return new RuntimeException(e);
+    }
+
+    /**
+     * Reads the next row when appropriate.
+     */
+    private void maybeReadNext() {
+        if (this.next == null) {
+            this.readNext();
+        }
+    }
+
+    /**
+     * Stops all workers, and waits for them to return their sessions to the pool.
+     */
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+        this.chunk = null;
+        this.next = null;
+
+        // Interrupts workers waiting for the consumer; workers in the middle of
+        // reading a block stop after that block.
+        this.executor.shutdownNow();
+
+        try {
+            this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for readers", e);
+        }
+    }
+
+    /**
+     * Check whether there is another row available for reading or not. When this
+     * function returns true, it is safe to call {@link #next}.
+     *
+     * Once reading a sub-range failed, its error is thrown by this and every
+     * subsequent call.
+     *
+     * @return Returns true when another row is available for reading.
+     */
+    @Override
+    public boolean hasNext() {
+        this.maybeReadNext();
+
+        return this.next != null;
+    }
+
+    /**
+     * Returns the next row. Make sure to check whether it is safe to read the next
+     * row using {@link #hasNext}.
+     *
+     * @throws InvalidIteratorException Thrown when the iterator has reached the end
+     *                                  and no next row is available.
+     * @return The next row.
+     */
+    @Override
+    public WritableRow next() throws InvalidIteratorException {
+        if (this.hasNext() == false) {
+            throw new InvalidIteratorException("Attempted to read next but has no next rows");
+        }
+
+        WritableRow ret = this.next;
+        this.next = null;
+        return ret;
+    }
+
+    /**
+     * Provides stream-based access.
+     */
+    public Stream<WritableRow> stream() {
+        int characteristics = Spliterator.IMMUTABLE | Spliterator.NONNULL;
+        if (this.ordering == Ordering.ORDERED) {
+            characteristics |= Spliterator.ORDERED;
+        }
+
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(this, characteristics), false);
+    }
+}
@@ -0,0 +1,395 @@
+package net.quasardb.qdb.ts;
+
+import java.io.IOException;
+import java.io.Flushable;
+import java.lang.AutoCloseable;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.quasardb.qdb.*;
+
+/**
+ * Bulk writer that fans out over multiple sessions.
+ *
+ * Tables are consistently hashed onto a fixed amount of partitions, each of which
+ * is a regular {@link Writer} bound to its own {@link Session} taken from a
+ * {@link SessionPool}. Flushing flushes all partitions in parallel, and completes
+ * when every partition is done.
+ *
+ * As with Writer, usage of instances of this class is not thread-safe.
+ */
+public final class ParallelWriter implements AutoCloseable, Flushable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelWriter.class);
+
+    private SessionPool pool;
+    private Session[] sessions;
+    private Writer[] writers;
+    private ExecutorService executor;
+
+    // Cache of the most recently used table and its partition.
+    private Table lastTable = null;
+    private Writer lastWriter = null;
+
+    private Writer currentRow = null;
+    private boolean closed = false;
+
+    /**
+     * Initialize a new parallel writer with default options.
+     *
+     * @param pool Pool to take sessions from, must contain at least `partitions` sessions.
+     * @param partitions Amount of writers / sessions to spread tables over.
+     */
+    public ParallelWriter(SessionPool pool, int partitions) throws IOException {
+        this(pool, partitions, new Writer.Options());
+    }
+
+    /**
+     * Initialize a new parallel writer.
+     *
+     * @param pool Pool to take sessions from, must contain at least `partitions` sessions.
+     * @param partitions Amount of writers / sessions to spread tables over.
+     * @param options Options applied to every partition's writer.
+     */
+    public ParallelWriter(SessionPool pool, int partitions, Writer.Options options) throws IOException {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("Amount of partitions must be positive: " + partitions);
+        }
+
+        this.pool = pool;
+        this.sessions = new Session[partitions];
+        this.writers = new Writer[partitions];
+
+        try {
+            for (int i = 0; i < partitions; ++i) {
+                this.sessions[i] = pool.acquire();
+                this.writers[i] = Writer.of(this.sessions[i], options);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.abandonPartitions(e);
+            throw new IOException("Interrupted while acquiring sessions", e);
+        } catch (RuntimeException e) {
+            this.abandonPartitions(e);
+            throw e;
+        }
+
+        this.executor = Executors.newFixedThreadPool(partitions, (Runnable r) -> {
+                Thread t = new Thread(r, "qdb-parallel-writer");
+                t.setDaemon(true);
+                return t;
+            });
+
+        logger.info("Successfully initialized ParallelWriter with {} partitions", partitions);
+    }
+
+    /**
+     * Jump consistent hash: maps a key onto one of `buckets` buckets, such that
+     * changing the amount of buckets only moves a minimal amount of keys.
+     */
+    static int jumpConsistentHash(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long)((b + 1) * ((double)(1L << 31) / (double)((key >>> 33) + 1)));
+        }
+
+        return (int)b;
+    }
+
+    /**
+     * Returns the partition a table is assigned to.
+     */
+    int partitionOf(Table table) {
+        // Spread the bits of the (cached) string hash before hashing.
+        long key = table.getName().hashCode() * 0x9E3779B97F4A7C15L;
+        return jumpConsistentHash(key, this.writers.length);
+    }
+
+    private Writer writerOf(Table table) {
+        if (table == this.lastTable) {
+            return this.lastWriter;
+        }
+
+        Writer w = this.writers[partitionOf(table)];
+
+        this.lastTable = table;
+        this.lastWriter = w;
+        return w;
+    }
+
+    private Writer requireRow() {
+        if (this.currentRow == null) {
+            throw new IllegalStateException("No row in progress, call startRow() first");
+        }
+
+        return this.currentRow;
+    }
+
+    /**
+     * Returns the amount of partitions.
+     */
+    public int partitions() {
+        return this.writers.length;
+    }
+
+    /**
+     * Starts a new row in the partition of the table.
+     *
+     * @see Writer#startRow(Table, long, long)
+     */
+    public void startRow(Table table, long sec, long nsec) {
+        if (this.currentRow != null) {
+            throw new IllegalStateException("A row is already in progress, call endRow() first");
+        }
+
+        Writer w = this.writerOf(table);
+        w.startRow(table, sec, nsec);
+        this.currentRow = w;
+    }
+
+    /**
+     * Starts a new row in the partition of the table.
+     *
+     * @see Writer#startRow(Table, long)
+     */
+    public void startRow(Table table, long epochNanos) {
+        this.startRow(table,
+                      Math.floorDiv(epochNanos, 1000000000L),
+                      Math.floorMod(epochNanos, 1000000000L));
+    }
+
+    public void setDouble(int column, double value) {
+        this.requireRow().setDouble(column, value);
+    }
+
+    public void setInt64(int column, long value) {
+        this.requireRow().setInt64(column, value);
+    }
+
+    public void setTimestamp(int column, long sec, long nsec) {
+        this.requireRow().setTimestamp(column, sec, nsec);
+    }
+
+    public void setString(int column, CharSequence value) {
+        this.requireRow().setString(column, value);
+    }
+
+    public void setBlob(int column, ByteBuffer value) {
+        this.requireRow().setBlob(column, value);
+    }
+
+    public void setValue(int column, Value value) {
+        this.requireRow().setValue(column, value);
+    }
+
+    /**
+     * Completes the row in progress.
+     */
+    public void endRow() throws IOException {
+        Writer w = this.requireRow();
+        this.currentRow = null;
+        w.endRow();
+    }
+
+    /**
+     * Discards the row in progress, for example when one of its values turns out
+     * to be invalid.
+     *
+     * @see Writer#discardRow()
+     */
+    public void discardRow() {
+        Writer w = this.requireRow();
+        this.currentRow = null;
+        w.discardRow();
+    }
+
+    /**
+     * Append a new row to the local table cache of the table's partition.
+     *
+     * @param table Table to insert into.
+     * @param timestamp Timestamp of the row.
+     * @param values Values to insert, one for each column of the table.
+     */
+    public void append(Table table, Timespec timestamp, Value[] values) throws IOException {
+        if (this.currentRow != null) {
+            throw new IllegalStateException("A row is already in progress, call endRow() first");
+        }
+
+        this.writerOf(table).append(table, timestamp, values);
+    }
+
+    /**
+     * Append a new row to the local table cache of the table's partition.
+     *
+     * @param table Table to insert into.
+     * @param row Row to insert.
+     */
+    public void append(Table table, WritableRow row) throws IOException {
+        this.append(table, row.getTimestamp(), row.getValues());
+    }
+
+    /**
+     * Appends all rows of a columnar batch to the table's partition.
+     *
+     * @see Writer#appendColumns(Table, ColumnarBatch)
+     */
+    public void appendColumns(Table table, ColumnarBatch batch) throws IOException {
+        if (this.currentRow != null) {
+            throw new IllegalStateException("A row is already in progress, call endRow() first");
+        }
+
+        this.writerOf(table).appendColumns(table, batch);
+    }
+
+    /**
+     * Appends rows provided as one array per column to the table's partition.
+     *
+     * @see Writer#appendColumns(Table, long[], Object...)
+     */
+    public void appendColumns(Table table, long[] epochNanos, Object... columns) throws IOException {
+        this.appendColumns(table, ColumnarBatch.of(epochNanos, columns));
+    }
+
+    /**
+     * Returns the amount of values appended to all partitions, not yet flushed.
+     */
+    public long size() {
+        long n = 0;
+
+        for (Writer w : this.writers) {
+            n += w.size();
+        }
+
+        return n;
+    }
+
+    /**
+     * Flushes all partitions in parallel. Blocks until every partition is done;
+     * if any partition fails, the first error is rethrown after all partitions
+     * have completed.
+     */
+    public void flush() throws IOException {
+        if (this.currentRow != null) {
+            throw new IllegalStateException("Cannot flush while a row is in progress, call endRow() first");
+        }
+
+        this.forEachPartition(true, (Writer w) -> {
+                w.flush();
+            });
+    }
+
+    /**
+     * Closes all partitions in parallel and releases their sessions back to the
+     * pool. Closing a writer that is already closed has no effect.
+     */
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+
+        try {
+            this.forEachPartition(false, (Writer w) -> {
+                    w.close();
+                });
+        } finally {
+            this.executor.shutdown();
+            this.releaseSessions();
+        }
+    }
+
+    @FunctionalInterface
+    private interface PartitionTask {
+        void apply(Writer w) throws IOException;
+    }
+
+    private void forEachPartition(boolean skipIdle, PartitionTask task) throws IOException {
+        List<Future<Void>> jobs = new ArrayList<Future<Void>>(this.writers.length);
+
+        for (Writer w : this.writers) {
+            // Don't bother scheduling work for idle partitions
+            if (skipIdle && w.size() == 0) {
+                continue;
+            }
+
+            jobs.add(this.executor.submit(() -> {
+                        task.apply(w);
+                        return null;
+                    }));
+        }
+
+        Throwable error = null;
+        for (Future<Void> job : jobs) {
+            try {
+                job.get();
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = e.getCause();
+                } else {
+                    error.addSuppressed(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for partitions", e);
+            }
+        }
+
+        if (error instanceof IOException) {
+            throw (IOException)error;
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException)error;
+        } else if (error instanceof Error) {
+            throw (Error)error;
+        } else if (error != null) {
+            throw new IOException(error);
+        }
+    }
+
+    /**
+     * Closes the writers built so far and returns their sessions to the pool, when
+     * the constructor fails halfway.
+     */
+    private void abandonPartitions(Throwable cause) {
+        for (Writer w : this.writers) {
+            if (w == null) {
+                continue;
+            }
+
+            try {
+                w.close();
+            } catch (IOException | RuntimeException e) {
+                cause.addSuppressed(e);
+            }
+        }
+
+        this.releaseSessions();
+    }
+
+    private void releaseSessions() {
+        for (int i = 0; i < this.sessions.length; ++i) {
+            if (this.sessions[i] == null) {
+                continue;
+            }
+
+            try {
+                this.pool.release(this.sessions[i]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            this.sessions[i] = null;
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package net.quasardb.qdb.ts;
 
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.quasardb.qdb.Session;
+import net.quasardb.qdb.SessionPool;
 import net.quasardb.qdb.jni.qdb;
 import net.quasardb.qdb.jni.Reference;
+import net.quasardb.qdb.exception.IncompatibleTypeException;
 import net.quasardb.qdb.exception.InputException;
 
 
@@ -24,6 +29,7 @@ public final class Query {
     private static final Logger logger = LoggerFactory.getLogger(Query.class);
 
     private String query;
+    private boolean deduplicateStrings = false;
 
     protected Query() {
     }
@@ -50,6 +56,19 @@ public final class Query {
         return new Query(query);
     }
 
+    /**
+     * When enabled, equal string values of a result share a single String
+     * instance, which considerably reduces memory usage of results with many
+     * repeated strings, such as symbols. Disabled by default.
+     *
+     * @param enabled Whether to deduplicate strings.
+     * @return This query.
+     */
+    public Query deduplicateStrings(boolean enabled) {
+        this.deduplicateStrings = enabled;
+        return this;
+    }
+
     public Result execute(Session session) {
         if (this.query == null) {
             throw new InputException("Cannot execute an empty query");
@@ -57,8 +76,166 @@ public final class Query {
 
         Reference<Result> result = new Reference<Result>();
 
-        qdb.query_execute(session.handle(), this.query, result);
+        qdb.query_execute(session.handle(), this.query,
+                          new StringDecoder(this.deduplicateStrings), result);
+
+        return result.value;
+    }
+
+    /**
+     * Executes the query asynchronously, on a bounded executor dedicated to
+     * queries, rather than blocking the calling thread.
+     *
+     * Cancelling the returned future before the query started means it is never
+     * sent to the cluster; a query already in progress cannot be interrupted, and
+     * its result is discarded. The session must remain open until the future
+     * completes.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException Through the future,
+     *         when too many queries are pending.
+     */
+    public CompletableFuture<Result> executeAsync(Session session) {
+        return QueryExecutor.submit(() -> this.execute(session));
+    }
+
+    /**
+     * Executes the query asynchronously, failing the future with a
+     * TimeoutException when it did not complete within the timeout.
+     *
+     * @see #executeAsync(Session)
+     */
+    public CompletableFuture<Result> executeAsync(Session session, Duration timeout) {
+        return this.executeAsync(session).orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Executes the query asynchronously, using a session from the pool. The
+     * session is released back to the pool as soon as the query completes.
+     *
+     * @see #executeAsync(Session)
+     */
+    public CompletableFuture<Result> executeAsync(SessionPool pool) {
+        return QueryExecutor.submit(() -> {
+                Session session = pool.acquire();
+                try {
+                    return this.execute(session);
+                } finally {
+                    pool.release(session);
+                }
+            });
+    }
+
+    /**
+     * Executes the query asynchronously using a session from the pool, failing
+     * the future with a TimeoutException when it did not complete within the
+     * timeout, which includes the time spent waiting for a session.
+     *
+     * @see #executeAsync(SessionPool)
+     */
+    public CompletableFuture<Result> executeAsync(SessionPool pool, Duration timeout) {
+        return this.executeAsync(pool).orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Executes the query without copying blobs: blob values of the result are
+     * read-only views onto the native query result, which is kept alive until
+     * the result is closed. Use {@link Result#copy} or {@link Value#copy} to
+     * retain blobs beyond that.
+     *
+     * <pre>
+     * try (Result r = Query.of("select blob_col from t in range(2020, +1d)").executeZeroCopy(session)) {
+     *     ...
+     * }
+     * </pre>
+     */
+    public Result executeZeroCopy(Session session) {
+        if (this.query == null) {
+            throw new InputException("Cannot execute an empty query");
+        }
+
+        NativeQueryResult result = new NativeQueryResult(session, this.query, this.deduplicateStrings, true);
+
+        try {
+            long n = result.rowCount();
+            if (n > Integer.MAX_VALUE) {
+                throw new InputException("Query result too large, use cursor() instead: " + n + " rows");
+            }
+
+            return new Result(result.columns(), result.rows(0, (int)n), result);
+        } catch (RuntimeException e) {
+            result.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Executes the query, and returns its result in columnar layout. Compared to
+     * {@link #execute}, no objects are allocated per row or per value, which makes
+     * this preferable for queries returning many rows.
+     *
+     * @throws IncompatibleTypeException Thrown when a column holds values of
+     *                                   different types, in which case
+     *                                   {@link #execute} should be used instead.
+     */
+    public ColumnarResult executeColumnar(Session session) {
+        if (this.query == null) {
+            throw new InputException("Cannot execute an empty query");
+        }
+
+        Reference<ColumnarResult> result = new Reference<ColumnarResult>();
+
+        qdb.query_execute_columnar(session.handle(), this.query, result);
 
         return result.value;
     }
+
+    /**
+     * Executes the query, and returns a cursor that converts the rows of the
+     * result lazily, {@link QueryCursor#defaultChunkSize} rows at a time. The
+     * cursor must be closed to release the native result.
+     */
+    public QueryCursor cursor(Session session) {
+        return this.cursor(session, QueryCursor.defaultChunkSize);
+    }
+
+    /**
+     * Executes the query, and returns a cursor that converts the rows of the
+     * result lazily. The cursor must be closed to release the native result.
+     *
+     * @param chunkSize Amount of rows converted per JNI call.
+     */
+    public QueryCursor cursor(Session session, int chunkSize) {
+        if (this.query == null) {
+            throw new InputException("Cannot execute an empty query");
+        }
+
+        return new QueryCursor(session, this.query, chunkSize, this.deduplicateStrings, false);
+    }
+
+    /**
+     * Executes the query, and returns a cursor that does not copy blobs: blob
+     * values are read-only views onto the native query result, and as such only
+     * valid until the cursor is closed. Use {@link Row#copy} or
+     * {@link Value#copy} to retain them beyond that.
+     *
+     * @see #cursor(Session)
+     */
+    public QueryCursor cursorZeroCopy(Session session) {
+        return this.cursorZeroCopy(session, QueryCursor.defaultChunkSize);
+    }
+
+    /**
+     * Executes the query, and returns a cursor that does not copy blobs.
+     *
+     * @param chunkSize Amount of rows converted per JNI call.
+     *
+     * @see #cursorZeroCopy(Session)
+     */
+    public QueryCursor cursorZeroCopy(Session session, int chunkSize) {
+        if (this.query == null) {
+            throw new InputException("Cannot execute an empty query");
+        }
+
+        return new QueryCursor(session, this.query, chunkSize, this.deduplicateStrings, true);
+    }
 }
@@ -0,0 +1,169 @@
+package net.quasardb.qdb.ts;
+
+import java.io.IOException;
+import java.lang.AutoCloseable;
+import java.util.Spliterator;
+import java.util.*;
+import java.util.stream.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.quasardb.qdb.exception.InvalidArgumentException;
+import net.quasardb.qdb.exception.InvalidIteratorException;
+
+import net.quasardb.qdb.*;
+import net.quasardb.qdb.jni.*;
+
+/**
+ * Iterates over the rows of a query result, as returned by
+ * {@link Query#cursor}.
+ *
+ * Unlike {@link Query#execute}, which converts the entire result before
+ * returning, the cursor keeps the native result alive and converts rows to
+ * Java objects one chunk at a time, as the consumer advances. Only a single
+ * chunk of rows is held on the Java heap at any time.
+ *
+ * Blob values are copied, unless the cursor was obtained using
+ * {@link Query#cursorZeroCopy}: blob values are then read-only views onto the
+ * native result, and as such only valid until the cursor is closed. Use
+ * {@link Value#copy} or {@link Row#copy} to retain them beyond that.
+ *
+ * The native result is released when the cursor is closed, so make sure to
+ * always close it:
+ *
+ * <pre>
+ * try (QueryCursor c = Query.of("select * from t in range(2020, +1d)").cursor(session)) {
+ *     while (c.hasNext()) {
+ *         Row r = c.next();
+ *     }
+ * }
+ * </pre>
+ */
+public final class QueryCursor implements AutoCloseable, Iterator<Row> {
+    private static final Logger logger = LoggerFactory.getLogger(QueryCursor.class);
+
+    /**
+     * Default amount of rows converted per JNI call.
+     */
+    public static final int defaultChunkSize = 1024;
+
+    private final int chunkSize;
+    private final String[] columns;
+    private final long rowCount;
+    private NativeQueryResult result;
+
+    private Row[] chunk;
+    private long chunkOffset;
+    private int position;
+
+    QueryCursor(Session session, String query, int chunkSize, boolean deduplicateStrings, boolean zeroCopy) {
+        if (chunkSize <= 0) {
+            throw new InvalidArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+
+        this.chunkSize = chunkSize;
+        this.result = new NativeQueryResult(session, query, deduplicateStrings, zeroCopy);
+
+        try {
+            this.columns = this.result.columns();
+            this.rowCount = this.result.rowCount();
+        } catch (RuntimeException e) {
+            this.result.close();
+            throw e;
+        }
+
+        this.chunk = new Row[0];
+        this.chunkOffset = 0;
+        this.position = 0;
+
+        logger.debug("Opened query cursor with {} rows", this.rowCount);
+    }
+
+    /**
+     * @return The names of the columns of the result.
+     */
+    public String[] getColumns() {
+        return this.columns;
+    }
+
+    /**
+     * @return The total amount of rows in the result.
+     */
+    public long getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * Releases the native query result, after which no more rows can be read.
+     */
+    public void close() throws IOException {
+        if (this.result != null) {
+            this.result.close();
+            this.result = null;
+        }
+
+        this.chunk = new Row[0];
+    }
+
+    /**
+     * Check whether there is another row available for reading or not. When this
+     * function returns true, it is safe to call {@link #next}.
+     *
+     * @return Returns true when another row is available for reading.
+     */
+    @Override
+    public boolean hasNext() {
+        if (this.position < this.chunk.length) {
+            return true;
+        }
+
+        long offset = this.chunkOffset + this.chunk.length;
+        if (this.result == null || offset >= this.rowCount) {
+            return false;
+        }
+
+        int n = (int)Math.min((long)this.chunkSize, this.rowCount - offset);
+
+        // Drop our reference to the previous chunk before converting the next
+        // one, so that both never need to fit in memory at the same time.
+        this.chunk = new Row[0];
+        this.chunk = this.result.rows(offset, n);
+        this.chunkOffset = offset;
+        this.position = 0;
+
+        return this.chunk.length > 0;
+    }
+
+    /**
+     * Returns the next row. Make sure to check whether another row is available
+     * using {@link #hasNext}.
+     *
+     * @throws InvalidIteratorException Thrown when the iterator has reached the end
+     *                                  and no next row is available.
+     */
+    @Override
+    public Row next() throws InvalidIteratorException {
+        if (this.hasNext() == false) {
+            throw new InvalidIteratorException("Attempted to read next but has no next rows");
+        }
+
+        return this.chunk[this.position++];
+    }
+
+    /**
+     * Provides stream-based access. Closing the stream closes the cursor.
+     */
+    public Stream<Row> stream() {
+        return StreamSupport.stream(
+            Spliterators.spliterator(this, this.rowCount,
+                                     Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.ORDERED), false)
+            .onClose(() -> {
+                    try {
+                        this.close();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+    }
+}
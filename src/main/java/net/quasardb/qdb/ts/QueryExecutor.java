@@ -0,0 +1,89 @@
+package net.quasardb.qdb.ts;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded executor on which asynchronous queries are run, see
+ * {@link Query#executeAsync}.
+ *
+ * Queries block in native code for the entire server round-trip, which cannot
+ * be interrupted. Rather than parking a caller thread per in-flight query, they
+ * are run on a fixed amount of daemon threads, with a bounded queue of pending
+ * queries: when the queue is full, queries fail immediately with a
+ * RejectedExecutionException instead of piling up.
+ */
+final class QueryExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(QueryExecutor.class);
+
+    /**
+     * Amount of queries executed concurrently.
+     */
+    static final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Maximum amount of queries waiting for a thread.
+     */
+    static final int queueDepth = 1024;
+
+    // Initialized on first use, so that applications that never execute queries
+    // asynchronously do not pay for the threads.
+    private static final class Holder {
+        static final ThreadPoolExecutor executor = create();
+    }
+
+    private QueryExecutor() {
+    }
+
+    private static ThreadPoolExecutor create() {
+        logger.info("Initializing query executor, threads={}, queueDepth={}", threads, queueDepth);
+
+        ThreadPoolExecutor ret = new ThreadPoolExecutor(threads, threads,
+                                                        60, TimeUnit.SECONDS,
+                                                        new ArrayBlockingQueue<Runnable>(queueDepth),
+                                                        (Runnable r) -> {
+                                                            Thread t = new Thread(r, "qdb-query");
+                                                            t.setDaemon(true);
+                                                            return t;
+                                                        });
+        ret.allowCoreThreadTimeOut(true);
+        return ret;
+    }
+
+    /**
+     * Submits a task, and returns a future that completes with its result.
+     *
+     * Cancelling the future, or completing it in any other way such as with a
+     * timeout, while the task is still queued means the task is never run. Once
+     * running, the task cannot be interrupted, and its result is discarded.
+     */
+    static <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> ret = new CompletableFuture<T>();
+
+        try {
+            Holder.executor.execute(() -> {
+                    if (ret.isDone()) {
+                        return;
+                    }
+
+                    try {
+                        ret.complete(task.call());
+                    } catch (Throwable e) {
+                        ret.completeExceptionally(e);
+                    }
+                });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Query executor queue is full, rejecting query");
+            ret.completeExceptionally(e);
+        }
+
+        return ret;
+    }
+}
@@ -8,6 +8,9 @@ import java.time.LocalDateTime;
 import java.nio.channels.SeekableByteChannel;
 import java.util.Spliterator;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
 import java.util.stream.*;
 
 import org.slf4j.Logger;
@@ -22,31 +25,198 @@ import net.quasardb.qdb.jni.*;
 /**
  * High-performance bulk reader for a QuasarDB timeseries table. This class follows the
  * general Iterator pattern, and allows you to scan entire timeseries tables in bulk.
+ *
+ * Rows are fetched from the native layer in blocks of up to {@link #defaultBlockSize}
+ * rows using a single JNI call per block, and served from primitive buffers.
+ *
+ * Optionally, blocks are fetched ahead of the consumer by a background thread, see
+ * {@link Options#setPrefetchDepth}.
  */
 public class Reader implements AutoCloseable, Iterator<WritableRow> {
     private static final Logger logger = LoggerFactory.getLogger(Reader.class);
 
+    /**
+     * Default maximum amount of rows fetched per JNI call.
+     */
+    public static final int defaultBlockSize = TableScan.defaultBlockSize;
+
+    static public class Options {
+        private int blockSize;
+        private int prefetchDepth;
+        private boolean deduplicateSymbols;
+
+        public Options() {
+            this.blockSize = defaultBlockSize;
+            this.prefetchDepth = 0;
+            this.deduplicateSymbols = false;
+        }
+
+        /**
+         * Sets the maximum amount of rows fetched from the native layer at once.
+         */
+        public void setBlockSize(int blockSize) {
+            if (blockSize <= 0) {
+                throw new InvalidArgumentException("Block size must be positive: " + blockSize);
+            }
+
+            this.blockSize = blockSize;
+        }
+
+        public int getBlockSize() {
+            return this.blockSize;
+        }
+
+        /**
+         * Sets the amount of blocks fetched ahead of the consumer by a background
+         * thread. Defaults to 0, which disables prefetching: blocks are then only
+         * fetched once the previous block is consumed, by the consuming thread.
+         */
+        public void setPrefetchDepth(int prefetchDepth) {
+            if (prefetchDepth < 0) {
+                throw new InvalidArgumentException("Prefetch depth must not be negative: " + prefetchDepth);
+            }
+
+            this.prefetchDepth = prefetchDepth;
+        }
+
+        public int getPrefetchDepth() {
+            return this.prefetchDepth;
+        }
+
+        /**
+         * When enabled, repeated values of symbol columns map to a single String
+         * instance, rather than a new String per row. Defaults to false.
+         */
+        public void setDeduplicateSymbols(boolean deduplicateSymbols) {
+            this.deduplicateSymbols = deduplicateSymbols;
+        }
+
+        public boolean getDeduplicateSymbols() {
+            return this.deduplicateSymbols;
+        }
+    }
+
+    /**
+     * Fetches blocks ahead of the consumer. Blocks are recycled between the fetcher
+     * and the consumer, so that in steady state no buffers are allocated.
+     */
+    private static final class Prefetcher implements Runnable {
+        // Marks the end of the table, or an error.
+        static final RowBlock END = new RowBlock(new Column[0], 0);
+
+        final TableScan scan;
+        final BlockingQueue<RowBlock> filled;
+        final BlockingQueue<RowBlock> free;
+        final Thread thread;
+
+        volatile Throwable error = null;
+        volatile long fetcherStalls = 0;
+
+        Prefetcher(TableScan scan, int depth) {
+            this.scan = scan;
+
+            // One block being filled, `depth` blocks ready, and one block being
+            // consumed. Waiting for a free block is what bounds the fetcher, the
+            // queue of filled blocks has room for all blocks and the end marker.
+            this.filled = new ArrayBlockingQueue<RowBlock>(depth + 3);
+            this.free = new ArrayBlockingQueue<RowBlock>(depth + 2);
+            for (int i = 0; i < depth + 2; ++i) {
+                this.free.add(scan.newBlock());
+            }
+
+            this.thread = new Thread(this, "qdb-reader-prefetch");
+            this.thread.setDaemon(true);
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    RowBlock b = this.free.poll();
+                    if (b == null) {
+                        // The consumer is slower than we are.
+                        this.fetcherStalls++;
+                        b = this.free.take();
+                    }
+
+                    if (this.scan.next(b) == false) {
+                        break;
+                    }
+
+                    this.filled.put(b);
+                }
+            } catch (InterruptedException e) {
+                // The reader was closed
+                return;
+            } catch (Throwable e) {
+                this.error = e;
+            }
+
+            this.filled.add(END);
+        }
+
+        /**
+         * Stops the fetcher, and waits for it to stop using the scan.
+         */
+        void stop() throws IOException {
+            this.thread.interrupt();
+
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for prefetch thread", e);
+            }
+        }
+    }
+
     Session session;
     Table table;
-    long localTable;
     WritableRow next;
 
+    private final TimeRange[] ranges;
+    private final int blockSize;
+    private final int prefetchDepth;
+    private final boolean deduplicateSymbols;
+    private final TableScan scan;
+    private RowBlock block;
+    private int position;
+    private boolean started;
+    private boolean exhausted;
+
+    private Prefetcher prefetcher = null;
+    private long consumerStalls = 0;
+    private long consumerStallNanos = 0;
+
+    // Scans opened by the spliterators of stream(), closed along with the reader.
+    private final Set<TableScan> splitScans = Collections.newSetFromMap(new IdentityHashMap<TableScan, Boolean>());
+
     protected Reader(Session session, Table table, TimeRange[] ranges) {
+        this(session, table, ranges, defaultBlockSize);
+    }
+
+    protected Reader(Session session, Table table, TimeRange[] ranges, int blockSize) {
+        this(session, table, ranges, blockSize, 0, false);
+    }
+
+    protected Reader(Session session, Table table, TimeRange[] ranges, Options options) {
+        this(session, table, ranges, options.getBlockSize(), options.getPrefetchDepth(), options.getDeduplicateSymbols());
+    }
+
+    private Reader(Session session, Table table, TimeRange[] ranges, int blockSize, int prefetchDepth, boolean deduplicateSymbols) {
         logger.info("Initializing bulk reader for table {}", table.name);
-        if (ranges.length <= 0) {
-            throw new InvalidArgumentException("Reader requires at least one TimeRange to read");
-        }
 
         this.session = session;
         this.table = table;
         this.next = null;
-
-        this.localTable = qdb.ts_local_table_init(this.session.handle(),
-                                                  table.getName(),
-                                                  table.getColumns());
-        assert (this.localTable > 0);
-
-        qdb.ts_table_get_ranges(this.session.handle(), this.localTable, ranges);
+        this.ranges = ranges.clone();
+        this.blockSize = blockSize;
+        this.prefetchDepth = prefetchDepth;
+        this.deduplicateSymbols = deduplicateSymbols;
+        this.scan = new TableScan(session, table, ranges, blockSize, deduplicateSymbols);
+        this.block = this.scan.block();
+        this.position = 0;
+        this.started = false;
+        this.exhausted = false;
     }
 
     protected Reader(Session session, Table table) {
@@ -74,14 +244,118 @@ public class Reader implements AutoCloseable, Iterator<WritableRow> {
         }
     }
 
+    /**
+     * Fetches the next block of rows when the current block is consumed.
+     *
+     * @return True when a row is available in the current block.
+     */
+    private boolean fetchBlock() {
+        if (this.position < this.block.size()) {
+            return true;
+        }
+
+        if (this.exhausted) {
+            return false;
+        }
+
+        this.position = 0;
+
+        if (this.prefetchDepth == 0) {
+            this.exhausted = (this.scan.next() == false);
+            return this.exhausted == false;
+        }
+
+        if (this.prefetcher == null) {
+            // Started on first use, so that stream() can still take over the scan.
+            this.prefetcher = new Prefetcher(this.scan, this.prefetchDepth);
+            this.prefetcher.thread.start();
+        } else {
+            // Hand the consumed block back to the fetcher.
+            this.prefetcher.free.add(this.block);
+        }
+
+        RowBlock b = this.prefetcher.filled.poll();
+        if (b == null) {
+            long start = System.nanoTime();
+            this.consumerStalls++;
+
+            try {
+                b = this.prefetcher.filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for rows", e);
+            } finally {
+                this.consumerStallNanos += System.nanoTime() - start;
+            }
+        }
+
+        if (b == Prefetcher.END) {
+            this.block = this.scan.block();
+            this.block.size = 0;
+            this.exhausted = true;
+
+            Throwable error = this.prefetcher.error;
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException)error;
+            } else if (error instanceof Error) {
+                throw (Error)error;
+            } else if (error != null) {
+                throw new RuntimeException(error);
+            }
+
+            return false;
+        }
+
+        this.block = b;
+        return true;
+    }
+
     /**
      * Reads the next row from local table. Transparently updates the local
      * reference to the internal row.
      */
     private void readNext() {
-        this.next = qdb.ts_table_next_row(this.session.handle(),
-                                          this.localTable,
-                                          this.table.getColumns());
+        this.started = true;
+
+        if (this.fetchBlock()) {
+            this.next = this.block.getRow(this.position++);
+        } else {
+            this.next = null;
+        }
+    }
+
+    /**
+     * Moves to the next row without materializing it.
+     *
+     * @return The offset of the row in {@link #currentBlock}, or -1 when no more
+     *         rows are available.
+     */
+    int advanceRow() {
+        this.started = true;
+
+        if (this.next != null) {
+            // Already read by hasNext(), but not yet returned.
+            this.next = null;
+            return this.position - 1;
+        }
+
+        if (this.fetchBlock()) {
+            return this.position++;
+        }
+
+        return -1;
+    }
+
+    RowBlock currentBlock() {
+        return this.block;
+    }
+
+    /**
+     * Returns a cursor over the remaining rows of this reader, which does not
+     * allocate any objects per row.
+     */
+    public RowCursor cursor() {
+        return new RowCursor(this);
     }
 
     /**
@@ -97,11 +371,55 @@ public class Reader implements AutoCloseable, Iterator<WritableRow> {
      * Closes the timeseries table and local cache so that memory can be reclaimed.
      */
     public void close() throws IOException {
-        qdb.ts_local_table_release(this.session.handle(), this.localTable);
-        this.localTable = 0;
+        if (this.prefetcher != null) {
+            this.prefetcher.stop();
+            this.prefetcher = null;
+        }
+
+        if (this.scan != null) {
+            this.scan.close();
+        }
+
+        if (this.splitScans != null) {
+            synchronized (this.splitScans) {
+                for (TableScan x : this.splitScans) {
+                    x.close();
+                }
+
+                this.splitScans.clear();
+            }
+        }
+
         this.next = null;
     }
 
+    /**
+     * Returns the amount of times the consumer had to wait for the prefetch thread
+     * to fetch a block. A high amount of stalls means that fetching is slower than
+     * consuming, increasing the prefetch depth does not help in that case.
+     */
+    public long getConsumerStalls() {
+        return this.consumerStalls;
+    }
+
+    /**
+     * Returns the total time, in nanoseconds, the consumer spent waiting for the
+     * prefetch thread.
+     */
+    public long getConsumerStallNanos() {
+        return this.consumerStallNanos;
+    }
+
+    /**
+     * Returns the amount of times the prefetch thread had to wait for the consumer,
+     * because all blocks were fetched ahead already. A high amount of stalls means
+     * that the prefetch depth can be reduced without slowing down the consumer.
+     */
+    public long getFetcherStalls() {
+        Prefetcher p = this.prefetcher;
+        return (p == null ? 0 : p.fetcherStalls);
+    }
+
     /**
      * Check whether there is another row available for reading or not. When this
      * function returns true, it is safe to call {@link #next}.
@@ -138,9 +456,122 @@ public class Reader implements AutoCloseable, Iterator<WritableRow> {
 
     /**
      * Provides stream-based access.
+     *
+     * When no rows have been read from this reader yet, the stream's spliterator
+     * can be split along the table's shard boundaries, each split reading its
+     * own part of the time ranges using a separate local table, which allows
+     * efficient use of <code>stream().parallel()</code>. Overlapping time ranges
+     * are merged in this case. After this, the reader itself can no longer be
+     * used as an iterator.
      */
     public Stream<WritableRow> stream() {
-        return StreamSupport.stream(
-            Spliterators.spliteratorUnknownSize(this, Spliterator.IMMUTABLE), false);
+        if (this.started) {
+            return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.IMMUTABLE), false);
+        }
+
+        // The reader's own local table is not used by the splits.
+        this.started = true;
+        try {
+            this.scan.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return StreamSupport.stream(new Split(ParallelReader.splitRanges(this.ranges, this.table.getShardSizeMillis(), 1)), false);
+    }
+
+    private TableScan openScan(TimeRange[] ranges) {
+        TableScan ret = new TableScan(this.session, this.table, ranges, this.blockSize, this.deduplicateSymbols);
+
+        synchronized (this.splitScans) {
+            this.splitScans.add(ret);
+        }
+
+        return ret;
+    }
+
+    private void closeScan(TableScan x) {
+        synchronized (this.splitScans) {
+            this.splitScans.remove(x);
+        }
+
+        try {
+            x.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Spliterator over a set of sorted, non-overlapping time ranges, which is
+     * split in halves along shard boundaries until every split covers a single
+     * shard. The local table is only opened once traversal starts.
+     */
+    private final class Split implements Spliterator<WritableRow> {
+        private TimeRange[] ranges;
+        private TableScan scan = null;
+        private int position = 0;
+        private boolean done = false;
+
+        Split(TimeRange[] ranges) {
+            this.ranges = ranges;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super WritableRow> action) {
+            if (this.done) {
+                return false;
+            }
+
+            if (this.scan == null) {
+                this.scan = Reader.this.openScan(this.ranges);
+            }
+
+            if (this.position >= this.scan.block().size()) {
+                this.position = 0;
+
+                if (this.scan.next() == false) {
+                    Reader.this.closeScan(this.scan);
+                    this.done = true;
+                    return false;
+                }
+            }
+
+            action.accept(this.scan.block().getRow(this.position++));
+            return true;
+        }
+
+        @Override
+        public Spliterator<WritableRow> trySplit() {
+            if (this.scan != null || this.done) {
+                return null;
+            }
+
+            TimeRange[] xs = ParallelReader.splitRanges(this.ranges, Reader.this.table.getShardSizeMillis(), 2);
+            if (xs.length < 2) {
+                return null;
+            }
+
+            // Keep the suffix, as required for ORDERED spliterators.
+            int half = xs.length / 2;
+            this.ranges = Arrays.copyOfRange(xs, half, xs.length);
+            return new Split(Arrays.copyOfRange(xs, 0, half));
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.ORDERED | Spliterator.SORTED;
+        }
+
+        @Override
+        public Comparator<? super WritableRow> getComparator() {
+            return (WritableRow lhs, WritableRow rhs) -> lhs.getTimestamp().compareTo(rhs.getTimestamp());
+        }
     }
 }
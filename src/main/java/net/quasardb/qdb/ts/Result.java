@@ -10,17 +10,49 @@ import java.io.Serializable;
 /**
  * The result of a Query
  */
-public final class Result implements Serializable {
+public final class Result implements Serializable, AutoCloseable {
 
     public String[] columns;
     public Row[] rows;
 
+    // Set when blobs are views onto a native result, see Query#executeZeroCopy.
+    private transient NativeQueryResult owner;
+
     /**
      * Create a new result from result tables.
      */
     public Result(String[] columns, Row[] rows) {
+        this(columns, rows, null);
+    }
+
+    Result(String[] columns, Row[] rows, NativeQueryResult owner) {
         this.columns = columns;
         this.rows = rows;
+        this.owner = owner;
+    }
+
+    /**
+     * Returns a deep copy of this result, which remains valid after this result
+     * is closed.
+     */
+    public Result copy() {
+        Row[] rows = new Row[this.rows.length];
+        for (int i = 0; i < rows.length; ++i) {
+            rows[i] = this.rows[i].copy();
+        }
+
+        return new Result(this.columns.clone(), rows);
+    }
+
+    /**
+     * Releases the native memory backing the blobs of this result, if any. Blob
+     * values must not be accessed afterwards.
+     */
+    public void close() {
+        if (this.owner != null) {
+            this.owner.close();
+            this.owner = null;
+        }
     }
 
     /**
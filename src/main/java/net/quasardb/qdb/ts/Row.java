@@ -46,6 +46,13 @@ public class Row implements Serializable, Comparable<Row> {
         }
     }
 
+    /**
+     * Returns a deep copy of this row, see {@link Value#copy}.
+     */
+    public Row copy() {
+        return new Row(this);
+    }
+
     /**
      * Access to the underlying values of this row.
      */
@@ -0,0 +1,222 @@
+package net.quasardb.qdb.ts;
+
+import java.nio.ByteBuffer;
+
+import net.quasardb.qdb.jni.*;
+
+/**
+ * A block of rows read from a table using a single JNI call, stored per column
+ * in primitive arrays. Blocks are reused: reading the next block overwrites the
+ * contents of the previous one.
+ *
+ * Layout of the value arrays, by column type:
+ *
+ * <ul>
+ *   <li>DOUBLE: <code>double[]</code>, null values are NaN;</li>
+ *   <li>INT64: <code>long[]</code>, null values are {@link Constants#nullInt64};</li>
+ *   <li>TIMESTAMP: <code>long[]</code> of seconds and nanoseconds, interleaved;</li>
+ *   <li>BLOB, STRING and SYMBOL: <code>int[]</code> of offsets into the column's
+ *       byte slab. <code>offsets[i + 1]</code> is where row <code>i</code> ends,
+ *       or its bitwise complement if the value is null. A row starts where the
+ *       previous row ends.</li>
+ * </ul>
+ */
+final class RowBlock {
+
+    final Column[] columns;
+    final Column.Type[] types;
+
+    int capacity = 0;
+    int size = 0;
+
+    long[] sec;
+    long[] nsec;
+    final Object[] values;
+
+    // Byte slabs of blob and string columns, replaced by native code every block.
+    final Object[] slabs;
+
+    // Dictionary for symbol values, shared by all blocks of a scan; null when
+    // symbols are not deduplicated.
+    StringDecoder symbols = null;
+
+    RowBlock(Column[] columns, int capacity) {
+        this.columns = columns;
+        this.types = new Column.Type[columns.length];
+        this.values = new Object[columns.length];
+        this.slabs = new Object[columns.length];
+
+        for (int i = 0; i < columns.length; ++i) {
+            this.types[i] = columns[i].getType();
+        }
+
+        this.ensureCapacity(capacity);
+    }
+
+    /**
+     * Returns the column types as passed to the native reader.
+     */
+    int[] nativeTypes() {
+        int[] ret = new int[this.types.length];
+
+        for (int i = 0; i < this.types.length; ++i) {
+            ret[i] = this.types[i].asInt();
+        }
+
+        return ret;
+    }
+
+    void ensureCapacity(int n) {
+        if (n <= this.capacity) {
+            return;
+        }
+
+        this.sec = new long[n];
+        this.nsec = new long[n];
+
+        for (int i = 0; i < this.types.length; ++i) {
+            switch (this.types[i]) {
+            case DOUBLE:
+                this.values[i] = new double[n];
+                break;
+            case INT64:
+                this.values[i] = new long[n];
+                break;
+            case TIMESTAMP:
+                this.values[i] = new long[2 * n];
+                break;
+            case BLOB:
+            case STRING:
+            case SYMBOL:
+                this.values[i] = new int[n + 1];
+                break;
+            default:
+                throw new RuntimeException("Unrecognized column type: " + this.columns[i].toString());
+            }
+        }
+
+        this.capacity = n;
+    }
+
+    /**
+     * Reads the next block of at most {@link #capacity} rows.
+     *
+     * @return True when the end of the table has been reached.
+     */
+    boolean read(long handle, long reader) {
+        this.size = qdb.ts_table_reader_read_block(handle,
+                                                   reader,
+                                                   this.capacity,
+                                                   this.sec,
+                                                   this.nsec,
+                                                   this.values,
+                                                   this.slabs);
+        return this.size < this.capacity;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isNull(int row, int column) {
+        switch (this.types[column]) {
+        case DOUBLE:
+            return Double.isNaN(((double[])this.values[column])[row]);
+        case INT64:
+            return ((long[])this.values[column])[row] == Constants.nullInt64;
+        case TIMESTAMP:
+            long[] xs = (long[])this.values[column];
+            return xs[2 * row] == Constants.nullTime && xs[2 * row + 1] == Constants.nullTime;
+        default:
+            return ((int[])this.values[column])[row + 1] < 0;
+        }
+    }
+
+    double getDouble(int row, int column) {
+        return ((double[])this.values[column])[row];
+    }
+
+    long getInt64(int row, int column) {
+        return ((long[])this.values[column])[row];
+    }
+
+    long getTimestampSec(int row, int column) {
+        return ((long[])this.values[column])[2 * row];
+    }
+
+    long getTimestampNsec(int row, int column) {
+        return ((long[])this.values[column])[2 * row + 1];
+    }
+
+    /**
+     * Returns the offset in the column's slab where the row's value starts.
+     */
+    int start(int row, int column) {
+        if (row == 0) {
+            return 0;
+        }
+
+        int x = ((int[])this.values[column])[row];
+        return (x < 0 ? ~x : x);
+    }
+
+    /**
+     * Returns the offset in the column's slab where the row's value ends.
+     */
+    int end(int row, int column) {
+        int x = ((int[])this.values[column])[row + 1];
+        return (x < 0 ? ~x : x);
+    }
+
+    byte[] slab(int column) {
+        return (byte[])this.slabs[column];
+    }
+
+    String getString(int row, int column) {
+        if (isNull(row, column)) {
+            return null;
+        }
+
+        if (this.symbols != null && this.types[column] == Column.Type.SYMBOL) {
+            return this.symbols.get(slab(column), start(row, column), end(row, column));
+        }
+
+        return StringDecoder.decode(slab(column), start(row, column), end(row, column));
+    }
+
+    Value getValue(int row, int column) {
+        if (isNull(row, column)) {
+            return Value.createNull();
+        }
+
+        switch (this.types[column]) {
+        case DOUBLE:
+            return Value.createDouble(getDouble(row, column));
+        case INT64:
+            return Value.createInt64(getInt64(row, column));
+        case TIMESTAMP:
+            return Value.createTimestamp(new Timespec(getTimestampSec(row, column),
+                                                      getTimestampNsec(row, column)));
+        case BLOB:
+            int start = start(row, column);
+            int n = end(row, column) - start;
+
+            ByteBuffer bb = ByteBuffer.allocateDirect(n);
+            bb.put(slab(column), start, n);
+            bb.rewind();
+            return Value.createBlob(bb);
+        default:
+            return Value.createString(getString(row, column));
+        }
+    }
+
+    WritableRow getRow(int row) {
+        Value[] values = new Value[this.columns.length];
+
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = getValue(row, i);
+        }
+
+        return new WritableRow(new Timespec(this.sec[row], this.nsec[row]), values);
+    }
+}
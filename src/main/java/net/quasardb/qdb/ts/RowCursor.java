@@ -0,0 +1,211 @@
+package net.quasardb.qdb.ts;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+import net.quasardb.qdb.exception.IncompatibleTypeException;
+import net.quasardb.qdb.exception.InvalidIteratorException;
+
+/**
+ * Flyweight view on the rows of a {@link Reader}, obtained using
+ * {@link Reader#cursor()}.
+ *
+ * The cursor reads values directly from the block buffers of the reader, and
+ * nothing is allocated per row: values are only valid until the next call to
+ * {@link #advance}. Use {@link #copyRow} to retain a row.
+ *
+ * <pre>
+ * RowCursor c = reader.cursor();
+ * while (c.advance()) {
+ *     if (c.isNull(0) == false) {
+ *         sum += c.getDouble(0);
+ *     }
+ * }
+ * </pre>
+ */
+public final class RowCursor {
+
+    private final Reader reader;
+    private RowBlock block;
+    private int row;
+
+    // Scratch space for decoding strings, grown as needed.
+    private char[] chars;
+
+    RowCursor(Reader reader) {
+        this.reader = reader;
+        this.block = null;
+        this.row = -1;
+        this.chars = new char[64];
+    }
+
+    /**
+     * Moves the cursor to the next row.
+     *
+     * @return False when the end of the reader has been reached.
+     */
+    public boolean advance() {
+        this.row = this.reader.advanceRow();
+
+        if (this.row < 0) {
+            this.block = null;
+            return false;
+        }
+
+        this.block = this.reader.currentBlock();
+        return true;
+    }
+
+    private RowBlock requireRow() {
+        if (this.block == null) {
+            throw new InvalidIteratorException("No current row, call advance() first");
+        }
+
+        return this.block;
+    }
+
+    private RowBlock requireColumn(int column, Column.Type type) {
+        RowBlock b = this.requireRow();
+
+        if (b.types[column] != type) {
+            throw new IncompatibleTypeException("Not a " + type.toString() + " column: " + b.types[column].toString());
+        }
+
+        return b;
+    }
+
+    private RowBlock requireVariableColumn(int column) {
+        RowBlock b = this.requireRow();
+
+        switch (b.types[column]) {
+        case BLOB:
+        case STRING:
+        case SYMBOL:
+            return b;
+        default:
+            throw new IncompatibleTypeException("Not a blob or string column: " + b.types[column].toString());
+        }
+    }
+
+    public int columnCount() {
+        return this.reader.getTable().getColumns().length;
+    }
+
+    /**
+     * Returns the timestamp of the current row, nanoseconds since epoch.
+     */
+    public long getTimestampNanos() {
+        RowBlock b = this.requireRow();
+        return b.sec[this.row] * 1000000000L + b.nsec[this.row];
+    }
+
+    public boolean isNull(int column) {
+        return this.requireRow().isNull(this.row, column);
+    }
+
+    public double getDouble(int column) {
+        return this.requireColumn(column, Column.Type.DOUBLE).getDouble(this.row, column);
+    }
+
+    public long getLong(int column) {
+        return this.requireColumn(column, Column.Type.INT64).getInt64(this.row, column);
+    }
+
+    /**
+     * Returns a timestamp value of the current row, nanoseconds since epoch.
+     */
+    public long getTimestampNanos(int column) {
+        RowBlock b = this.requireColumn(column, Column.Type.TIMESTAMP);
+        return b.getTimestampSec(this.row, column) * 1000000000L + b.getTimestampNsec(this.row, column);
+    }
+
+    /**
+     * Returns the size in bytes of a blob or string value of the current row, or
+     * -1 when the value is null.
+     */
+    public int getLength(int column) {
+        RowBlock b = this.requireVariableColumn(column);
+
+        if (b.isNull(this.row, column)) {
+            return -1;
+        }
+
+        return b.end(this.row, column) - b.start(this.row, column);
+    }
+
+    /**
+     * Copies a blob or string value of the current row into a buffer.
+     *
+     * @return The amount of bytes copied, or -1 when the value is null.
+     */
+    public int getBlob(int column, ByteBuffer dst) {
+        int n = this.getLength(column);
+
+        if (n > 0) {
+            dst.put(this.block.slab(column), this.block.start(this.row, column), n);
+        }
+
+        return n;
+    }
+
+    /**
+     * Appends a string value of the current row to a builder.
+     *
+     * @return False when the value is null, in which case nothing is appended.
+     */
+    public boolean getString(int column, StringBuilder dst) {
+        int n = this.decode(column);
+
+        if (n < 0) {
+            return false;
+        }
+
+        dst.append(this.chars, 0, n);
+        return true;
+    }
+
+    /**
+     * Puts a string value of the current row into a buffer.
+     *
+     * @return False when the value is null, in which case nothing is put.
+     */
+    public boolean getString(int column, CharBuffer dst) {
+        int n = this.decode(column);
+
+        if (n < 0) {
+            return false;
+        }
+
+        dst.put(this.chars, 0, n);
+        return true;
+    }
+
+    /**
+     * Decodes the UTF-8 value of a column into the scratch space.
+     *
+     * @return The amount of characters decoded, or -1 if the value is null.
+     */
+    private int decode(int column) {
+        RowBlock b = this.requireVariableColumn(column);
+
+        if (b.isNull(this.row, column)) {
+            return -1;
+        }
+
+        int start = b.start(this.row, column);
+        int end = b.end(this.row, column);
+
+        if (this.chars.length < end - start) {
+            this.chars = new char[Math.max(end - start, 2 * this.chars.length)];
+        }
+
+        return StringDecoder.decode(b.slab(column), start, end, this.chars);
+    }
+
+    /**
+     * Returns a copy of the current row, which remains valid after the cursor moves.
+     */
+    public WritableRow copyRow() {
+        return this.requireRow().getRow(this.row);
+    }
+}
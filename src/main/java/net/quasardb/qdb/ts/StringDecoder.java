@@ -0,0 +1,204 @@
+package net.quasardb.qdb.ts;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decodes UTF-8 strings shipped from the native layer in bulk, as a single byte
+ * slab with offsets, rather than one JNI call per string.
+ *
+ * Strings that are entirely ASCII, which is by far the most common case for
+ * identifiers and symbols, skip UTF-8 validation altogether.
+ *
+ * Optionally, a decoder keeps a dictionary of the strings it decoded, so that
+ * repeated values such as symbols map to a single String instance. The
+ * dictionary is bounded in size; once full, strings are decoded without being
+ * deduplicated. Decoders are not thread-safe.
+ */
+final class StringDecoder {
+
+    // Longer strings are unlikely to be repeated, and expensive to compare.
+    private static final int maxDictionaryLength = 256;
+    private static final int maxDictionarySize = 1 << 16;
+    private static final int initialDictionaryCapacity = 64;
+
+    // Substituted for malformed UTF-8.
+    private static final char replacement = '\uFFFD';
+
+    private final boolean deduplicate;
+
+    // Open addressing hash table, with linear probing; a null value denotes an
+    // empty slot.
+    private int[] hashes;
+    private byte[][] keys;
+    private String[] values;
+    private int size;
+
+    StringDecoder(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+
+        if (deduplicate) {
+            this.hashes = new int[initialDictionaryCapacity];
+            this.keys = new byte[initialDictionaryCapacity][];
+            this.values = new String[initialDictionaryCapacity];
+            this.size = 0;
+        }
+    }
+
+    /**
+     * Decodes the UTF-8 string in <code>data[start, end)</code>.
+     */
+    static String decode(byte[] data, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            if (data[i] < 0) {
+                char[] chars = new char[end - start];
+                return new String(chars, 0, decode(data, start, end, chars));
+            }
+        }
+
+        // ASCII is a subset of Latin-1, which is a straight byte-to-char copy.
+        return new String(data, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Decodes the UTF-8 string in <code>data[start, end)</code> into a
+     * character array, which must hold at least <code>end - start</code>
+     * characters: every byte decodes to at most one character.
+     *
+     * Malformed sequences are replaced by U+FFFD, one per invalid byte.
+     *
+     * @return The amount of characters decoded.
+     */
+    static int decode(byte[] data, int start, int end, char[] dst) {
+        int i = start;
+        int n = 0;
+
+        while (i < end) {
+            int c = data[i];
+
+            if (c >= 0) {
+                dst[n++] = (char)c;
+                i += 1;
+            } else if ((c & 0xE0) == 0xC0 && i + 1 < end && isContinuation(data[i + 1])) {
+                int x = ((c & 0x1F) << 6) | (data[i + 1] & 0x3F);
+                dst[n++] = (x >= 0x80 ? (char)x : replacement);
+                i += 2;
+            } else if ((c & 0xF0) == 0xE0 && i + 2 < end && isContinuation(data[i + 1]) && isContinuation(data[i + 2])) {
+                int x = ((c & 0x0F) << 12) | ((data[i + 1] & 0x3F) << 6) | (data[i + 2] & 0x3F);
+                dst[n++] = (x >= 0x800 && Character.isSurrogate((char)x) == false ? (char)x : replacement);
+                i += 3;
+            } else if ((c & 0xF8) == 0xF0 && i + 3 < end && isContinuation(data[i + 1]) && isContinuation(data[i + 2]) && isContinuation(data[i + 3])) {
+                int x = ((c & 0x07) << 18) | ((data[i + 1] & 0x3F) << 12) | ((data[i + 2] & 0x3F) << 6) | (data[i + 3] & 0x3F);
+                if (x >= 0x10000 && x <= Character.MAX_CODE_POINT) {
+                    // Four bytes always decode to two characters.
+                    dst[n++] = Character.highSurrogate(x);
+                    dst[n++] = Character.lowSurrogate(x);
+                } else {
+                    dst[n++] = replacement;
+                }
+                i += 4;
+            } else {
+                dst[n++] = replacement;
+                i += 1;
+            }
+        }
+
+        return n;
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    /**
+     * Decodes the UTF-8 string in <code>data[start, end)</code>, returning an
+     * earlier decoded instance of the same string if there is one.
+     */
+    String get(byte[] data, int start, int end) {
+        int n = end - start;
+        if (this.deduplicate == false || n > maxDictionaryLength) {
+            return decode(data, start, end);
+        }
+
+        int hash = 1;
+        for (int i = start; i < end; ++i) {
+            hash = 31 * hash + data[i];
+        }
+
+        int mask = this.values.length - 1;
+        int slot = mix(hash) & mask;
+
+        while (this.values[slot] != null) {
+            if (this.hashes[slot] == hash
+                && Arrays.equals(this.keys[slot], 0, this.keys[slot].length, data, start, end)) {
+                return this.values[slot];
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        String ret = decode(data, start, end);
+
+        if (this.size < maxDictionarySize) {
+            this.hashes[slot] = hash;
+            this.keys[slot] = Arrays.copyOfRange(data, start, end);
+            this.values[slot] = ret;
+
+            // Keep the load factor below 1/2.
+            if (++this.size * 2 > this.values.length) {
+                this.grow();
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Decodes all strings of a slab, where string <code>i</code> spans
+     * <code>data[offsets[i], offsets[i + 1])</code>. Invoked by the native layer.
+     */
+    Value[] decodeValues(byte[] data, int[] offsets) {
+        Value[] ret = new Value[offsets.length - 1];
+
+        for (int i = 0; i < ret.length; ++i) {
+            ret[i] = Value.createString(this.get(data, offsets[i], offsets[i + 1]));
+        }
+
+        return ret;
+    }
+
+    private void grow() {
+        int[] hashes = this.hashes;
+        byte[][] keys = this.keys;
+        String[] values = this.values;
+
+        this.hashes = new int[values.length * 2];
+        this.keys = new byte[values.length * 2][];
+        this.values = new String[values.length * 2];
+
+        int mask = this.values.length - 1;
+
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i] == null) {
+                continue;
+            }
+
+            int slot = mix(hashes[i]) & mask;
+            while (this.values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+
+            this.hashes[slot] = hashes[i];
+            this.keys[slot] = keys[i];
+            this.values[slot] = values[i];
+        }
+    }
+
+    // Spreads the low bits of polynomial hashes, which cluster for short keys.
+    private static int mix(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+}
@@ -83,6 +83,29 @@ public class Table implements Serializable {
         return new Table(other.columns, other.shardSizeMillis, name);
     }
 
+    /**
+     * Returns a view of this table that only contains a subset of its columns, in
+     * the order provided. Readers created for the view only transfer and
+     * materialize the projected columns.
+     *
+     * @param columns Names of the columns to retain.
+     */
+    public Table project(String... columns) {
+        Column[] xs = new Column[columns.length];
+
+        for (int i = 0; i < columns.length; ++i) {
+            xs[i] = this.columns[this.columnIndexById(columns[i])];
+
+            for (int j = 0; j < i; ++j) {
+                if (columns[j].equals(columns[i])) {
+                    throw new InvalidArgumentException("Column '" + columns[i] + "' projected more than once");
+                }
+            }
+        }
+
+        return new Table(xs, this.shardSizeMillis, this.name);
+    }
+
     /**
      * Create new timeseries table by copying a 'skeleton' table's schema and using
      * the default shard size.
@@ -202,6 +225,53 @@ public class Table implements Serializable {
                            ranges);
     }
 
+    /**
+     * Initializes new reader for a timeseries table that filters for a time range,
+     * fetching rows in blocks of a specific size.
+     *
+     * @param session   Active session with the QuasarDB cluster.
+     * @param table     Timeseries table.
+     * @param ranges    Time time ranges to look for.
+     * @param blockSize Maximum amount of rows fetched from the native layer at once.
+     */
+    public static Reader reader(Session session, Table table, TimeRange[] ranges, int blockSize) {
+        return new Reader (session,
+                           table,
+                           ranges,
+                           blockSize);
+    }
+
+    /**
+     * Initializes new reader for a timeseries table that filters for a time range,
+     * using specific options.
+     *
+     * @param session Active session with the QuasarDB cluster.
+     * @param table   Timeseries table.
+     * @param ranges  Time time ranges to look for.
+     * @param options Block size and prefetch options.
+     */
+    public static Reader reader(Session session, Table table, TimeRange[] ranges, Reader.Options options) {
+        return new Reader (session,
+                           table,
+                           ranges,
+                           options);
+    }
+
+    /**
+     * Initializes new reader for a timeseries table that filters for a time range,
+     * and only reads a subset of the columns.
+     *
+     * @param session Active session with the QuasarDB cluster.
+     * @param table   Timeseries table.
+     * @param ranges  Time time ranges to look for.
+     * @param columns Names of the columns to read, see {@link #project}.
+     */
+    public static Reader reader(Session session, Table table, TimeRange[] ranges, String... columns) {
+        return new Reader (session,
+                           table.project(columns),
+                           ranges);
+    }
+
     /**
      * Initializes new reader for a timeseries table,
      *
@@ -213,6 +283,139 @@ public class Table implements Serializable {
                            table);
     }
 
+    /**
+     * Initializes new columnar reader for a timeseries table that filters for a
+     * time range.
+     *
+     * @param session Active session with the QuasarDB cluster.
+     * @param table   Timeseries table.
+     * @param ranges  Time time ranges to look for.
+     */
+    public static ColumnarReader columnarReader(Session session, Table table, TimeRange[] ranges) {
+        return columnarReader(session,
+                              table,
+                              ranges,
+                              Reader.defaultBlockSize);
+    }
+
+    /**
+     * Initializes new columnar reader for a timeseries table that filters for a
+     * time range, and only reads a subset of the columns.
+     *
+     * @param session Active session with the QuasarDB cluster.
+     * @param table   Timeseries table.
+     * @param ranges  Time time ranges to look for.
+     * @param columns Names of the columns to read, see {@link #project}.
+     */
+    public static ColumnarReader columnarReader(Session session, Table table, TimeRange[] ranges, String... columns) {
+        return columnarReader(session,
+                              table.project(columns),
+                              ranges);
+    }
+
+    /**
+     * Initializes new columnar reader for a timeseries table that filters for a
+     * time range, yielding batches of at most a specific amount of rows.
+     *
+     * @param session   Active session with the QuasarDB cluster.
+     * @param table     Timeseries table.
+     * @param ranges    Time time ranges to look for.
+     * @param batchSize Maximum amount of rows per batch.
+     */
+    public static ColumnarReader columnarReader(Session session, Table table, TimeRange[] ranges, int batchSize) {
+        return new ColumnarReader (session,
+                                   table,
+                                   ranges,
+                                   batchSize);
+    }
+
+    /**
+     * Initializes new parallel reader for a timeseries table, which reads the time
+     * ranges split along shard boundaries concurrently.
+     *
+     * @param pool        Pool to take sessions from.
+     * @param table       Timeseries table.
+     * @param ranges      Time time ranges to look for.
+     * @param parallelism Amount of sub-ranges to read concurrently.
+     * @param ordering    Whether rows are returned in timestamp order.
+     */
+    public static ParallelReader parallelReader(SessionPool pool, Table table, TimeRange[] ranges, int parallelism, ParallelReader.Ordering ordering) {
+        return parallelReader(pool,
+                              table,
+                              ranges,
+                              parallelism,
+                              ordering,
+                              Reader.defaultBlockSize);
+    }
+
+    /**
+     * Initializes new parallel reader for a timeseries table, which reads the time
+     * ranges split along shard boundaries concurrently, fetching rows in blocks of a
+     * specific size.
+     *
+     * @param pool        Pool to take sessions from.
+     * @param table       Timeseries table.
+     * @param ranges      Time time ranges to look for.
+     * @param parallelism Amount of sub-ranges to read concurrently.
+     * @param ordering    Whether rows are returned in timestamp order.
+     * @param blockSize   Maximum amount of rows fetched from the native layer at once.
+     */
+    public static ParallelReader parallelReader(SessionPool pool, Table table, TimeRange[] ranges, int parallelism, ParallelReader.Ordering ordering, int blockSize) {
+        return new ParallelReader (pool,
+                                   table,
+                                   ranges,
+                                   parallelism,
+                                   ordering,
+                                   blockSize);
+    }
+
+    /**
+     * Computes aggregations of a double column server-side, for many time ranges
+     * at once. All (bucket, aggregation) pairs are sent to the cluster in a single
+     * request, and only their results are transferred back.
+     *
+     * @param session Active session with the QuasarDB cluster.
+     * @param table   Timeseries table.
+     * @param column  Name of the column to aggregate; must be a DOUBLE column.
+     * @param buckets Time ranges to compute the aggregations for.
+     * @param types   Aggregations to compute for every bucket.
+     */
+    public static AggregationResult aggregate(Session session, Table table, String column, TimeRange[] buckets, AggregationType... types) {
+        return aggregate(session, table.getName(), column, buckets, types);
+    }
+
+    /**
+     * Computes aggregations of a double column server-side, for many time ranges
+     * at once.
+     *
+     * @param session   Active session with the QuasarDB cluster.
+     * @param tableName Name of the timeseries table.
+     * @param column    Name of the column to aggregate; must be a DOUBLE column.
+     * @param buckets   Time ranges to compute the aggregations for.
+     * @param types     Aggregations to compute for every bucket.
+     */
+    public static AggregationResult aggregate(Session session, String tableName, String column, TimeRange[] buckets, AggregationType... types) {
+        if (buckets.length == 0 || types.length == 0) {
+            throw new InvalidArgumentException("At least one bucket and one aggregation type are required");
+        }
+
+        int n = buckets.length * types.length;
+        int[] types_ = new int[types.length];
+        for (int i = 0; i < types.length; ++i) {
+            types_[i] = types[i].asInt();
+        }
+
+        long[] counts = new long[n];
+        double[] values = new double[n];
+        long[] timestamps = new long[2 * n];
+
+        logger.debug("Computing {} aggregations of column {} of table {}", n, column, tableName);
+        qdb.ts_double_aggregate(session.handle(), tableName, column, buckets,
+                                types_, counts, values, timestamps);
+
+        return new AggregationResult(buckets, types, counts, values, timestamps);
+    }
+
     /**
      * Attaches a tag to an existing table.
      *
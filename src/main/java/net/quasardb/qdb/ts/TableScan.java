@@ -0,0 +1,143 @@
+package net.quasardb.qdb.ts;
+
+import java.io.IOException;
+import java.lang.AutoCloseable;
+
+import net.quasardb.qdb.exception.InvalidArgumentException;
+
+import net.quasardb.qdb.*;
+import net.quasardb.qdb.jni.*;
+
+/**
+ * Scans the rows of a table within a set of time ranges, one {@link RowBlock} at
+ * a time. Owns the native local table and block reader; the readers exposed to
+ * users are built on top of it.
+ */
+final class TableScan implements AutoCloseable {
+
+    /**
+     * Default maximum amount of rows fetched per JNI call.
+     */
+    static final int defaultBlockSize = 65536;
+
+    // The first block is kept small, so that small reads do not allocate buffers
+    // for an entire block; blocks then double in size until the block size is
+    // reached.
+    private static final int initialBlockSize = 1024;
+
+    final Session session;
+    final Table table;
+
+    private final int blockSize;
+    private final StringDecoder symbols;
+    private final RowBlock block;
+    private int nextCapacity;
+    private long localTable;
+    private long nativeReader;
+    private boolean exhausted;
+
+    TableScan(Session session, Table table, TimeRange[] ranges, int blockSize) {
+        this(session, table, ranges, blockSize, false);
+    }
+
+    /**
+     * @param deduplicateSymbols When true, repeated symbol values read by this
+     *                           scan map to a single String instance.
+     */
+    TableScan(Session session, Table table, TimeRange[] ranges, int blockSize, boolean deduplicateSymbols) {
+        if (ranges.length <= 0) {
+            throw new InvalidArgumentException("Reader requires at least one TimeRange to read");
+        }
+
+        if (blockSize <= 0) {
+            throw new InvalidArgumentException("Block size must be positive: " + blockSize);
+        }
+
+        this.session = session;
+        this.table = table;
+        this.blockSize = blockSize;
+        this.symbols = (deduplicateSymbols ? new StringDecoder(true) : null);
+        this.nextCapacity = Math.min(initialBlockSize, blockSize);
+        this.exhausted = false;
+
+        this.localTable = qdb.ts_local_table_init(this.session.handle(),
+                                                  table.getName(),
+                                                  table.getColumns());
+        assert (this.localTable > 0);
+
+        try {
+            qdb.ts_table_get_ranges(this.session.handle(), this.localTable, ranges);
+
+            this.block = this.newBlock();
+            this.nativeReader = qdb.ts_table_reader_new(this.localTable, this.block.nativeTypes());
+        } catch (RuntimeException e) {
+            qdb.ts_local_table_release(this.session.handle(), this.localTable);
+            this.localTable = 0;
+            throw e;
+        }
+    }
+
+    /**
+     * The block holding the rows of the last call to {@link #next}. Its contents
+     * are overwritten by every call to {@link #next}.
+     */
+    RowBlock block() {
+        return this.block;
+    }
+
+    /**
+     * Allocates an additional block, for use with {@link #next(RowBlock)}.
+     */
+    RowBlock newBlock() {
+        RowBlock ret = new RowBlock(this.table.getColumns(), this.nextCapacity);
+        ret.symbols = this.symbols;
+        return ret;
+    }
+
+    /**
+     * Reads the next block of rows into {@link #block}.
+     *
+     * @return False when no more rows are available.
+     */
+    boolean next() {
+        return this.next(this.block);
+    }
+
+    /**
+     * Reads the next block of rows into a block allocated by {@link #newBlock}.
+     *
+     * @return False when no more rows are available.
+     */
+    boolean next(RowBlock into) {
+        if (this.exhausted || this.nativeReader == 0) {
+            into.size = 0;
+            return false;
+        }
+
+        into.ensureCapacity(this.nextCapacity);
+        this.exhausted = into.read(this.session.handle(), this.nativeReader);
+
+        // Grow blocks every time one is filled entirely, until we reach the
+        // block size.
+        if (into.size() == into.capacity && this.nextCapacity < this.blockSize) {
+            this.nextCapacity = Math.min(this.nextCapacity * 2, this.blockSize);
+        }
+
+        return into.size() > 0;
+    }
+
+    /**
+     * Releases the native local table and reader.
+     */
+    public void close() throws IOException {
+        if (this.nativeReader != 0) {
+            qdb.ts_table_reader_release(this.nativeReader);
+            this.nativeReader = 0;
+        }
+
+        if (this.localTable != 0) {
+            qdb.ts_local_table_release(this.session.handle(), this.localTable);
+            this.localTable = 0;
+        }
+    }
+}
@@ -24,6 +24,9 @@ public class Value implements Serializable, Comparable<Value> {
     String stringValue = Constants.nullString;
     ByteBuffer blobValue = Constants.nullBlob;
 
+    // Keeps the memory a blob view points into alive, see createBlobView.
+    transient NativeQueryResult blobOwner = null;
+
     public enum Type {
         UNINITIALIZED(Constants.qdb_ts_column_uninitialized),
         DOUBLE(Constants.qdb_ts_column_double),
@@ -93,10 +96,11 @@ public class Value implements Serializable, Comparable<Value> {
             this.stringValue = new String(value.stringValue);
             break;
         case BLOB:
-            this.blobValue = ByteBuffer.allocateDirect(value.blobValue.capacity());
-            this.blobValue.put(value.blobValue);
+            ByteBuffer from = value.blobValue();
+            this.blobValue = ByteBuffer.allocateDirect(from.capacity());
+            this.blobValue.put(from);
             this.blobValue.rewind();
-            value.blobValue.rewind();
+            from.rewind();
 
             break;
         };
@@ -132,7 +136,7 @@ public class Value implements Serializable, Comparable<Value> {
                                            this.timestampValue.nsec);
             break;
         case BLOB:
-            qdb.ts_batch_row_set_blob(batchTable, offset, this.blobValue);
+            qdb.ts_batch_row_set_blob(batchTable, offset, this.blobValue());
             break;
         case STRING:
             // Convert string to ByteBuffer before passing over to JNI so that
@@ -233,6 +237,34 @@ public class Value implements Serializable, Comparable<Value> {
         return val;
     }
 
+    /**
+     * Represents a blob value that is a read-only view onto memory held by
+     * <code>owner</code>, such as a native query result. The owner is kept
+     * reachable for as long as this value is.
+     */
+    static Value createBlobView(ByteBuffer value, Object owner) {
+        Value val = new Value(Type.BLOB);
+        val.blobValue = value;
+        val.blobOwner = (NativeQueryResult)owner;
+        return val;
+    }
+
+    /**
+     * Returns the blob buffer, failing when it is a view onto a native result
+     * that has been released in the meantime, rather than reading freed memory.
+     */
+    ByteBuffer blobValue() {
+        if (this.isReleasedView()) {
+            throw new IllegalStateException("Blob is a view onto a query result that has been closed, use copy() to retain it");
+        }
+
+        return this.blobValue;
+    }
+
+    private boolean isReleasedView() {
+        return this.blobOwner != null && this.blobOwner.isReleased();
+    }
+
     /**
      * Updates value to take a certain blob value. Warning: assumes byte array will
      * stay in memory for as long as this object lives.
@@ -446,7 +478,7 @@ public class Value implements Serializable, Comparable<Value> {
             break;
 
         case BLOB:
-            writeBlobValue(stream, this.blobValue);
+            writeBlobValue(stream, this.blobValue());
             break;
 
         case STRING:
@@ -510,6 +542,15 @@ public class Value implements Serializable, Comparable<Value> {
         return bb.duplicate();
     }
 
+    /**
+     * Returns a deep copy of this value. Use this to retain blobs that are views
+     * onto memory with a limited lifetime, such as blobs read using a
+     * {@link QueryCursor}.
+     */
+    public Value copy() {
+        return new Value(this);
+    }
+
     public Type getType() {
         return this.type;
     }
@@ -538,12 +579,19 @@ public class Value implements Serializable, Comparable<Value> {
         return this.timestampValue;
     }
 
+    /**
+     * Returns a read-only view onto the blob.
+     *
+     * @throws IllegalStateException If the blob is a view onto a query result
+     *                               that has been closed, see
+     *                               {@link Query#executeZeroCopy}.
+     */
     public ByteBuffer getBlob() {
         if (this.type != Type.BLOB) {
             throw new IncompatibleTypeException("Not a blob: " + this.type.toString());
         }
 
-        return this.blobValue.asReadOnlyBuffer();
+        return this.blobValue().asReadOnlyBuffer();
     }
 
     public String getString() {
@@ -567,6 +615,10 @@ public class Value implements Serializable, Comparable<Value> {
             return "Value (type = TIMESTAMP, value = " + this.timestampValue + ")";
 
         case BLOB:
+            if (this.isReleasedView()) {
+                return "Value (type = BLOB, value = <released>)";
+            }
+
             return "Value (type = BLOB, value = " + this.blobValue.hashCode() + ")";
 
         case STRING:
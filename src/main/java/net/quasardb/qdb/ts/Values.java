@@ -46,7 +46,7 @@ public class Values {
         switch (in.getType()) {
         case BLOB:
             assert (in.blobValue.isDirect());
-            return in.blobValue;
+            return in.blobValue();
         case UNINITIALIZED:
             return Constants.nullBlob;
         }
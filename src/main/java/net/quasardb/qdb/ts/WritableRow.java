@@ -66,6 +66,14 @@ public final class WritableRow extends Row implements Serializable {
         this.timestamp = new Timespec(row.getTimestamp());
     }
 
+    /**
+     * Returns a deep copy of this row, see {@link Value#copy}.
+     */
+    @Override
+    public WritableRow copy() {
+        return new WritableRow(this);
+    }
+
     /**
      * Access to the timestamp of this row.
      *
@@ -1,19 +1,29 @@
 package net.quasardb.qdb.ts;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Flushable;
 import java.lang.AutoCloseable;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 
+import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.*;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.quasardb.qdb.*;
+import net.quasardb.qdb.exception.IncompatibleTypeException;
 import net.quasardb.qdb.exception.InputException;
 import net.quasardb.qdb.exception.InvalidArgumentException;
 import net.quasardb.qdb.exception.OutOfBoundsException;
@@ -24,6 +34,12 @@ import net.quasardb.qdb.jni.*;
  *
  * Usage of instances of this class is not thread-safe. Use a Writer
  * instance per Thread in multi-threaded situations.
+ *
+ * When background flushing is enabled (see {@link Builder#backgroundFlush}),
+ * rows are staged into one of two generations. A flush hands off the staged
+ * generation to a dedicated flusher thread, which converts and pushes it while
+ * new rows are appended to the other generation. Errors that occur while
+ * pushing in the background are thrown by the next append or flush.
  */
 public class Writer implements AutoCloseable, Flushable {
 
@@ -52,19 +68,24 @@ public class Writer implements AutoCloseable, Flushable {
     private static final Logger logger = LoggerFactory.getLogger(Writer.class);
 
     static class StagedTable {
-        private static final int initialCapacity = 1;
+        private static final int initialCapacity = 16;
 
         Column[] columns;
-        ArrayList<Timespec> timestamps;
-        ArrayList<ArrayList<Value> > valuesByColumn;
+        ColumnBuffer.Timestamps timestamps;
+        ColumnBuffer[] valuesByColumn;
+        long committedBytes = 0;
+
+        // Native layout of this table, looked up in the writer's PreparedTables
+        // when first flushed.
+        long layout = 0;
 
         StagedTable(Column[] columns) {
             this.columns = columns;
-            this.timestamps = new ArrayList<Timespec>(initialCapacity);
-            this.valuesByColumn = new ArrayList<ArrayList<Value>>(columns.length);
+            this.timestamps = new ColumnBuffer.Timestamps(initialCapacity);
+            this.valuesByColumn = new ColumnBuffer[columns.length];
 
             for (int i = 0; i < this.columns.length; ++i) {
-                this.valuesByColumn.add(new ArrayList<Value>(initialCapacity));
+                this.valuesByColumn[i] = ColumnBuffer.of(this.columns[i], initialCapacity);
             }
         }
 
@@ -80,111 +101,227 @@ public class Writer implements AutoCloseable, Flushable {
             return rowCount() * columnCount();
         }
 
+        /**
+         * Returns an estimate of the memory held by the staged rows, in bytes.
+         */
+        public long byteSize() {
+            long n = this.timestamps.byteSize();
+
+            for (ColumnBuffer xs : this.valuesByColumn) {
+                n += xs.byteSize();
+            }
+
+            return n;
+        }
+
+        /**
+         * Returns the amount of bytes staged since this method was last called.
+         */
+        long bytesSinceLastRow() {
+            long n = byteSize();
+            long delta = n - this.committedBytes;
+            this.committedBytes = n;
+            return delta;
+        }
+
+        /**
+         * Discards all staged rows, but retains the column buffers (and their
+         * capacity) so that the next round of appends does not allocate.
+         */
+        public void clear() {
+            this.committedBytes = 0;
+            this.timestamps.clear();
+
+            for (ColumnBuffer xs : this.valuesByColumn) {
+                xs.clear();
+            }
+        }
+
         /**
          * As we are receiving the data in row-oriented fashion, while appending
          * we pre-pivot the dataset so that we store everything in column-oriented
-         * fashion. This will ensure that later, we can easily convert all arrays.
+         * fashion, directly into primitive arrays that can be handed to JNI.
+         *
+         * Starting a row appends a null value to every column, which can then be
+         * overwritten by the typed setters below.
          */
-        public void append(Timespec timestamp, Value[] values) {
-            this.timestamps.add(timestamp);
+        public void startRow(long sec, long nsec) {
+            this.timestamps.append(sec, nsec);
 
-            // For now, we require values for every column
-            assert(values.length == this.columns.length);
+            for (ColumnBuffer xs : this.valuesByColumn) {
+                xs.appendNull();
 
-            for (int i = 0; i < values.length; ++i) {
-                ArrayList<Value> xs = this.valuesByColumn.get(i);
-
-                if (values[i].getType() == Value.Type.STRING) {
-                    // TODO(leon): once the new writer have stabilized, we should
-                    // always represent all strings as bytebuffers immeidately.
-                    //
-                    // Invoking this call here has the advantage that the Value matrix
-                    // we buffer 'owns' the directly allocated memory region, and means
-                    // it's released automatically when the GC decides the Value objects
-                    // (and thus, their underlying direct ByteBuffers) are to be evicted.
-                    values[i].ensureByteBufferBackedString();
+                // Sanity check: all timestamps + column values arrays are of equal size.
+                assert(xs.size() == this.timestamps.size());
+            }
+        }
+
+        /**
+         * Discards the row that is currently being built.
+         */
+        public void discardRow() {
+            int row = currentRow();
+
+            this.timestamps.truncate(row);
+            for (ColumnBuffer xs : this.valuesByColumn) {
+                xs.truncate(row);
+            }
+        }
+
+        /**
+         * Appends all rows staged in another table with the same layout.
+         */
+        public void appendAll(StagedTable other) {
+            assert(other.columns.length == this.columns.length);
+
+            this.timestamps.appendAll(other.timestamps);
+            for (int i = 0; i < this.valuesByColumn.length; ++i) {
+                this.valuesByColumn[i].appendAll(other.valuesByColumn[i]);
+            }
+        }
+
+        /**
+         * Appends all rows of a columnar batch. All columns are validated before
+         * anything is appended, so a batch is either appended entirely or not
+         * at all.
+         */
+        public void appendColumns(ColumnarBatch batch) {
+            if (batch.columnCount() != this.columns.length) {
+                throw new InvalidArgumentException("Batch has " + batch.columnCount() + " columns, table has " + this.columns.length + " columns");
+            }
+
+            for (int i = 0; i < this.columns.length; ++i) {
+                if (this.valuesByColumn[i].accepts(batch.columns[i]) == false) {
+                    throw new IncompatibleTypeException("Cannot append " + batch.columns[i].getClass().getSimpleName() + " to column: " + this.columns[i].toString());
                 }
+            }
 
-                xs.add(values[i]);
+            int n = batch.rowCount();
+            int offset = this.timestamps.size();
 
-                // Sanity check: all timestamps + column values arrays are of equal size.
-                assert(xs.size() == this.timestamps.size());
+            try {
+                for (int i = 0; i < this.columns.length; ++i) {
+                    this.valuesByColumn[i].appendColumn(batch.columns[i], n, batch.nulls[i]);
+                }
+            } catch (RuntimeException e) {
+                for (ColumnBuffer xs : this.valuesByColumn) {
+                    if (xs.size() > offset) {
+                        xs.truncate(offset);
+                    }
+                }
+
+                throw e;
             }
+
+            this.timestamps.appendEpochNanos(batch.epochNanos, n);
         }
 
-        public void toNative(long handle,
-                             long prepped,
+        /**
+         * Returns the offset of the row that is currently being built.
+         */
+        private int currentRow() {
+            assert(this.timestamps.size() > 0);
+            return this.timestamps.size() - 1;
+        }
+
+        private ColumnBuffer column(int offset) {
+            if (offset < 0 || offset >= this.valuesByColumn.length) {
+                throw new InvalidArgumentException("Column offset " + offset + " out of bounds, table has " + this.valuesByColumn.length + " columns");
+            }
+
+            return this.valuesByColumn[offset];
+        }
+
+        private IncompatibleTypeException incompatibleType(int offset, String expected) {
+            return new IncompatibleTypeException("Not a " + expected + " column: " + this.columns[offset].toString());
+        }
+
+        public void setDouble(int offset, double value) {
+            ColumnBuffer xs = column(offset);
+            if (!(xs instanceof ColumnBuffer.Doubles)) {
+                throw incompatibleType(offset, "double");
+            }
+
+            ((ColumnBuffer.Doubles)xs).set(currentRow(), value);
+        }
+
+        public void setInt64(int offset, long value) {
+            ColumnBuffer xs = column(offset);
+            if (!(xs instanceof ColumnBuffer.Int64s)) {
+                throw incompatibleType(offset, "int64");
+            }
+
+            ((ColumnBuffer.Int64s)xs).set(currentRow(), value);
+        }
+
+        public void setTimestamp(int offset, long sec, long nsec) {
+            ColumnBuffer xs = column(offset);
+            if (!(xs instanceof ColumnBuffer.Timestamps)) {
+                throw incompatibleType(offset, "timestamp");
+            }
+
+            ((ColumnBuffer.Timestamps)xs).set(currentRow(), sec, nsec);
+        }
+
+        public void setString(int offset, CharSequence value) {
+            ColumnBuffer xs = column(offset);
+            if (!(xs instanceof ColumnBuffer.Strings)) {
+                throw incompatibleType(offset, "string");
+            }
+
+            ((ColumnBuffer.Strings)xs).set(currentRow(), value);
+        }
+
+        public void setBlob(int offset, ByteBuffer value) {
+            ColumnBuffer xs = column(offset);
+            if (!(xs instanceof ColumnBuffer.Blobs)) {
+                throw incompatibleType(offset, "blob");
+            }
+
+            ((ColumnBuffer.Blobs)xs).set(currentRow(), ColumnBuffer.Blobs.requireDirect(value));
+        }
+
+        public void setValue(int offset, Value value) {
+            column(offset).set(currentRow(), value);
+        }
+
+        public void setValues(Value[] values) {
+            // For now, we require values for every column
+            assert(values.length == this.columns.length);
+
+            int row = currentRow();
+            for (int i = 0; i < values.length; ++i) {
+                this.valuesByColumn[i].set(row, values[i]);
+            }
+        }
+
+        public void toNative(long prepped,
                              int tableNum,
                              int offset) {
-            Column c = this.columns[offset];
-            ArrayList<Value> xs = this.valuesByColumn.get(offset);
-
-            switch (c.getType()) {
-            case DOUBLE:
-                qdb.ts_exp_batch_set_column_from_double(handle,
-                                                        prepped,
-                                                        tableNum,
-                                                        offset,
-                                                        c.getName(),
-                                                        Values.asPrimitiveDoubleArray(xs));
-                break;
-            case INT64:
-                qdb.ts_exp_batch_set_column_from_int64(handle,
-                                                       prepped,
-                                                       tableNum,
-                                                       offset,
-                                                       c.getName(),
-                                                       Values.asPrimitiveInt64Array(xs));
-                break;
-            case BLOB:
-                qdb.ts_exp_batch_set_column_from_blob(handle,
-                                                      prepped,
-                                                      tableNum,
-                                                      offset,
-                                                      c.getName(),
-                                                      Values.asPrimitiveBlobArray(xs));
-                break;
-
-            case SYMBOL:
-                //! FALLTHROUGH
-            case STRING:
-                qdb.ts_exp_batch_set_column_from_string(handle,
-                                                        prepped,
-                                                        tableNum,
-                                                        offset,
-                                                        c.getName(),
-                                                        Values.asPrimitiveStringArray(xs));
-                break;
-            case TIMESTAMP:
-                qdb.ts_exp_batch_set_column_from_timestamp(handle,
-                                                           prepped,
-                                                           tableNum,
-                                                           offset,
-                                                           c.getName(),
-                                                           Values.asPrimitiveTimestampArray(xs));
-                break;
-            default:
-                throw new RuntimeException("Unrecognized column type: " + c.toString());
-            };
+            this.valuesByColumn[offset].toNative(prepped,
+                                                 tableNum,
+                                                 offset);
         }
 
-        /**
-         * qdb
-         */
         public void toNative(long handle,
                              long prepped,
                              int tableNum,
                              String tableName,
-                             Options options) {
+                             Options options,
+                             PreparedTables layouts) {
+            if (this.layout == 0) {
+                this.layout = layouts.of(handle, tableName, this.columns);
+            }
+
             for (int i = 0; i < this.columns.length; ++i) {
-                toNative(handle, prepped, tableNum, i);
+                toNative(prepped, tableNum, i);
             }
 
-            qdb.ts_exp_batch_set_table_data(handle,
-                                            prepped,
+            qdb.ts_exp_batch_set_table_data(prepped,
                                             tableNum,
-                                            tableName,
-                                            Timespecs.ofArray(this.timestamps));
+                                            this.layout,
+                                            new Timespecs(this.timestamps.sec,
+                                                          this.timestamps.nsec));
 
 
             if (options.isDropDuplicatesEnabled() == true) {
@@ -206,10 +343,11 @@ public class Writer implements AutoCloseable, Flushable {
                              int tableNum,
                              String tableName,
                              Options options,
+                             PreparedTables layouts,
                              TimeRange[] truncateRanges) {
             assert(truncateRanges != null);
 
-            toNative(handle, prepped, tableNum, tableName, options);
+            toNative(handle, prepped, tableNum, tableName, options, layouts);
 
             qdb.ts_exp_batch_table_set_truncate_ranges(handle,
                                                        prepped,
@@ -221,6 +359,395 @@ public class Writer implements AutoCloseable, Flushable {
 
 
 
+    /**
+     * Native copies of the name and column layout of every table a writer has
+     * flushed to, so that these are converted once per table rather than on every
+     * flush. Released when the writer is closed.
+     *
+     * Shared between a writer and its flusher thread, hence synchronized.
+     */
+    static final class PreparedTables {
+        private final HashMap<String, Long> layouts = new HashMap<String, Long>();
+
+        synchronized long of(long handle, String tableName, Column[] columns) {
+            Long ret = this.layouts.get(tableName);
+            if (ret != null) {
+                return ret;
+            }
+
+            String[] names = new String[columns.length];
+            int[] types = new int[columns.length];
+            for (int i = 0; i < columns.length; ++i) {
+                names[i] = columns[i].getName();
+                types[i] = columns[i].getType().asInt();
+            }
+
+            long layout = qdb.ts_exp_batch_prepared_table_new(handle, tableName, names, types);
+            this.layouts.put(tableName, layout);
+            return layout;
+        }
+
+        synchronized int size() {
+            return this.layouts.size();
+        }
+
+        synchronized void close() {
+            for (long layout : this.layouts.values()) {
+                qdb.ts_exp_batch_prepared_table_release(layout);
+            }
+
+            this.layouts.clear();
+        }
+    }
+
+    /**
+     * Timer shared by all writers to shrink the native arenas of idle writers, see
+     * {@link Options#setArenaIdleTimeout}. Initialized on first use.
+     */
+    private static final class IdleTimer {
+        static final ScheduledExecutorService executor =
+            Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                    Thread t = new Thread(r, "qdb-writer-idle");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * A generation of staged data: the tables staged since the last flush, along
+     * with the native batch they were prepared into. A regular writer uses a single
+     * generation; a writer that flushes in the background alternates between two
+     * of them, so that one can be pushed while the other receives new rows.
+     */
+    static final class Generation {
+        HashMap<String, StagedTable> stagedTables = new HashMap<String, StagedTable>();
+
+        // Native memory backing the prepared batch. Allocated on first use and
+        // retained across flushes, so that in steady state preparing a batch
+        // does not allocate; only released when the generation is closed, or
+        // shrunk when no push happens for the arena idle timeout.
+        //
+        // The shrink runs on the idle timer thread, which is why all access to the
+        // arena is synchronized on the generation.
+        long arena = 0;
+        ScheduledFuture<?> idleShrink = null;
+
+        // Equal to the arena while a batch is prepared, 0 otherwise.
+        long prepared = 0;
+        int preparedTableCount = 0;
+
+        // True once truncate ranges have been determined for this generation,
+        // either explicitly using prepareFlush() or implicitly when flushing.
+        boolean ready = false;
+        TimeRange[] truncateRanges = null;
+
+        boolean isEmpty() {
+            for (StagedTable t : this.stagedTables.values()) {
+                if (t.rowCount() > 0) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        long valueCount() {
+            long n = 0;
+
+            for (StagedTable t : this.stagedTables.values()) {
+                n += t.valueCount();
+            }
+
+            return n;
+        }
+
+        /**
+         * Converts all staged tables into a native batch.
+         */
+        synchronized void prepare(long handle, Options options, PreparedTables layouts) {
+            assert(this.prepared == 0);
+
+            // Staged tables are retained across flushes, so only the ones that actually
+            // have rows are part of this batch.
+            ArrayList<Map.Entry<String, StagedTable>> tables =
+                new ArrayList<Map.Entry<String, StagedTable>>(this.stagedTables.size());
+            for (Map.Entry<String, StagedTable> x : this.stagedTables.entrySet()) {
+                if (x.getValue().rowCount() > 0) {
+                    tables.add(x);
+                }
+            }
+
+            // Logic below and internally within the C++ parts assumes that we have
+            // at least 1 table to flush.
+            if (tables.size() == 0) {
+                logger.warn("No tables staged, nothing to flush!");
+                return;
+            }
+
+            long[]        rowCount       = new long[tables.size()];
+            long[]        columnCount    = new long[tables.size()];
+
+            int i = 0;
+            for (Map.Entry<String, StagedTable> x : tables) {
+                columnCount[i] = x.getValue().columnCount();
+                rowCount[i] = x.getValue().rowCount();
+
+                ++i;
+            }
+
+            if (this.arena == 0) {
+                this.arena = qdb.ts_exp_batch_arena_new();
+            }
+
+            qdb.ts_exp_batch_prepare(this.arena,
+                                     rowCount,
+                                     columnCount);
+            this.prepared = this.arena;
+            this.preparedTableCount = tables.size();
+
+            i = 0;
+            for (Map.Entry<String, StagedTable> x : tables) {
+                String tableName = x.getKey();
+                StagedTable stagedTable = x.getValue();
+
+                // The data structure / logic is set up to handle different ranges
+                // per table, but we don't actually support this on a high-level yet,
+                // so all tables share the same ranges.
+                if (this.truncateRanges == null) {
+                    stagedTable.toNative(handle,
+                                         this.prepared, i, tableName, options, layouts);
+                } else {
+                    stagedTable.toNative(handle,
+                                         this.prepared, i, tableName, options, layouts, this.truncateRanges);
+                }
+                i++;
+            }
+        }
+
+        synchronized void push(long handle, Options options) {
+            assert(this.prepared != 0);
+
+            this.cancelIdleShrink();
+
+            qdb.ts_exp_batch_push(handle,
+                                  options.getPushMode().asInt(),
+                                  this.prepared,
+                                  this.preparedTableCount);
+
+            // When pushes are far apart, retaining the arena in between is not
+            // worth the memory: release it once no other push followed within the
+            // idle timeout.
+            long idleMillis = options.getArenaIdleTimeout();
+            if (idleMillis > 0) {
+                this.idleShrink = IdleTimer.executor.schedule(this::shrinkIfIdle, idleMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Invoked by the idle timer.
+         */
+        synchronized void shrinkIfIdle() {
+            // A new batch is being built in the arena, the next push reschedules us.
+            if (this.arena == 0 || this.prepared != 0) {
+                return;
+            }
+
+            logger.debug("Batch writer is idle, shrinking native arena");
+            qdb.ts_exp_batch_arena_shrink(this.arena);
+            this.idleShrink = null;
+        }
+
+        private void cancelIdleShrink() {
+            if (this.idleShrink != null) {
+                this.idleShrink.cancel(false);
+                this.idleShrink = null;
+            }
+        }
+
+        /**
+         * Marks the batch as no longer prepared. Retains the native arena, so
+         * that it can be reused by the next flush.
+         */
+        synchronized void release() {
+            this.prepared = 0;
+            this.preparedTableCount = 0;
+        }
+
+        /**
+         * Releases the native arena.
+         */
+        synchronized void close() {
+            this.release();
+            this.cancelIdleShrink();
+
+            if (this.arena != 0) {
+                logger.info("releasing batch writer state");
+                qdb.ts_exp_batch_arena_release(this.arena);
+                this.arena = 0;
+            }
+        }
+
+        /**
+         * Returns the amount of native memory retained for reuse, in bytes.
+         */
+        synchronized long arenaCapacity() {
+            return (this.arena == 0 ? 0 : qdb.ts_exp_batch_arena_capacity(this.arena));
+        }
+
+        /**
+         * Discards all staged rows. Keeps the column buffers of tables we wrote to
+         * around, so that the next round of appends can reuse them. Tables that did
+         * not receive any rows since the last flush are dropped.
+         */
+        void clear() {
+            assert(this.prepared == 0);
+
+            Iterator<StagedTable> it = this.stagedTables.values().iterator();
+            while (it.hasNext()) {
+                StagedTable t = it.next();
+                if (t.rowCount() == 0) {
+                    it.remove();
+                } else {
+                    t.clear();
+                }
+            }
+
+            this.ready = false;
+            this.truncateRanges = null;
+        }
+    }
+
+    /**
+     * Pushes generations handed off by a Writer on a dedicated thread. The writer
+     * owns one generation and the flusher the other; handing off a generation
+     * blocks until the flusher is done with the previous one, which bounds memory
+     * usage to two generations.
+     */
+    static final class Flusher implements Runnable {
+        private final Session session;
+        private final Options options;
+        private final PreparedTables layouts;
+        private final BlockingQueue<Generation> pending;
+        private final BlockingQueue<Generation> available;
+        private final AtomicReference<Throwable> error;
+        private final Thread thread;
+
+        Flusher(Session session, Options options, PreparedTables layouts) {
+            this.session = session;
+            this.options = options;
+            this.layouts = layouts;
+            this.pending = new ArrayBlockingQueue<Generation>(1);
+            this.available = new ArrayBlockingQueue<Generation>(1);
+            this.error = new AtomicReference<Throwable>(null);
+
+            this.available.add(new Generation());
+
+            this.thread = new Thread(this, "qdb-writer-flusher");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        public void run() {
+            while (true) {
+                Generation g;
+                try {
+                    g = this.pending.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                long handle = this.session.handle();
+                try {
+                    if (g.prepared == 0) {
+                        g.prepare(handle, this.options, this.layouts);
+                    }
+
+                    if (g.prepared != 0) {
+                        logger.info("Flushing batch writer in background, push mode='{}'", this.options.getPushMode().toString());
+                        g.push(handle, this.options);
+                    }
+                } catch (Throwable t) {
+                    logger.error("Background flush failed", t);
+                    this.error.compareAndSet(null, t);
+                } finally {
+                    g.release();
+                    g.clear();
+                    this.available.add(g);
+                }
+            }
+        }
+
+        /**
+         * Rethrows the error of a previously failed flush, if any.
+         */
+        void checkError() {
+            if (this.error.get() == null) {
+                return;
+            }
+
+            Throwable t = this.error.getAndSet(null);
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException)t;
+            } else if (t instanceof Error) {
+                throw (Error)t;
+            }
+
+            throw new RuntimeException(t);
+        }
+
+        /**
+         * Hands off a generation to be pushed, and returns an empty generation to
+         * stage new rows in. Blocks while the flusher is busy pushing the previous
+         * generation.
+         */
+        Generation handOff(Generation g) throws IOException {
+            this.checkError();
+
+            try {
+                this.pending.put(g);
+                return this.available.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for background flush");
+            }
+        }
+
+        /**
+         * Waits until all generations handed off have been pushed.
+         */
+        void drain() throws IOException {
+            try {
+                this.available.put(this.available.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for background flush");
+            }
+
+            this.checkError();
+        }
+
+        /**
+         * Drains all pending generations and stops the flusher thread.
+         */
+        void close() throws IOException {
+            try {
+                this.drain();
+            } finally {
+                this.thread.interrupt();
+
+                try {
+                    this.thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                Generation g = this.available.poll();
+                if (g != null) {
+                    g.close();
+                }
+            }
+        }
+    }
     /**
      * Batch writer options.
      */
@@ -228,11 +755,27 @@ public class Writer implements AutoCloseable, Flushable {
         private PushMode pushMode;
         private boolean dropDuplicates;
         private String[] dropDuplicateColumns;
+        private boolean backgroundFlush;
+        private boolean autoFlush;
+        private long autoFlushRows;
+        private long autoFlushPoints;
+        private long autoFlushBytes;
+        private long autoFlushMaxAgeMillis;
+        private long autoFlushTargetMillis;
+        private long arenaIdleTimeoutMillis;
 
         public Options() {
             this.pushMode = PushMode.NORMAL;
             this.dropDuplicates = false;
             this.dropDuplicateColumns = null;
+            this.backgroundFlush = false;
+            this.autoFlush = false;
+            this.autoFlushRows = 0;
+            this.autoFlushPoints = 0;
+            this.autoFlushBytes = 0;
+            this.autoFlushMaxAgeMillis = 0;
+            this.autoFlushTargetMillis = 0;
+            this.arenaIdleTimeoutMillis = 0;
         };
 
         /**
@@ -332,23 +875,176 @@ public class Writer implements AutoCloseable, Flushable {
 
             return this.dropDuplicateColumns;
         };
+
+        /**
+         * Enables pushing flushed data on a background thread, while new rows
+         * are staged in a second generation.
+         */
+        public void enableBackgroundFlush() {
+            this.backgroundFlush = true;
+        };
+
+        /**
+         * Disables background flushing.
+         */
+        public void disableBackgroundFlush() {
+            this.backgroundFlush = false;
+        };
+
+        /**
+         * Returns true if background flushing is enabled.
+         */
+        public boolean isBackgroundFlushEnabled() {
+            return this.backgroundFlush;
+        };
+
+        /**
+         * Enables automatic flushing, see {@link AutoFlushWriter}. Without any
+         * explicit trigger set, flushes every 50000 rows.
+         */
+        public void enableAutoFlush() {
+            this.autoFlush = true;
+        };
+
+        /**
+         * Flush automatically after the provided amount of rows has been appended.
+         */
+        public void enableAutoFlushRows(long rows) {
+            this.autoFlush = true;
+            this.autoFlushRows = rows;
+        };
+
+        /**
+         * Flush automatically once the provided amount of points (values) has
+         * been staged, across all tables.
+         */
+        public void enableAutoFlushPoints(long points) {
+            this.autoFlush = true;
+            this.autoFlushPoints = points;
+        };
+
+        /**
+         * Flush automatically once (an estimate of) the provided amount of bytes
+         * has been staged, across all tables.
+         */
+        public void enableAutoFlushBytes(long bytes) {
+            this.autoFlush = true;
+            this.autoFlushBytes = bytes;
+        };
+
+        /**
+         * Flush automatically once the oldest staged row has been staged for the
+         * provided amount of milliseconds, even when no new rows are appended.
+         */
+        public void enableAutoFlushMaxAge(long millis) {
+            this.autoFlush = true;
+            this.autoFlushMaxAgeMillis = millis;
+        };
+
+        /**
+         * Continuously adjusts the row threshold based on measured flush latency,
+         * so that a single flush takes approximately the provided amount of
+         * milliseconds.
+         */
+        public void enableAdaptiveAutoFlush(long targetMillis) {
+            this.autoFlush = true;
+            this.autoFlushTargetMillis = targetMillis;
+        };
+
+        /**
+         * Returns true if automatic flushing is enabled.
+         */
+        public boolean isAutoFlushEnabled() {
+            return this.autoFlush;
+        };
+
+        /**
+         * Returns the row threshold for automatic flushes, 0 if disabled.
+         */
+        public long getAutoFlushRows() {
+            return this.autoFlushRows;
+        };
+
+        /**
+         * Returns the point threshold for automatic flushes, 0 if disabled.
+         */
+        public long getAutoFlushPoints() {
+            return this.autoFlushPoints;
+        };
+
+        /**
+         * Returns the byte threshold for automatic flushes, 0 if disabled.
+         */
+        public long getAutoFlushBytes() {
+            return this.autoFlushBytes;
+        };
+
+        /**
+         * Returns the maximum age of staged rows in milliseconds, 0 if disabled.
+         */
+        public long getAutoFlushMaxAge() {
+            return this.autoFlushMaxAgeMillis;
+        };
+
+        /**
+         * Returns the target flush duration in milliseconds for adaptive
+         * flushing, 0 if disabled.
+         */
+        public long getAutoFlushTargetDuration() {
+            return this.autoFlushTargetMillis;
+        };
+
+        /**
+         * The native memory used to prepare batches is retained across flushes.
+         * When set, this memory is released by a background timer once no flush
+         * happened for the provided amount of milliseconds, and allocated again
+         * by the next flush.
+         */
+        public void setArenaIdleTimeout(long millis) {
+            this.arenaIdleTimeoutMillis = millis;
+        };
+
+        /**
+         * Returns the arena idle timeout in milliseconds, 0 if disabled.
+         */
+        public long getArenaIdleTimeout() {
+            return this.arenaIdleTimeoutMillis;
+        };
+
     };
 
 
     private Options options;
-    private long prepared = 0;
-    private HashMap<String, StagedTable> stagedTables;
+    private Generation staging;
+    private Flusher flusher = null;
+    private final PreparedTables layouts = new PreparedTables();
 
     protected long pointsSinceFlush = 0;
+    protected long bytesSinceFlush = 0;
     Session session;
 
-    TimeRange minMaxTs;
+    // Table the row currently being built belongs to, null when no row is in
+    // progress.
+    private StagedTable currentRow = null;
+
+    // Cache of the most recently used table, avoids a hash lookup for every row
+    // when appending many rows to the same table.
+    private Table lastTable = null;
+    private StagedTable lastStagedTable = null;
+
+    // Smallest and largest timestamp staged since the last flush, tracked as
+    // primitives to avoid allocations on every row.
+    private boolean hasMinMaxTs = false;
+    private long minTsSec, minTsNsec, maxTsSec, maxTsNsec;
 
     protected Writer(Session session, Options options) {
         this.session = session;
         this.options = options;
+        this.staging = new Generation();
 
-        this.minMaxTs = null;
+        if (options.isBackgroundFlushEnabled() == true) {
+            this.flusher = new Flusher(session, options, this.layouts);
+        }
 
         this.reset();
 
@@ -364,32 +1060,52 @@ public class Writer implements AutoCloseable, Flushable {
         return new Builder(session);
     };
 
+    /**
+     * Returns a new writer, or an {@link AutoFlushWriter} when any of the
+     * automatic flush options is enabled.
+     */
+    static Writer of(Session session, Options options) {
+        if (options.isAutoFlushEnabled() == true) {
+            return new AutoFlushWriter(session, options);
+        }
+
+        return new Writer(session, options);
+    }
+
     private void reset() {
         logger.debug("resetting internal batch writer state");
 
-        if (this.prepared != 0) {
-            logger.info("releasing batch writer state");
-            qdb.ts_exp_batch_release(this.session.handle(),
-                                     this.prepared, this.stagedTables.size());
-            this.prepared = 0;
-        }
+        this.staging.release();
+        this.staging.clear();
 
-        this.stagedTables = new HashMap<String, StagedTable>();
+        this.resetTracking();
+    }
 
+    private void resetTracking() {
         this.pointsSinceFlush = 0;
-        this.minMaxTs = null;
+        this.bytesSinceFlush = 0;
+        this.hasMinMaxTs = false;
+        this.currentRow = null;
+        this.lastTable = null;
+        this.lastStagedTable = null;
     }
 
     private StagedTable getStagedTable(Table t) {
+        if (t == this.lastTable) {
+            return this.lastStagedTable;
+        }
+
         String name = t.getName();
-        StagedTable ret = this.stagedTables.get(name);
+        StagedTable ret = this.staging.stagedTables.get(name);
         if (ret == null) {
-            this.stagedTables.put(name, new StagedTable(t.getColumns()));
-            ret = this.stagedTables.get(name);
+            this.staging.stagedTables.put(name, new StagedTable(t.getColumns()));
+            ret = this.staging.stagedTables.get(name);
         }
 
         assert(ret != null);
 
+        this.lastTable = t;
+        this.lastStagedTable = ret;
         return ret;
     }
 
@@ -398,38 +1114,104 @@ public class Writer implements AutoCloseable, Flushable {
      */
     @Override
     protected void finalize() throws Throwable {
-        this.reset();
+        try {
+            if (this.flusher != null) {
+                // The flusher does not reference the writer, and may still be
+                // pushing a generation prepared against our table layouts. Staged
+                // rows are discarded, as with any writer that is not closed.
+                Flusher f = this.flusher;
+                this.flusher = null;
+
+                try {
+                    f.close();
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Background flush failed while finalizing writer", e);
+                }
+            }
+        } finally {
+            this.reset();
+            this.staging.close();
+            this.layouts.close();
+        }
     }
 
     /**
      * Closes the timeseries table and local cache so that memory can be reclaimed. Flushes
      * all remaining output.
+     *
+     * When background flushing is enabled, this pushes all staged rows and waits
+     * until all background flushes have completed.
      */
     public void close() throws IOException {
-        this.reset();
+        try {
+            if (this.flusher != null) {
+                try {
+                    if (this.currentRow == null) {
+                        this.flush();
+                    }
+                } finally {
+                    Flusher f = this.flusher;
+                    this.flusher = null;
+                    f.close();
+                }
+            }
+        } finally {
+            // Native state is released even when the last background flush failed.
+            this.reset();
+            this.staging.close();
+            this.layouts.close();
+        }
     }
 
     public void flush() throws IOException {
+        if (this.currentRow != null) {
+            throw new IllegalStateException("Cannot flush while a row is in progress, call endRow() first");
+        }
+
+        if (this.flusher != null) {
+            this.flushInBackground();
+            return;
+        }
+
         try {
 
-            if (this.prepared == 0) {
+            if (this.staging.prepared == 0) {
                 this.prepareFlush();
             }
 
-            if (this.prepared == 0) {
+            if (this.staging.prepared == 0) {
                 logger.warn("Unable to prepare flush, skipping...");
                 return;
             }
 
             logger.info("Flushing batch writer, push mode='{}', points since last flush={}", this.options.getPushMode().toString(), this.pointsSinceFlush);
-            qdb.ts_exp_batch_push(this.session.handle(),
-                                  this.options.getPushMode().asInt(),
-                                  this.prepared,
-                                  this.stagedTables.size());
+            this.staging.push(this.session.handle(), this.options);
         } finally {
             this.reset();
-            assert(this.prepared == 0);
+            assert(this.staging.prepared == 0);
+        }
+    }
+
+    /**
+     * Hands off the staged generation to the flusher thread, and continues with
+     * the other generation. Blocks while the other generation is still being
+     * pushed.
+     */
+    private void flushInBackground() throws IOException {
+        this.flusher.checkError();
+
+        if (this.staging.isEmpty()) {
+            this.reset();
+            return;
+        }
+
+        if (this.staging.ready == false) {
+            this.prepareFlush();
         }
+
+        logger.debug("Handing off batch writer state to flusher, points since last flush={}", this.pointsSinceFlush);
+        this.staging = this.flusher.handOff(this.staging);
+        this.resetTracking();
     }
 
     public void flush(TimeRange[] ranges) throws IOException {
@@ -437,6 +1219,16 @@ public class Writer implements AutoCloseable, Flushable {
         this.flush();
     }
 
+    /**
+     * Waits until all rows flushed so far have been pushed. Only has an effect
+     * when background flushing is enabled, as a regular flush is synchronous.
+     */
+    public void drain() throws IOException {
+        if (this.flusher != null) {
+            this.flusher.drain();
+        }
+    }
+
     /**
      * Prepare internal data structure for flushing. Will be automatically called if
      * not called explicitly.
@@ -448,41 +1240,20 @@ public class Writer implements AutoCloseable, Flushable {
     /**
      * Prepare internal data structure for flushing. Will be automatically called if
      * not called explicitly.
+     *
+     * When background flushing is enabled, only the truncate ranges are determined
+     * here; the conversion to native structures happens on the flusher thread.
      */
     public void prepareFlush(TimeRange[] ranges) {
-        // Logic below and internally within the C++ parts assumes that we have
-        // at least 1 table to flush.
-        if (this.stagedTables.size() == 0) {
-            logger.warn("No tables staged, nothing to flush!");
-            assert(this.prepared == 0);
-            return;
-        }
-
-        long[]        rowCount       = new long[this.stagedTables.size()];
-        long[]        columnCount    = new long[this.stagedTables.size()];
-
-        int i = 0;
-        for (StagedTable t : this.stagedTables.values()) {
-            columnCount[i] = t.columnCount();
-            rowCount[i] = t.rowCount();
-
-            ++i;
-        }
-
-        // The data structure / logic below is set up to handle different ranges
-        // per table, but we don't actually support this on a high-level yet.
-        TimeRange[][] truncateRanges = new TimeRange[this.stagedTables.size()][];
-
         if (this.options.getPushMode() == PushMode.TRUNCATE) {
-            if (ranges == null && this.minMaxTs != null) {
+            if (ranges == null && this.hasMinMaxTs) {
                 ranges = new TimeRange[] {
-                    this.minMaxTs.withEnd(this.minMaxTs.end.plusNanos(1))
+                    new TimeRange(new Timespec(this.minTsSec, this.minTsNsec),
+                                  new Timespec(this.maxTsSec, this.maxTsNsec + 1))
                 };
             }
 
-            // As mentioned above, all ranges are the same for all tables. We *could*
-            // actually do this on a per-table basis.
-            Arrays.fill(truncateRanges, ranges);
+            this.staging.truncateRanges = ranges;
         } else {
             if (ranges != null) {
                 logger.warn("Truncate ranges provided but insert mode is not truncate!");
@@ -490,36 +1261,181 @@ public class Writer implements AutoCloseable, Flushable {
 
             // A 'null' value for the truncate ranges is interpreted as 'no range' by
             // the C++ code.
-            Arrays.fill(truncateRanges, null);
+            this.staging.truncateRanges = null;
         }
 
+        this.staging.ready = true;
 
-        this.prepared = qdb.ts_exp_batch_prepare(this.session.handle(),
-                                                 rowCount,
-                                                 columnCount);
+        if (this.flusher == null) {
+            this.staging.prepare(this.session.handle(), this.options, this.layouts);
+        }
+    }
 
-        i = 0;
-        for (Map.Entry<String, StagedTable> x : this.stagedTables.entrySet()) {
-            String tableName = x.getKey();
-            StagedTable stagedTable = x.getValue();
+    protected void trackMinMaxTimestamp(Timespec timestamp) {
+        this.trackMinMaxTimestamp(timestamp.sec, timestamp.nsec);
+    }
 
-            if (truncateRanges[i] == null) {
-                stagedTable.toNative(this.session.handle(),
-                                     this.prepared, i, tableName, this.options);
-            } else {
-                stagedTable.toNative(this.session.handle(),
-                                     this.prepared, i, tableName, this.options, truncateRanges[i]);
-            }
-            i++;
+    protected void trackMinMaxTimestamp(long sec, long nsec) {
+        if (this.hasMinMaxTs == false) {
+            this.minTsSec = this.maxTsSec = sec;
+            this.minTsNsec = this.maxTsNsec = nsec;
+            this.hasMinMaxTs = true;
+            return;
+        }
+
+        if (sec < this.minTsSec || (sec == this.minTsSec && nsec < this.minTsNsec)) {
+            this.minTsSec = sec;
+            this.minTsNsec = nsec;
+        }
+
+        if (sec > this.maxTsSec || (sec == this.maxTsSec && nsec > this.maxTsNsec)) {
+            this.maxTsSec = sec;
+            this.maxTsNsec = nsec;
         }
     }
 
-    protected void trackMinMaxTimestamp(Timespec timestamp) {
-        if (this.minMaxTs == null) {
-            this.minMaxTs = new TimeRange(timestamp, timestamp);
-        } else {
-            this.minMaxTs = TimeRange.merge(this.minMaxTs, timestamp);
+    private StagedTable requireRow() {
+        if (this.currentRow == null) {
+            throw new IllegalStateException("No row in progress, call startRow() first");
+        }
+
+        return this.currentRow;
+    }
+
+    /**
+     * Starts a new row in the local table cache. Values for the row's columns can
+     * then be provided using the typed setters such as {@link #setDouble}; columns
+     * that are not set are null. The row must be completed using {@link #endRow}.
+     *
+     * In contrast to {@link #append(Table, Timespec, Value[])}, building rows
+     * this way does not require any intermediate objects, and appending numeric
+     * values is allocation-free.
+     *
+     * @param table Table to insert into.
+     * @param sec Timestamp of the row, seconds since epoch.
+     * @param nsec Nanoseconds part of the row's timestamp.
+     *
+     * @see #endRow
+     */
+    public void startRow(Table table, long sec, long nsec) {
+        if (this.currentRow != null) {
+            throw new IllegalStateException("A row is already in progress, call endRow() first");
+        }
+
+        if (this.flusher != null) {
+            this.flusher.checkError();
         }
+
+        this.trackMinMaxTimestamp(sec, nsec);
+
+        StagedTable t = this.getStagedTable(table);
+        t.startRow(sec, nsec);
+
+        this.currentRow = t;
+    }
+
+    /**
+     * Starts a new row in the local table cache.
+     *
+     * @param table Table to insert into.
+     * @param epochNanos Timestamp of the row, nanoseconds since epoch.
+     *
+     * @see #startRow(Table, long, long)
+     */
+    public void startRow(Table table, long epochNanos) {
+        this.startRow(table,
+                      Math.floorDiv(epochNanos, 1000000000L),
+                      Math.floorMod(epochNanos, 1000000000L));
+    }
+
+    /**
+     * Sets a double value of the row in progress.
+     *
+     * @param column Offset of the column, must be a DOUBLE column.
+     * @param value Value to set.
+     */
+    public void setDouble(int column, double value) {
+        this.requireRow().setDouble(column, value);
+    }
+
+    /**
+     * Sets an int64 value of the row in progress.
+     *
+     * @param column Offset of the column, must be an INT64 column.
+     * @param value Value to set.
+     */
+    public void setInt64(int column, long value) {
+        this.requireRow().setInt64(column, value);
+    }
+
+    /**
+     * Sets a timestamp value of the row in progress.
+     *
+     * @param column Offset of the column, must be a TIMESTAMP column.
+     * @param sec Seconds since epoch.
+     * @param nsec Nanoseconds part of the timestamp.
+     */
+    public void setTimestamp(int column, long sec, long nsec) {
+        this.requireRow().setTimestamp(column, sec, nsec);
+    }
+
+    /**
+     * Sets a string value of the row in progress.
+     *
+     * @param column Offset of the column, must be a STRING or SYMBOL column.
+     * @param value Value to set, null for a null value.
+     */
+    public void setString(int column, CharSequence value) {
+        this.requireRow().setString(column, value);
+    }
+
+    /**
+     * Sets a blob value of the row in progress. Warning: assumes the (direct)
+     * bytebuffer will stay in memory, unmodified, until the writer is flushed.
+     *
+     * @param column Offset of the column, must be a BLOB column.
+     * @param value Value to set, null for a null value.
+     *
+     * @throws InvalidArgumentException If the buffer is not a direct buffer.
+     */
+    public void setBlob(int column, ByteBuffer value) {
+        this.requireRow().setBlob(column, value);
+    }
+
+    /**
+     * Sets a value of the row in progress.
+     *
+     * @param column Offset of the column.
+     * @param value Value to set.
+     */
+    public void setValue(int column, Value value) {
+        this.requireRow().setValue(column, value);
+    }
+
+    /**
+     * Completes the row in progress.
+     *
+     * @see #startRow
+     */
+    public void endRow() throws IOException {
+        StagedTable t = this.requireRow();
+
+        this.pointsSinceFlush += t.columnCount();
+        this.bytesSinceFlush += t.bytesSinceLastRow();
+        this.currentRow = null;
+    }
+
+    /**
+     * Discards the row in progress, for example when one of its values turns out
+     * to be invalid. None of the row's values are written.
+     *
+     * @see #startRow
+     */
+    public void discardRow() {
+        StagedTable t = this.requireRow();
+
+        t.discardRow();
+        this.currentRow = null;
     }
 
     /**
@@ -537,12 +1453,16 @@ public class Writer implements AutoCloseable, Flushable {
      * @see #flush
      */
     public void append(Table table, Timespec timestamp, Value[] values) throws IOException {
-        this.trackMinMaxTimestamp(timestamp);
-        this.pointsSinceFlush += values.length;
+        this.startRow(table, timestamp.sec, timestamp.nsec);
 
-        StagedTable t = this.getStagedTable(table);
+        try {
+            this.currentRow.setValues(values);
+        } catch (RuntimeException e) {
+            this.discardRow();
+            throw e;
+        }
 
-        t.append(timestamp, values);
+        this.endRow();
     }
 
     /**
@@ -593,16 +1513,75 @@ public class Writer implements AutoCloseable, Flushable {
     }
 
     /**
-     * Returns the amount of values appended to the writer, not yet pushed/flushed.
+     * Appends all rows of a columnar batch to the local table cache at once. This
+     * copies each column array in bulk, and avoids all per-row overhead of
+     * {@link #append}. Should be periodically flushed, unless an
+     * {@link AutoFlushWriter} is used.
+     *
+     * @param table Table to insert into.
+     * @param batch Rows to insert, with one column array per column of the table.
+     *
+     * @see ColumnarBatch
      */
-    public long size() {
-        long n = 0;
+    public void appendColumns(Table table, ColumnarBatch batch) throws IOException {
+        if (this.currentRow != null) {
+            throw new IllegalStateException("A row is already in progress, call endRow() first");
+        }
+
+        if (this.flusher != null) {
+            this.flusher.checkError();
+        }
+
+        int n = batch.rowCount();
+        if (n == 0) {
+            return;
+        }
 
-        for (StagedTable t : this.stagedTables.values()) {
-            n += t.valueCount();
+        StagedTable t = this.getStagedTable(table);
+        t.appendColumns(batch);
+
+        long[] xs = batch.epochNanos;
+        long min = xs[0];
+        long max = xs[0];
+        for (int i = 1; i < n; ++i) {
+            min = Math.min(min, xs[i]);
+            max = Math.max(max, xs[i]);
         }
 
-        return n;
+        this.trackMinMaxTimestamp(Math.floorDiv(min, 1000000000L), Math.floorMod(min, 1000000000L));
+        this.trackMinMaxTimestamp(Math.floorDiv(max, 1000000000L), Math.floorMod(max, 1000000000L));
+
+        this.pointsSinceFlush += n * t.columnCount();
+        this.bytesSinceFlush += t.bytesSinceLastRow();
+    }
+
+    /**
+     * Appends rows provided as one array per column to the local table cache.
+     *
+     * @param table Table to insert into.
+     * @param epochNanos Timestamps of the rows, nanoseconds since epoch.
+     * @param columns One array per column of the table, see {@link ColumnarBatch}
+     *                for the arrays accepted for each column type.
+     *
+     * @see #appendColumns(Table, ColumnarBatch)
+     */
+    public void appendColumns(Table table, long[] epochNanos, Object... columns) throws IOException {
+        this.appendColumns(table, ColumnarBatch.of(epochNanos, columns));
+    }
+
+    /**
+     * Returns the amount of values appended to the writer, not yet pushed/flushed.
+     */
+    public long size() {
+        return this.staging.valueCount();
+    }
+
+    /**
+     * Returns the amount of native memory retained by this writer for reuse by
+     * subsequent flushes, in bytes.
+     */
+    public long arenaCapacity() {
+        return this.staging.arenaCapacity();
     }
 
     public static final class Builder {
@@ -649,8 +1628,67 @@ public class Writer implements AutoCloseable, Flushable {
             return this;
         };
 
+        public Builder backgroundFlush() {
+            this.options.enableBackgroundFlush();
+            return this;
+        };
+
+        public Builder autoFlush() {
+            this.options.enableAutoFlush();
+            return this;
+        };
+
+        public Builder autoFlushRows(long rows) {
+            this.options.enableAutoFlushRows(rows);
+            return this;
+        };
+
+        public Builder autoFlushPoints(long points) {
+            this.options.enableAutoFlushPoints(points);
+            return this;
+        };
+
+        public Builder autoFlushBytes(long bytes) {
+            this.options.enableAutoFlushBytes(bytes);
+            return this;
+        };
+
+        public Builder autoFlushMaxAge(long millis) {
+            this.options.enableAutoFlushMaxAge(millis);
+            return this;
+        };
+
+        /**
+         * Releases the native memory retained across flushes once the writer did
+         * not flush for the provided amount of milliseconds.
+         *
+         * @see Options#setArenaIdleTimeout
+         */
+        public Builder arenaIdleTimeout(long millis) {
+            this.options.setArenaIdleTimeout(millis);
+            return this;
+        };
+
+        public Builder adaptiveAutoFlush(long targetMillis) {
+            this.options.enableAdaptiveAutoFlush(targetMillis);
+            return this;
+        };
+
+        /**
+         * Returns a new writer, or an {@link AutoFlushWriter} when any of the
+         * automatic flush options is enabled.
+         */
         public Writer build() {
-            return new Writer(this.session, this.options);
+            return Writer.of(this.session, this.options);
+        };
+
+        /**
+         * Returns a new thread-safe writer, which merges rows appended by all
+         * threads into a single batch when flushing. Automatic and background
+         * flushing options do not apply to this writer.
+         */
+        public ConcurrentWriter buildConcurrent() {
+            return new ConcurrentWriter(this.session, this.options);
         };
 
     };
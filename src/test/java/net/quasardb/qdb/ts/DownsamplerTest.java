@@ -0,0 +1,190 @@
+import java.util.*;
+import java.lang.Exception;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+
+import net.quasardb.common.TestUtils;
+import net.quasardb.qdb.ts.*;
+import net.quasardb.qdb.*;
+
+public class DownsamplerTest {
+
+    private Session s;
+
+    @BeforeEach
+    public void setup() {
+        s = TestUtils.createSession();
+        s.purgeAll(30000);
+    }
+
+    @AfterEach
+    public void teardown() {
+        s.close();
+        s = null;
+    }
+
+    @Test
+    public void canWriteDownsampledRollup() throws Exception {
+        Column[] cols = { new Column.Double(TestUtils.createUniqueAlias()),
+                          new Column.Int64(TestUtils.createUniqueAlias()) };
+
+        // 2 rows per second, for 10 seconds
+        Timespec begin = new Timespec(1000, 0);
+        WritableRow[] rows = new WritableRow[20];
+        for (int i = 0; i < rows.length; ++i) {
+            Value[] vs = { Value.createDouble((double)i),
+                           Value.createInt64(i % 2) };
+            rows[i] = new WritableRow(begin.plusNanos(i * 500000000L), vs);
+        }
+
+        Table t = TestUtils.seedTable(s, cols, rows);
+
+        Downsampler.Statistic[] stats = { Downsampler.Statistic.COUNT,
+                                          Downsampler.Statistic.MEAN,
+                                          Downsampler.Statistic.MAX };
+        Table rollup = TestUtils.createTable(s, TestUtils.createUniqueAlias(),
+                                             Downsampler.rollupColumns(t.getColumns(), stats));
+
+        int maxOpenBuckets = 0;
+        Writer w = Writer.builder(s).build();
+        Downsampler d = new Downsampler(t.getColumns(), 2000000000L,
+                                        Downsampler.writeTo(w, rollup, stats));
+
+        try (ColumnarReader r = Table.columnarReader(s, t, TestUtils.rangesFromRows(rows), 3)) {
+            while (r.hasNext()) {
+                d.add(r.next());
+                maxOpenBuckets = Math.max(maxOpenBuckets, d.getOpenBuckets());
+            }
+        }
+
+        d.flush();
+        w.flush();
+        w.close();
+
+        assertEquals(1, maxOpenBuckets);
+        assertEquals(0, d.getDroppedRows());
+
+        List<WritableRow> actual = new ArrayList<WritableRow>();
+        try (Reader r = Table.reader(s, rollup, new TimeRange[] { new TimeRange(begin, begin.plusSeconds(10)) })) {
+            r.forEachRemaining(actual::add);
+        }
+
+        assertEquals(5, actual.size());
+        for (int b = 0; b < actual.size(); ++b) {
+            Value[] vs = actual.get(b).getValues();
+
+            assertEquals(begin.plusSeconds(2 * b), actual.get(b).getTimestamp());
+            assertEquals(4, vs[0].getInt64());
+            assertEquals(4 * b + 1.5, vs[1].getDouble());
+            assertEquals(4 * b + 3.0, vs[2].getDouble());
+            assertEquals(4, vs[3].getInt64());
+            assertEquals(0.5, vs[4].getDouble());
+            assertEquals(1.0, vs[5].getDouble());
+        }
+    }
+
+    @Test
+    public void canDropRowsLaterThanAllowedLateness() throws Exception {
+        Column[] cols = { new Column.Double(TestUtils.createUniqueAlias()) };
+
+        List<Downsampler.Bucket> buckets = new ArrayList<Downsampler.Bucket>();
+        Downsampler d = new Downsampler(cols, 1000000000L, 1000000000L, buckets::add);
+
+        Timespec begin = new Timespec(1000, 0);
+
+        d.add(new WritableRow(begin.plusNanos(500000000L), new Value[] { Value.createDouble(1.0) }));
+        d.add(new WritableRow(begin.plusNanos(2500000000L), new Value[] { Value.createDouble(2.0) }));
+
+        // The watermark passed the end of the first bucket by more than the
+        // allowed lateness.
+        assertEquals(1, buckets.size());
+        assertEquals(begin, buckets.get(0).getBegin());
+
+        // Late, but within the allowed lateness: the second bucket is still open
+        d.add(new WritableRow(begin.plusNanos(1500000000L), new Value[] { Value.createDouble(3.0) }));
+        assertEquals(0, d.getDroppedRows());
+
+        // Falls into the first bucket, which was already emitted
+        d.add(new WritableRow(begin.plusNanos(700000000L), new Value[] { Value.createDouble(4.0) }));
+        assertEquals(1, d.getDroppedRows());
+
+        d.add(new WritableRow(begin.plusNanos(4000000000L), new Value[] { Value.createDouble(5.0) }));
+        assertEquals(3, buckets.size());
+
+        d.add(new WritableRow(begin.plusNanos(1900000000L), new Value[] { Value.createDouble(6.0) }));
+        assertEquals(2, d.getDroppedRows());
+
+        d.flush();
+
+        assertEquals(4, buckets.size());
+        assertEquals(0, d.getOpenBuckets());
+
+        double[] expected = { 1.0, 3.0, 2.0, 5.0 };
+        for (int b = 0; b < buckets.size(); ++b) {
+            assertEquals(1, buckets.get(b).getCount(0));
+            assertEquals(expected[b], buckets.get(b).getSum(0));
+        }
+
+        // Dropped rows never made it into an emitted bucket
+        assertEquals(begin.plusSeconds(1), buckets.get(1).getBegin());
+        assertEquals(begin.plusSeconds(4), buckets.get(3).getBegin());
+    }
+
+    @Test
+    public void canAddRowsWithNullValues() throws Exception {
+        Column[] cols = { new Column.Double(TestUtils.createUniqueAlias()),
+                          new Column.Int64(TestUtils.createUniqueAlias()),
+                          new Column.String_(TestUtils.createUniqueAlias()) };
+
+        List<Downsampler.Bucket> buckets = new ArrayList<Downsampler.Bucket>();
+        Downsampler d = new Downsampler(cols, 1000000000L, buckets::add);
+
+        Timespec begin = new Timespec(1000, 0);
+
+        d.add(new WritableRow(begin, new Value[] { Value.createDouble(1.0),
+                                                   Value.createInt64(2),
+                                                   Value.createString("a") }));
+        d.add(new WritableRow(begin.plusNanos(1), new Value[] { Value.createNull(),
+                                                               Value.createNull(),
+                                                               Value.createNull() }));
+        d.add(new WritableRow(begin.plusNanos(2), new Value[] { Value.createDouble(Double.NaN),
+                                                               Value.createInt64(4),
+                                                               Value.createNull() }));
+        d.add(new WritableRow(begin.plusNanos(3), new Value[] { Value.createDouble(3.0),
+                                                               Value.createNull(),
+                                                               Value.createString("b") }));
+
+        // A bucket in which every value is null
+        d.add(new WritableRow(begin.plusSeconds(1), new Value[] { Value.createNull(),
+                                                                  Value.createNull(),
+                                                                  Value.createNull() }));
+        d.flush();
+
+        assertEquals(2, buckets.size());
+
+        Downsampler.Bucket b = buckets.get(0);
+        assertEquals(2, b.getCount(0));
+        assertEquals(2.0, b.getMean(0));
+        assertEquals(1.0, b.getFirst(0));
+        assertEquals(3.0, b.getLast(0));
+        assertEquals(2, b.getCount(1));
+        assertEquals(3.0, b.getMean(1));
+        assertEquals(2, b.getCount(2));
+        assertTrue(Double.isNaN(b.getMean(2)));
+
+        Downsampler.Bucket empty = buckets.get(1);
+        for (int c = 0; c < cols.length; ++c) {
+            assertEquals(0, empty.getCount(c));
+            assertTrue(Double.isNaN(empty.getMin(c)));
+            assertTrue(Double.isNaN(empty.getMean(c)));
+        }
+
+        Value[] vs = empty.toRow(Downsampler.Statistic.COUNT, Downsampler.Statistic.MEAN).getValues();
+        assertEquals(0, vs[0].getInt64());
+        assertTrue(vs[1].isNull());
+    }
+}
@@ -1,20 +1,31 @@
 import java.util.StringJoiner;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.time.Duration;
 import java.util.stream.Stream;
+import java.nio.ByteBuffer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 
 import net.quasardb.qdb.Session;
+import net.quasardb.qdb.SessionFactory;
+import net.quasardb.qdb.SessionPool;
 import net.quasardb.qdb.ts.*;
 
 import net.quasardb.qdb.exception.InputException;
+import net.quasardb.qdb.exception.InvalidIteratorException;
 
 import net.quasardb.common.TestUtils;
 
@@ -162,4 +173,273 @@ public class QueryTest {
             }
         }
     }
+
+    @Test
+    public void canExecuteColumnarQuery() throws Exception {
+        Column.Type[] columnTypes = { Column.Type.INT64,
+                                      Column.Type.DOUBLE,
+                                      Column.Type.TIMESTAMP,
+                                      Column.Type.BLOB,
+                                      Column.Type.STRING };
+
+        for (Column.Type columnType : columnTypes) {
+            Column[] definition =
+                TestUtils.generateTableColumns(columnType, 1);
+
+            WritableRow[] rows = TestUtils.generateTableRows(definition, 32, 10, 0.5);
+            Table t = TestUtils.seedTable(s, definition, rows);
+
+            Query q = new QueryBuilder()
+                .add("select")
+                .add(definition[0].getName())
+                .add("from")
+                .add(t.getName())
+                .in(TestUtils.rangeFromRows(rows))
+                .asQuery();
+
+            Result expected = q.execute(s);
+            ColumnarResult r = q.executeColumnar(s);
+
+            assertEquals(expected.columns.length, r.columnCount());
+            assertEquals(expected.rows.length, r.rowCount());
+            assertArrayEquals(expected.columns, r.getColumnNames());
+
+            for (int i = 0; i < r.rowCount(); ++i) {
+                Value v = expected.rows[i].getValues()[0];
+                assertEquals(v.isNull(), r.isNull(i, 0));
+
+                if (v.isNull()) {
+                    continue;
+                }
+
+                switch (v.getType()) {
+                case INT64:
+                    assertEquals(v.getInt64(), r.int64s(0)[i]);
+                    break;
+                case DOUBLE:
+                    assertEquals(v.getDouble(), r.doubles(0)[i]);
+                    break;
+                case TIMESTAMP:
+                    assertEquals(v.getTimestamp().toEpochNanos(), r.timestamps(0)[i]);
+                    break;
+                case BLOB:
+                    int[] offsets = r.blobs(0).offsets();
+                    assertEquals(v.getBlob(), ByteBuffer.wrap(r.blobs(0).data(),
+                                                              offsets[i],
+                                                              offsets[i + 1] - offsets[i]));
+                    break;
+                case STRING:
+                    assertEquals(v.getString(), r.strings(0).getString(i));
+                    break;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void canIterateQueryCursor() throws Exception {
+        Column[] definition =
+            TestUtils.generateTableColumns(Column.Type.INT64, 2);
+
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 100);
+        Table t = TestUtils.seedTable(s, definition, rows);
+
+        Query q = new QueryBuilder()
+            .add("select *")
+            .add("from")
+            .add(t.getName())
+            .in(TestUtils.rangeFromRows(rows))
+            .asQuery();
+
+        Result expected = q.execute(s);
+
+        // Chunk size deliberately does not divide the amount of rows.
+        try (QueryCursor c = q.cursor(s, 7)) {
+            assertArrayEquals(expected.columns, c.getColumns());
+            assertEquals(expected.rows.length, c.getRowCount());
+
+            int i = 0;
+            while (c.hasNext()) {
+                assertEquals(expected.rows[i++], c.next());
+            }
+
+            assertEquals(expected.rows.length, i);
+            assertThrows(InvalidIteratorException.class, () -> {
+                    c.next();
+                });
+        }
+
+        try (Stream<Row> xs = q.cursor(s).stream()) {
+            assertEquals(expected.rows.length, xs.count());
+        }
+    }
+
+    @Test
+    public void canExecuteZeroCopyQuery() throws Exception {
+        Column[] definition =
+            TestUtils.generateTableColumns(Column.Type.BLOB, 2);
+
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 32, 10, 0.5);
+        Table t = TestUtils.seedTable(s, definition, rows);
+
+        Query q = new QueryBuilder()
+            .add("select *")
+            .add("from")
+            .add(t.getName())
+            .in(TestUtils.rangeFromRows(rows))
+            .asQuery();
+
+        Result expected = q.execute(s);
+        Result copy;
+
+        try (Result r = q.executeZeroCopy(s)) {
+            assertArrayEquals(expected.columns, r.columns);
+            assertEquals(expected.rows.length, r.rows.length);
+
+            for (int i = 0; i < r.rows.length; ++i) {
+                assertEquals(expected.rows[i], r.rows[i]);
+            }
+
+            copy = r.copy();
+        }
+
+        // The copy remains valid after the native result has been released.
+        for (int i = 0; i < copy.rows.length; ++i) {
+            assertEquals(expected.rows[i], copy.rows[i]);
+        }
+    }
+
+    @Test
+    public void canIterateQueryCursor_withBlobs() throws Exception {
+        Column[] definition =
+            TestUtils.generateTableColumns(Column.Type.BLOB, 1);
+
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 32, 10, 0.0);
+        Table t = TestUtils.seedTable(s, definition, rows);
+
+        Query q = new QueryBuilder()
+            .add("select *")
+            .add("from")
+            .add(t.getName())
+            .in(TestUtils.rangeFromRows(rows))
+            .asQuery();
+
+        Result expected = q.execute(s);
+
+        // By default, blobs are copied and remain valid after closing.
+        List<Row> copied = new ArrayList<Row>();
+        try (QueryCursor c = q.cursor(s)) {
+            c.forEachRemaining(copied::add);
+        }
+
+        assertEquals(expected.rows.length, copied.size());
+        for (int i = 0; i < copied.size(); ++i) {
+            assertEquals(expected.rows[i], copied.get(i));
+        }
+
+        // Views fail cleanly once the cursor is closed.
+        List<Row> views = new ArrayList<Row>();
+        try (QueryCursor c = q.cursorZeroCopy(s)) {
+            c.forEachRemaining(views::add);
+
+            for (int i = 0; i < views.size(); ++i) {
+                assertEquals(expected.rows[i], views.get(i));
+            }
+        }
+
+        assertEquals(expected.rows.length, views.size());
+        for (Row r : views) {
+            for (Value v : r.getValues()) {
+                if (v.getType() == Value.Type.BLOB) {
+                    assertThrows(IllegalStateException.class, () -> {
+                            v.getBlob();
+                        });
+                }
+            }
+        }
+    }
+
+    @Test
+    public void canExecuteQueryWithStringDeduplication() throws Exception {
+        Column[] definition =
+            TestUtils.generateTableColumns(Column.Type.STRING, 2);
+
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 32, 10, 0.5);
+
+        // Repeat the values of the first row in the last one
+        rows[rows.length - 1] = new WritableRow(rows[rows.length - 1].getTimestamp(),
+                                                rows[0].getValues());
+
+        Table t = TestUtils.seedTable(s, definition, rows);
+
+        Query q = new QueryBuilder()
+            .add("select *")
+            .add("from")
+            .add(t.getName())
+            .in(TestUtils.rangeFromRows(rows))
+            .asQuery();
+
+        Result expected = q.execute(s);
+        Result r = q.deduplicateStrings(true).execute(s);
+
+        assertArrayEquals(expected.columns, r.columns);
+        assertArrayEquals(expected.rows, r.rows);
+
+        Map<String, String> seen = new HashMap<String, String>();
+        for (Row row : r.rows) {
+            for (Value v : row.getValues()) {
+                if (v.getType() == Value.Type.STRING) {
+                    String x = v.getString();
+                    assertSame(seen.computeIfAbsent(x, k -> x), x);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void canExecuteQueryAsync() throws Exception {
+        Column[] definition =
+            TestUtils.generateTableColumns(Column.Type.DOUBLE, 2);
+
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 10);
+        Table t = TestUtils.seedTable(s, definition, rows);
+
+        Query q = new QueryBuilder()
+            .add("select *")
+            .add("from")
+            .add(t.getName())
+            .in(TestUtils.rangeFromRows(rows))
+            .asQuery();
+
+        Result expected = q.execute(s);
+
+        List<CompletableFuture<Result>> fs = new ArrayList<CompletableFuture<Result>>();
+        fs.add(q.executeAsync(s));
+        fs.add(q.executeAsync(s, Duration.ofMinutes(1)));
+
+        SessionPool pool = new SessionPool(new SessionFactory(TestUtils.CLUSTER_URI), 2);
+        try {
+            for (int i = 0; i < 8; ++i) {
+                fs.add(q.executeAsync(pool));
+            }
+
+            for (CompletableFuture<Result> f : fs) {
+                Result r = f.get();
+                assertArrayEquals(expected.columns, r.columns);
+                assertArrayEquals(expected.rows, r.rows);
+            }
+
+            assertEquals(2, pool.size());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void executeAsync_completesExceptionally() throws Exception {
+        CompletableFuture<Result> f = Query.create().executeAsync(s);
+
+        ExecutionException e = assertThrows(ExecutionException.class, f::get);
+        assertTrue(e.getCause() instanceof InputException);
+    }
 }
@@ -1,11 +1,13 @@
 import java.util.*;
 import java.time.*;
+import java.nio.ByteBuffer;
 import java.lang.Exception;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.AfterEach;
@@ -178,6 +180,412 @@ public class ReaderTest {
         }
     }
 
+    @Test
+    public void canReadAcrossBlocks_afterWriting() throws Exception {
+        Column.Type[] columnTypes = { Column.Type.INT64,
+                                      Column.Type.DOUBLE,
+                                      Column.Type.TIMESTAMP,
+                                      Column.Type.BLOB,
+                                      Column.Type.STRING };
+
+        for (Column.Type columnType : columnTypes) {
+            // More rows than fit in a single block, and not a multiple of the
+            // block size.
+            Column[] cols =
+                TestUtils.generateTableColumns(columnType, 2);
+            WritableRow[] rows = TestUtils.generateTableRows(cols, 100);
+            Table table = TestUtils.seedTable(s, cols, rows);
+            TimeRange[] ranges = TestUtils.rangesFromRows(rows);
+
+            Reader reader = Table.reader(s, table, ranges, 7);
+
+            try {
+                int index = 0;
+                while (reader.hasNext()) {
+                    assertEquals(rows[index++], reader.next());
+                }
+
+                assertEquals(rows.length, index);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Test
+    public void canReadColumnar_afterWriting() throws Exception {
+        Column.Type[] columnTypes = { Column.Type.INT64,
+                                      Column.Type.DOUBLE,
+                                      Column.Type.TIMESTAMP,
+                                      Column.Type.BLOB,
+                                      Column.Type.STRING };
+
+        for (Column.Type columnType : columnTypes) {
+            Column[] cols =
+                TestUtils.generateTableColumns(columnType, 2);
+            WritableRow[] rows = TestUtils.generateTableRows(cols, 100);
+            Table table = TestUtils.seedTable(s, cols, rows);
+            TimeRange[] ranges = TestUtils.rangesFromRows(rows);
+
+            ColumnarReader reader = Table.columnarReader(s, table, ranges, 7);
+
+            try {
+                int index = 0;
+                while (reader.hasNext()) {
+                    ColumnBatch batch = reader.next();
+                    assertTrue(batch.rowCount() > 0);
+                    assertTrue(batch.rowCount() <= 7);
+
+                    for (int i = 0; i < batch.rowCount(); ++i, ++index) {
+                        WritableRow row = rows[index];
+                        assertEquals(row.getTimestamp().toEpochNanos(), batch.timestamps()[i]);
+
+                        for (int c = 0; c < cols.length; ++c) {
+                            Value expected = row.getValues()[c];
+                            assertEquals(expected.isNull(), batch.isNull(i, c));
+
+                            if (expected.isNull()) {
+                                continue;
+                            }
+
+                            switch (columnType) {
+                            case INT64:
+                                assertEquals(expected.getInt64(), batch.int64s(c)[i]);
+                                break;
+                            case DOUBLE:
+                                assertEquals(expected.getDouble(), batch.doubles(c)[i]);
+                                break;
+                            case TIMESTAMP:
+                                assertEquals(expected.getTimestamp().toEpochNanos(), batch.timestamps(c)[i]);
+                                break;
+                            case BLOB:
+                                ColumnarBatch.StringSlab blobs = batch.blobs(c);
+                                int start = blobs.offsets()[i];
+                                assertEquals(expected.getBlob(),
+                                             ByteBuffer.wrap(blobs.data(), start, blobs.offsets()[i + 1] - start));
+                                break;
+                            case STRING:
+                                assertEquals(expected.getString(), batch.strings(c).getString(i));
+                                break;
+                            }
+                        }
+                    }
+                }
+
+                assertEquals(rows.length, index);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Test
+    public void splitRanges_alignsOnShards() throws Exception {
+        // 10 seconds, starting halfway a one second shard
+        Timespec begin = new Timespec(1000, 500000000);
+        Timespec end = new Timespec(1010, 500000000);
+        TimeRange[] ranges = { new TimeRange(begin, end) };
+
+        TimeRange[] splits = ParallelReader.splitRanges(ranges, 1000, 100);
+
+        assertEquals(11, splits.length);
+        assertEquals(begin, splits[0].getBegin());
+        assertEquals(new Timespec(1001, 0), splits[0].getEnd());
+        assertEquals(end, splits[splits.length - 1].getEnd());
+
+        for (int i = 1; i < splits.length; ++i) {
+            assertEquals(splits[i - 1].getEnd(), splits[i].getBegin());
+        }
+
+        // Fewer splits than shards groups consecutive shards together
+        assertEquals(6, ParallelReader.splitRanges(ranges, 1000, 5).length);
+
+        // Overlapping ranges are merged
+        TimeRange[] overlapping = { new TimeRange(new Timespec(1005, 0), end),
+                                    new TimeRange(begin, new Timespec(1006, 0)) };
+        TimeRange[] merged = ParallelReader.splitRanges(overlapping, 1000, 100);
+        assertEquals(splits.length, merged.length);
+        for (int i = 0; i < splits.length; ++i) {
+            assertEquals(splits[i].getBegin(), merged[i].getBegin());
+            assertEquals(splits[i].getEnd(), merged[i].getEnd());
+        }
+    }
+
+    @Test
+    public void canReadParallel_afterWriting() throws Exception {
+        Column[] cols = TestUtils.generateTableColumns(5);
+        WritableRow[] rows = TestUtils.generateTableRows(cols, 100);
+        Table table = TestUtils.seedTable(s, cols, rows);
+        TimeRange[] ranges = TestUtils.rangesFromRows(rows);
+
+        SessionPool pool = new SessionPool(new SessionFactory(TestUtils.CLUSTER_URI), 2);
+        try {
+            ParallelReader reader = Table.parallelReader(pool, table, ranges, 2, ParallelReader.Ordering.ORDERED, 7);
+            try {
+                int index = 0;
+                while (reader.hasNext()) {
+                    assertEquals(rows[index++], reader.next());
+                }
+
+                assertEquals(rows.length, index);
+            } finally {
+                reader.close();
+            }
+
+            reader = Table.parallelReader(pool, table, ranges, 2, ParallelReader.Ordering.UNORDERED, 7);
+            try {
+                List<WritableRow> actual = new ArrayList<WritableRow>();
+                reader.forEachRemaining(actual::add);
+                actual.sort((WritableRow lhs, WritableRow rhs) -> lhs.getTimestamp().compareTo(rhs.getTimestamp()));
+
+                assertArrayEquals(rows, actual.toArray());
+            } finally {
+                reader.close();
+            }
+
+            // All sessions are returned to the pool
+            assertEquals(2, pool.size());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void canReadParallel_failsRepeatedly_afterTableRemoved() throws Exception {
+        Column[] cols = TestUtils.generateTableColumns(5);
+        WritableRow[] rows = TestUtils.generateTableRows(cols, 100);
+        Table table = TestUtils.seedTable(s, cols, rows);
+        TimeRange[] ranges = TestUtils.rangesFromRows(rows);
+
+        // Every sub-range fails, once the table is gone
+        Table.remove(s, table);
+
+        SessionPool pool = new SessionPool(new SessionFactory(TestUtils.CLUSTER_URI), 2);
+        try {
+            for (ParallelReader.Ordering ordering : ParallelReader.Ordering.values()) {
+                ParallelReader reader = Table.parallelReader(pool, table, ranges, 2, ordering, 7);
+                try {
+                    RuntimeException e = assertThrows(RuntimeException.class, () -> {
+                            reader.hasNext();
+                        });
+
+                    // The error is rethrown rather than waiting for rows that
+                    // never arrive
+                    assertSame(e, assertThrows(RuntimeException.class, () -> {
+                                reader.hasNext();
+                            }));
+                    assertSame(e, assertThrows(RuntimeException.class, () -> {
+                                reader.next();
+                            }));
+                } finally {
+                    reader.close();
+                }
+            }
+
+            assertEquals(2, pool.size());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void canStreamParallel_afterWriting() throws Exception {
+        Column[] cols = TestUtils.generateTableColumns(5);
+        WritableRow[] rows = TestUtils.generateTableRows(cols, 100);
+        Table table = TestUtils.seedTable(s, cols, rows);
+
+        // One range per row, so that the spliterator can be split.
+        TimeRange[] ranges = TestUtils.rangesFromRows(rows);
+
+        Reader reader = Table.reader(s, table, ranges, 7);
+        try {
+            WritableRow[] readRows = reader.stream().parallel().toArray(WritableRow[]::new);
+            assertArrayEquals(rows, readRows);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void canReadWithPrefetch_afterWriting() throws Exception {
+        Column[] cols = TestUtils.generateTableColumns(5);
+        WritableRow[] rows = TestUtils.generateTableRows(cols, 100);
+        Table table = TestUtils.seedTable(s, cols, rows);
+        TimeRange[] ranges = TestUtils.rangesFromRows(rows);
+
+        Reader.Options options = new Reader.Options();
+        options.setBlockSize(7);
+        options.setPrefetchDepth(2);
+
+        Reader reader = Table.reader(s, table, ranges, options);
+        try {
+            int index = 0;
+            while (reader.hasNext()) {
+                assertEquals(rows[index++], reader.next());
+            }
+
+            assertEquals(rows.length, index);
+            assertTrue(reader.getConsumerStalls() >= 1);
+            assertTrue(reader.getConsumerStallNanos() >= 0);
+        } finally {
+            reader.close();
+        }
+
+        // Closing a reader while the fetcher is still running
+        reader = Table.reader(s, table, ranges, options);
+        try {
+            assertEquals(rows[0], reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void canReadWithDeduplicatedSymbols_afterWriting() throws Exception {
+        Column[] cols = TestUtils.generateTableColumns(Column.Type.SYMBOL, 1);
+        String[] symbols = { "abc", "def", "\u00e9t\u00e9" };
+
+        Timespec ts = Timespec.now();
+        WritableRow[] rows = new WritableRow[30];
+        for (int i = 0; i < rows.length; ++i) {
+            Value[] vs = { Value.createString(symbols[i % symbols.length]) };
+            rows[i] = new WritableRow(ts.plusNanos(i), vs);
+        }
+
+        Table table = TestUtils.seedTable(s, cols, rows);
+
+        Reader.Options options = new Reader.Options();
+        options.setBlockSize(7);
+        options.setDeduplicateSymbols(true);
+
+        Map<String, String> seen = new HashMap<String, String>();
+
+        try (Reader reader = Table.reader(s, table, TestUtils.rangesFromRows(rows), options)) {
+            int index = 0;
+            while (reader.hasNext()) {
+                WritableRow row = reader.next();
+                assertEquals(rows[index++], row);
+
+                // Equal symbols share a single instance, even across blocks
+                String x = row.getValues()[0].getString();
+                assertSame(seen.computeIfAbsent(x, k -> x), x);
+            }
+
+            assertEquals(rows.length, index);
+        }
+
+        assertEquals(symbols.length, seen.size());
+    }
+
+    @Test
+    public void invalidPrefetchDepth_throwsException() throws Exception {
+        Reader.Options options = new Reader.Options();
+
+        assertThrows(InvalidArgumentException.class, () -> {
+                options.setPrefetchDepth(-1);
+            });
+    }
+
+    @Test
+    public void canReadWithCursor_afterWriting() throws Exception {
+        Column.Type[] columnTypes = { Column.Type.INT64,
+                                      Column.Type.DOUBLE,
+                                      Column.Type.TIMESTAMP,
+                                      Column.Type.BLOB,
+                                      Column.Type.STRING };
+
+        for (Column.Type columnType : columnTypes) {
+            Column[] cols =
+                TestUtils.generateTableColumns(columnType, 2);
+            WritableRow[] rows = TestUtils.generateTableRows(cols, 100);
+            Table table = TestUtils.seedTable(s, cols, rows);
+            TimeRange[] ranges = TestUtils.rangesFromRows(rows);
+
+            Reader reader = Table.reader(s, table, ranges, 7);
+            try {
+                RowCursor cursor = reader.cursor();
+                StringBuilder sb = new StringBuilder();
+                ByteBuffer bb = ByteBuffer.allocate(1024);
+
+                int index = 0;
+                while (cursor.advance()) {
+                    WritableRow row = rows[index++];
+                    assertEquals(row.getTimestamp().toEpochNanos(), cursor.getTimestampNanos());
+                    assertEquals(row, cursor.copyRow());
+
+                    for (int c = 0; c < cols.length; ++c) {
+                        Value expected = row.getValues()[c];
+                        assertEquals(expected.isNull(), cursor.isNull(c));
+
+                        if (expected.isNull()) {
+                            continue;
+                        }
+
+                        switch (columnType) {
+                        case INT64:
+                            assertEquals(expected.getInt64(), cursor.getLong(c));
+                            break;
+                        case DOUBLE:
+                            assertEquals(expected.getDouble(), cursor.getDouble(c));
+                            break;
+                        case TIMESTAMP:
+                            assertEquals(expected.getTimestamp().toEpochNanos(), cursor.getTimestampNanos(c));
+                            break;
+                        case BLOB:
+                            bb.clear();
+                            assertEquals(expected.getBlob().remaining(), cursor.getBlob(c, bb));
+                            bb.flip();
+                            assertEquals(expected.getBlob(), bb);
+                            break;
+                        case STRING:
+                            sb.setLength(0);
+                            assertTrue(cursor.getString(c, sb));
+                            assertEquals(expected.getString(), sb.toString());
+                            break;
+                        }
+                    }
+                }
+
+                assertEquals(rows.length, index);
+                assertFalse(cursor.advance());
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Test
+    public void canReadProjectedColumns_afterWriting() throws Exception {
+        Column[] cols = TestUtils.generateTableColumns(5);
+        WritableRow[] rows = TestUtils.generateTableRows(cols, 10);
+        Table table = TestUtils.seedTable(s, cols, rows);
+        TimeRange[] ranges = TestUtils.rangesFromRows(rows);
+
+        Reader reader = Table.reader(s, table, ranges, cols[3].getName(), cols[1].getName());
+        try {
+            assertEquals(2, reader.getTable().getColumns().length);
+
+            int index = 0;
+            while (reader.hasNext()) {
+                WritableRow expected = rows[index++];
+                WritableRow actual = reader.next();
+
+                assertEquals(expected.getTimestamp(), actual.getTimestamp());
+                assertEquals(2, actual.getValues().length);
+                assertEquals(expected.getValues()[3], actual.getValues()[0]);
+                assertEquals(expected.getValues()[1], actual.getValues()[1]);
+            }
+
+            assertEquals(rows.length, index);
+        } finally {
+            reader.close();
+        }
+
+        assertThrows(InvalidArgumentException.class, () -> {
+                Table.reader(s, table, ranges, "no_such_column");
+            });
+    }
+
     @Test
     public void canCallHasNext_multipleTimes() throws Exception {
         // Generate a 1x1 test dataset
@@ -123,4 +123,36 @@ public class TableTest {
         assertThrows(InvalidArgumentException.class,
             () -> Table.create(s, TestUtils.createUniqueAlias(), columns));
     }
+
+    @Test
+    public void canAggregateBuckets() throws Exception {
+        Column[] columns = TestUtils.generateTableColumns(Column.Type.DOUBLE, 1);
+
+        Timespec begin = new Timespec(1000, 0);
+        WritableRow[] rows = new WritableRow[10];
+        for (int i = 0; i < rows.length; ++i) {
+            Value[] vs = { Value.createDouble((double)i) };
+            rows[i] = new WritableRow(begin.plusSeconds(i), vs);
+        }
+
+        Table t = TestUtils.seedTable(s, columns, rows);
+
+        TimeRange[] buckets = { new TimeRange(begin, begin.plusSeconds(5)),
+                                new TimeRange(begin.plusSeconds(5), begin.plusSeconds(10)),
+                                new TimeRange(begin.plusSeconds(10), begin.plusSeconds(20)) };
+
+        AggregationResult r = Table.aggregate(s, t, columns[0].getName(), buckets,
+                                              AggregationType.COUNT,
+                                              AggregationType.SUM,
+                                              AggregationType.MAX);
+
+        assertArrayEquals(new long[] { 5, 5, 0 }, r.getCounts(AggregationType.COUNT));
+        assertEquals(10.0, r.getValue(AggregationType.SUM, 0));
+        assertEquals(35.0, r.getValue(AggregationType.SUM, 1));
+        assertEquals(9.0, r.getValue(AggregationType.MAX, 1));
+        assertEquals(begin.plusSeconds(9), r.getTimestamp(AggregationType.MAX, 1));
+
+        assertThrows(InvalidArgumentException.class,
+            () -> r.getValues(AggregationType.MIN));
+    }
 }
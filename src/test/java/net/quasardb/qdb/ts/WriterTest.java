@@ -1,6 +1,7 @@
 import java.util.*;
 import java.time.*;
 import java.lang.Exception;
+import java.nio.ByteBuffer;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -23,6 +24,7 @@ import net.quasardb.qdb.ts.*;
 import net.quasardb.qdb.*;
 import net.quasardb.qdb.exception.InvalidIteratorException;
 import net.quasardb.qdb.exception.InvalidArgumentException;
+import net.quasardb.qdb.exception.IncompatibleTypeException;
 
 public class WriterTest {
 
@@ -151,6 +153,21 @@ public class WriterTest {
         throw new IllegalArgumentException("Invalid push mode: " + mode.toString());
     }
 
+    Writer backgroundWriterByPushMode(Writer.PushMode mode) {
+        switch (mode) {
+        case NORMAL:
+            return Writer.builder(s).normalPush().backgroundFlush().build();
+        case FAST:
+            return Writer.builder(s).fastPush().backgroundFlush().build();
+        case ASYNC:
+            return Writer.builder(s).asyncPush().backgroundFlush().build();
+        case TRUNCATE:
+            return Writer.builder(s).truncatePush().backgroundFlush().build();
+        };
+
+        throw new IllegalArgumentException("Invalid push mode: " + mode.toString());
+    }
+
     void pushmodeAwareFlush(Writer w) throws Exception {
         w.flush();
 
@@ -345,6 +362,287 @@ public class WriterTest {
     }
 
 
+    @ParameterizedTest
+    @MethodSource("pushModeProvider")
+    public void canInsertRowsWithTypedSetters(Writer.PushMode mode) throws Exception {
+        Column.Type[] columnTypes = {
+            Column.Type.DOUBLE,
+            Column.Type.INT64,
+            Column.Type.TIMESTAMP,
+            Column.Type.STRING
+        };
+        Column[] definition = TestUtils.generateTableColumns(columnTypes);
+
+        Table t = TestUtils.createTable(s, definition);
+        Writer writer = writerByPushMode(mode);
+
+        try {
+            int ROW_COUNT = 250;
+
+            WritableRow[] rows = new WritableRow[ROW_COUNT];
+            for (int i = 0; i < rows.length; ++i) {
+                Timespec timestamp = new Timespec(1500000000 + i, i);
+                Timespec timestampValue = new Timespec(1400000000 + i, 2 * i);
+                String stringValue = "row " + i;
+
+                rows[i] = new WritableRow(timestamp,
+                                          new Value[] {
+                                              Value.createDouble(i * 0.5),
+                                              Value.createInt64(i),
+                                              Value.createTimestamp(timestampValue),
+                                              // Leave every other string value null
+                                              (i % 2 == 0
+                                               ? Value.createString(stringValue)
+                                               : Value.createNull())});
+
+                writer.startRow(t, timestamp.toEpochNanos());
+                writer.setDouble(0, i * 0.5);
+                writer.setInt64(1, i);
+                writer.setTimestamp(2, timestampValue.getSec(), timestampValue.getNano());
+                if (i % 2 == 0) {
+                    writer.setString(3, stringValue);
+                }
+                writer.endRow();
+            }
+
+            assertEquals(writer.size(), rows.length * definition.length);
+
+            pushmodeAwareFlush(writer);
+
+            WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(rows));
+            assertArrayEquals(rows, readRows);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("pushModeProvider")
+    public void canInsertMultiByteStrings(Writer.PushMode mode) throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(Column.Type.STRING, 1);
+
+        Table t = TestUtils.createTable(s, definition);
+        Writer writer = writerByPushMode(mode);
+
+        String[] values = {
+            "ascii",
+            "caf\u00e9",
+            "\u65e5\u672c\u8a9e",
+            "emoji \ud83d\ude00"
+        };
+
+        try {
+            WritableRow[] rows = new WritableRow[values.length];
+            for (int i = 0; i < values.length; ++i) {
+                Timespec timestamp = new Timespec(1500000000 + i, i);
+
+                rows[i] = new WritableRow(timestamp,
+                                          new Value[] { Value.createString(values[i]) });
+
+                writer.startRow(t, timestamp.toEpochNanos());
+
+                // Overwriting the value of the row in progress replaces it.
+                writer.setString(0, "overwritten");
+                writer.setString(0, values[i]);
+                writer.endRow();
+            }
+
+            pushmodeAwareFlush(writer);
+
+            WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(rows));
+            assertArrayEquals(rows, readRows);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Converts rows into one array per column, as accepted by ColumnarBatch.
+     */
+    static Object[] columnsFromRows(Column[] definition, WritableRow[] rows) {
+        Object[] ret = new Object[definition.length];
+
+        for (int i = 0; i < definition.length; ++i) {
+            final int col = i;
+
+            switch (definition[i].getType()) {
+            case DOUBLE:
+                ret[i] = Arrays.stream(rows).mapToDouble(r -> r.getValues()[col].getDouble()).toArray();
+                break;
+            case INT64:
+                ret[i] = Arrays.stream(rows).mapToLong(r -> r.getValues()[col].getInt64()).toArray();
+                break;
+            case TIMESTAMP:
+                ret[i] = Arrays.stream(rows).mapToLong(r -> r.getValues()[col].getTimestamp().toEpochNanos()).toArray();
+                break;
+            case SYMBOL:
+            case STRING:
+                ret[i] = Arrays.stream(rows).map(r -> r.getValues()[col].getString()).toArray(String[]::new);
+                break;
+            case BLOB:
+                ret[i] = Arrays.stream(rows).map(r -> r.getValues()[col].getBlob()).toArray(ByteBuffer[]::new);
+                break;
+            }
+        }
+
+        return ret;
+    }
+
+    @ParameterizedTest
+    @MethodSource("pushModeAndColumnTypesProvider")
+    public void canAppendColumns(Writer.PushMode mode, Column.Type[] columnTypes) throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(columnTypes);
+
+        Table t = TestUtils.createTable(s, definition);
+        Writer writer = writerByPushMode(mode);
+
+        try {
+            WritableRow[] rows = TestUtils.generateTableRows(definition, 1000);
+            long[] epochNanos = Arrays.stream(rows).mapToLong(r -> r.getTimestamp().toEpochNanos()).toArray();
+
+            writer.appendColumns(t, epochNanos, columnsFromRows(definition, rows));
+            assertEquals(rows.length * definition.length, writer.size());
+
+            pushmodeAwareFlush(writer);
+
+            WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(rows));
+            assertArrayEquals(rows, readRows);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void cannotAppendIncompatibleColumns() throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(new Column.Type[] { Column.Type.DOUBLE,
+                                                                                Column.Type.INT64 });
+
+        Table t = TestUtils.createTable(s, definition);
+        Writer writer = Writer.builder(s).build();
+
+        try {
+            long[] epochNanos = new long[] { 1500000000000000000L, 1500000000000000001L };
+
+            // Second column is not a double column.
+            assertThrows(IncompatibleTypeException.class, () -> {
+                    writer.appendColumns(t, epochNanos, new double[] { 1.0, 2.0 }, new double[] { 3.0, 4.0 });
+                });
+
+            // Not enough values
+            assertThrows(InvalidArgumentException.class, () -> {
+                    writer.appendColumns(t, epochNanos, new double[] { 1.0, 2.0 }, new long[] { 3 });
+                });
+
+            assertEquals(0, writer.size());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("pushModeProvider")
+    public void cannotSetValueWithoutRow(Writer.PushMode mode) throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(Column.Type.DOUBLE, 1);
+
+        Table t = TestUtils.createTable(s, definition);
+        Writer writer = writerByPushMode(mode);
+
+        try {
+            assertThrows(IllegalStateException.class, () -> {
+                    writer.setDouble(0, 1.0);
+                });
+
+            writer.startRow(t, Timespec.now().toEpochNanos());
+
+            assertThrows(IllegalStateException.class, () -> {
+                    writer.flush();
+                });
+
+            writer.endRow();
+        } finally {
+            writer.close();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("pushModeProvider")
+    public void canAppendAfterFailedAppend(Writer.PushMode mode) throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(Column.Type.DOUBLE, 2);
+
+        Table t = TestUtils.createTable(s, definition);
+        Writer writer = writerByPushMode(mode);
+
+        Timespec ts = Timespec.now();
+        WritableRow row = new WritableRow(ts.plusNanos(1),
+                                          new Value[] { Value.createDouble(1.0),
+                                                        Value.createDouble(2.0) });
+
+        try {
+            // Type mismatch in the second column
+            assertThrows(RuntimeException.class, () -> {
+                    writer.append(t, ts, new Value[] { Value.createDouble(3.0),
+                                                       Value.createString("abc") });
+                });
+
+            // A row started with the typed API can be aborted as well
+            writer.startRow(t, ts.plusNanos(2).toEpochNanos());
+            writer.setDouble(0, 4.0);
+            writer.discardRow();
+
+            assertThrows(IllegalStateException.class, () -> {
+                    writer.discardRow();
+                });
+
+            writer.append(t, row);
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+
+        List<WritableRow> actual = new ArrayList<WritableRow>();
+        try (Reader r = Table.reader(s, t, new TimeRange[] { new TimeRange(ts, ts.plusSeconds(1)) })) {
+            r.forEachRemaining(actual::add);
+        }
+
+        assertEquals(1, actual.size());
+        assertEquals(row, actual.get(0));
+    }
+
+    @Test
+    public void cannotAppendHeapBlob() throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(Column.Type.BLOB, 1);
+
+        Table t = TestUtils.createTable(s, definition);
+        Writer writer = Writer.builder(s).build();
+
+        Timespec ts = Timespec.now();
+        byte[] data = new byte[32];
+        TestUtils.createSampleData(data);
+        WritableRow row = new WritableRow(ts.plusNanos(1),
+                                          new Value[] { Value.createSafeBlob(data) });
+
+        try {
+            // Heap buffers are rejected when they are set, not when flushing
+            writer.startRow(t, ts.toEpochNanos());
+            assertThrows(InvalidArgumentException.class, () -> {
+                    writer.setBlob(0, ByteBuffer.wrap(data));
+                });
+            writer.discardRow();
+
+            assertThrows(InvalidArgumentException.class, () -> {
+                    writer.append(t, ts, new Value[] { Value.createBlob(data) });
+                });
+
+            writer.append(t, row);
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+
+        WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(new WritableRow[] { row }));
+        assertArrayEquals(new WritableRow[] { row }, readRows);
+    }
+
     @ParameterizedTest
     @MethodSource("pushModeAndColumnTypesProvider")
     public void canInsertMultipleColumns(Writer.PushMode mode,
@@ -493,6 +791,487 @@ public class WriterTest {
     }
 
 
+    @ParameterizedTest
+    @MethodSource("pushModeAndColumnTypeProvider")
+    public void canFlushInBackground(Writer.PushMode mode, Column.Type columnType) throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(columnType, 1);
+
+        Table t = TestUtils.createTable(s, definition);
+
+        int ROUNDS = 10;
+        int ROW_COUNT = 100;
+
+        WritableRow[] rows = TestUtils.generateTableRows(definition, ROUNDS * ROW_COUNT);
+
+        Writer writer = backgroundWriterByPushMode(mode);
+
+        try {
+            for (int i = 0; i < rows.length; ++i) {
+                writer.append(t, rows[i]);
+
+                if ((i + 1) % ROW_COUNT == 0) {
+                    writer.flush();
+
+                    // The other generation is empty again after the hand-off.
+                    assertEquals(writer.size(), 0);
+                }
+            }
+
+            writer.drain();
+        } finally {
+            writer.close();
+        }
+
+        WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(rows));
+        assertArrayEquals(rows, readRows);
+    }
+
+    @ParameterizedTest
+    @MethodSource("pushModeAndColumnTypeProvider")
+    public void canCloseBackgroundWriterWithStagedRows(Writer.PushMode mode, Column.Type columnType) throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(columnType, 1);
+
+        Table t = TestUtils.createTable(s, definition);
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 100);
+
+        Writer writer = backgroundWriterByPushMode(mode);
+        try {
+            for (WritableRow row : rows) {
+                writer.append(t, row);
+            }
+        } finally {
+            // Closing a background writer pushes everything that was staged.
+            writer.close();
+        }
+
+        WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(rows));
+        assertArrayEquals(rows, readRows);
+    }
+
+    @ParameterizedTest
+    @MethodSource("columnTypeProvider")
+    public void canAutoFlushOnPointsAndBytes(Column.Type columnType) throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(columnType, 2);
+
+        Table t = TestUtils.createTable(s, definition);
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 100);
+
+        Writer pointsWriter = Writer.builder(s).autoFlushPoints(10).build();
+        try {
+            assertTrue(pointsWriter instanceof AutoFlushWriter);
+
+            for (int i = 0; i < 4; ++i) {
+                pointsWriter.append(t, rows[i]);
+            }
+
+            assertEquals(pointsWriter.size(), 8);
+
+            // Fifth row makes it 10 points, which triggers a flush
+            pointsWriter.append(t, rows[4]);
+            assertEquals(pointsWriter.size(), 0);
+        } finally {
+            pointsWriter.close();
+        }
+
+        Writer bytesWriter = Writer.builder(s).autoFlushBytes(1).build();
+        try {
+            // Every row exceeds a single byte
+            bytesWriter.append(t, rows[5]);
+            assertEquals(bytesWriter.size(), 0);
+        } finally {
+            bytesWriter.close();
+        }
+
+        WritableRow[] written = Arrays.copyOfRange(rows, 0, 6);
+        WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(written));
+        assertArrayEquals(written, readRows);
+    }
+
+    @Test
+    public void canAutoFlushOnMaxAge() throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(Column.Type.DOUBLE, 1);
+
+        Table t = TestUtils.createTable(s, definition);
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 10);
+
+        Writer writer = Writer.builder(s).autoFlushMaxAge(100).build();
+        try {
+            for (WritableRow row : rows) {
+                writer.append(t, row);
+            }
+
+            assertEquals(writer.size(), rows.length);
+
+            // No appends arrive, the timer should flush for us
+            long deadline = System.currentTimeMillis() + 5000;
+            while (writer.size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            assertEquals(writer.size(), 0);
+
+            WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(rows));
+            assertArrayEquals(rows, readRows);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void canAutoFlushOnMaxAge_afterFailedAppend() throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(Column.Type.DOUBLE, 1);
+
+        Table t = TestUtils.createTable(s, definition);
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 10);
+
+        Writer writer = Writer.builder(s).autoFlushMaxAge(100).build();
+        try {
+            assertThrows(RuntimeException.class, () -> {
+                    writer.append(t, Timespec.now(), new Value[] { Value.createString("abc") });
+                });
+
+            // An aborted row must not keep the timer locked out either
+            writer.startRow(t, Timespec.now().toEpochNanos());
+            writer.discardRow();
+
+            for (WritableRow row : rows) {
+                writer.append(t, row);
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (writer.size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            assertEquals(writer.size(), 0);
+
+            WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(rows));
+            assertArrayEquals(rows, readRows);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void canAdaptAutoFlushThreshold() throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(Column.Type.DOUBLE, 1);
+
+        Table t = TestUtils.createTable(s, definition);
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 2000);
+
+        AutoFlushWriter writer =
+            (AutoFlushWriter)(Writer.builder(s).autoFlushRows(1000).adaptiveAutoFlush(1000).build());
+        try {
+            assertEquals(writer.getThreshold(), 1000);
+
+            for (WritableRow row : rows) {
+                writer.append(t, row);
+            }
+
+            // Flushing 1000 rows takes far less than a second, so the
+            // threshold should grow.
+            assertTrue(writer.getThreshold() > 1000);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("columnTypeProvider")
+    public void canWriteConcurrently(Column.Type columnType) throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(columnType, 1);
+
+        Table t = TestUtils.createTable(s, definition);
+
+        int THREAD_COUNT = 8;
+        int ROW_COUNT = 250;
+
+        WritableRow[] rows = TestUtils.generateTableRows(definition, THREAD_COUNT * ROW_COUNT);
+
+        ConcurrentWriter writer = Writer.builder(s).buildConcurrent();
+        try {
+            Thread[] threads = new Thread[THREAD_COUNT];
+            for (int i = 0; i < THREAD_COUNT; ++i) {
+                final int offset = i * ROW_COUNT;
+
+                threads[i] = new Thread(() -> {
+                        for (int j = offset; j < offset + ROW_COUNT; ++j) {
+                            writer.append(t, rows[j]);
+                        }
+                    });
+                threads[i].start();
+            }
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(writer.size(), rows.length);
+
+            writer.flush();
+
+            assertEquals(writer.size(), 0);
+        } finally {
+            writer.close();
+        }
+
+        WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(rows));
+        assertArrayEquals(rows, readRows);
+    }
+
+    @Test
+    public void canFlushConcurrently_whileRowIsAbandoned() throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(Column.Type.DOUBLE, 1);
+
+        Table t = TestUtils.createTable(s, definition);
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 2);
+
+        ConcurrentWriter writer = Writer.builder(s).buildConcurrent();
+
+        // A thread that starts a row, and dies without completing it
+        Thread abandoner = new Thread(() -> {
+                writer.startRow(t, rows[1].getTimestamp().toEpochNanos());
+                writer.setValue(0, rows[1].getValues()[0]);
+            });
+        abandoner.start();
+        abandoner.join();
+
+        writer.append(t, rows[0]);
+        writer.flush();
+        writer.close();
+
+        WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(rows));
+        assertArrayEquals(new WritableRow[] { rows[0] }, readRows);
+    }
+
+    @Test
+    public void cannotAppendConcurrently_afterClose() throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(Column.Type.DOUBLE, 1);
+
+        Table t = TestUtils.createTable(s, definition);
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 2);
+
+        ConcurrentWriter writer = Writer.builder(s).buildConcurrent();
+        writer.append(t, rows[0]);
+        writer.close();
+
+        assertThrows(IllegalStateException.class, () -> {
+                writer.append(t, rows[1]);
+            });
+
+        assertThrows(IllegalStateException.class, () -> {
+                writer.startRow(t, rows[1].getTimestamp().toEpochNanos());
+            });
+
+        assertThrows(IllegalStateException.class, () -> {
+                writer.flush();
+            });
+
+        // Closing twice is harmless
+        writer.close();
+
+        WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(rows));
+        assertArrayEquals(new WritableRow[] { rows[0] }, readRows);
+    }
+
+    @ParameterizedTest
+    @MethodSource("columnTypeProvider")
+    public void canWriteInParallel(Column.Type columnType) throws Exception {
+        int PARTITION_COUNT = 4;
+        int TABLE_COUNT = 16;
+        int ROW_COUNT = 100;
+
+        Column[] definition = TestUtils.generateTableColumns(columnType, 1);
+
+        Table[] tables = new Table[TABLE_COUNT];
+        WritableRow[][] rows = new WritableRow[TABLE_COUNT][];
+        for (int i = 0; i < TABLE_COUNT; ++i) {
+            tables[i] = TestUtils.createTable(s, definition);
+            rows[i] = TestUtils.generateTableRows(definition, ROW_COUNT);
+        }
+
+        SessionPool pool = new SessionPool(new SessionFactory(TestUtils.CLUSTER_URI), PARTITION_COUNT);
+        try {
+            ParallelWriter writer = new ParallelWriter(pool, PARTITION_COUNT);
+            try {
+                // All sessions are bound to a partition
+                assertEquals(pool.size(), 0);
+
+                for (int i = 0; i < TABLE_COUNT; ++i) {
+                    for (WritableRow row : rows[i]) {
+                        writer.append(tables[i], row);
+                    }
+                }
+
+                assertEquals(writer.size(), TABLE_COUNT * ROW_COUNT);
+                writer.flush();
+                assertEquals(writer.size(), 0);
+            } finally {
+                writer.close();
+            }
+
+            assertEquals(pool.size(), PARTITION_COUNT);
+
+            // Closing twice is harmless
+            writer.close();
+            assertEquals(pool.size(), PARTITION_COUNT);
+        } finally {
+            pool.close();
+        }
+
+        for (int i = 0; i < TABLE_COUNT; ++i) {
+            WritableRow[] readRows = TestUtils.readRows(s, tables[i], TestUtils.singleRangeFromRows(rows[i]));
+            assertArrayEquals(rows[i], readRows);
+        }
+    }
+
+    @Test
+    public void canWriteInParallel_afterDiscardedRow() throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(Column.Type.INT64, 1);
+
+        Table t = TestUtils.createTable(s, definition);
+        WritableRow[] rows = TestUtils.generateTableRows(definition, 1);
+
+        SessionPool pool = new SessionPool(new SessionFactory(TestUtils.CLUSTER_URI), 2);
+        try {
+            ParallelWriter writer = new ParallelWriter(pool, 2);
+            try {
+                writer.startRow(t, rows[0].getTimestamp().toEpochNanos());
+
+                assertThrows(IncompatibleTypeException.class, () -> {
+                        writer.setDouble(0, 1.0);
+                    });
+
+                writer.discardRow();
+
+                assertThrows(IllegalStateException.class, () -> {
+                        writer.discardRow();
+                    });
+
+                writer.append(t, rows[0]);
+                writer.flush();
+            } finally {
+                writer.close();
+            }
+        } finally {
+            pool.close();
+        }
+
+        WritableRow[] readRows = TestUtils.readRows(s, t, TestUtils.singleRangeFromRows(rows));
+        assertArrayEquals(rows, readRows);
+    }
+
+    @ParameterizedTest
+    @MethodSource("pushModeAndColumnTypeProvider")
+    public void canFlushRepeatedlyToSameTables(Writer.PushMode mode, Column.Type columnType) throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(columnType, 2);
+
+        Table t1 = TestUtils.createTable(s, definition);
+        Table t2 = TestUtils.createTable(s, definition);
+        Writer writer = writerByPushMode(mode);
+
+        try {
+            // Table layouts are prepared by the first flush and reused by the
+            // subsequent ones.
+            for (int i = 0; i < 3; ++i) {
+                WritableRow[] rows1 = TestUtils.generateTableRows(definition, 10);
+                WritableRow[] rows2 = TestUtils.generateTableRows(definition, 10);
+
+                for (int j = 0; j < rows1.length; ++j) {
+                    writer.append(t1, rows1[j]);
+                    writer.append(t2, rows2[j]);
+                }
+                pushmodeAwareFlush(writer);
+
+                assertArrayEquals(rows1,
+                                  TestUtils.readRows(s, t1, TestUtils.singleRangeFromRows(rows1)));
+                assertArrayEquals(rows2,
+                                  TestUtils.readRows(s, t2, TestUtils.singleRangeFromRows(rows2)));
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("columnTypeProvider")
+    public void canReuseArenaAcrossFlushes(Column.Type columnType) throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(columnType, 1);
+        Table t = TestUtils.createTable(s, definition);
+
+        Writer writer = Writer.builder(s).normalPush().build();
+        Writer idleWriter = Writer.builder(s).normalPush().arenaIdleTimeout(500).build();
+
+        try {
+            for (Writer w : new Writer[] { writer, idleWriter }) {
+                for (int i = 0; i < 2; ++i) {
+                    WritableRow[] rows = TestUtils.generateTableRows(definition, 100);
+                    for (int j = 0; j < rows.length; ++j) {
+                        w.append(t, rows[j]);
+                    }
+
+                    w.flush();
+                }
+            }
+
+            // Both writers retain their arena while flushes keep coming
+            assertTrue(writer.arenaCapacity() > 0);
+            assertTrue(idleWriter.arenaCapacity() > 0);
+
+            // The second writer releases it while idle, without another flush
+            long deadline = System.currentTimeMillis() + 5000;
+            while (idleWriter.arenaCapacity() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            assertTrue(writer.arenaCapacity() > 0);
+            assertEquals(0, idleWriter.arenaCapacity());
+
+            // And allocates it again on the next flush
+            idleWriter.append(t, TestUtils.generateTableRows(definition, 1)[0]);
+            idleWriter.flush();
+            assertTrue(idleWriter.arenaCapacity() > 0);
+        } finally {
+            writer.close();
+            idleWriter.close();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("pushModeAndColumnTypeProvider")
+    public void canFlushWithIdleTable(Writer.PushMode mode, Column.Type columnType) throws Exception {
+        Column[] definition = TestUtils.generateTableColumns(columnType, 1);
+
+        Table t1 = TestUtils.createTable(s, definition);
+        Table t2 = TestUtils.createTable(s, definition);
+        Writer writer = writerByPushMode(mode);
+
+        try {
+            WritableRow[] rows1 = TestUtils.generateTableRows(definition, 100);
+            WritableRow[] rows2 = TestUtils.generateTableRows(definition, 100);
+
+            for (int i = 0; i < rows1.length; ++i) {
+                writer.append(t1, rows1[i]);
+            }
+            pushmodeAwareFlush(writer);
+
+            // t1 is still known to the writer, but does not receive any rows
+            // during this second round.
+            for (int i = 0; i < rows2.length; ++i) {
+                writer.append(t2, rows2[i]);
+            }
+            assertEquals(rows2.length, writer.size());
+            pushmodeAwareFlush(writer);
+
+            assertArrayEquals(rows1,
+                              TestUtils.readRows(s, t1, TestUtils.singleRangeFromRows(rows1)));
+            assertArrayEquals(rows2,
+                              TestUtils.readRows(s, t2, TestUtils.singleRangeFromRows(rows2)));
+        } finally {
+            writer.close();
+        }
+    }
+
     @ParameterizedTest
     @MethodSource("truncatePushModeAndColumnTypeProvider")
     public void canTruncate(Writer.PushMode mode, Column.Type columnType) throws Exception {